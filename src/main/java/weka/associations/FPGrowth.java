@@ -23,17 +23,20 @@ package weka.associations;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.Capabilities;
@@ -147,6 +150,12 @@ import weka.core.Utils;
  *  with -transactions and/or -rules
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads used for mining the FP-tree.
+ *  (default 1 - i.e. no parallelism, 0 - all available cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -331,6 +340,15 @@ public class FPGrowth extends AbstractAssociator implements
       m_sets.add(setToAdd);
     }
 
+    /**
+     * Add all item sets of the given list to this list.
+     * 
+     * @param setsToAdd the item sets to add.
+     */
+    public void addItemSets(FrequentItemSets setsToAdd) {
+      m_sets.addAll(setsToAdd.m_sets);
+    }
+
     /**
      * Sort the item sets according to the supplied comparator.
      * 
@@ -425,365 +443,399 @@ public class FPGrowth extends AbstractAssociator implements
   }
 
   /**
-   * This class holds the counts for projected tree nodes and header lists.
+   * A compact FP-tree. The nodes are stored in parallel int arrays (parent,
+   * item and count of each node) and the nodes holding the same item are
+   * chained by node links that start in the header table. Node 0 is the root.
+   * Items are numbered so that items closer to the root have smaller numbers,
+   * i.e., the items of a path are inserted in ascending order. Conditional
+   * trees are built from a tree without modifying it, so several threads can
+   * mine the same tree at once.
    */
-  protected static class ShadowCounts implements Serializable {
+  protected static class FPTree implements Serializable {
 
     /** For serialization */
-    private static final long serialVersionUID = 4435433714185969155L;
+    private static final long serialVersionUID = -2146382935712450466L;
 
-    /** Holds the counts at different recursion levels */
-    private final ArrayList<Integer> m_counts = new ArrayList<Integer>();
+    /** no node */
+    protected static final int NONE = -1;
 
-    /**
-     * Get the count at the specified recursion depth.
-     * 
-     * @param recursionLevel the depth of the recursion.
-     * @return the count.
-     */
-    public int getCount(int recursionLevel) {
-      if (recursionLevel >= m_counts.size()) {
-        return 0;
-      } else {
-        return m_counts.get(recursionLevel);
-      }
-    }
+    /** the frequent items of the data, in descending order of frequency */
+    protected BinaryItem[] m_items;
 
-    /**
-     * Increase the count at a given recursion level.
-     * 
-     * @param recursionLevel the level at which to increase the count.
-     * @param incr the amount by which to increase the count.
-     */
-    public void increaseCount(int recursionLevel, int incr) {
-      // basically treat the list like a stack where we
-      // can add a new element, or increment the element
-      // at the top
-
-      if (recursionLevel == m_counts.size()) {
-        // new element
-        m_counts.add(incr);
-      } else if (recursionLevel == m_counts.size() - 1) {
-        // otherwise increment the top
-        int n = m_counts.get(recursionLevel).intValue();
-        m_counts.set(recursionLevel, (n + incr));
-      }
-    }
+    /** the rank of each item of m_items in the header table iteration order */
+    protected int[] m_headerRanks;
 
-    /**
-     * Remove the count at the given recursion level.
-     * 
-     * @param recursionLevel the level at which to remove the count.
-     */
-    public void removeCount(int recursionLevel) {
-      if (recursionLevel < m_counts.size()) {
-        m_counts.remove(recursionLevel);
-      }
-    }
-  }
+    /** the index (into m_items) of each item of this tree */
+    protected int[] m_itemIDs;
 
-  /**
-   * A node in the FP-tree.
-   */
-  protected static class FPTreeNode implements Serializable {
+    /** the parent of each node */
+    protected int[] m_parent;
 
-    /** For serialization */
-    private static final long serialVersionUID = 4396315323673737660L;
+    /** the item of each node */
+    protected int[] m_item;
+
+    /** the count of each node */
+    protected int[] m_count;
+
+    /** the next node holding the same item */
+    protected int[] m_nodeLink;
 
-    /** link to another sibling at this level in the tree */
-    protected FPTreeNode m_levelSibling;
+    /** the number of nodes, including the root */
+    protected int m_numNodes;
 
-    /** link to the parent node */
-    protected FPTreeNode m_parent;
+    /** the first node holding each item */
+    protected int[] m_headerFirst;
 
-    /** item at this node */
-    protected BinaryItem m_item;
+    /** the total count (i.e. the support) of each item */
+    protected int[] m_headerCount;
 
-    /** ID (for graphing the tree) */
-    protected int m_ID;
+    /** the items in the order their first node was created */
+    protected int[] m_firstAppearance;
 
-    /** the children of this node */
-    protected Map<BinaryItem, FPTreeNode> m_children = new HashMap<BinaryItem, FPTreeNode>();
+    /** the number of items that have at least one node */
+    protected int m_numAppeared;
 
-    /** counts associated with projected versions of this node */
-    protected ShadowCounts m_projectedCounts = new ShadowCounts();
+    /** parent and item of the children in the lookup table */
+    protected transient long[] m_childKeys;
+
+    /** the children in the lookup table (0 marks an empty slot) */
+    protected transient int[] m_childNodes;
 
     /**
-     * Construct a new node with the given parent link and item.
+     * Create a new empty tree.
      * 
-     * @param parent a pointer to the parent of this node.
-     * @param item the item at this node.
+     * @param items the frequent items of the data
+     * @param itemIDs the index (into items) of each item of this tree
+     * @param expectedNodes the expected number of nodes
      */
-    public FPTreeNode(FPTreeNode parent, BinaryItem item) {
-      m_parent = parent;
-      m_item = item;
+    public FPTree(BinaryItem[] items, int[] itemIDs, int expectedNodes) {
+      m_items = items;
+      m_itemIDs = itemIDs;
+      int capacity = Math.max(expectedNodes, 16);
+      m_parent = new int[capacity];
+      m_item = new int[capacity];
+      m_count = new int[capacity];
+      m_nodeLink = new int[capacity];
+      m_parent[0] = NONE;
+      m_item[0] = NONE;
+      m_nodeLink[0] = NONE;
+      m_numNodes = 1;
+      m_headerFirst = new int[itemIDs.length];
+      Arrays.fill(m_headerFirst, NONE);
+      m_headerCount = new int[itemIDs.length];
+      m_firstAppearance = new int[itemIDs.length];
+      int tableSize = Integer.highestOneBit(capacity) * 4;
+      m_childKeys = new long[tableSize];
+      m_childNodes = new int[tableSize];
     }
 
     /**
-     * Insert an item set into the tree at this node. Removes the first item
-     * from the supplied item set and makes a recursive call to insert the
-     * remaining items.
+     * Get the number of items of this tree.
      * 
-     * @param itemSet the item set to insert.
-     * @param headerTable the header table for the tree.
-     * @param incr the amount by which to increase counts.
+     * @return the number of items.
      */
-    public void addItemSet(Collection<BinaryItem> itemSet,
-      Map<BinaryItem, FPTreeRoot.Header> headerTable, int incr) {
-
-      Iterator<BinaryItem> i = itemSet.iterator();
-
-      if (i.hasNext()) {
-        BinaryItem first = i.next();
-
-        FPTreeNode aChild;
-        if (!m_children.containsKey(first)) {
-          // not in the tree, so add it.
-          aChild = new FPTreeNode(this, first);
-          m_children.put(first, aChild);
-
-          // update the header
-          if (!headerTable.containsKey(first)) {
-            headerTable.put(first, new FPTreeRoot.Header());
-          }
-
-          // append new node to header list
-          headerTable.get(first).addToList(aChild);
-        } else {
-          // get the appropriate child node
-          aChild = m_children.get(first);
-        }
-
-        // update counts in header table
-        headerTable.get(first).getProjectedCounts().increaseCount(0, incr);
-
-        // increase the child's count
-        aChild.increaseProjectedCount(0, incr);
-
-        // proceed recursively
-        itemSet.remove(first);
-        aChild.addItemSet(itemSet, headerTable, incr);
-      }
+    public int numItems() {
+      return m_itemIDs.length;
     }
 
     /**
-     * Increase the projected count at the given recursion level at this node
+     * Get the number of nodes of this tree, including the root.
      * 
-     * @param recursionLevel the recursion level to increase the node count at.
-     * @param incr the amount by which to increase the count.
+     * @return the number of nodes.
      */
-    public void increaseProjectedCount(int recursionLevel, int incr) {
-      m_projectedCounts.increaseCount(recursionLevel, incr);
+    public int numNodes() {
+      return m_numNodes;
     }
 
     /**
-     * Remove the projected count at the given recursion level for this node.
+     * Get the item (as a BinaryItem) of the given item of this tree.
      * 
-     * @param recursionLevel the recursion level at which to remove the count.
+     * @param item the item of this tree
+     * @return the corresponding BinaryItem.
      */
-    public void removeProjectedCount(int recursionLevel) {
-      m_projectedCounts.removeCount(recursionLevel);
+    public BinaryItem getItem(int item) {
+      return m_items[m_itemIDs[item]];
     }
 
     /**
-     * Get the projected count at the given recursion level for this node.
+     * Get the support of the given item in this tree.
      * 
-     * @param recursionLevel the recursion level at which to get the count.
-     * @return the count.
+     * @param item the item of this tree
+     * @return the support.
      */
-    public int getProjectedCount(int recursionLevel) {
-      return m_projectedCounts.getCount(recursionLevel);
+    public int getSupport(int item) {
+      return m_headerCount[item];
     }
 
     /**
-     * Get the parent node.
+     * Insert a path into the tree.
      * 
-     * @return the parent node.
+     * @param path the items of the path in ascending order
+     * @param length the number of items in the path
+     * @param incr the amount by which to increase counts.
      */
-    public FPTreeNode getParent() {
-      return m_parent;
+    public void addPath(int[] path, int length, int incr) {
+      int node = 0;
+      for (int i = 0; i < length; i++) {
+        node = getChild(node, path[i]);
+        m_count[node] += incr;
+        m_headerCount[path[i]] += incr;
+      }
     }
 
     /**
-     * Get the item at this node.
+     * Get the child holding the given item, creating it if necessary.
      * 
-     * @return the item at this node.
+     * @param parent the parent node
+     * @param item the item of the child
+     * @return the child node.
      */
-    public BinaryItem getItem() {
-      return m_item;
+    protected int getChild(int parent, int item) {
+      long key = ((long) parent << 32) | item;
+      int mask = m_childKeys.length - 1;
+      int slot = hash(key) & mask;
+      while (m_childNodes[slot] != 0) {
+        if (m_childKeys[slot] == key) {
+          return m_childNodes[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      int node = newNode(parent, item);
+      m_childKeys[slot] = key;
+      m_childNodes[slot] = node;
+      if (2 * m_numNodes > m_childKeys.length) {
+        rehash(2 * m_childKeys.length);
+      }
+      return node;
     }
 
     /**
-     * Return a textual description of this node for a given recursion level.
+     * Append a node to the arrays and the header table.
      * 
-     * @param recursionLevel the recursion depth to use.
-     * @return a textual description of this node.
+     * @param parent the parent node
+     * @param item the item of the node
+     * @return the new node.
      */
-    public String toString(int recursionLevel) {
-      return toString("", recursionLevel);
+    protected int newNode(int parent, int item) {
+      if (m_numNodes == m_parent.length) {
+        int capacity = m_numNodes + (m_numNodes >> 1);
+        m_parent = Arrays.copyOf(m_parent, capacity);
+        m_item = Arrays.copyOf(m_item, capacity);
+        m_count = Arrays.copyOf(m_count, capacity);
+        m_nodeLink = Arrays.copyOf(m_nodeLink, capacity);
+      }
+      int node = m_numNodes++;
+      m_parent[node] = parent;
+      m_item[node] = item;
+      if (m_headerFirst[item] == NONE) {
+        m_firstAppearance[m_numAppeared++] = item;
+      }
+      m_nodeLink[node] = m_headerFirst[item];
+      m_headerFirst[item] = node;
+      return node;
     }
 
     /**
-     * Return a textual description of this node for a given recursion level.
+     * Spread the bits of a key of the child lookup table.
      * 
-     * @param prefix a prefix string to prepend.
-     * @param recursionLevel the recursion level to use.
-     * @return a textual description of this node.
+     * @param key the key
+     * @return the hash code.
      */
-    public String toString(String prefix, int recursionLevel) {
-      StringBuffer buffer = new StringBuffer();
-      buffer.append(prefix);
-      buffer.append("|  ");
-      buffer.append(m_item.toString());
-      buffer.append(" (");
-      buffer.append(m_projectedCounts.getCount(recursionLevel));
-      buffer.append(")\n");
-
-      for (FPTreeNode node : m_children.values()) {
-        buffer.append(node.toString(prefix + "|  ", recursionLevel));
-      }
-      return buffer.toString();
+    protected static int hash(long key) {
+      return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
     }
 
-    protected int assignIDs(int lastID) {
-      int currentLastID = lastID + 1;
-      m_ID = currentLastID;
-      if (m_children != null) {
-        Collection<FPTreeNode> kids = m_children.values();
-        for (FPTreeNode n : kids) {
-          currentLastID = n.assignIDs(currentLastID);
+    /**
+     * Rebuild the child lookup table with the given size.
+     * 
+     * @param size the new size of the table (a power of two)
+     */
+    protected void rehash(int size) {
+      long[] keys = m_childKeys;
+      int[] nodes = m_childNodes;
+      m_childKeys = new long[size];
+      m_childNodes = new int[size];
+      int mask = size - 1;
+      for (int i = 0; i < keys.length; i++) {
+        if (nodes[i] != 0) {
+          int slot = hash(keys[i]) & mask;
+          while (m_childNodes[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          m_childKeys[slot] = keys[i];
+          m_childNodes[slot] = nodes[i];
         }
       }
-      return currentLastID;
     }
 
     /**
-     * Generate a dot graph description string for the tree.
+     * Finish the construction of the tree: drops the child lookup table and,
+     * if requested, trims the node arrays to the number of nodes.
      * 
-     * @param text a StringBuffer to store the graph description in.
+     * @param trim true if the node arrays are to be trimmed
      */
-    public void graphFPTree(StringBuffer text) {
-      if (m_children != null) {
-        Collection<FPTreeNode> kids = m_children.values();
-        for (FPTreeNode n : kids) {
-          text.append("N" + n.m_ID);
-          text.append(" [label=\"");
-          text.append(n.getItem().toString() + " (" + n.getProjectedCount(0)
-            + ")\\n");
-          text.append("\"]\n");
-          n.graphFPTree(text);
-          text.append("N" + m_ID + "->" + "N" + n.m_ID + "\n");
-        }
+    public void finish(boolean trim) {
+      m_childKeys = null;
+      m_childNodes = null;
+      if (trim && m_numNodes < m_parent.length) {
+        m_parent = Arrays.copyOf(m_parent, m_numNodes);
+        m_item = Arrays.copyOf(m_item, m_numNodes);
+        m_count = Arrays.copyOf(m_count, m_numNodes);
+        m_nodeLink = Arrays.copyOf(m_nodeLink, m_numNodes);
       }
     }
-  }
-
-  /**
-   * Root of the FPTree
-   */
-  private static class FPTreeRoot extends FPTreeNode {
-
-    /** For serialization */
-    private static final long serialVersionUID = 632150939785333297L;
 
     /**
-     * Stores a header entry for an FPTree
+     * Determine the order in which the header table is processed. This is
+     * the iteration order of a hash map that receives the items in the order
+     * their first node was created, so that the large item sets are found in
+     * the same order as with a map based header table.
      */
-    protected static class Header implements Serializable {
-
-      /** For serialization */
-      private static final long serialVersionUID = -6583156284891368909L;
-
-      /** The list of pointers into the tree structure */
-      protected List<FPTreeNode> m_headerList = new LinkedList<FPTreeNode>();
-
-      /** Projected header counts for this entry */
-      protected ShadowCounts m_projectedHeaderCounts = new ShadowCounts();
-
-      /**
-       * Add a tree node into the list for this header entry.
-       * 
-       * @param toAdd the node to add.
-       */
-      public void addToList(FPTreeNode toAdd) {
-        m_headerList.add(toAdd);
-      }
-
-      /**
-       * Get the list of nodes for this header entry.
-       * 
-       * @return the list of nodes for this header entry.
-       */
-      public List<FPTreeNode> getHeaderList() {
-        return m_headerList;
+    public void computeHeaderRanks() {
+      Map<BinaryItem, Integer> headerTable = new HashMap<BinaryItem, Integer>();
+      for (int i = 0; i < m_numAppeared; i++) {
+        int item = m_firstAppearance[i];
+        headerTable.put(getItem(item), m_itemIDs[item]);
       }
-
-      /**
-       * Get the projected counts for this header entry.
-       * 
-       * @return the projected counts for this header entry.
-       */
-      public ShadowCounts getProjectedCounts() {
-        return m_projectedHeaderCounts;
+      m_headerRanks = new int[m_items.length];
+      int rank = 0;
+      for (Integer id : headerTable.values()) {
+        m_headerRanks[id] = rank++;
       }
     }
 
-    /** Stores the header table as mapped Header entries */
-    protected Map<BinaryItem, Header> m_headerTable = new HashMap<BinaryItem, Header>();
-
     /**
-     * Create a new FPTreeRoot.
+     * Get the items of this tree in header table order.
+     * 
+     * @return the items in the order in which they are to be mined.
      */
-    public FPTreeRoot() {
-      super(null, null);
+    public int[] headerOrder() {
+      long[] keys = new long[m_numAppeared];
+      for (int i = 0; i < m_numAppeared; i++) {
+        int item = m_firstAppearance[i];
+        keys[i] = ((long) m_headerRanks[m_itemIDs[item]] << 32) | item;
+      }
+      Arrays.sort(keys);
+      int[] order = new int[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        order[i] = (int) keys[i];
+      }
+      return order;
     }
 
     /**
-     * Insert an item set into the tree.
+     * Build the tree conditional on the given item, i.e., the tree of the
+     * prefix paths of the item's nodes, only keeping the items that are
+     * frequent in these paths. This tree is not modified.
      * 
-     * @param itemSet the item set to insert into the tree.
-     * @param incr the increment by which to increase counters.
+     * @param item the item to condition on
+     * @param minSupport the minimum support
+     * @return the conditional tree, or null if it contains no frequent item.
      */
-    public void addItemSet(Collection<BinaryItem> itemSet, int incr) {
-      super.addItemSet(itemSet, m_headerTable, incr);
+    public FPTree conditionalTree(int item, int minSupport) {
+      int[] map = new int[item];
+      long pathNodes = 0;
+      for (int n = m_headerFirst[item]; n != NONE; n = m_nodeLink[n]) {
+        int count = m_count[n];
+        for (int p = m_parent[n]; p != 0; p = m_parent[p]) {
+          map[m_item[p]] += count;
+          pathNodes++;
+        }
+      }
+
+      int numFrequent = 0;
+      for (int i = 0; i < item; i++) {
+        if (map[i] >= minSupport) {
+          numFrequent++;
+        }
+      }
+      if (numFrequent == 0) {
+        return null;
+      }
+
+      int[] itemIDs = new int[numFrequent];
+      int next = 0;
+      for (int i = 0; i < item; i++) {
+        if (map[i] >= minSupport) {
+          itemIDs[next] = m_itemIDs[i];
+          map[i] = next++;
+        } else {
+          map[i] = NONE;
+        }
+      }
+
+      FPTree tree = new FPTree(m_items, itemIDs,
+        (int) Math.min(pathNodes + 1, 1024));
+      tree.m_headerRanks = m_headerRanks;
+      int[] path = new int[numFrequent];
+      for (int n = m_headerFirst[item]; n != NONE; n = m_nodeLink[n]) {
+        int length = 0;
+        for (int p = m_parent[n]; p != 0; p = m_parent[p]) {
+          if (map[m_item[p]] != NONE) {
+            path[length++] = map[m_item[p]];
+          }
+        }
+        // the path was collected from the bottom up
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+          int temp = path[i];
+          path[i] = path[j];
+          path[j] = temp;
+        }
+        tree.addPath(path, length, m_count[n]);
+      }
+      tree.finish(false);
+
+      return tree;
     }
 
     /**
-     * Get the header table for this tree.
+     * Return a textual description of the subtree below the given node.
      * 
-     * @return the header table for this tree.
+     * @param buffer the buffer to append the description to
+     * @param prefix a prefix string to prepend.
+     * @param node the node
      */
-    public Map<BinaryItem, Header> getHeaderTable() {
-      return m_headerTable;
-    }
-
-    public boolean isEmpty(int recursionLevel) {
-      for (FPTreeNode c : m_children.values()) {
-        if (c.getProjectedCount(recursionLevel) > 0) {
-          return false;
+    protected void toString(StringBuffer buffer, String prefix, int node) {
+      for (int n = 1; n < m_numNodes; n++) {
+        if (m_parent[n] == node) {
+          buffer.append(prefix);
+          buffer.append("|  ");
+          buffer.append(getItem(m_item[n]).toString());
+          buffer.append(" (");
+          buffer.append(m_count[n]);
+          buffer.append(")\n");
+          toString(buffer, prefix + "|  ", n);
         }
       }
-      return true;
     }
 
     /**
-     * Get a textual description of the tree at a given recursion (projection)
-     * level.
+     * Get a textual description of the tree.
      * 
-     * @param pad the string to use as a prefix for indenting nodes.
-     * @param recursionLevel the recursion level (projection) to use.
      * @return the textual description of the tree.
      */
     @Override
-    public String toString(String pad, int recursionLevel) {
+    public String toString() {
       StringBuffer result = new StringBuffer();
-      result.append(pad);
       result.append("+ ROOT\n");
+      toString(result, "|  ", 0);
+      return result.toString();
+    }
 
-      for (FPTreeNode node : m_children.values()) {
-        result.append(node.toString(pad + "|  ", recursionLevel));
+    /**
+     * Generate a dot graph description string for the tree.
+     * 
+     * @param text a StringBuffer to store the graph description in.
+     */
+    public void graphFPTree(StringBuffer text) {
+      for (int n = 1; n < m_numNodes; n++) {
+        text.append("N" + n);
+        text.append(" [label=\"");
+        text.append(getItem(m_item[n]).toString() + " (" + m_count[n] + ")\\n");
+        text.append("\"]\n");
+        text.append("N" + m_parent[n] + "->" + "N" + n + "\n");
       }
-      return result.toString();
     }
   }
 
@@ -969,6 +1021,9 @@ public class FPGrowth extends AbstractAssociator implements
   /** If set, then only output rules containing these itmes */
   protected String m_rulesMustContain = "";
 
+  /** The number of threads used for mining the FP-tree */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Returns default capabilities of the classifier.
    * 
@@ -1197,36 +1252,34 @@ public class FPGrowth extends AbstractAssociator implements
    * Inserts a single instance into the FPTree.
    * 
    * @param current the instance to insert
-   * @param singletons the singleton item sets
+   * @param itemIndex the item in the tree of each attribute, -1 for attributes
+   *          that do not meet the minimum support threshold
+   * @param transaction holds the items of the instance
    * @param tree the tree to insert into
-   * @param minSupport the minimum support threshold
    */
-  private void insertInstance(Instance current,
-    ArrayList<BinaryItem> singletons, FPTreeRoot tree, int minSupport) {
-    ArrayList<BinaryItem> transaction = new ArrayList<BinaryItem>();
+  private void insertInstance(Instance current, int[] itemIndex,
+    int[] transaction, FPTree tree) {
+    int length = 0;
     if (current instanceof SparseInstance) {
       for (int j = 0; j < current.numValues(); j++) {
         int attIndex = current.index(j);
-        if (singletons.get(attIndex).getFrequency() >= minSupport) {
-          transaction.add(singletons.get(attIndex));
+        if (itemIndex[attIndex] >= 0) {
+          transaction[length++] = itemIndex[attIndex];
         }
       }
-      Collections.sort(transaction);
-      tree.addItemSet(transaction, 1);
     } else {
       for (int j = 0; j < current.numAttributes(); j++) {
-        if (!current.isMissing(j)) {
+        if (itemIndex[j] >= 0 && !current.isMissing(j)) {
           if (current.attribute(j).numValues() == 1
             || current.value(j) == m_positiveIndex - 1) {
-            if (singletons.get(j).getFrequency() >= minSupport) {
-              transaction.add(singletons.get(j));
-            }
+            transaction[length++] = itemIndex[j];
           }
         }
       }
-      Collections.sort(transaction);
-      tree.addItemSet(transaction, 1);
     }
+    // items are numbered in descending order of frequency
+    Arrays.sort(transaction, 0, length);
+    tree.addPath(transaction, length, 1);
   }
 
   /**
@@ -1235,14 +1288,39 @@ public class FPGrowth extends AbstractAssociator implements
    * minimum support threshold are inserted.
    * 
    * @param singletons the singleton item sets
-   * @param data the Instances containing the transactions
+   * @param dataSource the source of the data (either Instances or an
+   *          ArffLoader)
    * @param minSupport the minimum support
-   * @return the root of the tree
+   * @return the tree
    */
-  protected FPTreeRoot buildFPTree(ArrayList<BinaryItem> singletons,
+  protected FPTree buildFPTree(final ArrayList<BinaryItem> singletons,
     Object dataSource, int minSupport) throws Exception {
 
-    FPTreeRoot tree = new FPTreeRoot();
+    List<Integer> frequent = new ArrayList<Integer>();
+    for (int i = 0; i < singletons.size(); i++) {
+      if (singletons.get(i).getFrequency() >= minSupport) {
+        frequent.add(i);
+      }
+    }
+    Collections.sort(frequent, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer one, Integer two) {
+        return singletons.get(one).compareTo(singletons.get(two));
+      }
+    });
+
+    BinaryItem[] items = new BinaryItem[frequent.size()];
+    int[] itemIDs = new int[frequent.size()];
+    int[] itemIndex = new int[singletons.size()];
+    Arrays.fill(itemIndex, -1);
+    for (int i = 0; i < items.length; i++) {
+      items[i] = singletons.get(frequent.get(i));
+      itemIDs[i] = i;
+      itemIndex[frequent.get(i)] = i;
+    }
+    int[] transaction = new int[items.length];
+
+    FPTree tree = new FPTree(items, itemIDs, 1024);
     Instances data = null;
     if (dataSource instanceof Instances) {
       data = (Instances) dataSource;
@@ -1252,14 +1330,14 @@ public class FPGrowth extends AbstractAssociator implements
 
     if (dataSource instanceof Instances) {
       for (int i = 0; i < data.numInstances(); i++) {
-        insertInstance(data.instance(i), singletons, tree, minSupport);
+        insertInstance(data.instance(i), itemIndex, transaction, tree);
       }
     } else if (dataSource instanceof weka.core.converters.ArffLoader) {
       weka.core.converters.ArffLoader loader = (weka.core.converters.ArffLoader) dataSource;
       Instance current = null;
       int count = 0;
       while ((current = loader.getNextInstance(data)) != null) {
-        insertInstance(current, singletons, tree, minSupport);
+        insertInstance(current, itemIndex, transaction, tree);
         count++;
         if (count % m_offDiskReportingFrequency == 0) {
           System.err.println("build tree done: " + count);
@@ -1267,6 +1345,9 @@ public class FPGrowth extends AbstractAssociator implements
       }
     }
 
+    tree.finish(true);
+    tree.computeHeaderRanks();
+
     return tree;
   }
 
@@ -1305,84 +1386,125 @@ public class FPGrowth extends AbstractAssociator implements
   /**
    * Find large item sets in the FP-tree.
    * 
-   * @param tree the root of the tree to mine
+   * @param tree the (conditional) tree to mine
    * @param largeItemSets holds the large item sets found
-   * @param recursionLevel the recursion level for the current projected counts
+   * @param recursionLevel the number of items the tree is conditional on
    * @param conditionalItems the current set of items that the current
-   *          (projected) tree is conditional on
+   *          (conditional) tree is conditional on
    * @param minSupport the minimum acceptable support
    */
-  protected void mineTree(FPTreeRoot tree, FrequentItemSets largeItemSets,
+  protected void mineTree(FPTree tree, FrequentItemSets largeItemSets,
     int recursionLevel, FrequentBinaryItemSet conditionalItems, int minSupport) {
 
-    if (!tree.isEmpty(recursionLevel)) {
-      if (m_maxItems > 0 && recursionLevel >= m_maxItems) {
-        // don't mine any further
-        return;
-      }
+    if (m_maxItems > 0 && recursionLevel >= m_maxItems) {
+      // don't mine any further
+      return;
+    }
 
-      Map<BinaryItem, FPTreeRoot.Header> headerTable = tree.getHeaderTable();
-      Set<BinaryItem> keys = headerTable.keySet();
-      // System.err.println("Number of freq item sets collected " +
-      // largeItemSets.size());
-      Iterator<BinaryItem> i = keys.iterator();
-      while (i.hasNext()) {
-        BinaryItem item = i.next();
-        FPTreeRoot.Header itemHeader = headerTable.get(item);
-
-        // check for minimum support at this level
-        int support = itemHeader.getProjectedCounts().getCount(recursionLevel);
-        if (support >= minSupport) {
-          // process header list at this recursion level
-          for (FPTreeNode n : itemHeader.getHeaderList()) {
-            // push count up path to root
-            int currentCount = n.getProjectedCount(recursionLevel);
-            if (currentCount > 0) {
-              FPTreeNode temp = n.getParent();
-              while (temp != tree) {
-                // set/increase for the node
-                temp.increaseProjectedCount(recursionLevel + 1, currentCount);
-
-                // set/increase for the header table
-                headerTable.get(temp.getItem()).getProjectedCounts()
-                  .increaseCount(recursionLevel + 1, currentCount);
-
-                temp = temp.getParent();
-              }
-            }
-          }
+    for (int item : tree.headerOrder()) {
+      mineItem(tree, item, largeItemSets, recursionLevel, conditionalItems,
+        minSupport);
+    }
+  }
 
-          FrequentBinaryItemSet newConditional = (FrequentBinaryItemSet) conditionalItems
-            .clone();
+  /**
+   * Find the large item sets in the FP-tree that end with the given item of
+   * the header table.
+   * 
+   * @param tree the (conditional) tree to mine
+   * @param item the item of the tree
+   * @param largeItemSets holds the large item sets found
+   * @param recursionLevel the number of items the tree is conditional on
+   * @param conditionalItems the current set of items that the current
+   *          (conditional) tree is conditional on
+   * @param minSupport the minimum acceptable support
+   */
+  protected void mineItem(FPTree tree, int item,
+    FrequentItemSets largeItemSets, int recursionLevel,
+    FrequentBinaryItemSet conditionalItems, int minSupport) {
 
-          // this item gets added to the conditional items
-          newConditional.addItem(item);
-          newConditional.setSupport(support);
+    // check for minimum support at this level
+    int support = tree.getSupport(item);
+    if (support < minSupport) {
+      return;
+    }
 
-          // now add this conditional item set to the list of large item sets
-          largeItemSets.addItemSet(newConditional);
+    FrequentBinaryItemSet newConditional = (FrequentBinaryItemSet) conditionalItems
+      .clone();
 
-          // now recursively process the new tree
-          mineTree(tree, largeItemSets, recursionLevel + 1, newConditional,
-            minSupport);
+    // this item gets added to the conditional items
+    newConditional.addItem(tree.getItem(item));
+    newConditional.setSupport(support);
 
-          // reverse the propagated counts
-          for (FPTreeNode n : itemHeader.getHeaderList()) {
-            FPTreeNode temp = n.getParent();
-            while (temp != tree) {
-              temp.removeProjectedCount(recursionLevel + 1);
-              temp = temp.getParent();
-            }
-          }
+    // now add this conditional item set to the list of large item sets
+    largeItemSets.addItemSet(newConditional);
+
+    // now recursively process the tree conditional on this item
+    if (m_maxItems <= 0 || recursionLevel + 1 < m_maxItems) {
+      FPTree conditional = tree.conditionalTree(item, minSupport);
+      if (conditional != null) {
+        mineTree(conditional, largeItemSets, recursionLevel + 1,
+          newConditional, minSupport);
+      }
+    }
+  }
+
+  /**
+   * Find all large item sets in the FP-tree. The items of the header table
+   * are mined by a fork-join pool if more than one execution slot is used;
+   * the item sets found for the items are merged in header table order, so
+   * the result does not depend on the number of threads.
+   * 
+   * @param tree the tree to mine
+   * @param minSupport the minimum acceptable support
+   * @return the large item sets
+   * @throws Exception if mining fails
+   */
+  protected FrequentItemSets mineTree(final FPTree tree, final int minSupport)
+    throws Exception {
+
+    FrequentItemSets largeItemSets = new FrequentItemSets(m_numInstances);
+    int[] order = tree.headerOrder();
+    int numThreads = m_numExecutionSlots > 0 ? m_numExecutionSlots : Runtime
+      .getRuntime().availableProcessors();
+    numThreads = Math.min(numThreads, order.length);
+
+    if (numThreads <= 1) {
+      mineTree(tree, largeItemSets, 0, new FrequentBinaryItemSet(
+        new ArrayList<BinaryItem>(), 0), minSupport);
+      return largeItemSets;
+    }
 
-          // reverse the propagated counts in the header list
-          // at this recursion level
-          for (FPTreeRoot.Header h : headerTable.values()) {
-            h.getProjectedCounts().removeCount(recursionLevel + 1);
+    List<Callable<FrequentItemSets>> tasks = new ArrayList<Callable<FrequentItemSets>>();
+    for (final int item : order) {
+      tasks.add(new Callable<FrequentItemSets>() {
+        @Override
+        public FrequentItemSets call() throws Exception {
+          FrequentItemSets itemSets = new FrequentItemSets(m_numInstances);
+          mineItem(tree, item, itemSets, 0, new FrequentBinaryItemSet(
+            new ArrayList<BinaryItem>(), 0), minSupport);
+          return itemSets;
+        }
+      });
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(numThreads);
+    try {
+      for (Future<FrequentItemSets> future : pool.invokeAll(tasks)) {
+        try {
+          largeItemSets.addItemSets(future.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
           }
+          throw e;
         }
       }
+    } finally {
+      pool.shutdownNow();
     }
+
+    return largeItemSets;
   }
 
   /**
@@ -1406,6 +1528,7 @@ public class FPGrowth extends AbstractAssociator implements
     m_transactionsMustContain = "";
     m_rulesMustContain = "";
     m_mustContainOR = false;
+    m_numExecutionSlots = 1;
   }
 
   /**
@@ -1672,6 +1795,36 @@ public class FPGrowth extends AbstractAssociator implements
     return m_mustContainOR;
   }
 
+  /**
+   * Tip text for this property suitable for displaying in the GUI.
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used for mining the "
+      + "FP-tree, 0 uses all available cores. The items of the header "
+      + "table are mined concurrently.";
+  }
+
+  /**
+   * Set the number of threads used for mining the FP-tree.
+   * 
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+    m_numExecutionSlots = slots;
+  }
+
+  /**
+   * Get the number of threads used for mining the FP-tree.
+   * 
+   * @return the number of threads, 0 for all available cores
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -1910,6 +2063,8 @@ public class FPGrowth extends AbstractAssociator implements
     String string9 = "\tOnly print rules that contain these items. (default = no restriction)";
     String string10 = "\tUse OR instead of AND for must contain list(s). Use in conjunction"
       + "\n\twith -transactions and/or -rules";
+    String string11 = "\tNumber of threads used for mining the FP-tree.\n"
+      + "\t(default 1 - i.e. no parallelism, 0 - all available cores)";
 
     newVector.add(new Option(string00, "P", 1,
       "-P <attribute index of positive value>"));
@@ -1931,6 +2086,7 @@ public class FPGrowth extends AbstractAssociator implements
     newVector.add(new Option(string9, "rules", 1,
       "-rules <comma separated list " + "of attribute names>"));
     newVector.add(new Option(string10, "use-or", 0, "-use-or"));
+    newVector.add(new Option(string11, "num-slots", 1, "-num-slots <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -2012,6 +2168,12 @@ public class FPGrowth extends AbstractAssociator implements
    *  with -transactions and/or -rules
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads used for mining the FP-tree.
+   *  (default 1 - i.e. no parallelism, 0 - all available cores)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -2030,6 +2192,7 @@ public class FPGrowth extends AbstractAssociator implements
     String deltaString = Utils.getOption("D", options);
     String transactionsString = Utils.getOption("transactions", options);
     String rulesString = Utils.getOption("rules", options);
+    String numSlotsString = Utils.getOption("num-slots", options);
 
     if (positiveIndexString.length() != 0) {
       setPositiveIndex(Integer.parseInt(positiveIndexString));
@@ -2072,6 +2235,10 @@ public class FPGrowth extends AbstractAssociator implements
       setRulesMustContain(rulesString);
     }
 
+    if (numSlotsString.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(numSlotsString));
+    }
+
     setUseORForMustContainList(Utils.getFlag("use-or", options));
 
     setFindAllRulesForSupportLevel(Utils.getFlag('S', options));
@@ -2122,6 +2289,11 @@ public class FPGrowth extends AbstractAssociator implements
       options.add("-use-or");
     }
 
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
+
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[0]);
@@ -2258,22 +2430,14 @@ public class FPGrowth extends AbstractAssociator implements
       if (arffLoader) {
         System.err.println("Building FP-tree...");
       }
-      FPTreeRoot tree = buildFPTree(singletons, source,
-        currentSupportAsInstances);
-
-      FrequentItemSets largeItemSets = new FrequentItemSets(m_numInstances);
+      FPTree tree = buildFPTree(singletons, source, currentSupportAsInstances);
 
       if (arffLoader) {
         System.err.println("Mining tree for min supp " + currentSupport);
       }
 
       // mine the tree
-      FrequentBinaryItemSet conditionalItems = new FrequentBinaryItemSet(
-        new ArrayList<BinaryItem>(), 0);
-      mineTree(tree, largeItemSets, 0, conditionalItems,
-        currentSupportAsInstances);
-
-      m_largeItemSets = largeItemSets;
+      m_largeItemSets = mineTree(tree, currentSupportAsInstances);
 
       if (arffLoader) {
         System.err.println("Number of large item sets: "
@@ -2393,18 +2557,15 @@ public class FPGrowth extends AbstractAssociator implements
   /**
    * Assemble a dot graph representation of the FP-tree.
    * 
-   * @param tree the root of the FP-tree
+   * @param tree the FP-tree
    * @return a graph representation as a String in dot format.
    */
-  public String graph(FPTreeRoot tree) {
-    // int maxID = tree.assignIDs(-1);
-
+  public String graph(FPTree tree) {
     StringBuffer text = new StringBuffer();
     text.append("digraph FPTree {\n");
     text.append("N0 [label=\"ROOT\"]\n");
     tree.graphFPTree(text);
 
-    // tree.graphHeaderTable(text, maxID+1);
     text.append("}\n");
 
     return text.toString();
@@ -23,6 +23,10 @@ package weka.attributeSelection;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Instances;
 import weka.core.Option;
@@ -75,6 +79,11 @@ import weka.core.Utils;
  *  attributes in the data set. (default = 1)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;int&gt;
+ *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+ * </pre>
+ * 
  <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz) Martin Guetlein (cashing merit of
@@ -297,6 +306,9 @@ public class BestFirst extends ASSearch implements OptionHandler,
   /** holds the maximum size of the lookup cache for evaluated subsets */
   protected int m_cacheSize;
 
+  /** number of threads evaluating the candidates of an expansion */
+  protected int m_poolSize = 1;
+
   /**
    * Returns a string describing this search method
    * 
@@ -342,6 +354,8 @@ public class BestFirst extends ASSearch implements OptionHandler,
       "\tSize of lookup cache for evaluated subsets."
         + "\n\tExpressed as a multiple of the number of"
         + "\n\tattributes in the data set. (default = 1)", "S", 1, "-S <num>"));
+    newVector.addElement(new Option("\t" + numExecutionSlotsTipText()
+      + " (default 1)\n", "-num-slots", 1, "-num-slots <int>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -380,6 +394,11 @@ public class BestFirst extends ASSearch implements OptionHandler,
    *  attributes in the data set. (default = 1)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;int&gt;
+   *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+   * </pre>
+   * 
    <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -416,6 +435,11 @@ public class BestFirst extends ASSearch implements OptionHandler,
       setLookupCacheSize(Integer.parseInt(optionString));
     }
 
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
+
     m_debug = Utils.getFlag('Z', options);
 
     super.setOptions(options);
@@ -444,6 +468,30 @@ public class BestFirst extends ASSearch implements OptionHandler,
     return m_cacheSize;
   }
 
+  /**
+   * @return a string to describe the option
+   */
+  public String numExecutionSlotsTipText() {
+
+    return "The number of execution slots, for example, the number of cores in the CPU.";
+  }
+
+  /**
+   * Gets the number of threads.
+   */
+  public int getNumExecutionSlots() {
+
+    return m_poolSize;
+  }
+
+  /**
+   * Sets the number of threads
+   */
+  public void setNumExecutionSlots(int nT) {
+
+    m_poolSize = nT;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -576,6 +624,10 @@ public class BestFirst extends ASSearch implements OptionHandler,
     options.add("" + m_searchDirection);
     options.add("-N");
     options.add("" + m_maxStale);
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
 
     Collections.addAll(options, super.getOptions());
 
@@ -787,6 +839,12 @@ public class BestFirst extends ASSearch implements OptionHandler,
       }
 
       do {
+        // evaluate the unseen subsets of this expansion concurrently
+        Map<String, Double> evaluated = null;
+        if (m_poolSize > 1) {
+          evaluated = evaluateCandidates(ASEval, temp_group, sd, lookup);
+        }
+
         for (i = 0; i < m_numAttribs; i++) {
           if (sd == SELECTION_FORWARD) {
             z = ((i != m_classIndex) && (!temp_group.get(i)));
@@ -812,7 +870,11 @@ public class BestFirst extends ASSearch implements OptionHandler,
             hashC = tt.toString();
 
             if (lookup.containsKey(hashC) == false) {
-              merit = ASEvaluator.evaluateSubset(temp_group);
+              if (evaluated != null && evaluated.containsKey(hashC)) {
+                merit = evaluated.get(hashC).doubleValue();
+              } else {
+                merit = ASEvaluator.evaluateSubset(temp_group);
+              }
               m_totalEvals++;
 
               // insert this one in the hashtable
@@ -890,6 +952,71 @@ public class BestFirst extends ASSearch implements OptionHandler,
     return attributeList(best_group);
   }
 
+  /**
+   * Evaluates all single attribute additions (or deletions) of a subset that
+   * are not in the lookup table yet, using m_poolSize threads. The evaluator
+   * is copied for each candidate if it is not thread safe.
+   * 
+   * @param ASEval the subset evaluator
+   * @param group the subset to expand
+   * @param direction SELECTION_FORWARD or SELECTION_BACKWARD
+   * @param lookup the subsets evaluated so far
+   * @return the merits of the candidates, keyed like the lookup table
+   * @throws Exception if a subset cannot be evaluated
+   */
+  protected Map<String, Double> evaluateCandidates(ASEvaluation ASEval,
+    BitSet group, int direction, Hashtable<String, Double> lookup)
+    throws Exception {
+
+    Map<String, Future<Double>> futures =
+      new LinkedHashMap<String, Future<Double>>();
+    ExecutorService pool = Executors.newFixedThreadPool(m_poolSize);
+    try {
+      for (int i = 0; i < m_numAttribs; i++) {
+        boolean z;
+        if (direction == SELECTION_FORWARD) {
+          z = ((i != m_classIndex) && (!group.get(i)));
+        } else {
+          z = ((i != m_classIndex) && (group.get(i)));
+        }
+        if (!z) {
+          continue;
+        }
+
+        final BitSet candidate = (BitSet) group.clone();
+        if (direction == SELECTION_FORWARD) {
+          candidate.set(i);
+        } else {
+          candidate.clear(i);
+        }
+        String hashC = candidate.toString();
+        if (lookup.containsKey(hashC) || futures.containsKey(hashC)) {
+          continue;
+        }
+
+        // make a copy if the evaluator is not thread safe
+        final SubsetEvaluator theEvaluator =
+          (ASEval instanceof weka.core.ThreadSafe) ? (SubsetEvaluator) ASEval
+            : (SubsetEvaluator) ASEvaluation.makeCopies(ASEval, 1)[0];
+
+        futures.put(hashC, pool.submit(new Callable<Double>() {
+          @Override
+          public Double call() throws Exception {
+            return theEvaluator.evaluateSubset(candidate);
+          }
+        }));
+      }
+
+      Map<String, Double> result = new HashMap<String, Double>();
+      for (Map.Entry<String, Future<Double>> entry : futures.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().get());
+      }
+      return result;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
   /**
    * Reset options to default values
    */
@@ -901,6 +1028,7 @@ public class BestFirst extends ASSearch implements OptionHandler,
     m_classIndex = -1;
     m_totalEvals = 0;
     m_cacheSize = 1;
+    m_poolSize = 1;
     m_debug = false;
   }
 
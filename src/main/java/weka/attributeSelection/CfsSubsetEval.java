@@ -21,11 +21,14 @@
 
 package weka.attributeSelection;
 
+import java.io.File;
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import weka.classifiers.AbstractClassifier;
@@ -37,6 +40,7 @@ import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
+import weka.core.SerializationHelper;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
@@ -106,6 +110,12 @@ import weka.filters.supervised.attribute.Discretize;
  * </pre>
  * 
  * <pre>
+ * -F &lt;filename&gt;
+ *  The file the correlation matrix is stored in and read back from
+ *  in later runs on the same data. (default none)
+ * </pre>
+ * 
+ * <pre>
  * -D
  *  Output debugging info.
  * </pre>
@@ -172,6 +182,48 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
   /** Thread pool */
   protected transient ExecutorService m_pool = null;
 
+  /**
+   * The number of attributes per block when correlations are computed in
+   * parallel batches. The columns of two blocks are scanned together, so
+   * that they stay in the cache while all pairs of the blocks are processed.
+   */
+  protected static final int BLOCK_SIZE = 32;
+
+  /** The minimum number of missing correlations for a parallel batch */
+  protected static final int MIN_PARALLEL_PAIRS = 64;
+
+  /**
+   * The discretized values as integer codes, one column per attribute, the
+   * missing value being coded as the number of values (nominal class only)
+   */
+  private int[][] m_columns;
+
+  /** The file the correlation matrix is persisted in */
+  protected File m_correlationMatrixFile = new File(System
+    .getProperty("user.dir"));
+
+  /** Fingerprint of the training data and settings the matrix belongs to */
+  private long m_fingerprint;
+
+  /**
+   * The correlation matrix and standard deviations computed so far, as
+   * persisted to disk between runs on the same data.
+   */
+  private static class PersistedMatrix implements Serializable {
+
+    /** for serialization */
+    private static final long serialVersionUID = -3315707468542331373L;
+
+    /** fingerprint of the data and settings */
+    private long m_fingerprint;
+
+    /** the (partially) filled correlation matrix */
+    private float[][] m_corrMatrix;
+
+    /** the standard deviations */
+    private double[] m_stdDevs;
+  }
+
   /**
    * Returns a string describing this attribute evaluator
    * 
@@ -238,6 +290,10 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
       "\t" + poolSizeTipText() + " (default 1)", "P", 1, "-P <int>"));
     newVector.addElement(new Option("\t" + numThreadsTipText()
       + " (default 1)", "E", 1, "-E <int>"));
+    newVector.addElement(new Option(
+      "\tThe file the correlation matrix is stored in and read back from\n"
+        + "\tin later runs on the same data. (default none)", "F", 1,
+      "-F <filename>"));
     newVector.addElement(new Option("\tOutput debugging info" + ".", "D", 0,
       "-D"));
 
@@ -279,6 +335,12 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
    * </pre>
    * 
    * <pre>
+   * -F &lt;filename&gt;
+   *  The file the correlation matrix is stored in and read back from
+   *  in later runs on the same data. (default none)
+   * </pre>
+   * 
+   * <pre>
    * -D
    *  Output debugging info.
    * </pre>
@@ -309,6 +371,12 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     } else {
       setNumThreads(1);
     }
+    String matrixFile = Utils.getOption('F', options);
+    if (matrixFile.length() != 0) {
+      setCorrelationMatrixFile(new File(matrixFile));
+    } else {
+      setCorrelationMatrixFile(new File(System.getProperty("user.dir")));
+    }
 
     setDebug(Utils.getFlag('D', options));
 
@@ -395,6 +463,37 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     m_poolSize = nT;
   }
 
+  /**
+   * @return a string to describe the option
+   */
+  public String correlationMatrixFileTipText() {
+
+    return "The file the correlation matrix is stored in after the search and "
+      + "read back from when the evaluator is built on the same data again, "
+      + "so that runs with different search methods do not recompute the "
+      + "correlations. Ignored if it points to a directory.";
+  }
+
+  /**
+   * Gets the file the correlation matrix is persisted in.
+   * 
+   * @return the file, a directory if the matrix is not persisted
+   */
+  public File getCorrelationMatrixFile() {
+
+    return m_correlationMatrixFile;
+  }
+
+  /**
+   * Sets the file the correlation matrix is persisted in.
+   * 
+   * @param value the file, a directory if the matrix is not to be persisted
+   */
+  public void setCorrelationMatrixFile(File value) {
+
+    m_correlationMatrixFile = value;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -512,6 +611,11 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     options.add("-E");
     options.add("" + getNumThreads());
 
+    if (!getCorrelationMatrixFile().isDirectory()) {
+      options.add("-F");
+      options.add("" + getCorrelationMatrixFile());
+    }
+
     if (getDebug()) {
       options.add("-D");
     }
@@ -563,6 +667,12 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     // can evaluator handle data?
     getCapabilities().testWithFail(data);
 
+    // a pool left by a previous build may have a different size
+    if (m_pool != null) {
+      m_pool.shutdown();
+      m_pool = null;
+    }
+
     m_numEntries = 0;
     m_numFilled = new AtomicInteger();
 
@@ -572,6 +682,9 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     m_numAttribs = m_trainInstances.numAttributes();
     m_numInstances = m_trainInstances.numInstances();
     m_isNumeric = m_trainInstances.attribute(m_classIndex).isNumeric();
+    if (persistCorrelationMatrix()) {
+      m_fingerprint = fingerprint(m_trainInstances);
+    }
 
     if (!m_isNumeric) {
       m_disTransform = new Discretize();
@@ -581,6 +694,7 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
       if (m_debug) {
         System.err.println("Finished discretizing input data");
       }
+      buildColumns();
     }
 
     m_std_devs = new double[m_numAttribs];
@@ -602,7 +716,15 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
       }
     }
 
-    if (m_preComputeCorrelationMatrix && m_poolSize > 1) {
+    loadCorrelationMatrix();
+
+    if (m_preComputeCorrelationMatrix && m_poolSize > 1 && !m_isNumeric) {
+      int[] atts = new int[m_numAttribs];
+      for (int i = 0; i < m_numAttribs; i++) {
+        atts[i] = i;
+      }
+      fillCorrelations(atts);
+    } else if (m_preComputeCorrelationMatrix && m_poolSize > 1) {
       m_pool = Executors.newFixedThreadPool(m_poolSize);
 
       Set<Future<Void>> results = new HashSet<Future<Void>>();
@@ -680,6 +802,12 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     double denom = 0.0;
     float corr;
     int larger, smaller;
+
+    // compute the missing correlations of the subset in one parallel batch
+    if (!m_isNumeric && m_poolSize > 1) {
+      fillCorrelations(attributesWithClass(subset));
+    }
+
     // do numerator
     for (int i = 0; i < m_numAttribs; i++) {
       if (i != m_classIndex) {
@@ -745,6 +873,245 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     return merit;
   }
 
+  /**
+   * Stores the discretized values as integer codes, one column per
+   * attribute, so that contingency tables are filled from contiguous
+   * arrays.
+   */
+  private void buildColumns() {
+
+    m_columns = new int[m_numAttribs][m_numInstances];
+    for (int i = 0; i < m_numInstances; i++) {
+      Instance inst = m_trainInstances.instance(i);
+      for (int j = 0; j < m_numAttribs; j++) {
+        if (inst.isMissing(j)) {
+          m_columns[j][i] = m_trainInstances.attribute(j).numValues();
+        } else {
+          m_columns[j][i] = (int) inst.value(j);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the indices of the attributes in the given subset together with
+   * the class index, in ascending order.
+   * 
+   * @param subset the subset
+   * @return the attribute indices
+   */
+  private int[] attributesWithClass(BitSet subset) {
+
+    BitSet atts = (BitSet) subset.clone();
+    atts.set(m_classIndex);
+    int[] result = new int[atts.cardinality()];
+    int n = 0;
+    for (int i = atts.nextSetBit(0); i >= 0 && i < m_numAttribs; i =
+      atts.nextSetBit(i + 1)) {
+      result[n++] = i;
+    }
+
+    return Arrays.copyOf(result, n);
+  }
+
+  /**
+   * Computes the missing symmetrical uncertainties between all pairs of the
+   * given attributes. The pairs are split into tiles formed by two blocks of
+   * attributes, which are processed by the thread pool if enough
+   * correlations are missing.
+   * 
+   * @param atts the attribute indices, in ascending order
+   * @throws Exception if the computation fails
+   */
+  private void fillCorrelations(final int[] atts) throws Exception {
+
+    int missing = 0;
+    for (int a = 1; a < atts.length; a++) {
+      for (int b = 0; b < a; b++) {
+        if (m_corr_matrix[atts[a]][atts[b]] == -999) {
+          missing++;
+        }
+      }
+    }
+
+    if (missing == 0) {
+      return;
+    }
+    if (m_poolSize <= 1 || missing < MIN_PARALLEL_PAIRS) {
+      fillTile(atts, 0, atts.length, 0, atts.length);
+      return;
+    }
+
+    // use smaller blocks if there are fewer tiles than requested tasks
+    int blockSize = BLOCK_SIZE;
+    int numBlocks = (atts.length + blockSize - 1) / blockSize;
+    while (blockSize > 1 && numBlocks * (numBlocks + 1) / 2 < m_numThreads) {
+      blockSize /= 2;
+      numBlocks = (atts.length + blockSize - 1) / blockSize;
+    }
+
+    ExecutorService pool = getPool();
+    List<Future<Void>> results = new ArrayList<Future<Void>>();
+    for (int i = 0; i < numBlocks; i++) {
+      for (int j = 0; j <= i; j++) {
+        final int rowStart = i * blockSize;
+        final int rowEnd = Math.min(rowStart + blockSize, atts.length);
+        final int colStart = j * blockSize;
+        final int colEnd = Math.min(colStart + blockSize, atts.length);
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            fillTile(atts, rowStart, rowEnd, colStart, colEnd);
+            return null;
+          }
+        }));
+      }
+    }
+    for (Future<Void> f : results) {
+      f.get();
+    }
+
+    if (m_debug) {
+      System.err.println("Percentage of correlation matrix computed: "
+        + Utils.doubleToString(
+          ((double) m_numFilled.get() / m_numEntries * 100.0), 2) + "%");
+    }
+  }
+
+  /**
+   * Returns the thread pool for the parallel batches of correlations, which is
+   * created when first needed and shut down in clean().
+   * 
+   * @return the thread pool
+   */
+  private synchronized ExecutorService getPool() {
+
+    if (m_pool == null || m_pool.isShutdown()) {
+      m_pool = Executors.newFixedThreadPool(m_poolSize, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "CfsSubsetEval correlations");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+
+    return m_pool;
+  }
+
+  /**
+   * Computes the missing correlations between the attributes of a block of
+   * rows and a block of columns of the given attribute indices.
+   * 
+   * @param atts the attribute indices, in ascending order
+   * @param rowStart the first row (inclusive)
+   * @param rowEnd the last row (exclusive)
+   * @param colStart the first column (inclusive)
+   * @param colEnd the last column (exclusive)
+   */
+  private void fillTile(int[] atts, int rowStart, int rowEnd, int colStart,
+    int colEnd) {
+
+    for (int a = rowStart; a < rowEnd; a++) {
+      for (int b = colStart; b < colEnd && b < a; b++) {
+        if (m_corr_matrix[atts[a]][atts[b]] == -999) {
+          m_corr_matrix[atts[a]][atts[b]] = correlate(atts[a], atts[b]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether the correlation matrix is persisted, i.e., whether the
+   * matrix file does not point to a directory.
+   * 
+   * @return true if the matrix is persisted
+   */
+  private boolean persistCorrelationMatrix() {
+
+    return (m_correlationMatrixFile != null)
+      && !m_correlationMatrixFile.isDirectory();
+  }
+
+  /**
+   * Computes a fingerprint of the training data and the settings that affect
+   * the correlations, used to check that a persisted matrix belongs to the
+   * current data.
+   * 
+   * @param data the training data before discretization
+   * @return the fingerprint
+   */
+  private long fingerprint(Instances data) {
+
+    long result = new Instances(data, 0).toString().hashCode();
+    result = 31 * result + data.classIndex();
+    result = 31 * result + (m_missingSeparate ? 1 : 0);
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      for (int j = 0; j < data.numAttributes(); j++) {
+        result = 31 * result + Double.doubleToLongBits(inst.value(j));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Initializes the correlation matrix and the standard deviations from the
+   * matrix file, if it exists and belongs to the current data.
+   */
+  private void loadCorrelationMatrix() {
+
+    if (!persistCorrelationMatrix() || !m_correlationMatrixFile.exists()) {
+      return;
+    }
+
+    try {
+      Object stored =
+        SerializationHelper.read(m_correlationMatrixFile.getAbsolutePath());
+      if (!(stored instanceof PersistedMatrix)
+        || ((PersistedMatrix) stored).m_fingerprint != m_fingerprint
+        || ((PersistedMatrix) stored).m_corrMatrix.length != m_numAttribs) {
+        if (m_debug) {
+          System.err.println("Correlation matrix in "
+            + m_correlationMatrixFile + " does not match the data, ignored");
+        }
+        return;
+      }
+      m_corr_matrix = ((PersistedMatrix) stored).m_corrMatrix;
+      m_std_devs = ((PersistedMatrix) stored).m_stdDevs;
+      if (m_debug) {
+        System.err.println("Read correlation matrix from "
+          + m_correlationMatrixFile);
+      }
+    } catch (Exception e) {
+      if (m_debug) {
+        System.err.println("Cannot read correlation matrix from "
+          + m_correlationMatrixFile + ", recomputing: " + e);
+      }
+    }
+  }
+
+  /**
+   * Writes the correlation matrix computed so far to the matrix file.
+   * 
+   * @throws Exception if the file cannot be written
+   */
+  private void saveCorrelationMatrix() throws Exception {
+
+    if (!persistCorrelationMatrix()) {
+      return;
+    }
+
+    PersistedMatrix stored = new PersistedMatrix();
+    stored.m_fingerprint = m_fingerprint;
+    stored.m_corrMatrix = m_corr_matrix;
+    stored.m_stdDevs = m_std_devs;
+    SerializationHelper.write(m_correlationMatrixFile.getAbsolutePath(),
+      stored);
+  }
+
   private float correlate(int att1, int att2) {
 
     m_numFilled.addAndGet(1);
@@ -772,12 +1139,11 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
   }
 
   private double symmUncertCorr(int att1, int att2) {
-    int i, j, ii, jj;
+    int i, j;
     int ni, nj;
     double sum = 0.0;
     double sumi[], sumj[];
     double counts[][];
-    Instance inst;
     double corr_measure;
     boolean flag = false;
     double temp = 0.0;
@@ -801,23 +1167,12 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
       }
     }
 
-    // Fill the contingency table
+    // Fill the contingency table (missing values are coded as ni - 1 and
+    // nj - 1 respectively)
+    int[] column1 = m_columns[att1];
+    int[] column2 = m_columns[att2];
     for (i = 0; i < m_numInstances; i++) {
-      inst = m_trainInstances.instance(i);
-
-      if (inst.isMissing(att1)) {
-        ii = ni - 1;
-      } else {
-        ii = (int) inst.value(att1);
-      }
-
-      if (inst.isMissing(att2)) {
-        jj = nj - 1;
-      } else {
-        jj = (int) inst.value(att2);
-      }
-
-      counts[ii][jj]++;
+      counts[column1[i]][column2[i]]++;
     }
 
     // get the row totals
@@ -1379,6 +1734,7 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
     int j = 0;
 
     if (!m_locallyPredictive) {
+      saveCorrelationMatrix();
       return attributeSet;
     }
 
@@ -1406,6 +1762,8 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
       }
     }
 
+    saveCorrelationMatrix();
+
     return newSet;
   }
 
@@ -1415,6 +1773,11 @@ public class CfsSubsetEval extends ASEvaluation implements SubsetEvaluator,
       // save memory
       m_trainInstances = new Instances(m_trainInstances, 0);
     }
+    m_columns = null;
+    if (m_pool != null) {
+      m_pool.shutdown();
+      m_pool = null;
+    }
   }
 
   protected void resetOptions() {
@@ -21,10 +21,17 @@
 
 package weka.attributeSelection;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.Capabilities;
@@ -138,6 +145,13 @@ import weka.core.Utils;
  *  (Default = 2)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads used for processing
+ *  the sampled instances.
+ *  (Default = 1, 0 = all available cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -200,24 +214,12 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   /** The number of nearest hits/misses */
   private int m_Knn;
 
-  /** k nearest scores + instance indexes for n classes */
-  private double[][][] m_karray;
-
   /** Upper bound for numeric attributes */
   private double[] m_maxArray;
 
   /** Lower bound for numeric attributes */
   private double[] m_minArray;
 
-  /** Keep track of the farthest instance for each class */
-  private double[] m_worst;
-
-  /** Index in the m_karray of the farthest instance for each class */
-  private int[] m_index;
-
-  /** Number of nearest neighbours stored of each class */
-  private int[] m_stored;
-
   /** Random number seed used for sampling instances */
   private int m_seed;
 
@@ -234,6 +236,69 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   /** Weight by distance rather than equal weights */
   private boolean m_weightByDistance;
 
+  /** The number of threads used for processing the sampled instances */
+  private int m_numExecutionSlots = 1;
+
+  /**
+   * The nearest hits and misses of the sampled instance being processed and
+   * the weight statistics collected from the instances processed so far. The
+   * sampled instances are split between threads, each with its own state.
+   */
+  private class HitMissState {
+
+    /** k nearest scores + instance indexes for n classes */
+    private final double[][][] m_karray = new double[m_numClasses][m_Knn][2];
+
+    /** Keep track of the farthest instance for each class */
+    private final double[] m_worst = new double[m_numClasses];
+
+    /** Index in the m_karray of the farthest instance for each class */
+    private final int[] m_index = new int[m_numClasses];
+
+    /** Number of nearest neighbours stored of each class */
+    private final int[] m_stored = new int[m_numClasses];
+
+    /** The attribute weights collected (discrete class case) */
+    private final double[] m_weights = new double[m_numAttribs];
+
+    /** Probability of a different class val given nearest instances */
+    private double m_ndc;
+
+    /** Probability of different value of an attribute given nearest instances */
+    private final double[] m_nda = new double[m_numAttribs];
+
+    /**
+     * Probability of a different class val and different att val given
+     * nearest instances
+     */
+    private final double[] m_ndcda = new double[m_numAttribs];
+
+    /**
+     * Finds the nearest hits and misses of the given instance and updates the
+     * weight statistics with them.
+     *
+     * @param instNum the index of the sampled instance
+     */
+    private void process(int instNum) {
+      // first clear the knn and worst index stuff for the classes
+      for (int j = 0; j < m_numClasses; j++) {
+        m_index[j] = m_stored[j] = 0;
+
+        for (int k = 0; k < m_Knn; k++) {
+          m_karray[j][k][0] = m_karray[j][k][1] = 0;
+        }
+      }
+
+      findKHitMiss(this, instNum);
+
+      if (m_numericClass) {
+        updateWeightsNumericClass(this, instNum);
+      } else {
+        updateWeightsDiscreteClass(this, instNum);
+      }
+    }
+  }
+
   /**
    * Constructor
    */
@@ -329,6 +394,10 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       + "\tSensible value=1/5 to 1/10 of the\n"
       + "\tnumber of nearest neighbours.\n" + "\t(Default = 2)", "A", 1,
       "-A <num>"));
+    newVector.addElement(new Option("\tNumber of threads used for processing\n"
+      + "\tthe sampled instances.\n"
+      + "\t(Default = 1, 0 = all available cores)", "num-slots", 1,
+      "-num-slots <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -379,6 +448,13 @@ public class ReliefFAttributeEval extends ASEvaluation implements
    *  (Default = 2)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads used for processing
+   *  the sampled instances.
+   *  (Default = 1, 0 = all available cores)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -414,6 +490,12 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       setSigma(Integer.parseInt(optionString));
     }
 
+    optionString = Utils.getOption("num-slots", options);
+
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
+
     super.setOptions(options);
   }
 
@@ -566,6 +648,36 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     return m_weightByDistance;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used for finding the "
+      + "nearest hits and misses of the sampled instances, 0 uses all "
+      + "available cores.";
+  }
+
+  /**
+   * Set the number of threads used for processing the sampled instances.
+   * 
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+    m_numExecutionSlots = slots;
+  }
+
+  /**
+   * Get the number of threads used for processing the sampled instances.
+   * 
+   * @return the number of threads, 0 for all available cores
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Gets the current settings of ReliefFAttributeEval.
    * 
@@ -592,6 +704,11 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       options.add("" + getSigma());
     }
 
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
+
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[0]);
@@ -687,10 +804,7 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     if (!m_numericClass) {
       m_numClasses = m_trainInstances.attribute(m_classIndex).numValues();
     } else {
-      m_ndc = 0;
       m_numClasses = 1;
-      m_nda = new double[m_numAttribs];
-      m_ndcda = new double[m_numAttribs];
     }
 
     if (m_weightByDistance) // set up the rank based weights
@@ -703,12 +817,6 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       }
     }
 
-    // the final attribute weights
-    m_weights = new double[m_numAttribs];
-    // num classes (1 for numeric class) knn neighbours,
-    // and 0 = distance, 1 = instance index
-    m_karray = new double[m_numClasses][m_Knn][2];
-
     if (!m_numericClass) {
       m_classProbs = new double[m_numClasses];
 
@@ -723,9 +831,6 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       }
     }
 
-    m_worst = new double[m_numClasses];
-    m_index = new int[m_numClasses];
-    m_stored = new int[m_numClasses];
     m_minArray = new double[m_numAttribs];
     m_maxArray = new double[m_numAttribs];
 
@@ -743,7 +848,8 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       totalInstances = m_sampleM;
     }
 
-    // process each instance, updating attribute weights
+    // the sampled instances
+    final int[] sample = new int[totalInstances];
     for (int i = 0; i < totalInstances; i++) {
       if (totalInstances == m_numInstances) {
         z = i;
@@ -754,24 +860,63 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       if (z < 0) {
         z *= -1;
       }
+      sample[i] = z;
+    }
 
-      if (!(m_trainInstances.instance(z).isMissing(m_classIndex))) {
-        // first clear the knn and worst index stuff for the classes
-        for (int j = 0; j < m_numClasses; j++) {
-          m_index[j] = m_stored[j] = 0;
-
-          for (int k = 0; k < m_Knn; k++) {
-            m_karray[j][k][0] = m_karray[j][k][1] = 0;
+    // process each instance, updating attribute weights
+    int numThreads = m_numExecutionSlots;
+    if (numThreads < 1) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    int numPartitions = Math.max(1, Math.min(numThreads, totalInstances));
+    final HitMissState[] states = new HitMissState[numPartitions];
+    for (int p = 0; p < numPartitions; p++) {
+      states[p] = new HitMissState();
+    }
+    if (numPartitions == 1) {
+      processSample(states[0], sample, 0, totalInstances);
+    } else {
+      ExecutorService pool = Executors.newFixedThreadPool(numPartitions);
+      try {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int p = 0; p < numPartitions; p++) {
+          final HitMissState state = states[p];
+          final int start = (int) ((long) p * totalInstances / numPartitions);
+          final int end = (int) ((long) (p + 1) * totalInstances / numPartitions);
+          futures.add(pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              processSample(state, sample, start, end);
+              return null;
+            }
+          }));
+        }
+        for (Future<Void> future : futures) {
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+              throw (Exception) e.getCause();
+            }
+            throw e;
           }
         }
+      } finally {
+        pool.shutdownNow();
+      }
+    }
 
-        findKHitMiss(z);
-
-        if (m_numericClass) {
-          updateWeightsNumericClass(z);
-        } else {
-          updateWeightsDiscreteClass(z);
-        }
+    // the final attribute weights
+    m_weights = new double[m_numAttribs];
+    m_ndc = 0;
+    m_nda = new double[m_numAttribs];
+    m_ndcda = new double[m_numAttribs];
+    for (HitMissState state : states) {
+      m_ndc += state.m_ndc;
+      for (int i = 0; i < m_numAttribs; i++) {
+        m_weights[i] += state.m_weights[i];
+        m_nda[i] += state.m_nda[i];
+        m_ndcda[i] += state.m_ndcda[i];
       }
     }
 
@@ -792,6 +937,23 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     }
   }
 
+  /**
+   * Processes a range of the sampled instances.
+   * 
+   * @param state the state collecting the weight statistics
+   * @param sample the indices of the sampled instances
+   * @param start the first position in the sample to process
+   * @param end the position after the last one to process
+   */
+  private void processSample(HitMissState state, int[] sample, int start,
+    int end) {
+    for (int i = start; i < end; i++) {
+      if (!(m_trainInstances.instance(sample[i]).isMissing(m_classIndex))) {
+        state.process(sample[i]);
+      }
+    }
+  }
+
   /**
    * Evaluates an individual attribute using ReliefF's instance based approach.
    * The actual work is done by buildEvaluator which evaluates all features.
@@ -814,6 +976,7 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     m_sigma = 2;
     m_weightByDistance = false;
     m_seed = 1;
+    m_numExecutionSlots = 1;
   }
 
   /**
@@ -959,9 +1122,10 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   /**
    * update attribute weights given an instance when the class is numeric
    * 
+   * @param state the state holding the neighbours and weight statistics
    * @param instNum the index of the instance to use when updating weights
    */
-  private void updateWeightsNumericClass(int instNum) {
+  private void updateWeightsNumericClass(HitMissState state, int instNum) {
     int i, j;
     double temp, temp2;
     int[] tempSorted = null;
@@ -973,11 +1137,11 @@ public class ReliefFAttributeEval extends ASEvaluation implements
 
     // sort nearest neighbours and set up normalization variable
     if (m_weightByDistance) {
-      tempDist = new double[m_stored[0]];
+      tempDist = new double[state.m_stored[0]];
 
-      for (j = 0, distNorm = 0; j < m_stored[0]; j++) {
+      for (j = 0, distNorm = 0; j < state.m_stored[0]; j++) {
         // copy the distances
-        tempDist[j] = m_karray[0][j][0];
+        tempDist[j] = state.m_karray[0][j][0];
         // sum normalizer
         distNorm += m_weightsByRank[j];
       }
@@ -985,28 +1149,28 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       tempSorted = Utils.sort(tempDist);
     }
 
-    for (i = 0; i < m_stored[0]; i++) {
+    for (i = 0; i < state.m_stored[0]; i++) {
       // P diff prediction (class) given nearest instances
       if (m_weightByDistance) {
         temp = difference(
           m_classIndex,
           inst.value(m_classIndex),
-          m_trainInstances.instance((int) m_karray[0][tempSorted[i]][1]).value(
+          m_trainInstances.instance((int) state.m_karray[0][tempSorted[i]][1]).value(
             m_classIndex));
         temp *= (m_weightsByRank[i] / distNorm);
       } else {
         temp = difference(m_classIndex, inst.value(m_classIndex),
-          m_trainInstances.instance((int) m_karray[0][i][1])
+          m_trainInstances.instance((int) state.m_karray[0][i][1])
             .value(m_classIndex));
-        temp *= (1.0 / m_stored[0]); // equal influence
+        temp *= (1.0 / state.m_stored[0]); // equal influence
       }
 
-      m_ndc += temp;
+      state.m_ndc += temp;
 
       Instance cmp;
       cmp = (m_weightByDistance) ? m_trainInstances
-        .instance((int) m_karray[0][tempSorted[i]][1]) : m_trainInstances
-        .instance((int) m_karray[0][i][1]);
+        .instance((int) state.m_karray[0][tempSorted[i]][1]) : m_trainInstances
+        .instance((int) state.m_karray[0][i][1]);
 
       double temp_diffP_diffA_givNearest = difference(m_classIndex,
         inst.value(m_classIndex), cmp.value(m_classIndex));
@@ -1054,19 +1218,19 @@ public class ReliefFAttributeEval extends ASEvaluation implements
         if (m_weightByDistance) {
           temp2 *= (m_weightsByRank[i] / distNorm);
         } else {
-          temp2 *= (1.0 / m_stored[0]); // equal influence
+          temp2 *= (1.0 / state.m_stored[0]); // equal influence
         }
 
-        m_ndcda[j] += temp2;
+        state.m_ndcda[j] += temp2;
 
         // P of different attribute val given nearest instances
         if (m_weightByDistance) {
           temp *= (m_weightsByRank[i] / distNorm);
         } else {
-          temp *= (1.0 / m_stored[0]); // equal influence
+          temp *= (1.0 / state.m_stored[0]); // equal influence
         }
 
-        m_nda[j] += temp;
+        state.m_nda[j] += temp;
       }
     }
   }
@@ -1074,9 +1238,10 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   /**
    * update attribute weights given an instance when the class is discrete
    * 
+   * @param state the state holding the neighbours and weight statistics
    * @param instNum the index of the instance to use when updating weights
    */
-  private void updateWeightsDiscreteClass(int instNum) {
+  private void updateWeightsDiscreteClass(HitMissState state, int instNum) {
     int i, j, k;
     int cl;
     double temp_diff, w_norm = 1.0;
@@ -1098,11 +1263,11 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     if (m_weightByDistance) {
       // do class (hits) first
       // sort the distances
-      tempDistClass = new double[m_stored[cl]];
+      tempDistClass = new double[state.m_stored[cl]];
 
-      for (j = 0, distNormClass = 0; j < m_stored[cl]; j++) {
+      for (j = 0, distNormClass = 0; j < state.m_stored[cl]; j++) {
         // copy the distances
-        tempDistClass[j] = m_karray[cl][j][0];
+        tempDistClass[j] = state.m_karray[cl][j][0];
         // sum normalizer
         distNormClass += m_weightsByRank[j];
       }
@@ -1116,11 +1281,11 @@ public class ReliefFAttributeEval extends ASEvaluation implements
         if (k != cl) // already done cl
         {
           // sort the distances
-          tempDistAtt = new double[m_stored[k]];
+          tempDistAtt = new double[state.m_stored[k]];
 
-          for (j = 0, distNormAtt[k] = 0; j < m_stored[k]; j++) {
+          for (j = 0, distNormAtt[k] = 0; j < state.m_stored[k]; j++) {
             // copy the distances
-            tempDistAtt[j] = m_karray[k][j][0];
+            tempDistAtt[j] = state.m_karray[k][j][0];
             // sum normalizer
             distNormAtt[k] += m_weightsByRank[j];
           }
@@ -1137,11 +1302,11 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     }
 
     // do the k nearest hits of the same class
-    for (j = 0, temp_diff = 0.0; j < m_stored[cl]; j++) {
+    for (j = 0, temp_diff = 0.0; j < state.m_stored[cl]; j++) {
       Instance cmp;
       cmp = (m_weightByDistance) ? m_trainInstances
-        .instance((int) m_karray[cl][tempSortedClass[j]][1]) : m_trainInstances
-        .instance((int) m_karray[cl][j][1]);
+        .instance((int) state.m_karray[cl][tempSortedClass[j]][1]) : m_trainInstances
+        .instance((int) state.m_karray[cl][j][1]);
 
       for (int p1 = 0, p2 = 0; p1 < inst.numValues() || p2 < cmp.numValues();) {
         if (p1 >= inst.numValues()) {
@@ -1180,11 +1345,11 @@ public class ReliefFAttributeEval extends ASEvaluation implements
         if (m_weightByDistance) {
           temp_diff *= (m_weightsByRank[j] / distNormClass);
         } else {
-          if (m_stored[cl] > 0) {
-            temp_diff /= m_stored[cl];
+          if (state.m_stored[cl] > 0) {
+            temp_diff /= state.m_stored[cl];
           }
         }
-        m_weights[i] -= temp_diff;
+        state.m_weights[i] -= temp_diff;
 
       }
     }
@@ -1195,11 +1360,11 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     for (k = 0; k < m_numClasses; k++) {
       if (k != cl) // already done cl
       {
-        for (j = 0; j < m_stored[k]; j++) {
+        for (j = 0; j < state.m_stored[k]; j++) {
           Instance cmp;
           cmp = (m_weightByDistance) ? m_trainInstances
-            .instance((int) m_karray[k][tempSortedAtt[k][j]][1])
-            : m_trainInstances.instance((int) m_karray[k][j][1]);
+            .instance((int) state.m_karray[k][tempSortedAtt[k][j]][1])
+            : m_trainInstances.instance((int) state.m_karray[k][j][1]);
 
           for (int p1 = 0, p2 = 0; p1 < inst.numValues()
             || p2 < cmp.numValues();) {
@@ -1240,14 +1405,14 @@ public class ReliefFAttributeEval extends ASEvaluation implements
             if (m_weightByDistance) {
               temp_diff *= (m_weightsByRank[j] / distNormAtt[k]);
             } else {
-              if (m_stored[k] > 0) {
-                temp_diff /= m_stored[k];
+              if (state.m_stored[k] > 0) {
+                temp_diff /= state.m_stored[k];
               }
             }
             if (m_numClasses > 2) {
-              m_weights[i] += ((m_classProbs[k] / w_norm) * temp_diff);
+              state.m_weights[i] += ((m_classProbs[k] / w_norm) * temp_diff);
             } else {
-              m_weights[i] += temp_diff;
+              state.m_weights[i] += temp_diff;
             }
           }
         }
@@ -1260,9 +1425,10 @@ public class ReliefFAttributeEval extends ASEvaluation implements
    * or the K nearest Hits (same class) and Misses (K from each of the other
    * classes) if the class is discrete.
    * 
+   * @param state the state receiving the neighbours
    * @param instNum the index of the instance to find nearest neighbours of
    */
-  private void findKHitMiss(int instNum) {
+  private void findKHitMiss(HitMissState state, int instNum) {
     int i, j;
     int cl;
     double ww;
@@ -1286,38 +1452,38 @@ public class ReliefFAttributeEval extends ASEvaluation implements
         }
 
         // add this diff to the list for the class of this instance
-        if (m_stored[cl] < m_Knn) {
-          m_karray[cl][m_stored[cl]][0] = temp_diff;
-          m_karray[cl][m_stored[cl]][1] = i;
-          m_stored[cl]++;
+        if (state.m_stored[cl] < m_Knn) {
+          state.m_karray[cl][state.m_stored[cl]][0] = temp_diff;
+          state.m_karray[cl][state.m_stored[cl]][1] = i;
+          state.m_stored[cl]++;
 
           // note the worst diff for this class
-          for (j = 0, ww = -1.0; j < m_stored[cl]; j++) {
-            if (m_karray[cl][j][0] > ww) {
-              ww = m_karray[cl][j][0];
-              m_index[cl] = j;
+          for (j = 0, ww = -1.0; j < state.m_stored[cl]; j++) {
+            if (state.m_karray[cl][j][0] > ww) {
+              ww = state.m_karray[cl][j][0];
+              state.m_index[cl] = j;
             }
           }
 
-          m_worst[cl] = ww;
+          state.m_worst[cl] = ww;
         } else
         /*
          * if we already have stored knn for this class then check to see if
          * this instance is better than the worst
          */
         {
-          if (temp_diff < m_karray[cl][m_index[cl]][0]) {
-            m_karray[cl][m_index[cl]][0] = temp_diff;
-            m_karray[cl][m_index[cl]][1] = i;
-
-            for (j = 0, ww = -1.0; j < m_stored[cl]; j++) {
-              if (m_karray[cl][j][0] > ww) {
-                ww = m_karray[cl][j][0];
-                m_index[cl] = j;
+          if (temp_diff < state.m_karray[cl][state.m_index[cl]][0]) {
+            state.m_karray[cl][state.m_index[cl]][0] = temp_diff;
+            state.m_karray[cl][state.m_index[cl]][1] = i;
+
+            for (j = 0, ww = -1.0; j < state.m_stored[cl]; j++) {
+              if (state.m_karray[cl][j][0] > ww) {
+                ww = state.m_karray[cl][j][0];
+                state.m_index[cl] = j;
               }
             }
 
-            m_worst[cl] = ww;
+            state.m_worst[cl] = ww;
           }
         }
       }
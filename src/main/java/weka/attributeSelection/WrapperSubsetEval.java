@@ -27,8 +27,10 @@ import weka.classifiers.Evaluation;
 import weka.classifiers.evaluation.AbstractEvaluationMetric;
 import weka.classifiers.evaluation.InformationRetrievalEvaluationMetric;
 import weka.classifiers.rules.ZeroR;
+import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
+import weka.core.DenseInstance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
@@ -39,14 +41,18 @@ import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
 import weka.core.TechnicalInformationHandler;
+import weka.core.ThreadSafe;
 import weka.core.Utils;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Vector;
 
@@ -128,6 +134,12 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -cache-size &lt;num&gt;
+ *  Maximum number of evaluated subsets to remember.
+ *  (default = 1000, 0 = no caching)
+ * </pre>
+ * 
+ * <pre>
  * Options specific to scheme weka.classifiers.rules.ZeroR:
  * </pre>
  * 
@@ -143,7 +155,8 @@ import java.util.Vector;
  * @version $Revision: 15520 $
  */
 public class WrapperSubsetEval extends ASEvaluation
-  implements SubsetEvaluator, OptionHandler, TechnicalInformationHandler {
+  implements SubsetEvaluator, OptionHandler, TechnicalInformationHandler,
+  ThreadSafe {
 
   /** for serialization */
   static final long serialVersionUID = -4573057658746728675L;
@@ -154,8 +167,6 @@ public class WrapperSubsetEval extends ASEvaluation
   private int m_classIndex;
   /** number of attributes in the training data */
   private int m_numAttribs;
-  /** holds an evaluation object */
-  private Evaluation m_Evaluation;
   /** holds the base classifier object */
   private Classifier m_BaseClassifier;
   /** number of folds to use for cross validation */
@@ -168,6 +179,18 @@ public class WrapperSubsetEval extends ASEvaluation
    */
   private double m_threshold;
 
+  /** maximum number of subset merits to memoize (0 = no caching) */
+  private int m_subsetCacheSize = 1000;
+
+  /** the memoized merits of evaluated subsets, least recently used first */
+  private transient Map<BitSet, Double> m_subsetCache;
+
+  /** the cross-validation splits shared by all subset evaluations */
+  private transient FoldPlan m_foldPlan;
+
+  /** the maximum number of repetitions of cross-validation per subset */
+  private static final int MAX_REPETITIONS = 5;
+
   public static final int EVAL_DEFAULT = 1;
   public static final int EVAL_ACCURACY = 2;
   public static final int EVAL_RMSE = 3;
@@ -374,6 +397,11 @@ public class WrapperSubsetEval extends ASEvaluation
         + "\tthe class-weighted average.",
       "IRclass", 1, "-IRclass <label | index>"));
 
+    newVector.addElement(new Option(
+      "\tMaximum number of evaluated subsets to remember.\n"
+        + "\t(default = 1000, 0 = no caching)",
+      "cache-size", 1, "-cache-size <num>"));
+
     newVector.addAll(Collections.list(super.listOptions()));
 
     if ((m_BaseClassifier != null)
@@ -437,6 +465,12 @@ public class WrapperSubsetEval extends ASEvaluation
    * </pre>
    * 
    * <pre>
+   * -cache-size &lt;num&gt;
+   *  Maximum number of evaluated subsets to remember.
+   *  (default = 1000, 0 = no caching)
+   * </pre>
+   * 
+   * <pre>
    * Options specific to scheme weka.classifiers.rules.ZeroR:
    * </pre>
    * 
@@ -501,6 +535,11 @@ public class WrapperSubsetEval extends ASEvaluation
       setIRClassValue(optionString);
     }
 
+    optionString = Utils.getOption("cache-size", options);
+    if (optionString.length() > 0) {
+      setSubsetCacheSize(Integer.parseInt(optionString));
+    }
+
     super.setOptions(options);
   }
 
@@ -573,6 +612,41 @@ public class WrapperSubsetEval extends ASEvaluation
     }
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String subsetCacheSizeTipText() {
+    return "The maximum number of evaluated subsets whose merit is remembered, "
+      + "so that searches revisiting a subset do not cross-validate it again. "
+      + "The least recently used subsets are discarded first; 0 disables the cache.";
+  }
+
+  /**
+   * Set the maximum number of evaluated subsets to remember
+   * 
+   * @param size the size of the cache, 0 to disable caching
+   */
+  public void setSubsetCacheSize(int size) {
+    if (size >= 0) {
+      m_subsetCacheSize = size;
+      synchronized (this) {
+        m_subsetCache = null;
+      }
+    }
+  }
+
+  /**
+   * Get the maximum number of evaluated subsets to remember
+   * 
+   * @return the size of the cache
+   */
+  public int getSubsetCacheSize() {
+    return m_subsetCacheSize;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -715,6 +789,9 @@ public class WrapperSubsetEval extends ASEvaluation
       options.add(m_IRClassValS);
     }
 
+    options.add("-cache-size");
+    options.add("" + getSubsetCacheSize());
+
     Collections.addAll(options, super.getOptions());
 
     options.add("--");
@@ -728,11 +805,13 @@ public class WrapperSubsetEval extends ASEvaluation
 
   protected void resetOptions() {
     m_trainInstances = null;
-    m_Evaluation = null;
     m_BaseClassifier = new ZeroR();
     m_folds = 5;
     m_seed = 1;
     m_threshold = 0.01;
+    m_subsetCacheSize = 1000;
+    m_subsetCache = null;
+    m_foldPlan = null;
   }
 
   /**
@@ -813,6 +892,57 @@ public class WrapperSubsetEval extends ASEvaluation
           m_trainInstances.classAttribute().indexOfValue(m_IRClassValS);
       }
     }
+
+    synchronized (this) {
+      m_subsetCache = null;
+      m_foldPlan = new FoldPlan(m_trainInstances, m_folds, m_seed);
+    }
+  }
+
+  /**
+   * Returns the cross-validation splits for the current number of folds and
+   * seed, determining them first if necessary.
+   * 
+   * @return the splits
+   */
+  private synchronized FoldPlan getFoldPlan() {
+    if (m_foldPlan == null || m_foldPlan.m_numFolds != m_folds
+      || m_foldPlan.m_seed != m_seed) {
+      m_foldPlan = new FoldPlan(m_trainInstances, m_folds, m_seed);
+    }
+    return m_foldPlan;
+  }
+
+  /**
+   * Looks up the merit of a subset in the cache.
+   * 
+   * @param key the subset, without the class attribute
+   * @return the cached merit or null if the subset has not been evaluated
+   */
+  private synchronized Double lookupSubset(BitSet key) {
+    return (m_subsetCache == null) ? null : m_subsetCache.get(key);
+  }
+
+  /**
+   * Stores the merit of a subset in the cache, discarding the least recently
+   * used subset if the cache is full.
+   * 
+   * @param key the subset, without the class attribute
+   * @param merit the merit of the subset
+   */
+  private synchronized void cacheSubset(BitSet key, double merit) {
+    if (m_subsetCache == null) {
+      final int maxSize = m_subsetCacheSize;
+      m_subsetCache = new LinkedHashMap<BitSet, Double>(16, 0.75f, true) {
+        private static final long serialVersionUID = 3526873217427414574L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BitSet, Double> eldest) {
+          return size() > maxSize;
+        }
+      };
+    }
+    m_subsetCache.put(key, merit);
   }
 
   /**
@@ -824,15 +954,28 @@ public class WrapperSubsetEval extends ASEvaluation
    */
   @Override
   public double evaluateSubset(BitSet subset) throws Exception {
+    // the class is always part of the evaluated subset
+    BitSet key = null;
+    if (m_subsetCacheSize > 0) {
+      key = (BitSet) subset.clone();
+      key.clear(m_classIndex);
+      if (key.length() > m_numAttribs) {
+        key.clear(m_numAttribs, key.length());
+      }
+      Double cached = lookupSubset(key);
+      if (cached != null) {
+        return cached.doubleValue();
+      }
+    }
+
     double evalMetric = 0;
-    double[] repError = new double[5];
+    double[] repError = new double[MAX_REPETITIONS];
     int numAttributes = 0;
     int i, j;
-    Random Rnd = new Random(m_seed);
+    FoldPlan plan = getFoldPlan();
     Remove delTransform = new Remove();
     delTransform.setInvertSelection(true);
-    // copy the instances
-    Instances trainCopy = new Instances(m_trainInstances);
+    Instances trainCopy;
 
     // count attributes set in the BitSet
     for (i = 0; i < m_numAttribs; i++) {
@@ -852,62 +995,68 @@ public class WrapperSubsetEval extends ASEvaluation
 
     featArray[j] = m_classIndex;
     delTransform.setAttributeIndicesArray(featArray);
-    delTransform.setInputFormat(trainCopy);
-    trainCopy = Filter.useFilter(trainCopy, delTransform);
+    delTransform.setInputFormat(m_trainInstances);
+    trainCopy = Filter.useFilter(m_trainInstances, delTransform);
 
     AbstractEvaluationMetric pluginMetric = null;
     String statName = null;
     String metricName = null;
 
     // max of 5 repetitions of cross validation
-    for (i = 0; i < 5; i++) {
-      m_Evaluation = new Evaluation(trainCopy);
-      m_Evaluation.crossValidateModel(m_BaseClassifier, trainCopy, m_folds,
-        Rnd);
+    for (i = 0; i < MAX_REPETITIONS; i++) {
+      Evaluation evaluation = new Evaluation(trainCopy);
+      for (int fold = 0; fold < plan.m_numFolds; fold++) {
+        Instances train = FoldPlan.rows(trainCopy, plan.m_train[i][fold]);
+        evaluation.setPriors(train);
+        Classifier classifier = AbstractClassifier.makeCopy(m_BaseClassifier);
+        classifier.buildClassifier(train);
+        evaluation.evaluateModel(classifier,
+          FoldPlan.rows(trainCopy, plan.m_test[i][fold]));
+      }
 
       switch (m_evaluationMeasure.getID()) {
       case EVAL_DEFAULT:
-        repError[i] = m_Evaluation.errorRate();
+        repError[i] = evaluation.errorRate();
         break;
       case EVAL_ACCURACY:
-        repError[i] = m_Evaluation.errorRate();
+        repError[i] = evaluation.errorRate();
         break;
       case EVAL_RMSE:
-        repError[i] = m_Evaluation.rootMeanSquaredError();
+        repError[i] = evaluation.rootMeanSquaredError();
         break;
       case EVAL_MAE:
-        repError[i] = m_Evaluation.meanAbsoluteError();
+        repError[i] = evaluation.meanAbsoluteError();
         break;
       case EVAL_FMEASURE:
         if (m_IRClassVal < 0) {
-          repError[i] = m_Evaluation.weightedFMeasure();
+          repError[i] = evaluation.weightedFMeasure();
         } else {
-          repError[i] = m_Evaluation.fMeasure(m_IRClassVal);
+          repError[i] = evaluation.fMeasure(m_IRClassVal);
         }
         break;
       case EVAL_AUC:
         if (m_IRClassVal < 0) {
-          repError[i] = m_Evaluation.weightedAreaUnderROC();
+          repError[i] = evaluation.weightedAreaUnderROC();
         } else {
-          repError[i] = m_Evaluation.areaUnderROC(m_IRClassVal);
+          repError[i] = evaluation.areaUnderROC(m_IRClassVal);
         }
         break;
       case EVAL_AUPRC:
         if (m_IRClassVal < 0) {
-          repError[i] = m_Evaluation.weightedAreaUnderPRC();
+          repError[i] = evaluation.weightedAreaUnderPRC();
         } else {
-          repError[i] = m_Evaluation.areaUnderPRC(m_IRClassVal);
+          repError[i] = evaluation.areaUnderPRC(m_IRClassVal);
         }
         break;
       case EVAL_CORRELATION:
-        repError[i] = m_Evaluation.correlationCoefficient();
+        repError[i] = evaluation.correlationCoefficient();
         break;
       default:
         if (m_evaluationMeasure.getID() >= EVAL_PLUGIN) {
           metricName = ((PluginTag) m_evaluationMeasure).getMetricName();
           statName = ((PluginTag) m_evaluationMeasure).getStatisticName();
           statName = ((PluginTag) m_evaluationMeasure).getStatisticName();
-          pluginMetric = m_Evaluation.getPluginMetric(metricName);
+          pluginMetric = evaluation.getPluginMetric(metricName);
           if (pluginMetric == null) {
             throw new Exception(
               "Metric  " + metricName + " does not seem to be " + "available");
@@ -940,7 +1089,6 @@ public class WrapperSubsetEval extends ASEvaluation
     }
 
     evalMetric /= i;
-    m_Evaluation = null;
 
     switch (m_evaluationMeasure.getID()) {
     case EVAL_DEFAULT:
@@ -962,6 +1110,10 @@ public class WrapperSubsetEval extends ASEvaluation
       }
     }
 
+    if (key != null) {
+      cacheSubset(key, evalMetric);
+    }
+
     return evalMetric;
   }
 
@@ -1054,6 +1206,98 @@ public class WrapperSubsetEval extends ASEvaluation
     return text.toString();
   }
 
+  /**
+   * The training and test rows of the repeated cross-validations of a data
+   * set. They are determined once by replaying the randomization and
+   * stratification of {@link Evaluation#crossValidateModel} on the row
+   * indices, so that all subsets are evaluated on the very same folds that
+   * crossValidateModel would have produced for each of them.
+   */
+  protected static class FoldPlan {
+
+    /** the number of folds */
+    protected int m_numFolds;
+
+    /** the seed of the randomization */
+    protected int m_seed;
+
+    /** the training rows, in training order, per repetition and fold */
+    protected int[][][] m_train;
+
+    /** the test rows per repetition and fold */
+    protected int[][][] m_test;
+
+    /**
+     * Determines the folds of all repetitions of cross-validation.
+     * 
+     * @param data the data to split
+     * @param numFolds the number of folds
+     * @param seed the seed of the randomization
+     */
+    public FoldPlan(Instances data, int numFolds, int seed) {
+      m_numFolds = numFolds;
+      m_seed = seed;
+      m_train = new int[MAX_REPETITIONS][numFolds][];
+      m_test = new int[MAX_REPETITIONS][numFolds][];
+
+      // the row index and the class are all that randomizing and
+      // stratifying depend on
+      ArrayList<Attribute> atts = new ArrayList<Attribute>(2);
+      atts.add(new Attribute("row"));
+      atts.add(data.classAttribute().copy("class"));
+      Instances rows = new Instances("rows", atts, data.numInstances());
+      rows.setClassIndex(1);
+      for (int i = 0; i < data.numInstances(); i++) {
+        rows.add(new DenseInstance(1.0, new double[] { i,
+          data.instance(i).classValue() }));
+      }
+
+      // the same sequence of random numbers as successive calls of
+      // crossValidateModel with a single Random object
+      Random random = new Random(seed);
+      for (int r = 0; r < MAX_REPETITIONS; r++) {
+        Instances order = new Instances(rows);
+        order.randomize(random);
+        if (order.classAttribute().isNominal()) {
+          order.stratify(numFolds);
+        }
+        for (int f = 0; f < numFolds; f++) {
+          m_train[r][f] = indices(order.trainCV(numFolds, f, random));
+          m_test[r][f] = indices(order.testCV(numFolds, f));
+        }
+      }
+    }
+
+    /**
+     * Returns the row indices stored in the given proxy instances.
+     * 
+     * @param rows the proxy instances
+     * @return the row indices
+     */
+    protected static int[] indices(Instances rows) {
+      int[] result = new int[rows.numInstances()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = (int) rows.instance(i).value(0);
+      }
+      return result;
+    }
+
+    /**
+     * Collects the given rows of a data set.
+     * 
+     * @param data the data set
+     * @param rows the indices of the rows
+     * @return the rows in the given order
+     */
+    protected static Instances rows(Instances data, int[] rows) {
+      Instances result = new Instances(data, rows.length);
+      for (int row : rows) {
+        result.add(data.instance(row));
+      }
+      return result;
+    }
+  }
+
   /**
    * decides whether to do another repeat of cross validation. If the standard
    * deviation of the cross validations is greater than threshold% of the mean
@@ -1114,6 +1358,10 @@ public class WrapperSubsetEval extends ASEvaluation
   @Override
   public void clean() {
     m_trainInstances = new Instances(m_trainInstances, 0);
+    synchronized (this) {
+      m_subsetCache = null;
+      m_foldPlan = null;
+    }
   }
 
   /**
@@ -201,6 +201,7 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
           public void run() {
             try {
               currentClassifier.buildClassifier(getTrainingSet(iteration));
+              classifierBuilt(iteration);
             } catch (Throwable ex) {
               ex.printStackTrace();
               numFailed.incrementAndGet();
@@ -227,10 +228,23 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
       // simple single-threaded execution
       for (int i = 0; i < m_Classifiers.length; i++) {
         m_Classifiers[i].buildClassifier(getTrainingSet(i));
+        classifierBuilt(i);
       }
     }
   }
 
+  /**
+   * Called once a member of the ensemble has been built, from the thread that
+   * built it, so that work depending on a single member can overlap with the
+   * construction of the others. Implementations need to be thread safe. The
+   * default implementation does nothing.
+   *
+   * @param iteration the number of the iteration whose classifier was built
+   * @throws Exception if something goes wrong
+   */
+  protected void classifierBuilt(int iteration) throws Exception {
+  }
+
   /**
    * Gets a training set for a particular iteration. Implementations need to be
    * careful with thread safety and should probably be synchronized to be on the
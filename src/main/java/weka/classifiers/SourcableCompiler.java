@@ -0,0 +1,338 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SourcableCompiler.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles the source code generated by classifiers implementing the
+ * <code>weka.classifiers.Sourcable</code> interface in memory, using the
+ * compiler of the running JDK, and loads it through a class loader of its
+ * own. The generated code only depends on <code>java.lang</code>, hence the
+ * class loader delegates to the bootstrap class loader only.
+ * <p/>
+ * Compiled models are cached, keyed by a hash of the serialized model, so
+ * compiling the same model again (e.g., after deserializing it) only costs
+ * the hashing.
+ *
+ * @version $Revision$
+ * @see Sourcable
+ */
+public final class SourcableCompiler {
+
+  /** The maximum number of compiled models kept in the cache */
+  public static final int MAX_CACHED_MODELS = 64;
+
+  /** The name prefix of the compiled classes */
+  protected static final String CLASS_PREFIX = "WekaCompiledModel_";
+
+  /** The compiled models, least recently used first */
+  protected static final Map<String, MethodHandle> CACHE =
+    new LinkedHashMap<String, MethodHandle>(16, 0.75f, true) {
+
+      /** for serialization */
+      private static final long serialVersionUID = 1870593125634958142L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, MethodHandle> e) {
+        return size() > MAX_CACHED_MODELS;
+      }
+    };
+
+  /** The type of the static classify method of the generated code */
+  protected static final MethodType CLASSIFY_TYPE = MethodType.methodType(
+    double.class, Object[].class);
+
+  /**
+   * Not to be instantiated.
+   */
+  private SourcableCompiler() {
+  }
+
+  /**
+   * Returns the handle of the compiled <code>classify(Object[])</code> method
+   * of the given model, compiling the model's source code if it is not
+   * cached yet. The handle has the type <code>(Object[])double</code>.
+   *
+   * @param model the built model, which must also be serializable
+   * @return the handle of the compiled classify method
+   * @throws Exception if the source cannot be generated or compiled
+   */
+  public static MethodHandle compile(Sourcable model) throws Exception {
+    if (!(model instanceof Serializable)) {
+      throw new IllegalArgumentException("Model "
+        + model.getClass().getName() + " is not serializable!");
+    }
+
+    String hash = modelHash((Serializable) model);
+    MethodHandle result;
+    synchronized (CACHE) {
+      result = CACHE.get(hash);
+    }
+    if (result == null) {
+      String className = CLASS_PREFIX + hash.substring(0, 16);
+      result = compile(className, model.toSource(className));
+      synchronized (CACHE) {
+        CACHE.put(hash, result);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Compiles the given source code and returns the handle of the static
+   * <code>classify(Object[])</code> method of the given class. The code is
+   * not cached.
+   *
+   * @param className the name of the class containing the classify method
+   * @param source the source code, which may contain auxiliary classes
+   * @return the handle of the classify method
+   * @throws Exception if no compiler is available or compilation fails
+   */
+  public static MethodHandle compile(String className, String source)
+    throws Exception {
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new Exception("No Java compiler available, the model can only be "
+        + "compiled when running on a JDK!");
+    }
+
+    DiagnosticCollector<JavaFileObject> diagnostics =
+      new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager standard =
+      compiler.getStandardFileManager(diagnostics, null, null);
+    MemoryFileManager manager = new MemoryFileManager(standard);
+    JavaFileObject unit = new SourceFile(className, source);
+    boolean success;
+    try {
+      success = compiler.getTask(null, manager, diagnostics,
+        Arrays.asList("-g:none", "-nowarn"), null, Arrays.asList(unit)).call();
+    } finally {
+      manager.close();
+    }
+    if (!success) {
+      StringBuffer text = new StringBuffer("Failed to compile " + className
+        + ":\n");
+      for (Diagnostic<? extends JavaFileObject> d : diagnostics
+        .getDiagnostics()) {
+        text.append(d.getKind()).append(" at line ").append(d.getLineNumber())
+          .append(": ").append(d.getMessage(null)).append("\n");
+      }
+      throw new Exception(text.toString());
+    }
+
+    Class<?> cls = new MemoryClassLoader(manager.m_Classes).loadClass(className);
+    Method classify = cls.getDeclaredMethod("classify", Object[].class);
+    // the generated classes are package private
+    classify.setAccessible(true);
+
+    return MethodHandles.lookup().unreflect(classify).asType(CLASSIFY_TYPE);
+  }
+
+  /**
+   * Returns the hex encoded SHA-256 hash of the serialized model.
+   *
+   * @param model the model to hash
+   * @return the hash
+   * @throws Exception if the model cannot be serialized
+   */
+  public static String modelHash(Serializable model) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(
+      new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+      }, digest));
+    out.writeObject(model);
+    out.close();
+
+    StringBuffer result = new StringBuffer();
+    for (byte b : digest.digest()) {
+      result.append(Character.forDigit((b >> 4) & 0xf, 16));
+      result.append(Character.forDigit(b & 0xf, 16));
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the number of compiled models currently cached.
+   *
+   * @return the number of cached models
+   */
+  public static int cacheSize() {
+    synchronized (CACHE) {
+      return CACHE.size();
+    }
+  }
+
+  /**
+   * Removes all compiled models from the cache.
+   */
+  public static void clearCache() {
+    synchronized (CACHE) {
+      CACHE.clear();
+    }
+  }
+
+  /**
+   * A compilation unit held in memory.
+   */
+  protected static class SourceFile extends SimpleJavaFileObject {
+
+    /** the source code */
+    protected String m_Source;
+
+    /**
+     * Initializes the compilation unit.
+     *
+     * @param className the name of the main class
+     * @param source the source code
+     */
+    public SourceFile(String className, String source) {
+      super(URI.create("string:///" + className + Kind.SOURCE.extension),
+        Kind.SOURCE);
+      m_Source = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return m_Source;
+    }
+  }
+
+  /**
+   * A compiled class held in memory.
+   */
+  protected static class ClassFile extends SimpleJavaFileObject {
+
+    /** the byte code */
+    protected ByteArrayOutputStream m_Bytes = new ByteArrayOutputStream();
+
+    /**
+     * Initializes the class file.
+     *
+     * @param className the binary name of the class
+     */
+    public ClassFile(String className) {
+      super(URI.create("bytes:///" + className + Kind.CLASS.extension),
+        Kind.CLASS);
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return m_Bytes;
+    }
+  }
+
+  /**
+   * A file manager that keeps the generated class files in memory.
+   */
+  protected static class MemoryFileManager extends
+    ForwardingJavaFileManager<JavaFileManager> {
+
+    /** the generated classes, by binary name */
+    protected Map<String, ClassFile> m_Classes =
+      new HashMap<String, ClassFile>();
+
+    /**
+     * Initializes the file manager.
+     *
+     * @param fileManager the manager to delegate to for everything else
+     */
+    public MemoryFileManager(JavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location,
+      String className, JavaFileObject.Kind kind, FileObject sibling)
+      throws IOException {
+      ClassFile result = new ClassFile(className);
+      m_Classes.put(className, result);
+      return result;
+    }
+  }
+
+  /**
+   * Defines the classes compiled in memory. Everything else is resolved by
+   * the bootstrap class loader, so the compiled code cannot see (or pin) any
+   * application classes.
+   */
+  protected static class MemoryClassLoader extends ClassLoader {
+
+    /** the compiled classes, by binary name */
+    protected Map<String, ClassFile> m_Classes;
+
+    /**
+     * Initializes the class loader.
+     *
+     * @param classes the compiled classes
+     */
+    public MemoryClassLoader(Map<String, ClassFile> classes) {
+      super(null);
+      m_Classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      ClassFile file = m_Classes.get(name);
+      if (file == null) {
+        throw new ClassNotFoundException(name);
+      }
+      byte[] bytes = file.m_Bytes.toByteArray();
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
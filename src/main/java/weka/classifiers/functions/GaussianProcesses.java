@@ -118,6 +118,15 @@ import java.util.Enumeration;
  * *  -1 to turn it off.
  * *  (default: 250007)</pre>
  * * 
+ * * <pre> -cache-mb &lt;num&gt;
+ * *  The memory budget of the cache in MB, used instead of
+ * *  the cache size if &gt; 0.
+ * *  (default: 0)</pre>
+ * * 
+ * * <pre> -cache-rows
+ * *  Cache whole kernel rows rather than single values.
+ * *  (default: off)</pre>
+ * * 
  * * <pre> -output-debug-info
  * *  Enables debugging output (if available) to be printed.
  * *  (default: off)</pre>
@@ -652,6 +661,15 @@ public class GaussianProcesses extends RandomizableClassifier implements
    * *  -1 to turn it off.
    * *  (default: 250007)</pre>
    * * 
+   * * <pre> -cache-mb &lt;num&gt;
+   * *  The memory budget of the cache in MB, used instead of
+   * *  the cache size if &gt; 0.
+   * *  (default: 0)</pre>
+   * * 
+   * * <pre> -cache-rows
+   * *  Cache whole kernel rows rather than single values.
+   * *  (default: off)</pre>
+   * * 
    * * <pre> -output-debug-info
    * *  Enables debugging output (if available) to be printed.
    * *  (default: off)</pre>
@@ -23,7 +23,9 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.supportVector.CachedKernel;
 import weka.classifiers.functions.supportVector.Kernel;
+import weka.classifiers.functions.supportVector.KernelCache;
 import weka.classifiers.functions.supportVector.NormalizedPolyKernel;
 import weka.classifiers.functions.supportVector.PolyKernel;
 import weka.classifiers.functions.supportVector.SMOset;
@@ -54,8 +56,14 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -161,6 +169,10 @@ import java.util.Vector;
   Full name of calibration model, followed by options.
   (default: "weka.classifiers.functions.Logistic")</pre>
  
+ <pre> -num-slots &lt;num&gt;
+  Number of threads used for training the pairwise models
+  (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+ 
  <pre> -output-debug-info
   If set, classifier is run in debug mode and
   may output additional info to the console</pre>
@@ -189,6 +201,15 @@ import java.util.Vector;
   -1 to turn it off.
   (default: 250007)</pre>
  
+ <pre> -cache-mb &lt;num&gt;
+  The memory budget of the cache in MB, used instead of
+  the cache size if &gt; 0.
+  (default: 0)</pre>
+ 
+ <pre> -cache-rows
+  Cache whole kernel rows rather than single values.
+  (default: off)</pre>
+ 
  <pre> -output-debug-info
   Enables debugging output (if available) to be printed.
   (default: off)</pre>
@@ -1269,6 +1290,9 @@ public class SMO
 
   /** the kernel to use */
   protected Kernel m_kernel = new PolyKernel();
+
+  /** The number of threads used for training the pairwise models */
+  protected int m_numExecutionSlots = 1;
   
   /**
    * Turns off checks for missing values, etc. Use with caution.
@@ -1407,14 +1431,38 @@ public class SMO
       subsets[i].compactify();
     }
 
+    int numThreads = m_numExecutionSlots > 0 ? m_numExecutionSlots
+            : Runtime.getRuntime().availableProcessors();
+    numThreads = Math.min(numThreads,
+            insts.numClasses() * (insts.numClasses() - 1) / 2);
+
+    // The pairwise models trained in parallel share one kernel cache, indexed
+    // by the position of each instance in the full training data
+    KernelCache sharedCache = null;
+    int[][] subsetIndices = null;
+    if (numThreads > 1 && !m_KernelIsLinear
+            && m_kernel instanceof CachedKernel) {
+      sharedCache = ((CachedKernel) m_kernel).createCache(insts.numInstances());
+      subsetIndices = new int[insts.numClasses()][];
+      int[] counts = new int[insts.numClasses()];
+      for (int i = 0; i < insts.numClasses(); i++) {
+        subsetIndices[i] = new int[subsets[i].numInstances()];
+      }
+      for (int j = 0; j < insts.numInstances(); j++) {
+        int c = (int) insts.instance(j).classValue();
+        subsetIndices[c][counts[c]++] = j;
+      }
+    }
+
     // Build the binary classifiers
     Random rand = new Random(m_randomSeed);
     m_classifiers = new BinarySMO[insts.numClasses()][insts.numClasses()];
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
     for (int i = 0; i < insts.numClasses(); i++) {
       for (int j = i + 1; j < insts.numClasses(); j++) {
         m_classifiers[i][j] = new BinarySMO();
         m_classifiers[i][j].setKernel(Kernel.makeCopy(getKernel()));
-        Instances data = new Instances(insts, insts.numInstances());
+        final Instances data = new Instances(insts, insts.numInstances());
         for (int k = 0; k < subsets[i].numInstances(); k++) {
           data.add(subsets[i].instance(k));
         }
@@ -1422,12 +1470,66 @@ public class SMO
           data.add(subsets[j].instance(k));
         }
         data.compactify();
-        data.randomize(rand);
-        m_classifiers[i][j].buildClassifier(data, i, j,
-                m_fitCalibratorModels,
-                m_numFolds, m_randomSeed);
+        if (sharedCache != null) {
+          // same shuffle as Instances.randomize(), keeping track of indices
+          int[] indices = new int[data.numInstances()];
+          System.arraycopy(subsetIndices[i], 0, indices, 0,
+                  subsetIndices[i].length);
+          System.arraycopy(subsetIndices[j], 0, indices,
+                  subsetIndices[i].length, subsetIndices[j].length);
+          for (int k = data.numInstances() - 1; k > 0; k--) {
+            int other = rand.nextInt(k + 1);
+            data.swap(k, other);
+            int tmp = indices[k];
+            indices[k] = indices[other];
+            indices[other] = tmp;
+          }
+          ((CachedKernel) m_classifiers[i][j].getKernel()).setSharedCache(
+                  sharedCache, indices);
+        } else {
+          data.randomize(rand);
+        }
+        final BinarySMO smo = m_classifiers[i][j];
+        final int cl1 = i;
+        final int cl2 = j;
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            smo.buildClassifier(data, cl1, cl2,
+                    m_fitCalibratorModels,
+                    m_numFolds, m_randomSeed);
+            return null;
+          }
+        });
       }
     }
+
+    if (numThreads <= 1) {
+      for (Callable<Void> task : tasks) {
+        task.call();
+      }
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (Callable<Void> task : tasks) {
+        results.add(executor.submit(task));
+      }
+      for (Future<Void> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   /**
@@ -1708,6 +1810,11 @@ public class SMO
                     "\t(default: \"weka.classifiers.functions.Logistic\")",
             "calibrator", 1, "-calibrator <scheme specification>"));
 
+    result.addElement(new Option(
+            "\tNumber of threads used for training the pairwise models\n"
+                    + "\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+            "num-slots", 1, "-num-slots <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     result.addElement(new Option(
@@ -1772,6 +1879,10 @@ public class SMO
     Full name of calibration model, followed by options.
     (default: "weka.classifiers.functions.Logistic")</pre>
    
+   <pre> -num-slots &lt;num&gt;
+    Number of threads used for training the pairwise models
+    (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+   
    <pre> -output-debug-info
     If set, classifier is run in debug mode and
     may output additional info to the console</pre>
@@ -1800,6 +1911,15 @@ public class SMO
     -1 to turn it off.
     (default: 250007)</pre>
    
+   <pre> -cache-mb &lt;num&gt;
+    The memory budget of the cache in MB, used instead of
+    the cache size if &gt; 0.
+    (default: 0)</pre>
+   
+   <pre> -cache-rows
+    Cache whole kernel rows rather than single values.
+    (default: off)</pre>
+   
    <pre> -output-debug-info
     Enables debugging output (if available) to be printed.
     (default: off)</pre>
@@ -1900,6 +2020,12 @@ public class SMO
     }
     setCalibrator(AbstractClassifier.forName(classifierName, classifierSpec));
 
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0)
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    else
+      setNumExecutionSlots(1);
+
     super.setOptions(options);
   }
 
@@ -1943,6 +2069,11 @@ public class SMO
     result.add(getCalibrator().getClass().getName() + " "
             + Utils.joinOptions(((OptionHandler)getCalibrator()).getOptions()));
 
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add("" + getNumExecutionSlots());
+    }
+
     Collections.addAll(result, super.getOptions());
     
     return (String[]) result.toArray(new String[result.size()]);	  
@@ -2239,6 +2370,37 @@ public class SMO
     
     m_randomSeed = newrandomSeed;
   }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads used for training the pairwise models "
+      + "(0 = as many as there are cores). The models then share one "
+      + "kernel cache.";
+  }
+
+  /**
+   * Get the number of threads used for training the pairwise models.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Set the number of threads used for training the pairwise models.
+   *
+   * @param numSlots the number of threads (0 = as many as there are cores)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+
+    m_numExecutionSlots = numSlots;
+  }
   
   /**
    * Prints out the classifier.
@@ -145,6 +145,15 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -cache-mb &lt;num&gt;
+ *  The memory budget of the cache in MB, used instead of
+ *  the cache size if &gt; 0.
+ *  (default: 0)</pre>
+ * 
+ * <pre> -cache-rows
+ *  Cache whole kernel rows rather than single values.
+ *  (default: off)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -366,6 +375,15 @@ public class SMOreg
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -cache-mb &lt;num&gt;
+   *  The memory budget of the cache in MB, used instead of
+   *  the cache size if &gt; 0.
+   *  (default: 0)</pre>
+   * 
+   * <pre> -cache-rows
+   *  Cache whole kernel rows rather than single values.
+   *  (default: off)</pre>
+   * 
    * <pre> -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)</pre>
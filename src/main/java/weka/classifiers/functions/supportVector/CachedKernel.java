@@ -30,9 +30,12 @@ import weka.core.Option;
 import weka.core.Utils;
 
 /**
- * Base class for RBFKernel and PolyKernel that implements a simple LRU.
- * (least-recently-used) cache if the cache size is set to a value > 0.
- * Otherwise it uses a full cache.
+ * Base class for RBFKernel and PolyKernel that implements a cache with clock
+ * (second chance) eviction if the cache size is set to a value > 0.
+ * Otherwise it uses a full cache. The cache can also be sized by a memory
+ * budget, can hold whole kernel rows instead of single values, and can be
+ * shared by the kernels of several models trained concurrently on subsets of
+ * the same data (see {@link #setSharedCache(KernelCache, int[])}).
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
  * @author Shane Legg (shane@intelligenesis.net) (sparse vector code)
@@ -56,8 +59,22 @@ public abstract class CachedKernel extends Kernel {
   protected int m_cacheSize = 250007;
 
   /** Kernel cache */
-  protected double[] m_storage;
-  protected long[] m_keys;
+  protected KernelCache m_cache;
+
+  /**
+   * The indices of the instances in the data the shared cache is for (null if
+   * the cache is not shared)
+   */
+  protected int[] m_sharedIndices;
+
+  /** The cache set for sharing, used instead of a cache of our own */
+  protected KernelCache m_sharedCache;
+
+  /** The memory budget of the cache in MB (0 = use the cache size) */
+  protected double m_cacheMemory = 0;
+
+  /** Whether to cache whole kernel rows rather than single values */
+  protected boolean m_cacheRows = false;
 
   /** The kernel matrix if full cache is used (i.e. size is set to 0) */
   protected double[][] m_kernelMatrix;
@@ -106,6 +123,15 @@ public abstract class CachedKernel extends Kernel {
           + "\t-1 to turn it off.\n" + "\t(default: 250007)", "C", 1,
         "-C <num>"));
 
+    result.addElement(new Option(
+      "\tThe memory budget of the cache in MB, used instead of\n"
+        + "\tthe cache size if > 0.\n" + "\t(default: 0)", "cache-mb", 1,
+      "-cache-mb <num>"));
+
+    result.addElement(new Option(
+      "\tCache whole kernel rows rather than single values.\n"
+        + "\t(default: off)", "cache-rows", 0, "-cache-rows"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -129,6 +155,15 @@ public abstract class CachedKernel extends Kernel {
       setCacheSize(250007);
     }
 
+    tmpStr = Utils.getOption("cache-mb", options);
+    if (tmpStr.length() != 0) {
+      setCacheMemory(Double.parseDouble(tmpStr));
+    } else {
+      setCacheMemory(0);
+    }
+
+    setCacheRows(Utils.getFlag("cache-rows", options));
+
     super.setOptions(options);
   }
 
@@ -145,6 +180,15 @@ public abstract class CachedKernel extends Kernel {
     result.add("-C");
     result.add("" + getCacheSize());
 
+    if (getCacheMemory() > 0) {
+      result.add("-cache-mb");
+      result.add("" + getCacheMemory());
+    }
+
+    if (getCacheRows()) {
+      result.add("-cache-rows");
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -176,8 +220,6 @@ public abstract class CachedKernel extends Kernel {
   public double eval(int id1, int id2, Instance inst1) throws Exception {
 
     double result = 0;
-    long key = -1;
-    int location = -1;
 
     // we can only cache if we know the indexes and caching is not
     // disabled (m_cacheSize == -1)
@@ -201,53 +243,35 @@ public abstract class CachedKernel extends Kernel {
         return result;
       }
 
-      // Use LRU cache
-      if (id1 > id2) {
-        key = (id1 + ((long) id2 * m_numInsts));
-      } else {
-        key = (id2 + ((long) id1 * m_numInsts));
+      // Use cache with eviction
+      int key1 = id1;
+      int key2 = id2;
+      if (m_sharedIndices != null) {
+        key1 = m_sharedIndices[id1];
+        key2 = m_sharedIndices[id2];
       }
-      location = (int) (key % m_cacheSize) * m_cacheSlots;
-      int loc = location;
-      for (int i = 0; i < m_cacheSlots; i++) {
-        long thiskey = m_keys[loc];
-        if (thiskey == 0) {
-          break; // empty slot, so break out of loop early
-        }
-        if (thiskey == (key + 1)) {
-          m_cacheHits++;
-          // move entry to front of cache (LRU) by swapping
-          // only if it's not already at the front of cache
-          if (i > 0) {
-            double tmps = m_storage[loc];
-            m_storage[loc] = m_storage[location];
-            m_keys[loc] = m_keys[location];
-            m_storage[location] = tmps;
-            m_keys[location] = thiskey;
-            return tmps;
-          } else {
-            return m_storage[loc];
-          }
-        }
-        loc++;
+      result = m_cache.get(key1, key2);
+      if (!Double.isNaN(result)) {
+        m_cacheHits++;
+        return result;
+      }
+
+      // a shared cache may be filled by other models, so always compute
+      // the value in the same orientation
+      if (m_sharedIndices != null && key1 < key2) {
+        result = evaluate(id2, id1, m_data.instance(id2));
+      } else {
+        result = evaluate(id1, id2, inst1);
       }
+      m_kernelEvals++;
+      m_cache.put(key1, key2, result);
+      return result;
     }
 
     result = evaluate(id1, id2, inst1);
 
     m_kernelEvals++;
 
-    // store result in cache
-    if ((key != -1) && (m_cacheSize != -1)) {
-      // move all cache slots forward one array index
-      // to make room for the new entry
-      System
-        .arraycopy(m_keys, location, m_keys, location + 1, m_cacheSlots - 1);
-      System.arraycopy(m_storage, location, m_storage, location + 1,
-        m_cacheSlots - 1);
-      m_storage[location] = result;
-      m_keys[location] = (key + 1);
-    }
     return result;
   }
 
@@ -276,8 +300,9 @@ public abstract class CachedKernel extends Kernel {
    */
   @Override
   public void clean() {
-    m_storage = null;
-    m_keys = null;
+    m_cache = null;
+    m_sharedCache = null;
+    m_sharedIndices = null;
     m_kernelMatrix = null;
   }
 
@@ -350,6 +375,106 @@ public abstract class CachedKernel extends Kernel {
     return "The size of the cache (a prime number), 0 for full cache and -1 to turn it off.";
   }
 
+  /**
+   * Sets the memory budget of the cache in MB. If > 0, this is used instead
+   * of the cache size to determine how many values are cached (unless the
+   * cache size is 0 or -1, i.e., the full cache is used or caching is off).
+   *
+   * @param value the memory budget in MB
+   */
+  public void setCacheMemory(double value) {
+    m_cacheMemory = value;
+    clean();
+  }
+
+  /**
+   * Gets the memory budget of the cache in MB
+   *
+   * @return the memory budget
+   */
+  public double getCacheMemory() {
+    return m_cacheMemory;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String cacheMemoryTipText() {
+    return "The memory budget of the cache in MB, used instead of the cache size if > 0.";
+  }
+
+  /**
+   * Sets whether to cache whole kernel rows rather than single values. Row
+   * caching suits SMO's working set, where all values of a few rows are needed
+   * in each step. The rows are sized by the memory budget, or by the cache
+   * size if no budget is set.
+   *
+   * @param value true if rows are to be cached
+   */
+  public void setCacheRows(boolean value) {
+    m_cacheRows = value;
+    clean();
+  }
+
+  /**
+   * Gets whether whole kernel rows are cached
+   *
+   * @return true if rows are cached
+   */
+  public boolean getCacheRows() {
+    return m_cacheRows;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String cacheRowsTipText() {
+    return "Whether to cache whole kernel rows rather than single values.";
+  }
+
+  /**
+   * Shares a cache with other kernels. Each kernel is built on a subset of
+   * the data the cache is for, and the supplied indices give the index in that
+   * data of each instance the kernel is built on. The cache is used from the
+   * next call of buildKernel() until the kernel is cleaned.
+   *
+   * @param cache the cache to share (null to use a cache of our own)
+   * @param indices the index in the shared data of each instance
+   */
+  public void setSharedCache(KernelCache cache, int[] indices) {
+    m_sharedCache = cache;
+    m_sharedIndices = cache != null ? indices : null;
+  }
+
+  /**
+   * Creates a cache as configured by the cache size, the memory budget and
+   * row caching, for the given number of instances. Returns null if caching
+   * is turned off or the full cache is used.
+   *
+   * @param numInsts the number of instances
+   * @return the cache, or null
+   */
+  public KernelCache createCache(int numInsts) {
+    if (getCacheSize() <= 0) {
+      return null;
+    }
+    if (getCacheMemory() > 0) {
+      return KernelCache.forMemory(numInsts, getCacheMemory(), getCacheRows());
+    }
+    long capacity = (long) getCacheSize() * m_cacheSlots;
+    if (getCacheRows()) {
+      // the same amount of memory, in rows
+      capacity = capacity * 2 / Math.max(numInsts, 1);
+    }
+    return new KernelCache(numInsts, capacity, getCacheRows());
+  }
+
   /**
    * initializes variables etc.
    * 
@@ -363,13 +488,11 @@ public abstract class CachedKernel extends Kernel {
     m_cacheHits = 0;
     m_numInsts = m_data.numInstances();
 
-    if (getCacheSize() > 0) {
-      // Use LRU cache
-      m_storage = new double[m_cacheSize * m_cacheSlots];
-      m_keys = new long[m_cacheSize * m_cacheSlots];
+    if (m_sharedCache != null && getCacheSize() > 0) {
+      m_cache = m_sharedCache;
     } else {
-      m_storage = null;
-      m_keys = null;
+      m_sharedIndices = null;
+      m_cache = createCache(m_numInsts);
       m_kernelMatrix = null;
     }
   }
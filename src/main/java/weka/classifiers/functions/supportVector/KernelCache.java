@@ -0,0 +1,451 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KernelCache.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.functions.supportVector;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache for kernel values that can be used by several threads at once. The
+ * cache is split into stripes, each with its own lock. It either stores single
+ * kernel values, evicting with the clock (second chance) algorithm once full,
+ * or whole kernel rows, evicting the least recently used row.
+ *
+ * @version $Revision$
+ */
+public class KernelCache implements Serializable {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2570263916367826451L;
+
+  /** The number of stripes (a power of two) */
+  protected static final int NUM_STRIPES = 16;
+
+  /** Bytes per cached value in a full stripe (at most half the slots used) */
+  protected static final int BYTES_PER_ENTRY = 32;
+
+  /** The number of instances the kernel values are computed for */
+  protected int m_numInsts;
+
+  /** True if whole rows are cached */
+  protected boolean m_rows;
+
+  /** The stripes for single kernel values */
+  protected EntryStripe[] m_entryStripes;
+
+  /** The stripes for kernel rows */
+  protected RowStripe[] m_rowStripes;
+
+  /**
+   * Creates a cache holding at most the given number of single kernel values,
+   * or of kernel rows.
+   *
+   * @param numInsts the number of instances
+   * @param capacity the maximum number of cached values (or rows)
+   * @param rows true if whole kernel rows are to be cached
+   */
+  public KernelCache(int numInsts, long capacity, boolean rows) {
+    m_numInsts = numInsts;
+    m_rows = rows;
+    int perStripe =
+      (int) Math.max(Math.min((capacity + NUM_STRIPES - 1) / NUM_STRIPES,
+        1 << 28), 1);
+    if (rows) {
+      m_rowStripes = new RowStripe[NUM_STRIPES];
+      for (int i = 0; i < NUM_STRIPES; i++) {
+        m_rowStripes[i] = new RowStripe(perStripe);
+      }
+    } else {
+      m_entryStripes = new EntryStripe[NUM_STRIPES];
+      for (int i = 0; i < NUM_STRIPES; i++) {
+        m_entryStripes[i] = new EntryStripe(perStripe);
+      }
+    }
+  }
+
+  /**
+   * Creates a cache that fits into the given amount of memory.
+   *
+   * @param numInsts the number of instances
+   * @param megabytes the memory budget in MB
+   * @param rows true if whole kernel rows are to be cached
+   * @return the cache
+   */
+  public static KernelCache forMemory(int numInsts, double megabytes,
+    boolean rows) {
+    long bytes = (long) (megabytes * 1024 * 1024);
+    if (rows) {
+      return new KernelCache(numInsts, bytes / (8L * Math.max(numInsts, 1)),
+        true);
+    }
+    return new KernelCache(numInsts, bytes / BYTES_PER_ENTRY, false);
+  }
+
+  /**
+   * Returns the number of instances the cache is for.
+   *
+   * @return the number of instances
+   */
+  public int numInstances() {
+    return m_numInsts;
+  }
+
+  /**
+   * Returns true if whole kernel rows are cached.
+   *
+   * @return true if rows are cached
+   */
+  public boolean cachesRows() {
+    return m_rows;
+  }
+
+  /**
+   * Spreads the bits of a key.
+   *
+   * @param key the key
+   * @return the hash
+   */
+  protected static long hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 29);
+  }
+
+  /**
+   * Looks up a kernel value.
+   *
+   * @param id1 the index of the first instance
+   * @param id2 the index of the second instance
+   * @return the value, or NaN if it is not cached
+   */
+  public double get(int id1, int id2) {
+    if (m_rows) {
+      double result = m_rowStripes[id1 & (NUM_STRIPES - 1)].get(id1, id2);
+      if (Double.isNaN(result)) {
+        result = m_rowStripes[id2 & (NUM_STRIPES - 1)].get(id2, id1);
+      }
+      return result;
+    }
+    long key =
+      id1 > id2 ? id1 + (long) id2 * m_numInsts : id2 + (long) id1
+        * m_numInsts;
+    long h = hash(key);
+    return m_entryStripes[(int) (h >>> 60) & (NUM_STRIPES - 1)].get(key, h);
+  }
+
+  /**
+   * Stores a kernel value, evicting other values if necessary.
+   *
+   * @param id1 the index of the first instance
+   * @param id2 the index of the second instance
+   * @param value the value
+   */
+  public void put(int id1, int id2, double value) {
+    if (m_rows) {
+      m_rowStripes[id1 & (NUM_STRIPES - 1)].put(id1, id2, value, m_numInsts,
+        true);
+      m_rowStripes[id2 & (NUM_STRIPES - 1)].put(id2, id1, value, m_numInsts,
+        false);
+      return;
+    }
+    long key =
+      id1 > id2 ? id1 + (long) id2 * m_numInsts : id2 + (long) id1
+        * m_numInsts;
+    long h = hash(key);
+    m_entryStripes[(int) (h >>> 60) & (NUM_STRIPES - 1)].put(key, h, value);
+  }
+
+  /**
+   * Returns the number of cached values (or rows).
+   *
+   * @return the number of cached values
+   */
+  public long size() {
+    long result = 0;
+    for (int i = 0; i < NUM_STRIPES; i++) {
+      result += m_rows ? m_rowStripes[i].size() : m_entryStripes[i].size();
+    }
+    return result;
+  }
+
+  /**
+   * An open-addressed table of single kernel values with clock eviction. Key
+   * and value of a slot are stored next to each other, and the top bit of the
+   * key is the reference bit of the clock.
+   */
+  protected static class EntryStripe implements Serializable {
+
+    /** for serialization */
+    private static final long serialVersionUID = 4196530178420305637L;
+
+    /** The reference bit */
+    protected static final long REFERENCED = Long.MIN_VALUE;
+
+    /**
+     * The keys (offset by one so that 0 marks an empty slot) and the bits of
+     * the values, alternating
+     */
+    protected long[] m_table;
+
+    /** The number of slots minus one */
+    protected int m_mask;
+
+    /** The maximum number of values */
+    protected int m_capacity;
+
+    /** The maximum number of slots, reached when the stripe is full */
+    protected int m_maxSlots;
+
+    /** The number of values */
+    protected int m_size;
+
+    /** The clock hand */
+    protected int m_hand;
+
+    /**
+     * Creates an empty stripe. The table grows as values are added, until the
+     * maximum number of values is reached.
+     *
+     * @param capacity the maximum number of values
+     */
+    protected EntryStripe(int capacity) {
+      m_maxSlots = Integer.highestOneBit(Math.max(2 * capacity - 1, 1)) << 1;
+      m_capacity = capacity;
+      allocate(Math.min(m_maxSlots, 64));
+    }
+
+    /**
+     * Allocates an empty table.
+     *
+     * @param slots the number of slots (a power of two)
+     */
+    protected void allocate(int slots) {
+      m_table = new long[2 * slots];
+      m_mask = slots - 1;
+      m_hand = 0;
+    }
+
+    /**
+     * Returns the slot a key is stored in, or the empty slot where it would be
+     * stored.
+     *
+     * @param key the key, offset by one
+     * @param h the hash of the key
+     * @return the slot
+     */
+    protected int find(long key, long h) {
+      int i = (int) h & m_mask;
+      while (true) {
+        long k = m_table[2 * i] & ~REFERENCED;
+        if (k == 0 || k == key) {
+          return i;
+        }
+        i = (i + 1) & m_mask;
+      }
+    }
+
+    /**
+     * Doubles the size of the table.
+     */
+    protected void grow() {
+      long[] table = m_table;
+      allocate(table.length);
+      for (int j = 0; j < table.length; j += 2) {
+        if (table[j] != 0) {
+          long key = table[j] & ~REFERENCED;
+          int i = find(key, hash(key - 1));
+          m_table[2 * i] = table[j];
+          m_table[2 * i + 1] = table[j + 1];
+        }
+      }
+    }
+
+    /**
+     * Looks up a value.
+     *
+     * @param key the key
+     * @param h the hash of the key
+     * @return the value, or NaN if not present
+     */
+    protected synchronized double get(long key, long h) {
+      int i = find(key + 1, h);
+      long k = m_table[2 * i];
+      if (k == 0) {
+        return Double.NaN;
+      }
+      m_table[2 * i] = k | REFERENCED;
+      return Double.longBitsToDouble(m_table[2 * i + 1]);
+    }
+
+    /**
+     * Stores a value.
+     *
+     * @param key the key
+     * @param h the hash of the key
+     * @param value the value
+     */
+    protected synchronized void put(long key, long h, double value) {
+      int i = find(key + 1, h);
+      if (m_table[2 * i] == 0) {
+        if (m_size >= m_capacity) {
+          evict();
+          i = find(key + 1, h);
+        } else if (2 * (m_size + 1) > m_mask + 1) {
+          grow();
+          i = find(key + 1, h);
+        }
+        m_table[2 * i] = key + 1;
+        m_size++;
+      }
+      m_table[2 * i + 1] = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Removes the first value the clock hand finds that has not been used
+     * since the hand last passed it.
+     */
+    protected void evict() {
+      while (true) {
+        long k = m_table[2 * m_hand];
+        if (k != 0) {
+          if ((k & REFERENCED) != 0) {
+            m_table[2 * m_hand] = k & ~REFERENCED;
+          } else {
+            delete(m_hand);
+            return;
+          }
+        }
+        m_hand = (m_hand + 1) & m_mask;
+      }
+    }
+
+    /**
+     * Deletes the value in a slot, moving later values of the same probe
+     * sequence back so that they can still be found.
+     *
+     * @param slot the slot to empty
+     */
+    protected void delete(int slot) {
+      int i = slot;
+      int j = slot;
+      while (true) {
+        j = (j + 1) & m_mask;
+        long k = m_table[2 * j];
+        if (k == 0) {
+          break;
+        }
+        int home = (int) hash((k & ~REFERENCED) - 1) & m_mask;
+        boolean stays =
+          (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+        if (!stays) {
+          m_table[2 * i] = k;
+          m_table[2 * i + 1] = m_table[2 * j + 1];
+          i = j;
+        }
+      }
+      m_table[2 * i] = 0;
+      m_size--;
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the number of values
+     */
+    protected synchronized int size() {
+      return m_size;
+    }
+  }
+
+  /**
+   * Kernel rows, evicting the least recently used row. Missing values in a row
+   * are NaN.
+   */
+  protected static class RowStripe implements Serializable {
+
+    /** for serialization */
+    private static final long serialVersionUID = -5328290683001874325L;
+
+    /** The rows, in access order */
+    protected LinkedHashMap<Integer, double[]> m_rows;
+
+    /**
+     * Creates an empty stripe.
+     *
+     * @param capacity the maximum number of rows
+     */
+    protected RowStripe(final int capacity) {
+      m_rows = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 2877915417880627834L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+          return size() > capacity;
+        }
+      };
+    }
+
+    /**
+     * Looks up a value.
+     *
+     * @param row the row
+     * @param col the column
+     * @return the value, or NaN if not present
+     */
+    protected synchronized double get(int row, int col) {
+      double[] values = m_rows.get(row);
+      return values == null ? Double.NaN : values[col];
+    }
+
+    /**
+     * Stores a value.
+     *
+     * @param row the row
+     * @param col the column
+     * @param value the value
+     * @param numInsts the length of a row
+     * @param create true if the row is to be created if not present
+     */
+    protected synchronized void put(int row, int col, double value,
+      int numInsts, boolean create) {
+      double[] values = m_rows.get(row);
+      if (values == null) {
+        if (!create) {
+          return;
+        }
+        values = new double[numInsts];
+        Arrays.fill(values, Double.NaN);
+        m_rows.put(row, values);
+      }
+      values[col] = value;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    protected synchronized int size() {
+      return m_rows.size();
+    }
+  }
+}
@@ -44,6 +44,15 @@ import weka.core.RevisionUtils;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -cache-mb &lt;num&gt;
+ *  The memory budget of the cache in MB, used instead of
+ *  the cache size if &gt; 0.
+ *  (default: 0)</pre>
+ * 
+ * <pre> -cache-rows
+ *  Cache whole kernel rows rather than single values.
+ *  (default: off)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
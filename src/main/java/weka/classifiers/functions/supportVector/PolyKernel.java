@@ -56,6 +56,19 @@ import weka.core.Utils;
  * </pre>
  * 
  * <pre>
+ * -cache-mb &lt;num&gt;
+ *  The memory budget of the cache in MB, used instead of
+ *  the cache size if &gt; 0.
+ *  (default: 0)
+ * </pre>
+ * 
+ * <pre>
+ * -cache-rows
+ *  Cache whole kernel rows rather than single values.
+ *  (default: off)
+ * </pre>
+ * 
+ * <pre>
  * -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)
@@ -165,6 +178,19 @@ public class PolyKernel extends CachedKernel {
    * </pre>
    * 
    * <pre>
+   * -cache-mb &lt;num&gt;
+   *  The memory budget of the cache in MB, used instead of
+   *  the cache size if &gt; 0.
+   *  (default: 0)
+   * </pre>
+   * 
+   * <pre>
+   * -cache-rows
+   *  Cache whole kernel rows rather than single values.
+   *  (default: off)
+   * </pre>
+   * 
+   * <pre>
    * -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)
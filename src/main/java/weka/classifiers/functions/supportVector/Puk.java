@@ -65,6 +65,19 @@ import weka.core.Utils;
  * </pre>
  * 
  * <pre>
+ * -cache-mb &lt;num&gt;
+ *  The memory budget of the cache in MB, used instead of
+ *  the cache size if &gt; 0.
+ *  (default: 0)
+ * </pre>
+ * 
+ * <pre>
+ * -cache-rows
+ *  Cache whole kernel rows rather than single values.
+ *  (default: off)
+ * </pre>
+ * 
+ * <pre>
  * -O &lt;num&gt;
  *  The Omega parameter.
  *  (default: 1.0)
@@ -207,6 +220,19 @@ public class Puk extends CachedKernel implements TechnicalInformationHandler {
    * </pre>
    * 
    * <pre>
+   * -cache-mb &lt;num&gt;
+   *  The memory budget of the cache in MB, used instead of
+   *  the cache size if &gt; 0.
+   *  (default: 0)
+   * </pre>
+   * 
+   * <pre>
+   * -cache-rows
+   *  Cache whole kernel rows rather than single values.
+   *  (default: off)
+   * </pre>
+   * 
+   * <pre>
    * -O &lt;num&gt;
    *  The Omega parameter.
    *  (default: 1.0)
@@ -21,9 +21,16 @@
 
 package weka.classifiers.lazy;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.UpdateableClassifier;
@@ -47,6 +54,7 @@ import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 import weka.core.neighboursearch.LinearNNSearch;
 import weka.core.neighboursearch.NearestNeighbourSearch;
+import weka.core.neighboursearch.NeighbourBuffer;
 
 /**
  <!-- globalinfo-start -->
@@ -105,6 +113,10 @@ import weka.core.neighboursearch.NearestNeighbourSearch;
  *  The nearest neighbour search algorithm to use (default: weka.core.neighboursearch.LinearNNSearch).
  * </pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of threads used for batch prediction.
+ *  (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Stuart Inglis (singlis@cs.waikato.ac.nz)
@@ -185,6 +197,9 @@ public class IBk
 
   /** The number of attributes the contribute to a prediction. */
   protected double m_NumAttributesUsed;
+
+  /** The number of threads used for batch prediction. */
+  protected int m_NumExecutionSlots = 1;
   
   /**
    * IBk classifier. Simple instance-based learner that uses the class
@@ -377,6 +392,38 @@ public class IBk
     
     m_MeanSquared = newMeanSquared;
   }
+
+  /**
+   * Returns the tip text for this property.
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+
+    return "The number of execution slots (threads) used for predicting "
+      + "batches of instances, 0 uses all available cores. The threads "
+      + "query the nearest neighbour search concurrently.";
+  }
+
+  /**
+   * Gets the number of threads used for batch prediction.
+   *
+   * @return the number of threads, 0 for all available cores
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Sets the number of threads used for batch prediction.
+   *
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+
+    m_NumExecutionSlots = slots;
+  }
   
   /**
    * Returns the tip text for this property.
@@ -589,6 +636,92 @@ public class IBk
     return distribution;
   }
 
+  /**
+   * Returns true if more than one thread is used for batch prediction.
+   *
+   * @return true if batches are predicted in parallel
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+
+    return m_NumExecutionSlots != 1;
+  }
+
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instances. If more than one execution slot is used, the ranges of the
+   * distance function are first updated with all test instances and the
+   * neighbours are then looked up concurrently, each thread with its own
+   * neighbour buffer.
+   *
+   * @param batch the instances to be classified
+   * @return predicted class probability distributions
+   * @throws Exception if an error occurred during the prediction
+   */
+  @Override
+  public double[][] distributionsForInstances(final Instances batch)
+    throws Exception {
+
+    int numThreads = m_NumExecutionSlots;
+    if (numThreads < 1) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    if ((numThreads == 1) || (batch.numInstances() < 2)
+      || (m_Train.numInstances() == 0)
+      || !m_NNSearch.supportsNeighbourBuffers()) {
+      return super.distributionsForInstances(batch);
+    }
+    if ((m_WindowSize > 0) && (m_Train.numInstances() > m_WindowSize)) {
+      m_kNNValid = false;
+      while (m_Train.numInstances() > m_WindowSize) {
+	m_Train.delete(0);
+      }
+      m_NNSearch.setInstances(m_Train);
+    }
+    if (!m_kNNValid && (m_CrossValidate) && (m_kNNUpper >= 1)) {
+      crossValidate();
+    }
+    for (int i = 0; i < batch.numInstances(); i++) {
+      m_NNSearch.addInstanceInfo(batch.instance(i));
+    }
+
+    final double[][] result = new double[batch.numInstances()][];
+    int numPartitions = Math.min(numThreads, result.length);
+    ExecutorService pool = Executors.newFixedThreadPool(numPartitions);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int p = 0; p < numPartitions; p++) {
+        final int start = (int) ((long) p * result.length / numPartitions);
+        final int end = (int) ((long) (p + 1) * result.length / numPartitions);
+        futures.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            NeighbourBuffer neighbours = new NeighbourBuffer(m_kNN);
+            for (int i = start; i < end; i++) {
+              m_NNSearch.kNearestNeighbours(batch.instance(i), m_kNN,
+                neighbours);
+              result[i] = makeDistribution(neighbours);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return result;
+  }
+
   /**
    * Returns an enumeration describing the available options.
    *
@@ -627,6 +760,10 @@ public class IBk
 	      "\tThe nearest neighbour search algorithm to use "+
           "(default: weka.core.neighboursearch.LinearNNSearch).\n",
 	      "A", 1, "-A"));
+    newVector.addElement(new Option(
+	      "\tNumber of threads used for batch prediction.\n"+
+	      "\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+	      "num-slots", 1, "-num-slots <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
     
@@ -668,6 +805,10 @@ public class IBk
    *  The nearest neighbour search algorithm to use (default: weka.core.neighboursearch.LinearNNSearch).
    * </pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of threads used for batch prediction.
+   *  (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -715,6 +856,13 @@ public class IBk
     }
     else 
       this.setNearestNeighbourSearchAlgorithm(new LinearNNSearch());
+
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsString));
+    } else {
+      setNumExecutionSlots(1);
+    }
     
     super.setOptions(options);
   }
@@ -743,6 +891,10 @@ public class IBk
 
     options.add("-A");
     options.add(m_NNSearch.getClass().getName()+" "+Utils.joinOptions(m_NNSearch.getOptions())); 
+
+    if (m_NumExecutionSlots != 1) {
+      options.add("-num-slots"); options.add("" + m_NumExecutionSlots);
+    }
     
     Collections.addAll(options, super.getOptions());
     
@@ -849,7 +1001,47 @@ public class IBk
   protected double [] makeDistribution(Instances neighbours, double[] distances)
     throws Exception {
 
-    double total = 0, weight;
+    return makeDistribution(neighbours, null, distances,
+      neighbours.numInstances(), true);
+  }
+
+  /**
+   * Turn the nearest neighbors stored in a buffer into a probability
+   * distribution, like makeDistribution(Instances, double[]). The distances
+   * in the buffer are left unchanged.
+   *
+   * @param neighbours the nearest neighbors, indices refer to the training
+   * instances
+   * @return the probability distribution
+   * @throws Exception if computation goes wrong or has no class attribute
+   */
+  protected double [] makeDistribution(NeighbourBuffer neighbours)
+    throws Exception {
+
+    return makeDistribution(m_Train, neighbours.getIndices(),
+      neighbours.getDistances(), neighbours.size(), false);
+  }
+
+  /**
+   * Turn nearest neighbors into a probability distribution. The neighbors are
+   * the first instances of the given set or, if indices are given, the
+   * instances of the set at those indices.
+   *
+   * @param instances the neighbors, or the instances the indices refer to
+   * @param indices the indices of the neighbors, null if they are the first
+   * instances of the set
+   * @param distances the distances of the neighbors
+   * @param numNeighbours the number of neighbors
+   * @param storeDistances whether the distances are replaced by the converted
+   * ones that the neighbors are weighted with
+   * @return the probability distribution
+   * @throws Exception if computation goes wrong or has no class attribute
+   */
+  private double [] makeDistribution(Instances instances, int[] indices,
+    double[] distances, int numNeighbours, boolean storeDistances)
+    throws Exception {
+
+    double total = 0, weight, distance;
     double [] distribution = new double [m_NumClasses];
     
     // Set up a correction to the estimator
@@ -860,17 +1052,21 @@ public class IBk
       total = (double)m_NumClasses / Math.max(1,m_Train.numInstances());
     }
 
-    for(int i=0; i < neighbours.numInstances(); i++) {
+    for(int i=0; i < numNeighbours; i++) {
       // Collect class counts
-      Instance current = neighbours.instance(i);
-      distances[i] = distances[i]*distances[i];
-      distances[i] = Math.sqrt(distances[i]/m_NumAttributesUsed);
+      Instance current = instances.instance((indices == null) ? i : indices[i]);
+      distance = distances[i];
+      distance = distance*distance;
+      distance = Math.sqrt(distance/m_NumAttributesUsed);
+      if (storeDistances) {
+        distances[i] = distance;
+      }
       switch (m_DistanceWeighting) {
         case WEIGHT_INVERSE:
-          weight = 1.0 / (distances[i] + 0.001); // to avoid div by zero
+          weight = 1.0 / (distance + 0.001); // to avoid div by zero
           break;
         case WEIGHT_SIMILARITY:
-          weight = 1.0 - distances[i];
+          weight = 1.0 - distance;
           break;
         default:                                 // WEIGHT_NONE:
           weight = 1.0;
@@ -21,10 +21,18 @@
 
 package weka.classifiers.lazy;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.SingleClassifierEnhancer;
 import weka.classifiers.UpdateableClassifier;
@@ -42,6 +50,7 @@ import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 import weka.core.neighboursearch.LinearNNSearch;
 import weka.core.neighboursearch.NearestNeighbourSearch;
+import weka.core.neighboursearch.NeighbourBuffer;
 
 /**
  <!-- globalinfo-start -->
@@ -94,6 +103,10 @@ import weka.core.neighboursearch.NearestNeighbourSearch;
  *  2=Tricube, 3=Inverse, 4=Gaussian.
  *  (default 0 = Linear)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of threads used for batch prediction.
+ *  (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+ * 
  * <pre> -D
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console</pre>
@@ -152,6 +165,9 @@ public class LWL
 
   /** a ZeroR model in case no model can be built from the data. */
   protected Classifier m_ZeroR;
+
+  /** The number of threads used for batch prediction. */
+  protected int m_NumExecutionSlots = 1;
     
   /**
    * Returns a string describing classifier.
@@ -255,6 +271,10 @@ public class LWL
 				    +"\t2=Tricube, 3=Inverse, 4=Gaussian.\n"
 				    +"\t(default 0 = Linear)",
 				    "U", 1,"-U <number of weighting method>"));
+    newVector.addElement(new Option("\tNumber of threads used for batch"
+				    +" prediction.\n"
+				    +"\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+				    "num-slots", 1, "-num-slots <num>"));
     
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -280,6 +300,10 @@ public class LWL
    *  2=Tricube, 3=Inverse, 4=Gaussian.
    *  (default 0 = Linear)</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of threads used for batch prediction.
+   *  (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+   * 
    * <pre> -D
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console</pre>
@@ -336,6 +360,13 @@ public class LWL
     else 
       this.setNearestNeighbourSearchAlgorithm(new LinearNNSearch());
 
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsString));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -357,6 +388,9 @@ public class LWL
     }
     options.add("-A");
     options.add(m_NNSearch.getClass().getName()+" "+Utils.joinOptions(m_NNSearch.getOptions()));; 
+    if (m_NumExecutionSlots != 1) {
+      options.add("-num-slots"); options.add("" + m_NumExecutionSlots);
+    }
 
     Collections.addAll(options, super.getOptions());
     
@@ -446,6 +480,37 @@ public class LWL
     return m_WeightKernel;
   }
 
+  /**
+   * Returns the tip text for this property.
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used for predicting "
+      + "batches of instances, 0 uses all available cores. Each thread "
+      + "trains its own copy of the base classifier.";
+  }
+
+  /**
+   * Sets the number of threads used for batch prediction.
+   *
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+
+    m_NumExecutionSlots = slots;
+  }
+
+  /**
+   * Gets the number of threads used for batch prediction.
+   *
+   * @return the number of threads, 0 for all available cores
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
   /**
    * Returns the tip text for this property.
    * @return tip text for this property suitable for
@@ -574,15 +639,43 @@ public class LWL
     
     m_NNSearch.addInstanceInfo(instance);
     
+    int k = numNeighbours();
+    Instances neighbours = m_NNSearch.kNearestNeighbours(instance, k);
+    double distances[] = m_NNSearch.getDistances();
+
+    return localDistribution(instance, neighbours, distances, k, m_Classifier);
+  }
+
+  /**
+   * Returns the number of neighbours used to determine the kernel bandwidth.
+   *
+   * @return the number of neighbours
+   */
+  protected int numNeighbours() {
+
     int k = m_Train.numInstances();
     if( (!m_UseAllK && (m_kNN < k)) /*&&
        !(m_WeightKernel==INVERSE ||
          m_WeightKernel==GAUSS)*/ ) {
       k = m_kNN;
     }
-    
-    Instances neighbours = m_NNSearch.kNearestNeighbours(instance, k);
-    double distances[] = m_NNSearch.getDistances();
+    return k;
+  }
+
+  /**
+   * Weights the given neighbours of an instance, trains the given classifier
+   * on them and returns its prediction.
+   *
+   * @param instance the instance to be classified
+   * @param neighbours the neighbours, their weights are modified
+   * @param distances the distances of the neighbours, are modified
+   * @param k the number of neighbours determining the bandwidth
+   * @param classifier the classifier to train on the neighbours
+   * @return predicted class probability distribution
+   * @throws Exception if distribution can't be computed successfully
+   */
+  protected double[] localDistribution(Instance instance, Instances neighbours,
+    double[] distances, int k, Classifier classifier) throws Exception {
 
     if (m_Debug) {
       System.out.println("Test Instance: "+instance);
@@ -665,16 +758,101 @@ public class LWL
     }
 
     // Create a weighted classifier
-    m_Classifier.buildClassifier(neighbours);
+    classifier.buildClassifier(neighbours);
 
     if (m_Debug) {
       System.out.println("Classifying test instance: " + instance);
       System.out.println("Built base classifier:\n" 
-			 + m_Classifier.toString());
+			 + classifier.toString());
     }
 
     // Return the classifier's predictions
-    return m_Classifier.distributionForInstance(instance);
+    return classifier.distributionForInstance(instance);
+  }
+
+  /**
+   * Returns true if more than one thread is used for batch prediction.
+   *
+   * @return true if batches are predicted in parallel
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+
+    return m_NumExecutionSlots != 1;
+  }
+
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instances. If more than one execution slot is used, the ranges of the
+   * distance function are first updated with all test instances, then the
+   * instances are classified concurrently, each thread with its own
+   * neighbour buffer and copy of the base classifier.
+   *
+   * @param batch the instances to be classified
+   * @return predicted class probability distributions
+   * @throws Exception if distributions can't be computed successfully
+   */
+  @Override
+  public double[][] distributionsForInstances(final Instances batch)
+    throws Exception {
+
+    int numThreads = m_NumExecutionSlots;
+    if (numThreads < 1) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    if ((numThreads == 1) || (batch.numInstances() < 2) || (m_ZeroR != null)
+      || (m_Train.numInstances() == 0)
+      || !m_NNSearch.supportsNeighbourBuffers()) {
+      return super.distributionsForInstances(batch);
+    }
+    for (int i = 0; i < batch.numInstances(); i++) {
+      m_NNSearch.addInstanceInfo(batch.instance(i));
+    }
+
+    final int k = numNeighbours();
+    final double[][] result = new double[batch.numInstances()][];
+    int numPartitions = Math.min(numThreads, result.length);
+    ExecutorService pool = Executors.newFixedThreadPool(numPartitions);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int p = 0; p < numPartitions; p++) {
+        final int start = (int) ((long) p * result.length / numPartitions);
+        final int end = (int) ((long) (p + 1) * result.length / numPartitions);
+        final Classifier classifier = AbstractClassifier.makeCopy(m_Classifier);
+        futures.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            NeighbourBuffer buffer = new NeighbourBuffer(k);
+            for (int i = start; i < end; i++) {
+              Instance instance = batch.instance(i);
+              int size = m_NNSearch.kNearestNeighbours(instance, k, buffer);
+              Instances neighbours = new Instances(m_Train, size);
+              double[] distances = new double[size];
+              for (int j = 0; j < size; j++) {
+                neighbours.add(m_Train.instance(buffer.index(j)));
+                distances[j] = buffer.distance(j);
+              }
+              result[i] = localDistribution(instance, neighbours, distances, k,
+                classifier);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return result;
   }
  
   /**
@@ -182,6 +182,39 @@ public class Bagging
 
   /** Reference to the training data */
   protected Instances m_data;
+
+  /**
+   * The out-of-bag votes of the members scored by one thread: the summed
+   * predictions (null for instances that were in all bags so far) and the
+   * number of predictions for each instance
+   */
+  protected static class OutOfBagVotes {
+
+    /** The summed predictions for each instance */
+    protected double[][] m_votes;
+
+    /** The number of predictions for each instance */
+    protected int[] m_counts;
+
+    /**
+     * Creates empty votes.
+     *
+     * @param numInstances the number of training instances
+     */
+    protected OutOfBagVotes(int numInstances) {
+      m_votes = new double[numInstances][];
+      m_counts = new int[numInstances];
+    }
+  }
+
+  /** The vote arrays of all threads, merged once all members are built */
+  protected transient List<OutOfBagVotes> m_outOfBagSlots;
+
+  /** The vote arrays that are not in use by a thread at the moment */
+  protected transient Deque<OutOfBagVotes> m_freeOutOfBagSlots;
+
+  /** The out-of-bag error of each member on its own */
+  protected double[] m_MemberOutOfBagErrors = null;
   
   /** Whether to classify using the Majority Voting combination rule. Can
    * assume that class is nominal. */
@@ -653,6 +686,20 @@ public class Bagging
     }
   }
   
+  /**
+   * Returns the out-of-bag error of each member on its own, in the order of
+   * the members: percentage of incorrectly classified instances in the
+   * classification case, mean absolute error in the regression case. -1 for
+   * members that could not be evaluated.
+   *
+   * @return the out of bag errors of the members; null if out-of-bag error
+   *         hasn't been calculated
+   */
+  public double[] getMemberOutOfBagErrors() {
+
+    return m_MemberOutOfBagErrors;
+  }
+
   /**
    * Returns an enumeration of the additional measure names
    * (Added also those produced by the base algorithm).
@@ -771,6 +818,80 @@ public class Bagging
     }
   }
 
+  /**
+   * Adds the out-of-bag predictions of a member to the votes as soon as it has
+   * been built, in the thread that built it. Each thread adds to vote arrays
+   * of its own, which are merged once all members are built. Only the error
+   * of the member itself is recorded.
+   *
+   * @param iteration the number of the iteration whose classifier was built
+   * @throws Exception if the predictions can't be computed
+   */
+  @Override
+  protected void classifierBuilt(int iteration) throws Exception {
+
+    if (!m_CalcOutOfBag) {
+      return;
+    }
+
+    OutOfBagVotes slot;
+    synchronized (m_outOfBagSlots) {
+      slot = m_freeOutOfBagSlots.poll();
+      if (slot == null) {
+        slot = new OutOfBagVotes(m_data.numInstances());
+        m_outOfBagSlots.add(slot);
+      }
+    }
+
+    try {
+      boolean[] inBag = m_inBag[iteration];
+      double lossSum = 0;
+      double weight = 0;
+      for (int i = 0; i < m_data.numInstances(); i++) {
+        if (inBag[i]) {
+          continue;
+        }
+        Instance inst = m_data.instance(i);
+        double[] prediction;
+        if (m_Numeric) {
+          double pred = m_Classifiers[iteration].classifyInstance(inst);
+          if (Utils.isMissingValue(pred)) {
+            continue;
+          }
+          prediction = new double[] { pred };
+        } else {
+          prediction = m_Classifiers[iteration].distributionForInstance(inst);
+        }
+        if (slot.m_votes[i] == null) {
+          slot.m_votes[i] = new double[prediction.length];
+        }
+        for (int k = 0; k < prediction.length; k++) {
+          slot.m_votes[i][k] += prediction[k];
+        }
+        slot.m_counts[i]++;
+
+        if (inst.classIsMissing()) {
+          continue;
+        }
+        if (m_Numeric) {
+          lossSum += inst.weight() * Math.abs(prediction[0] - inst.classValue());
+        } else if (Utils.sum(prediction) > 0) {
+          if (Utils.maxIndex(prediction) != (int) inst.classValue()) {
+            lossSum += inst.weight();
+          }
+        } else {
+          continue;
+        }
+        weight += inst.weight();
+      }
+      m_MemberOutOfBagErrors[iteration] = (weight > 0) ? lossSum / weight : -1;
+    } finally {
+      synchronized (m_outOfBagSlots) {
+        m_freeOutOfBagSlots.push(slot);
+      }
+    }
+  }
+
   /**
    * Returns the out-of-bag evaluation object.
    *
@@ -820,47 +941,49 @@ public class Bagging
 
     m_Numeric = m_data.classAttribute().isNumeric();
 
+    m_MemberOutOfBagErrors = null;
+    if (getCalcOutOfBag()) {
+      m_outOfBagSlots = new ArrayList<OutOfBagVotes>();
+      m_freeOutOfBagSlots = new ArrayDeque<OutOfBagVotes>();
+      m_MemberOutOfBagErrors = new double[m_Classifiers.length];
+      Arrays.fill(m_MemberOutOfBagErrors, -1);
+    }
+
     buildClassifiers();
 
     // calc OOB error?
     if (getCalcOutOfBag()) {
-      m_OutOfBagEvaluationObject = new Evaluation(m_data);
-
-      for (int i = 0; i < m_data.numInstances(); i++) {
-        double[] votes;
-        if (m_Numeric)
-          votes = new double[1];
-        else
-          votes = new double[m_data.numClasses()];
-
-        // determine predictions for instance
-        int voteCount = 0;
-        for (int j = 0; j < m_Classifiers.length; j++) {
-          if (m_inBag[j][i])
+      // merge the votes of the threads
+      double[][] outOfBagVotes = new double[m_data.numInstances()][];
+      int[] outOfBagVoteCounts = new int[m_data.numInstances()];
+      for (OutOfBagVotes slot : m_outOfBagSlots) {
+        for (int i = 0; i < m_data.numInstances(); i++) {
+          if (slot.m_votes[i] == null) {
             continue;
-
-          if (m_Numeric) {
-            double pred = m_Classifiers[j].classifyInstance(m_data.instance(i));
-            if (!Utils.isMissingValue(pred)) {
-              votes[0] += pred;
-              voteCount++;
-            }
+          }
+          if (outOfBagVotes[i] == null) {
+            outOfBagVotes[i] = slot.m_votes[i];
           } else {
-            voteCount++;
-            double[] newProbs = m_Classifiers[j].distributionForInstance(m_data.instance(i));
-            // sum the probability estimates
-            for (int k = 0; k < newProbs.length; k++) {
-              votes[k] += newProbs[k];
+            for (int k = 0; k < outOfBagVotes[i].length; k++) {
+              outOfBagVotes[i][k] += slot.m_votes[i][k];
             }
           }
+          outOfBagVoteCounts[i] += slot.m_counts[i];
+        }
+      }
+
+      m_OutOfBagEvaluationObject = new Evaluation(m_data);
+
+      for (int i = 0; i < m_data.numInstances(); i++) {
+        double[] votes = outOfBagVotes[i];
+        if (votes == null) {
+          continue;
         }
 
         // "vote"
         if (m_Numeric) {
-          if (voteCount > 0) {
-            votes[0] /= voteCount;
-            m_OutOfBagEvaluationObject.evaluationForSingleInstance(votes, m_data.instance(i), getStoreOutOfBagPredictions());
-          }
+          votes[0] /= outOfBagVoteCounts[i];
+          m_OutOfBagEvaluationObject.evaluationForSingleInstance(votes, m_data.instance(i), getStoreOutOfBagPredictions());
         } else {
           double sum = Utils.sum(votes);
           if (sum > 0) {
@@ -873,6 +996,9 @@ public class Bagging
       m_OutOfBagEvaluationObject = null;
     }
 
+    m_outOfBagSlots = null;
+    m_freeOutOfBagSlots = null;
+
     // save memory
     m_inBag = null;
     m_data = new Instances(m_data, 0);
@@ -0,0 +1,271 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompiledSourceClassifier.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.meta;
+
+import java.lang.invoke.MethodHandle;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.SingleClassifierEnhancer;
+import weka.classifiers.Sourcable;
+import weka.classifiers.SourcableCompiler;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+import weka.core.WeightedInstancesHandler;
+
+/**
+ <!-- globalinfo-start -->
+ * Builds a classifier that can output its model as Java source code (e.g., J48, J48Consolidated or J48PartiallyConsolidated), compiles that source code in memory and classifies with the compiled code. The decision path of a tree then consists of plain branches that the JIT compiler can inline. Since the generated code only returns the predicted class, the class distribution assigns all the probability to that class. Requires a JDK at runtime.
+ * <br><br>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p>
+ *
+ * <pre> -W
+ *  Full name of base classifier.
+ *  (default: weka.classifiers.trees.J48)</pre>
+ *
+ * <pre> -output-debug-info
+ *  If set, classifier is run in debug mode and
+ *  may output additional info to the console</pre>
+ *
+ * <pre> -do-not-check-capabilities
+ *  If set, classifier capabilities are not checked before classifier is built
+ *  (use with caution).</pre>
+ *
+ * <pre> -num-decimal-places
+ *  The number of decimal places for the output of numbers in the model (default 2).</pre>
+ *
+ * <pre>
+ * Options specific to classifier weka.classifiers.trees.J48:
+ * </pre>
+ *
+ * <pre> -U
+ *  Use unpruned tree.</pre>
+ *
+ * <pre> -C &lt;pruning confidence&gt;
+ *  Set confidence threshold for pruning.
+ *  (default 0.25)</pre>
+ *
+ * <pre> -M &lt;minimum number of instances&gt;
+ *  Set minimum number of instances per leaf.
+ *  (default 2)</pre>
+ *
+ <!-- options-end -->
+ *
+ * @version $Revision$
+ * @see SourcableCompiler
+ */
+public class CompiledSourceClassifier extends SingleClassifierEnhancer
+  implements WeightedInstancesHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -3169823620512474193L;
+
+  /** the header of the training data */
+  protected Instances m_Header;
+
+  /** whether an attribute is passed to the compiled code as a Double */
+  protected boolean[] m_Numeric;
+
+  /** the compiled classify method, recompiled (or looked up) when needed */
+  protected transient MethodHandle m_Compiled;
+
+  /**
+   * Default constructor.
+   */
+  public CompiledSourceClassifier() {
+    m_Classifier = new weka.classifiers.trees.J48();
+  }
+
+  /**
+   * Returns a string describing classifier
+   *
+   * @return a description suitable for displaying in the explorer/experimenter
+   *         gui
+   */
+  public String globalInfo() {
+    return "Builds a classifier that can output its model as Java source code "
+      + "(e.g., J48, J48Consolidated or J48PartiallyConsolidated), compiles "
+      + "that source code in memory and classifies with the compiled code. "
+      + "The decision path of a tree then consists of plain branches that the "
+      + "JIT compiler can inline. Since the generated code only returns the "
+      + "predicted class, the class distribution assigns all the probability "
+      + "to that class. Requires a JDK at runtime.";
+  }
+
+  /**
+   * String describing default classifier.
+   *
+   * @return the default classifier classname
+   */
+  @Override
+  protected String defaultClassifierString() {
+    return "weka.classifiers.trees.J48";
+  }
+
+  /**
+   * Sets the base classifier, which has to implement Sourcable.
+   *
+   * @param newClassifier the classifier to use.
+   */
+  @Override
+  public void setClassifier(Classifier newClassifier) {
+    if (!(newClassifier instanceof Sourcable)) {
+      throw new IllegalArgumentException("Base classifier "
+        + newClassifier.getClass().getName() + " does not implement "
+        + Sourcable.class.getName() + "!");
+    }
+    super.setClassifier(newClassifier);
+  }
+
+  /**
+   * Builds the base classifier and compiles its source code.
+   *
+   * @param data the training data
+   * @throws Exception if the classifier could not be built or compiled
+   */
+  @Override
+  public void buildClassifier(Instances data) throws Exception {
+    // can classifier handle the data?
+    getCapabilities().testWithFail(data);
+
+    m_Compiled = null;
+    m_Classifier.buildClassifier(data);
+    setModel(m_Classifier, data);
+  }
+
+  /**
+   * Uses an already built classifier, which is compiled right away.
+   *
+   * @param model the built classifier, implementing Sourcable
+   * @param header the structure of the data the classifier was built with
+   * @throws Exception if the classifier could not be compiled
+   */
+  public void setModel(Classifier model, Instances header) throws Exception {
+    setClassifier(model);
+    m_Header = new Instances(header, 0);
+    m_Numeric = new boolean[m_Header.numAttributes()];
+    for (int i = 0; i < m_Numeric.length; i++) {
+      m_Numeric[i] = m_Header.attribute(i).isNumeric();
+    }
+    m_Compiled = SourcableCompiler.compile((Sourcable) m_Classifier);
+  }
+
+  /**
+   * Classifies the given test instance with the compiled code.
+   *
+   * @param instance the instance to be classified
+   * @return the predicted class, or Utils.missingValue() if no prediction is
+   *         made
+   * @throws Exception if an error occurred during the prediction
+   */
+  @Override
+  public double classifyInstance(Instance instance) throws Exception {
+    if (m_Header == null) {
+      throw new Exception("No model built yet!");
+    }
+    if (m_Compiled == null) {
+      // e.g. after deserialization, usually a cache hit
+      m_Compiled = SourcableCompiler.compile((Sourcable) m_Classifier);
+    }
+
+    Object[] values = new Object[m_Numeric.length];
+    for (int i = 0; i < values.length; i++) {
+      if (!instance.isMissing(i)) {
+        values[i] = m_Numeric[i] ? (Object) Double.valueOf(instance.value(i))
+          : instance.stringValue(i);
+      }
+    }
+    values[m_Header.classIndex()] = null;
+
+    try {
+      return (double) m_Compiled.invokeExact(values);
+    } catch (Exception e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new Exception(t);
+    }
+  }
+
+  /**
+   * Returns the class distribution for the given test instance, which
+   * assigns all the probability to the class predicted by the compiled code.
+   *
+   * @param instance the instance to be classified
+   * @return the class distribution
+   * @throws Exception if an error occurred during the prediction
+   */
+  @Override
+  public double[] distributionForInstance(Instance instance) throws Exception {
+    double[] dist = new double[instance.numClasses()];
+    double pred = classifyInstance(instance);
+    if (Utils.isMissingValue(pred)) {
+      return dist;
+    }
+    if (instance.classAttribute().isNumeric()) {
+      dist[0] = pred;
+    } else {
+      dist[(int) pred] = 1.0;
+    }
+
+    return dist;
+  }
+
+  /**
+   * Returns a description of the model.
+   *
+   * @return the model
+   */
+  @Override
+  public String toString() {
+    if (m_Header == null) {
+      return "CompiledSourceClassifier: No model built yet.";
+    }
+
+    return "CompiledSourceClassifier\n========================\n\n"
+      + "Base classifier (compiled): " + getClassifierSpec() + "\n\n"
+      + m_Classifier.toString();
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Main method for testing this class.
+   *
+   * @param argv the options
+   */
+  public static void main(String[] argv) {
+    runClassifier(new CompiledSourceClassifier(), argv);
+  }
+}
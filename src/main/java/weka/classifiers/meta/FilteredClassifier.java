@@ -66,6 +66,11 @@ import java.util.*;
  * If this is set, the classifier will not check whether the filter modifies the class attribute (use with caution).
  * <p>
  *
+ * -num-slots &lt;num&gt; <br>
+ * Number of threads used for applying the filter.
+ * (default 1 - i.e. no parallelism, 0 - all available cores)
+ * <p>
+ *
  * -output-debug-info <br>
  * If set, classifier is run in debug mode and may output additional info to
  * the console.
@@ -163,6 +168,9 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
   /** Flag that can be set to true if class attribute is not to be checked for modifications by the filer. */
   protected boolean m_DoNotCheckForModifiedClassAttribute = false;
 
+  /** The number of threads used for applying the filter */
+  protected int m_NumExecutionSlots = 1;
+
   /** If the attributes are resampled, we store the filter for this */
   protected Reorder m_ReorderOriginal;
   protected Reorder m_ReorderFiltered;
@@ -417,6 +425,10 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
             "\tIf set, classifier will not check whether the filter modifies the class (use with caution).",
             "doNotCheckForModifiedClassAttribute", 0, "-doNotCheckForModifiedClassAttribute"));
 
+    newVector.addElement(new Option("\tNumber of threads used for applying the filter.\n"
+      + "\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+      "num-slots", 1, "-num-slots <num>"));
+
     newVector.addAll(Collections.list(super.listOptions()));
 
     if (getFilter() instanceof OptionHandler) {
@@ -456,6 +468,11 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
    * If this is set, the classifier will not check whether the filter modifies the class attribute (use with caution).
    * <p>
    *
+   * -num-slots &lt;num&gt; <br>
+   * Number of threads used for applying the filter.
+   * (default 1 - i.e. no parallelism, 0 - all available cores)
+   * <p>
+   *
    * -output-debug-info <br>
    * If set, classifier is run in debug mode and may output additional info to
    * the console.
@@ -553,6 +570,13 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
 
     setDoNotCheckForModifiedClassAttribute(Utils.getFlag("doNotCheckForModifiedClassAttribute", options));
 
+    String slotsS = Utils.getOption("num-slots", options);
+    if (slotsS.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsS));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -582,6 +606,38 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
     m_DoNotCheckForModifiedClassAttribute = flag;
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used for applying the filter "
+      + "to batches of instances, 0 uses all available cores. Only filters that "
+      + "convert instances independently of each other make use of it.";
+  }
+
+  /**
+   * Set the number of threads used for applying the filter.
+   *
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+
+    m_NumExecutionSlots = slots;
+  }
+
+  /**
+   * Get the number of threads used for applying the filter.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
   /**
    * Gets the current settings of the Classifier.
    *
@@ -598,6 +654,11 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
       options.add("-doNotCheckForModifiedClassAttribute");
     }
 
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
+
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[0]);
@@ -716,7 +777,7 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
     }
 
     m_Filter.setInputFormat(data); // filter capabilities are checked here
-    data = Filter.useFilter(data, m_Filter);
+    data = Filter.useFilter(data, m_Filter, m_NumExecutionSlots);
     if ((!classAttribute.equals(data.classAttribute())) && (!m_DoNotCheckForModifiedClassAttribute)) {
       throw new IllegalArgumentException("Cannot proceed: " + getFilterSpec() + " has modified the class attribute!");
     }
@@ -936,7 +997,8 @@ public class FilteredClassifier extends RandomizableSingleClassifierEnhancer
       if (m_ReorderOriginal != null) {
         insts = Filter.useFilter(insts, m_ReorderOriginal);
       }
-      Instances filteredInsts = Filter.useFilter(insts, m_Filter);
+      Instances filteredInsts = Filter.useFilter(insts, m_Filter,
+        m_NumExecutionSlots);
       if (filteredInsts.numInstances() != insts.numInstances()) {
         throw new WekaException(
           "FilteredClassifier: filter has returned more/less instances than required.");
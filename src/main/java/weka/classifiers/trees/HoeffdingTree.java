@@ -980,7 +980,7 @@ public class HoeffdingTree extends AbstractClassifier implements
       return "No model built yet!";
     }
 
-    return m_root.toString(m_printLeafModels);
+    return m_root.toString(m_printLeafModels, m_header.classAttribute());
   }
 
   /**
@@ -1010,7 +1010,7 @@ public class HoeffdingTree extends AbstractClassifier implements
     m_root.installNodeNums(0);
     StringBuffer buff = new StringBuffer();
     buff.append("digraph HoeffdingTree {\n");
-    m_root.graphTree(buff);
+    m_root.graphTree(buff, m_header.classAttribute());
     buff.append("}\n");
 
     return buff.toString();
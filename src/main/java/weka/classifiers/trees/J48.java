@@ -31,7 +31,9 @@ import weka.classifiers.trees.j48.BinC45ModelSelection;
 import weka.classifiers.trees.j48.C45ModelSelection;
 import weka.classifiers.trees.j48.C45PruneableClassifierTree;
 import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.CompactClassifierTree;
 import weka.classifiers.trees.j48.ModelSelection;
+import weka.classifiers.trees.j48.NumericBins;
 import weka.classifiers.trees.j48.PruneableClassifierTree;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Capabilities;
@@ -147,6 +149,13 @@ import weka.core.Capabilities.Capability;
  *  Do not make split point actual value.
  * </pre>
  * 
+ * <pre>
+ * -histogram-bins &lt;number of bins&gt;
+ *  Search for split points on histograms with at most this
+ *  number of bins per numeric attribute (0 = sort the data).
+ *  (default 0)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -204,6 +213,9 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
   /** Do not relocate split point to actual data value */
   protected boolean m_doNotMakeSplitPointActualValue;
 
+  /** Maximum number of bins for the histogram split search (0 = off) */
+  protected int m_histogramBins = 0;
+
   /**
    * Returns a string describing classifier
    * 
@@ -296,6 +308,9 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     if ((m_CF <= 0) || (m_CF >= 1)) {
       throw new Exception("Confidence has to be greater than zero and smaller than one!");
     }
+    if (m_binarySplits && (m_histogramBins != 0)) {
+      throw new Exception("Histogram split search is not available with binary splits!");
+    }
     getCapabilities().testWithFail(instances);
 
     ModelSelection modSelection;
@@ -306,6 +321,7 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     } else {
       modSelection = new C45ModelSelection(m_minNumObj, instances,
         m_useMDLcorrection, m_doNotMakeSplitPointActualValue);
+      ((C45ModelSelection) modSelection).setNumericBins(numericBins(instances));
     }
     if (!m_reducedErrorPruning) {
       m_root = new C45PruneableClassifierTree(modSelection, !m_unpruned, m_CF,
@@ -322,6 +338,21 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     }
   }
 
+  /**
+   * Returns the bins for the histogram split search on the given training
+   * data.
+   * 
+   * @param instances the training data
+   * @return the bins, or null if split points are searched for on sorted data
+   */
+  protected NumericBins numericBins(Instances instances) {
+
+    if (m_histogramBins == 0) {
+      return null;
+    }
+    return new NumericBins(instances, m_histogramBins);
+  }
+
   /**
    * Classifies an instance.
    * 
@@ -349,6 +380,33 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     return m_root.distributionForInstance(instance, m_useLaplace);
   }
 
+  /**
+   * Freezes the trained tree into a compact, immutable representation for
+   * prediction only, which drops the split models and the distributions of
+   * its nodes (see CompactClassifierTree). The predictions do not change and
+   * the text and graph of the tree are still available, but the tree can not
+   * be exported as source code afterwards.
+   * 
+   * @throws Exception if no model has been built or it can not be frozen
+   */
+  public void freeze() throws Exception {
+
+    if (m_root == null) {
+      throw new Exception("No model built yet!");
+    }
+    m_root = CompactClassifierTree.freeze(m_root);
+  }
+
+  /**
+   * Returns whether the trained tree has been frozen.
+   * 
+   * @return true if the tree has been frozen
+   */
+  public boolean isFrozen() {
+
+    return m_root instanceof CompactClassifierTree;
+  }
+
   /**
    * Returns the type of graph this classifier represents.
    * 
@@ -481,6 +539,11 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
       "\tSeed for random data shuffling (default 1).", "Q", 1, "-Q <seed>"));
     newVector.addElement(new Option("\tDo not make split point actual value.",
       "-doNotMakeSplitPointActualValue", 0, "-doNotMakeSplitPointActualValue"));
+    newVector.addElement(new Option(
+      "\tSearch for split points on histograms with at most this\n"
+        + "\tnumber of bins per numeric attribute (0 = sort the data).\n"
+        + "\t(default 0)", "histogram-bins", 1,
+      "-histogram-bins <number of bins>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -562,6 +625,13 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
    *  Do not make split point actual value.
    * </pre>
    * 
+   * <pre>
+   * -histogram-bins &lt;number of bins&gt;
+   *  Search for split points on histograms with at most this
+   *  number of bins per numeric attribute (0 = sort the data).
+   *  (default 0)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -606,6 +676,12 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     } else {
       m_Seed = 1;
     }
+    String binsString = Utils.getOption("histogram-bins", options);
+    if (binsString.length() != 0) {
+      setHistogramBins(Integer.parseInt(binsString));
+    } else {
+      m_histogramBins = 0;
+    }
 
     super.setOptions(options);
   }
@@ -671,6 +747,10 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     if (m_doNotMakeSplitPointActualValue) {
       options.add("-doNotMakeSplitPointActualValue");
     }
+    if (m_histogramBins != 0) {
+      options.add("-histogram-bins");
+      options.add("" + m_histogramBins);
+    }
     if (m_reducedErrorPruning) {
       options.add("-N");
       options.add("" + m_numFolds);
@@ -1214,6 +1294,40 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     this.m_doNotMakeSplitPointActualValue = m_doNotMakeSplitPointActualValue;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String histogramBinsTipText() {
+    return "If greater than zero, numeric attributes are quantized once into at most"
+      + " this many bins of equal frequency and split points are only searched for"
+      + " between bins, on per-class histograms, instead of sorting the data at each"
+      + " node. Faster on large datasets, but the trees may differ slightly.";
+  }
+
+  /**
+   * Gets the maximum number of bins for the histogram split search.
+   * 
+   * @return the number of bins (0 if the data is sorted)
+   */
+  public int getHistogramBins() {
+    return m_histogramBins;
+  }
+
+  /**
+   * Sets the maximum number of bins for the histogram split search.
+   * 
+   * @param value the number of bins, at least 2 (0 to sort the data)
+   */
+  public void setHistogramBins(int value) {
+    if ((value < 0) || (value == 1)) {
+      throw new IllegalArgumentException("Number of histogram bins must be 0 or at least 2!");
+    }
+    m_histogramBins = value;
+  }
+
   /**
    * Returns the revision string.
    * 
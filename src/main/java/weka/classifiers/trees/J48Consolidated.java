@@ -24,6 +24,7 @@
 
 package weka.classifiers.trees;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Random;
@@ -33,8 +34,10 @@ import weka.classifiers.Sourcable;
 import weka.classifiers.trees.j48.C45ModelSelection;
 import weka.classifiers.trees.j48.ModelSelection;
 import weka.classifiers.trees.j48Consolidated.C45ConsolidatedModelSelection;
+import weka.classifiers.trees.j48Consolidated.ClassBucketedResampler;
 import weka.classifiers.trees.j48Consolidated.C45ConsolidatedPruneableClassifierTree;
 import weka.classifiers.trees.j48Consolidated.InstancesConsolidated;
+import weka.classifiers.trees.j48Consolidated.SampleCache;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Drawable;
 import weka.core.Instances;
@@ -155,6 +158,13 @@ import weka.gui.ProgrammaticProperty;
  *  Do not make split point actual value.
  * </pre>
  * 
+ * <pre>
+ * -histogram-bins &lt;number of bins&gt;
+ *  Search for split points on histograms with at most this
+ *  number of bins per numeric attribute (0 = sort the data).
+ *  (default 0)
+ * </pre>
+ * 
  * Options to set the Resampling Method (RM) for the generation of samples
  *  to use in the consolidation process <br/>
  * =============================================================================================== 
@@ -192,6 +202,20 @@ import weka.gui.ProgrammaticProperty;
  *  * -2 (stratified): Maintains the original class distribution in the new samples
  *  (default 50.0 for Balanced samples (or -1 for Bootstrap))</pre>
  * 
+ * <pre> -RM-cache
+ *  Determines that the set of samples is shared through the sample cache with other
+ *  schemes using the same training data and resampling options.
+ *  (default: not shared)</pre>
+ * 
+ * <pre> -RM-bucketed
+ *  Determines that the samples are generated from the positions of the instances of each class,
+ *  drawing each sample with its own stream of random numbers, instead of the original way.
+ *  (default: original)</pre>
+ * 
+ * <pre> -RM-num-slots &lt;num&gt;
+ *  Number of threads to generate the samples with, when -RM-bucketed is set.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
 <!-- options-end -->
  *
  * @author Jes&uacute;s M. P&eacute;rez (txus.perez@ehu.eus)
@@ -279,6 +303,20 @@ TechnicalInformationHandler {
 	 *  * -2 (stratified): Maintains the original class distribution in the new samples */
 	protected float m_RMnewDistrMinClass = (float)50.0; // for Balanced samples
 
+	/** Determines whether the sample vector is shared through the SampleCache with other schemes
+	 *  using the same training data and resampling options */
+	protected boolean m_RMuseSampleCache = false;
+
+	/** Determines whether the samples are generated from the positions of the instances of each class
+	 *  with the ClassBucketedResampler, instead of the original way */
+	protected boolean m_RMbucketedResampling = false;
+
+	/** Number of threads to generate the samples with the ClassBucketedResampler */
+	protected int m_RMnumExecutionSlots = 1;
+
+	/** Whether the last sample vector was taken from the SampleCache */
+	protected boolean m_samplesFromCache = false;
+
 	/**
 	 * Returns a string describing the classifier
 	 * @return a description suitable for
@@ -357,6 +395,7 @@ TechnicalInformationHandler {
 		ModelSelection modSelection;
 		// TODO Implement the option binarySplits of J48
 		modSelection = new C45ConsolidatedModelSelection(m_minNumObj, instances, m_useMDLcorrection, m_doNotMakeSplitPointActualValue);
+		((C45ModelSelection) modSelection).setNumericBins(numericBins(instances));
 		// TODO Implement the option reducedErrorPruning of J48
 		m_root = new C45ConsolidatedPruneableClassifierTree(modSelection, !m_unpruned,
 				m_CF, m_subtreeRaising, !m_noCleanup, m_collapseTree);
@@ -388,15 +427,44 @@ TechnicalInformationHandler {
 		// can classifier tree handle the data?
 		getCapabilities().testWithFail(instances);
 
-		// remove instances with missing class
-		InstancesConsolidated instancesWMC = new InstancesConsolidated(instances);
-		instancesWMC.deleteWithMissingClass();
 		if (m_Debug) {
 			System.out.println("=== Generation of the set of samples ===");
 			System.out.println(toStringResamplingMethod());
 		}
 		timeStart = System.currentTimeMillis();
 
+		// Reuse the samples generated by any other scheme with the same data and resampling options
+		String cacheKey = null;
+		int messageLength = m_stExceptionalSituationsMessage.length();
+		m_samplesFromCache = false;
+		if (m_RMuseSampleCache) {
+			cacheKey = SampleCache.fingerprint(instances) + resamplingKey();
+			SampleCache.Entry entry = SampleCache.get(cacheKey);
+			if (entry != null) {
+				samplesVector = entry.samples(instances);
+				m_numberSamplesByCoverage = entry.getNumberSamplesByCoverage();
+				m_trueCoverage = entry.getTrueCoverage();
+				m_stExceptionalSituationsMessage += entry.getExceptionalSituationsMessage();
+				m_samplesFromCache = true;
+				timeElapsed = System.currentTimeMillis() - timeStart;
+				m_elapsedTimeResampling = timeElapsed / 1000.0;
+				if (m_Debug) {
+					System.out.println("Sample vector taken from the cache (" + samplesVector.length + " samples)");
+					System.out.println("=== End of Generation of the set of samples ===");
+				}
+				return samplesVector;
+			}
+		}
+
+		// remove instances with missing class
+		InstancesConsolidated instancesWMC;
+		if (m_RMuseSampleCache)
+			// the instances remember their index in order to store the samples as indices
+			instancesWMC = SampleCache.indexed(instances);
+		else
+			instancesWMC = new InstancesConsolidated(instances);
+		instancesWMC.deleteWithMissingClass();
+
 		/** Original sample size */
 		int dataSize = instancesWMC.numInstances();
 		if(dataSize==0)
@@ -438,8 +506,15 @@ TechnicalInformationHandler {
 		else
 			// RMnewDistrMinClass is between 0 and 100: Changes the class distribution to the indicated value
 			samplesVector = generateSamplesChangingMinClassDistr(instancesWMC, dataSize, bagSize, random);
+		if (m_RMuseSampleCache) {
+			SampleCache.Entry entry = new SampleCache.Entry(instances, samplesVector, m_numberSamplesByCoverage,
+					m_trueCoverage, m_stExceptionalSituationsMessage.substring(messageLength));
+			SampleCache.put(cacheKey, entry);
+			// the samples are made of the instances of the training data, as when taken from the cache
+			samplesVector = entry.samples(instances);
+		}
 		timeElapsed = System.currentTimeMillis() - timeStart;
-		m_elapsedTimeResampling = timeElapsed / (double)1000.0;
+		m_elapsedTimeResampling = timeElapsed / 1000.0;
 		if (m_Debug) {
 			System.out.println("Time taken to generate the sample vector: " + Utils.doubleToString(timeElapsed / 1000.0, 2) + " seconds\n");
 			System.out.println("=== End of Generation of the set of samples ===");
@@ -447,6 +522,57 @@ TechnicalInformationHandler {
 		return samplesVector;
 	}
 
+	/**
+	 * Generates a given number of additional samples based on Resampling Method parameters,
+	 * but with the given seed, e.g. to extend an already built classifier. The information
+	 * about the set of samples the classifier was built with (coverage, exceptional
+	 * situations, elapsed time...) is left unchanged.
+	 *
+	 * @param instances the training data which will be used to generate the sample set
+	 * @param numberSamples the number of samples to be generated
+	 * @param seed the seed for the random generation of the samples
+	 * @return Instances[] the vector of generated samples
+	 * @throws Exception if something goes wrong
+	 */
+	protected Instances[] generateAdditionalSamples(Instances instances, int numberSamples, int seed) throws Exception {
+		int numberSamplesHowToSet = m_RMnumberSamplesHowToSet;
+		float RMnumberSamples = m_RMnumberSamples;
+		int originalSeed = m_Seed;
+		int numberSamplesByCoverage = m_numberSamplesByCoverage;
+		double trueCoverage = m_trueCoverage;
+		String exceptionalSituationsMessage = m_stExceptionalSituationsMessage;
+		double elapsedTimeResampling = m_elapsedTimeResampling;
+		boolean samplesFromCache = m_samplesFromCache;
+		try {
+			m_RMnumberSamplesHowToSet = NumberSamples_FixedValue;
+			m_RMnumberSamples = numberSamples;
+			m_Seed = seed;
+			return generateSamples(instances);
+		} finally {
+			m_RMnumberSamplesHowToSet = numberSamplesHowToSet;
+			m_RMnumberSamples = RMnumberSamples;
+			m_Seed = originalSeed;
+			m_numberSamplesByCoverage = numberSamplesByCoverage;
+			m_trueCoverage = trueCoverage;
+			m_stExceptionalSituationsMessage = exceptionalSituationsMessage;
+			m_elapsedTimeResampling = elapsedTimeResampling;
+			m_samplesFromCache = samplesFromCache;
+		}
+	}
+
+	/**
+	 * Returns a key identifying the options that determine the generated samples
+	 * (together with the training data) to look them up in the SampleCache.
+	 * 
+	 * @return the key
+	 */
+	protected String resamplingKey() {
+		return ":Q" + m_Seed + ":N" + m_RMnumberSamplesHowToSet + "," + m_RMnumberSamples
+				+ ":R" + m_RMreplacement + ":B" + m_RMbagSizePercent + ":D" + m_RMnewDistrMinClass
+				+ ":M" + m_minNumObj + "," + m_minExamplesPerClassPercent + "," + m_bagSizePercentToReduce
+				+ (m_RMbucketedResampling ? ":K" : "");
+	}
+
 	/**
 	 * Generate a set of stratified samples
 	 * 
@@ -460,11 +586,11 @@ TechnicalInformationHandler {
 	private Instances[] generateStratifiedSamples(
 			InstancesConsolidated instances, int dataSize, int bagSize, Random random) throws Exception{
 		int numClasses = instances.numClasses();
-		// Get the classes
-		InstancesConsolidated[] classesVector =  instances.getClasses();
+		// Get the positions of the instances of each class
+		int[][] classRows = instances.getClassRows();
 		// What is the minority class?
 		/** Vector containing the size of each class */
-		int classSizeVector[] = instances.getClassesSize(classesVector);
+		int classSizeVector[] = InstancesConsolidated.getClassesSize(classRows);
 		/** Index of the minority class in the original sample */
 		int iMinClass = Utils.minIndex(classSizeVector);
 		if (m_Debug)
@@ -567,6 +693,14 @@ TechnicalInformationHandler {
 			m_trueCoverage += ratioClassDistr * trueCoverageByClass;
 		}
 
+		if (m_RMbucketedResampling)
+			return new ClassBucketedResampler(instances, classRows, newClassSizeVector, m_RMreplacement).
+					samples(numberSamples, random.nextLong(), m_RMnumExecutionSlots);
+
+		// Get the classes
+		InstancesConsolidated[] classesVector =  instances.getClasses(classRows);
+		classRows = null;
+
 		// Set the size of the samples' vector 
 		Instances[] samplesVector = new Instances[numberSamples];
 
@@ -658,6 +792,15 @@ TechnicalInformationHandler {
 		else
 			m_trueCoverage = 1 - Math.pow((1 - bagBySampleRatio), numberSamples);
 
+		if (m_RMbucketedResampling) {
+			// The whole training data as a single bucket
+			int[] rows = new int[dataSize];
+			for (int i = 0; i < dataSize; i++)
+				rows[i] = i;
+			return new ClassBucketedResampler(instances, new int[][] {rows}, new int[] {bagSize}, m_RMreplacement).
+					samples(numberSamples, random.nextLong(), m_RMnumExecutionSlots);
+		}
+
 		// Set the size of the samples' vector 
 		Instances[] samplesVector = new Instances[numberSamples];
 
@@ -703,12 +846,12 @@ TechnicalInformationHandler {
 		//@ requires m_RMreplacement = false 
 		// TODO Accept replacement
 
-		// Get the classes
-		InstancesConsolidated[] classesVector =  instances.getClasses();
+		// Get the positions of the instances of each class
+		int[][] classRows = instances.getClassRows();
 
 		// What is the minority class?
 		/** Vector containing the size of each class */
-		int classSizeVector[] = instances.getClassesSize(classesVector);
+		int classSizeVector[] = InstancesConsolidated.getClassesSize(classRows);
 		/** Index of the minority class in the original sample */
 		int iMinClass, i_iMinClass;
 		/** Prevent the minority class from being empty (we hope there is one non-empty!) */
@@ -753,13 +896,12 @@ TechnicalInformationHandler {
 						"It will be oversampled ranmdoly up to " + minExamplesPerClass + "!!!");
 				m_stExceptionalSituationsMessage += " (*) Forced the " + iClass + "-th class to be oversampled!!!\n";
 				// based on the code of the function 'resample(Random)' of the class 'Instances'
-				InstancesConsolidated bagClass = classesVector[iClass];
-				while (bagClass.numInstances() < minExamplesPerClass) {
-					bagClass.add(classesVector[iClass].instance(random.nextInt(classSizeVector[iClass])));
-				}
+				int[] bagClassRows = Arrays.copyOf(classRows[iClass], minExamplesPerClass);
+				for (int i = classSizeVector[iClass]; i < minExamplesPerClass; i++)
+					bagClassRows[i] = classRows[iClass][random.nextInt(classSizeVector[iClass])];
 				// Update the vectors with classes' information and the new data size
 				dataSize = dataSize - classSizeVector[iClass] + minExamplesPerClass; 
-				classesVector[iClass] = bagClass;
+				classRows[iClass] = bagClassRows;
 				classSizeVector[iClass] = minExamplesPerClass;
 			}
 		}
@@ -951,6 +1093,14 @@ TechnicalInformationHandler {
 			m_trueCoverage += ratioClassDistr * trueCoverageByClass;
 		}
 
+		if (m_RMbucketedResampling)
+			return new ClassBucketedResampler(instances, classRows, newClassSizeVector, m_RMreplacement).
+					samples(numberSamples, random.nextLong(), m_RMnumExecutionSlots);
+
+		// Get the classes
+		InstancesConsolidated[] classesVector =  instances.getClasses(classRows);
+		classRows = null;
+
 		// Set the size of the samples' vector 
 		Instances[] samplesVector = new Instances[numberSamples];
 
@@ -1052,6 +1202,20 @@ TechnicalInformationHandler {
 	 *  * -2 (stratified): Maintains the original class distribution in the new samples
 	 *  (default 50.0 for Balanced samples (or -1 for Bootstrap))</pre>
 	 * 
+	 * <pre> -RM-cache
+	 *  Determines that the set of samples is shared through the sample cache with other
+	 *  schemes using the same training data and resampling options.
+	 *  (default: not shared)</pre>
+	 * 
+	 * <pre> -RM-bucketed
+	 *  Determines that the samples are generated from the positions of the instances of each class,
+	 *  drawing each sample with its own stream of random numbers, instead of the original way.
+	 *  (default: original)</pre>
+	 * 
+	 * <pre> -RM-num-slots &lt;num&gt;
+	 *  Number of threads to generate the samples with, when -RM-bucketed is set.
+	 *  (default 1 - i.e. no parallelism)</pre>
+	 * 
 	 * @return an enumeration of all the available options.
 	 */
 	public Enumeration<Option> listOptions() {
@@ -1107,6 +1271,20 @@ TechnicalInformationHandler {
 						"\t              new samples\n" +
 						"\t(default 50.0 for Balanced samples (use -1 for Bootstrap))",
 						"RM-D", 1, "-RM-D <distribution minority class>"));
+		newVector.
+		addElement(new Option("\tShare the set of samples with other schemes using the same\n" +
+				"\ttraining data and resampling options through the sample cache\n" +
+				"\t(default: not shared)",
+				"RM-cache", 0, "-RM-cache"));
+		newVector.
+		addElement(new Option("\tGenerate the samples from the positions of the instances of each\n" +
+				"\tclass, drawing each sample with its own stream of random numbers\n" +
+				"\t(default: the original way)",
+				"RM-bucketed", 0, "-RM-bucketed"));
+		newVector.
+		addElement(new Option("\tNumber of threads to generate the samples with, when -RM-bucketed is set\n" +
+				"\t(default 1 - i.e. no parallelism)",
+				"RM-num-slots", 1, "-RM-num-slots <num>"));
 
 		return newVector.elements();
 	}
@@ -1156,6 +1334,20 @@ TechnicalInformationHandler {
 	 *  * -1 (free): Works with the instances without taking into account their class  
 	 *  * -2 (stratified): Maintains the original class distribution in the new samples
 	 *  (default 50.0 for Balanced samples (or -1 for Bootstrap))</pre>
+	 * 
+	 * <pre> -RM-cache
+	 *  Determines that the set of samples is shared through the sample cache with other
+	 *  schemes using the same training data and resampling options.
+	 *  (default: not shared)</pre>
+	 * 
+	 * <pre> -RM-bucketed
+	 *  Determines that the samples are generated from the positions of the instances of each class,
+	 *  drawing each sample with its own stream of random numbers, instead of the original way.
+	 *  (default: original)</pre>
+	 * 
+	 * <pre> -RM-num-slots &lt;num&gt;
+	 *  Number of threads to generate the samples with, when -RM-bucketed is set.
+	 *  (default 1 - i.e. no parallelism)</pre>
 	 *   
    <!-- options-end -->
 	 *
@@ -1194,6 +1386,13 @@ TechnicalInformationHandler {
 		// Only checking the combinations of the three options RMreplacement, RMbagSizePercent and
 		//  RMnewDistrMinClass when they all are set.
 		setRMreplacement(Utils.getFlag("RM-R", options), true);
+		setRMuseSampleCache(Utils.getFlag("RM-cache", options));
+		setRMbucketedResampling(Utils.getFlag("RM-bucketed", options));
+		String RMnumExecutionSlotsString = Utils.getOption("RM-num-slots", options);
+		if (RMnumExecutionSlotsString.length() != 0)
+			setRMnumExecutionSlots(Integer.parseInt(RMnumExecutionSlotsString));
+		else
+			setRMnumExecutionSlots(1);
 		// J48 options
 		// ===========
 		super.setOptions(options);
@@ -1231,6 +1430,14 @@ TechnicalInformationHandler {
 		result.add("" + m_RMbagSizePercent);
 		result.add("-RM-D");
 		result.add("" + m_RMnewDistrMinClass);
+		if (m_RMuseSampleCache)
+			result.add("-RM-cache");
+		if (m_RMbucketedResampling)
+			result.add("-RM-bucketed");
+		if (m_RMnumExecutionSlots != 1) {
+			result.add("-RM-num-slots");
+			result.add("" + m_RMnumExecutionSlots);
+		}
 
 		return (String[]) result.toArray(new String[result.size()]);	  
 	}
@@ -1436,6 +1643,100 @@ TechnicalInformationHandler {
 		m_RMreplacement = v;
 	}
 
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String RMuseSampleCacheTipText() {
+		return "Whether the set of samples is shared, through a process-wide cache, with other schemes\n" +
+				" using the same training data and resampling options (default false)";
+	}
+
+	/**
+	 * Get the value of RMuseSampleCache
+	 *
+	 * @return Value of RMuseSampleCache
+	 */
+	public boolean getRMuseSampleCache() {
+
+		return m_RMuseSampleCache;
+	}
+
+	/**
+	 * Set the value of RMuseSampleCache
+	 *
+	 * @param v  Value to assign to RMuseSampleCache.
+	 */
+	public void setRMuseSampleCache(boolean v) {
+
+		m_RMuseSampleCache = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String RMbucketedResamplingTipText() {
+		return "Whether the samples are generated from the positions of the instances of each class,\n" +
+				" drawing each sample with its own stream of random numbers (the samples are different\n" +
+				" from the ones generated in the original way) (default false)";
+	}
+
+	/**
+	 * Get the value of RMbucketedResampling
+	 *
+	 * @return Value of RMbucketedResampling
+	 */
+	public boolean getRMbucketedResampling() {
+
+		return m_RMbucketedResampling;
+	}
+
+	/**
+	 * Set the value of RMbucketedResampling
+	 *
+	 * @param v  Value to assign to RMbucketedResampling.
+	 */
+	public void setRMbucketedResampling(boolean v) {
+
+		m_RMbucketedResampling = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String RMnumExecutionSlotsTipText() {
+		return "Number of threads to generate the samples with, when RMbucketedResampling is set\n" +
+				" (the samples do not depend on it) (default 1)";
+	}
+
+	/**
+	 * Get the value of RMnumExecutionSlots
+	 *
+	 * @return Value of RMnumExecutionSlots
+	 */
+	public int getRMnumExecutionSlots() {
+
+		return m_RMnumExecutionSlots;
+	}
+
+	/**
+	 * Set the value of RMnumExecutionSlots
+	 *
+	 * @param v  Value to assign to RMnumExecutionSlots.
+	 * @throws IllegalArgumentException if the value is smaller than 1
+	 */
+	public void setRMnumExecutionSlots(int v) {
+
+		if (v < 1)
+			throw new IllegalArgumentException("The number of threads to generate the samples has to be at least 1!");
+		m_RMnumExecutionSlots = v;
+	}
+
 	/**
 	 * Returns the tip text for this property
 	 * @return tip text for this property suitable for
@@ -1673,6 +1974,16 @@ TechnicalInformationHandler {
 		return m_elapsedTimeResampling;
 	}
 
+	/**
+	 * Returns whether the sample vector for the consolidated tree was taken
+	 * from the sample cache (1) or generated (0).
+	 * 
+	 * @return 1 if the samples were reused, 0 otherwise
+	 */
+	public double measureSamplesFromCache() {
+		return m_samplesFromCache ? 1 : 0;
+	}
+
 	/**
 	 * Returns an enumeration of the additional measure names
 	 * produced by the J48 algorithm, plus the true coverage achieved
@@ -1688,6 +1999,7 @@ TechnicalInformationHandler {
 		measures.add("measureNumberSamplesByCoverage");
 		measures.add("measureTrueCoverage");
 		measures.add("measureElapsedTimeResampling");
+		measures.add("measureSamplesFromCache");
 		return measures.elements();
 	}
 
@@ -1706,6 +2018,8 @@ TechnicalInformationHandler {
 			return measureNumberSamplesByCoverage();
 		} else if (additionalMeasureName.compareToIgnoreCase("measureElapsedTimeResampling") == 0) {
 			return measureElapsedTimeResampling();
+		} else if (additionalMeasureName.compareToIgnoreCase("measureSamplesFromCache") == 0) {
+			return measureSamplesFromCache();
 		} else
 			throw new IllegalArgumentException(additionalMeasureName 
 					+ " not supported (J48Consolidated)");
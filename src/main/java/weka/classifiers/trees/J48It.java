@@ -78,6 +78,9 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 	
 	private int m_ITpriorityCriteria = Original;
 
+	/** Number of threads to evaluate the splits of the nodes speculatively (1 = no parallelism) */
+	protected int m_ITnumExecutionSlots = 1;
+
 	/**
 	 * Generates the classifier.
 	 * 
@@ -109,6 +112,9 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 		if ((m_CF <= 0) || (m_CF >= 1)) {
 			throw new Exception("Confidence has to be greater than zero and smaller than one!");
 		}
+		if (m_binarySplits && (m_histogramBins != 0)) {
+			throw new Exception("Histogram split search is not available with binary splits!");
+		}
 		getCapabilities().testWithFail(instances);
 
 		ModelSelection modSelection;
@@ -119,10 +125,12 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 		} else {
 			modSelection = new C45ModelSelection(m_minNumObj, instances, m_useMDLcorrection,
 					m_doNotMakeSplitPointActualValue);
+			((C45ModelSelection) modSelection).setNumericBins(numericBins(instances));
 		}
 		if (!m_reducedErrorPruning) {
 			m_root = new C45ItPruneableClassifierTree(modSelection, !m_unpruned, m_CF, m_subtreeRaising, !m_noCleanup,
 					m_collapseTree, m_ITmaximumCriteria, m_ITpriorityCriteria);
+			((C45ItPruneableClassifierTree) m_root).setNumExecutionSlots(m_ITnumExecutionSlots);
 		} else {
 			m_root = new PruneableClassifierTree(modSelection, !m_unpruned, m_numFolds, !m_noCleanup, m_Seed);
 		}
@@ -163,6 +171,8 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 		newVector.addElement(new Option("\tBuild the tree ordered by size.", "IT-PS", 0, "-IT-PS"));
 		newVector.addElement(new Option("\tBuild the tree ordered by gainratio.", "IT-PG", 0, "-IT-PG"));
 		newVector.addElement(new Option("\tBuild the tree ordered by normalized gainratio.", "IT-PGN", 0, "-IT-PGN"));
+		newVector.addElement(new Option("\tNumber of threads to evaluate the splits of the nodes to be developed.\n"
+				+ "\t(default 1 - i.e. no parallelism)", "IT-num-slots", 1, "-IT-num-slots <num>"));
 		
 		newVector.addAll(Collections.list(super.listOptions()));
 		return newVector.elements();
@@ -184,6 +194,8 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 	 * Build the tree with a maximum number of levels or nodes.
 	 * -IT-P <br>
 	 * Build the tree ordered by a criteria.
+	 * -IT-num-slots <br>
+	 * Number of threads to evaluate the splits of the nodes to be developed.
 	 * <p>
 	 * 
 	 * 
@@ -210,6 +222,13 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 			setITpriorityCriteria(new SelectedTag(Gainratio, TAGS_WAYS_TO_SET_PRIORITY_CRITERIA));
 		else if (Utils.getFlag("IT-PGR", options))
 			setITpriorityCriteria(new SelectedTag(Gainratio_normalized, TAGS_WAYS_TO_SET_PRIORITY_CRITERIA));
+
+		String numSlots = Utils.getOption("IT-num-slots", options);
+		if (numSlots.length() != 0) {
+			setITnumExecutionSlots(Integer.parseInt(numSlots));
+		} else {
+			setITnumExecutionSlots(1);
+		}
 		
 		super.setOptions(options);
 	}
@@ -234,6 +253,9 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 	    else if (m_ITpriorityCriteria == 3) options.add("-IT-PS");
 	    else if (m_ITpriorityCriteria == 4) options.add("-IT-PG");
 	    else if (m_ITpriorityCriteria == 5) options.add("-IT-PGR");
+
+	    options.add("-IT-num-slots");
+	    options.add("" + m_ITnumExecutionSlots);
 	    
 		return options.toArray(new String[0]);
 	}
@@ -305,4 +327,31 @@ public class J48It extends J48 implements OptionHandler, Drawable, Matchable, So
 		}
 	}
 
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for displaying in the
+	 *         explorer/experimenter gui
+	 */
+	public String ITnumExecutionSlotsTipText() {
+		return "The number of threads to evaluate the splits of the nodes to be developed speculatively, "
+				+ "as soon as they are added to the list of nodes to be processed (1 = no parallelism)";
+	}
+
+	/**
+	 * Get the value of ITnumExecutionSlots.
+	 * @return Value of ITnumExecutionSlots.
+	 */
+	public int getITnumExecutionSlots() {
+		return m_ITnumExecutionSlots;
+	}
+
+	/**
+	 * Set the value of ITnumExecutionSlots.
+	 * @param numSlots Value to assign to ITnumExecutionSlots.
+	 */
+	public void setITnumExecutionSlots(int numSlots) {
+		if (numSlots < 1)
+			throw new IllegalArgumentException("The number of execution slots has to be at least 1!");
+		m_ITnumExecutionSlots = numSlots;
+	}
 }
\ No newline at end of file
@@ -29,19 +29,26 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
 
 import weka.classifiers.Sourcable;
 import weka.classifiers.trees.j48.C45ModelSelection;
 import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.CompactClassifierTree;
 import weka.classifiers.trees.j48.ModelSelection;
+import weka.classifiers.trees.j48.NumericBins;
 import weka.classifiers.trees.j48Consolidated.C45ConsolidatedModelSelection;
+import weka.classifiers.trees.j48Consolidated.SampleCache;
+import weka.classifiers.trees.j48Consolidated.SamplePartitionStore;
 import weka.classifiers.trees.j48PartiallyConsolidated.C45ItGainPartiallyConsolidatedPruneableClassifierTree;
 import weka.classifiers.trees.j48PartiallyConsolidated.C45ItLevelPartiallyConsolidatedPruneableClassifierTree;
 import weka.classifiers.trees.j48PartiallyConsolidated.C45ItPartiallyConsolidatedPruneableClassifierTree;
 import weka.classifiers.trees.j48PartiallyConsolidated.C45ItSizePartiallyConsolidatedPruneableClassifierTree;
 import weka.classifiers.trees.j48PartiallyConsolidated.C45ModelSelectionExtended;
 import weka.classifiers.trees.j48PartiallyConsolidated.C45PartiallyConsolidatedPruneableClassifierTree;
+import weka.classifiers.trees.j48PartiallyConsolidated.TrainingProfile;
+import weka.classifiers.trees.j48PartiallyConsolidated.TrainingProfileListener;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Drawable;
 import weka.core.Instance;
@@ -249,6 +256,20 @@ import weka.core.TechnicalInformation.Type;
  *  * -2 (stratified): Maintains the original class distribution in the new samples
  *  (default -1 for Bootstrap (use 50.0 for Balanced samples))</pre>
  * 
+ * <pre> -RM-cache
+ *  Determines that the set of samples is shared through the sample cache with other
+ *  schemes using the same training data and resampling options.
+ *  (default: not shared)</pre>
+ * 
+ * <pre> -RM-bucketed
+ *  Determines that the samples are generated from the positions of the instances of each class,
+ *  drawing each sample with its own stream of random numbers, instead of the original way.
+ *  (default: original)</pre>
+ * 
+ * <pre> -RM-num-slots &lt;num&gt;
+ *  Number of threads to generate the samples with, when -RM-bucketed is set.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * Options to Partially Consolidated Tree-Bagging (PCTBagging) multiple classifier<br/>
  * ============================================================================ 
  * <pre>-PCTB-C consolidation percent (or number of inner nodes) 
@@ -294,6 +315,13 @@ import weka.core.TechnicalInformation.Type;
  * the partially consolidated tree (or not). 
  * (Default: true)</pre>
  * 
+ * <pre>-PCTB-MB size
+ * Memory budget, in MB, for the partitions of the samples in the nodes while the
+ * partial consolidated tree is developed; the exceeding ones are spilled to a
+ * temporary file (0 = no limit). The samples at the root are always kept in memory.
+ * It can not be used with the Original priority criteria or without cleanup (-L).
+ * (Default: 0)</pre>
+ * 
  * <pre>-PCTB-V mode
  * Determines how many base trees will be shown:
  * None, only the first ten (if they exist) or all.  
@@ -437,6 +465,11 @@ public class J48PartiallyConsolidated
 	 */
 	protected boolean m_PCTBpruneBaseTreesWithoutPreservingConsolidatedStructure = true;
 
+	/** Memory budget, in MB, for the partitions of the samples in the nodes while the partial
+	 * consolidated tree is developed (0 = no limit). When the budget is exceeded, the partitions
+	 * are spilled to a temporary file as rows of the training data and reloaded on demand. */
+	protected double m_PCTBmemoryBudget = 0;
+
 	/** Visualize the base trees: None, only the first ten (if they exist) or all */
 	protected int m_PCTBvisualizeBaseTrees = Visualize_FirstOnes;
 
@@ -449,6 +482,12 @@ public class J48PartiallyConsolidated
 	 * */
 	protected ClassifierTree[] m_Classifiers;
 
+	/** Profile of the phases of the last training */
+	protected TrainingProfile m_trainingProfile;
+
+	/** Listeners that receive the profile of each training */
+	protected transient List<TrainingProfileListener> m_trainingProfileListeners;
+
 	public J48PartiallyConsolidated() {
 		super();
 		/* Initialising the J48Consolidated options to configure the resampling method (RM) 
@@ -532,9 +571,27 @@ public class J48PartiallyConsolidated
 		// remove instances with missing class before generate samples
 		instances = new Instances(instances);
 		instances.deleteWithMissingClass();
+
+		// The partitions of the samples can only be spilled as rows of the training data,
+		// and they have to be released (cleaned up) before the temporary file is deleted
+		SamplePartitionStore partitionStore = null;
+		if (m_PCTBmemoryBudget > 0) {
+			if (m_PCTBpriorityCriteria == PriorCrit_Original)
+				throw new Exception("The memoryBudget option was not implemented, when priority criteria is equal to Original!");
+			if (m_noCleanup)
+				throw new Exception("The memoryBudget option can not be used if the trees are not cleaned up (noCleanup)!");
+			instances = SampleCache.indexed(instances);
+			partitionStore = new SamplePartitionStore(instances, (long)(m_PCTBmemoryBudget * 1024 * 1024));
+		}
 		
 		//Generate as many samples as the number of samples with the given instances
+		TrainingProfile profile = new TrainingProfile();
+		profile.begin(TrainingProfile.PHASE_RESAMPLING);
 		Instances[] samplesVector = generateSamples(instances);
+		long sampledInstances = 0;
+		for (Instances sample : samplesVector)
+			sampledInstances += sample.numInstances();
+		profile.end(TrainingProfile.PHASE_RESAMPLING, 0, samplesVector.length, sampledInstances);
 	    //if (m_Debug)
 	    //	printSamplesVector(samplesVector);
 
@@ -546,6 +603,9 @@ public class J48PartiallyConsolidated
 		/** Set the model selection method to force the consolidated decision in each base tree*/
 		C45ModelSelectionExtended baseModelToForceDecision = new C45ModelSelectionExtended(m_minNumObj, instances, 
 				m_useMDLcorrection, m_doNotMakeSplitPointActualValue);
+		NumericBins bins = numericBins(instances);
+		((C45ModelSelection) modSelection).setNumericBins(bins);
+		baseModelToForceDecision.setNumericBins(bins);
 		// TODO Implement the option reducedErrorPruning of J48
 		C45PartiallyConsolidatedPruneableClassifierTree localClassifier;
 		switch (m_PCTBpriorityCriteria) {
@@ -600,16 +660,149 @@ public class J48PartiallyConsolidated
 						m_PCTBpriorityCriteria, m_PCTBheuristicSearchAlgorithm, !m_PCTBunprunedCT, m_PCTBcollapseCT,
 						m_PCTBpruneBaseTreesWithoutPreservingConsolidatedStructure);
 		}
-		localClassifier.buildClassifier(instances, samplesVector, m_PCTBconsolidationPercent);
+		localClassifier.setTrainingProfile(profile);
+		localClassifier.setDebug(m_Debug);
+		if (partitionStore != null) {
+			C45ItPartiallyConsolidatedPruneableClassifierTree itClassifier =
+					(C45ItPartiallyConsolidatedPruneableClassifierTree) localClassifier;
+			itClassifier.setPartitionStore(partitionStore);
+			try {
+				localClassifier.buildClassifier(instances, samplesVector, m_PCTBconsolidationPercent);
+			} finally {
+				itClassifier.setPartitionStore(null);
+				if (m_Debug)
+					System.out.println(partitionStore);
+				partitionStore.close();
+			}
+		} else
+			localClassifier.buildClassifier(instances, samplesVector, m_PCTBconsolidationPercent);
 
 		m_root = localClassifier;
 		m_Classifiers = localClassifier.getSampleTreeVector();
+		m_trainingProfile = profile;
 		// // We could get any base tree of the vector as root and use it in the graphical interface
 		// // (for example, to visualize it)
 		// //m_root = localClassifier.getSampleTreeIth(0);
 		
 		((C45ModelSelection) modSelection).cleanup();
 		((C45ModelSelection) baseModelToForceDecision).cleanup();
+
+		if (m_Debug)
+			System.out.println("=== Training profile ===\n" + profile);
+		if (m_trainingProfileListeners != null)
+			for (TrainingProfileListener listener : m_trainingProfileListeners)
+				listener.trainingProfiled(this, profile);
+	}
+
+	/**
+	 * Extends the built classifier with the given number of base trees, without rebuilding
+	 * the partial consolidated tree. The new samples are generated from the training data
+	 * with the Resampling Method parameters (but a different seed) and routed through the
+	 * partial consolidated tree structure, forcing the consolidated decisions, and their base
+	 * trees are completed according to J48 algorithm. This way, the size of the ensemble can
+	 * be increased on demand, one step at a time.
+	 *
+	 * @param instances the training data the classifier was built with
+	 * @param numberSamples the number of base trees to be added
+	 * @throws Exception if the classifier has not been built or something goes wrong
+	 */
+	public void addBaseTrees(Instances instances, int numberSamples) throws Exception {
+		if (m_root == null)
+			throw new Exception("No model built yet!");
+		if (numberSamples < 1)
+			throw new IllegalArgumentException("The number of base trees to be added has to be positive!");
+		if (isFrozen())
+			throw new Exception("The base trees have been frozen and can not be extended!");
+		C45PartiallyConsolidatedPruneableClassifierTree localClassifier =
+				(C45PartiallyConsolidatedPruneableClassifierTree) m_root;
+		String msg = instances.equalHeadersMsg(localClassifier.getTrainingData());
+		if (msg != null)
+			throw new Exception("Training data not compatible with the built classifier:\n" + msg);
+
+		// remove instances with missing class before generate samples
+		instances = new Instances(instances);
+		instances.deleteWithMissingClass();
+
+		// The seed depends on the number of base trees so that the new samples differ from the previous ones
+		TrainingProfile profile = (m_trainingProfile != null) ? m_trainingProfile : new TrainingProfile();
+		profile.begin(TrainingProfile.PHASE_RESAMPLING);
+		Instances[] samplesVector = generateAdditionalSamples(instances, numberSamples, m_Seed + m_Classifiers.length);
+		long sampledInstances = 0;
+		for (Instances sample : samplesVector)
+			sampledInstances += sample.numInstances();
+		profile.end(TrainingProfile.PHASE_RESAMPLING, 0, samplesVector.length, sampledInstances);
+
+		localClassifier.setTrainingProfile(profile);
+		localClassifier.addBaseTrees(samplesVector);
+		m_Classifiers = localClassifier.getSampleTreeVector();
+		m_trainingProfile = profile;
+
+		if (m_Debug)
+			System.out.println("=== Training profile ===\n" + profile);
+		if (m_trainingProfileListeners != null)
+			for (TrainingProfileListener listener : m_trainingProfileListeners)
+				listener.trainingProfiled(this, profile);
+	}
+
+	/**
+	 * Adds a listener that receives the profile of the phases of each training.
+	 *
+	 * @param listener the listener to add
+	 */
+	public synchronized void addTrainingProfileListener(TrainingProfileListener listener) {
+		if (m_trainingProfileListeners == null)
+			m_trainingProfileListeners = new ArrayList<TrainingProfileListener>();
+		m_trainingProfileListeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener of the training profile.
+	 *
+	 * @param listener the listener to remove
+	 */
+	public synchronized void removeTrainingProfileListener(TrainingProfileListener listener) {
+		if (m_trainingProfileListeners != null)
+			m_trainingProfileListeners.remove(listener);
+	}
+
+	/**
+	 * Returns the profile of the phases of the last training.
+	 *
+	 * @return the profile, or null if the classifier has not been built
+	 */
+	public TrainingProfile getTrainingProfile() {
+		return m_trainingProfile;
+	}
+
+	/**
+	 * Freezes the base trees into a compact, immutable representation for prediction
+	 * only (see CompactClassifierTree), which drops the split models and the distributions
+	 * of their nodes. The partial consolidated tree is kept as it is, since it is small and
+	 * it describes the classifier. The predictions do not change, but the classifier can not
+	 * be extended with more base trees nor exported as source code afterwards.
+	 *
+	 * @throws Exception if no model has been built or it can not be frozen
+	 */
+	@Override
+	public void freeze() throws Exception {
+		if (m_root == null)
+			throw new Exception("No model built yet!");
+		ClassifierTree[] frozen = new ClassifierTree[m_Classifiers.length];
+		for (int i = 0; i < m_Classifiers.length; i++)
+			frozen[i] = CompactClassifierTree.freeze(m_Classifiers[i]);
+		m_Classifiers = frozen;
+		((C45PartiallyConsolidatedPruneableClassifierTree) m_root).releaseBaseTrees();
+	}
+
+	/**
+	 * Returns whether the base trees have been frozen.
+	 *
+	 * @return true if the base trees have been frozen
+	 */
+	@Override
+	public boolean isFrozen() {
+		return (m_Classifiers != null) && (m_Classifiers.length > 0)
+				&& (m_Classifiers[0] instanceof CompactClassifierTree);
 	}
 
 	/**
@@ -721,6 +914,20 @@ public class J48PartiallyConsolidated
 	 *  * -2 (stratified): Maintains the original class distribution in the new samples
 	 *  (default -1 for Bootstrap (use 50.0 for Balanced samples))</pre>
 	 * 
+	 * <pre> -RM-cache
+	 *  Determines that the set of samples is shared through the sample cache with other
+	 *  schemes using the same training data and resampling options.
+	 *  (default: not shared)</pre>
+	 * 
+	 * <pre> -RM-bucketed
+	 *  Determines that the samples are generated from the positions of the instances of each class,
+	 *  drawing each sample with its own stream of random numbers, instead of the original way.
+	 *  (default: original)</pre>
+	 * 
+	 * <pre> -RM-num-slots &lt;num&gt;
+	 *  Number of threads to generate the samples with, when -RM-bucketed is set.
+	 *  (default 1 - i.e. no parallelism)</pre>
+	 * 
 	 * Options to Partially Consolidated Tree-Bagging (PCTBagging) multiple classifier<br/>
 	 * ============================================================================ 
 	 * <pre>-PCTB-C consolidation percent (or number of inner nodes) 
@@ -766,6 +973,13 @@ public class J48PartiallyConsolidated
 	 * the partially consolidated tree (or not). 
 	 * (Default: true)</pre>
 	 * 
+	 * <pre>-PCTB-MB size
+	 * Memory budget, in MB, for the partitions of the samples in the nodes while the
+	 * partial consolidated tree is developed; the exceeding ones are spilled to a
+	 * temporary file (0 = no limit). The samples at the root are always kept in memory.
+	 * It can not be used with the Original priority criteria or without cleanup (-L).
+	 * (Default: 0)</pre>
+	 * 
 	 * <pre>-PCTB-V mode
 	 * Determines how many base trees will be shown:
 	 * None, only the first ten (if they exist) or all.  
@@ -831,6 +1045,20 @@ public class J48PartiallyConsolidated
 						"\t              new samples\n" +
 						"\t(default -1 for Bootstrap (use 50.0 for Balanced samples))",
 						"RM-D", 1, "-RM-D <distribution minority class>"));
+		newVector.
+		addElement(new Option("\tShare the set of samples with other schemes using the same\n" +
+				"\ttraining data and resampling options through the sample cache\n" +
+				"\t(default: not shared)",
+				"RM-cache", 0, "-RM-cache"));
+		newVector.
+		addElement(new Option("\tGenerate the samples from the positions of the instances of each\n" +
+				"\tclass, drawing each sample with its own stream of random numbers\n" +
+				"\t(default: the original way)",
+				"RM-bucketed", 0, "-RM-bucketed"));
+		newVector.
+		addElement(new Option("\tNumber of threads to generate the samples with, when -RM-bucketed is set\n" +
+				"\t(default 1 - i.e. no parallelism)",
+				"RM-num-slots", 1, "-RM-num-slots <num>"));
 
 		// Options to leave partially consolidated the built consolidated tree (PCTB)
 		// =========================================================================
@@ -871,6 +1099,15 @@ public class J48PartiallyConsolidated
 	            "\tthe partially consolidated tree.\n" + 
 	            "\t(default true)",
 	            "PCTB-WP", 0, "-PCTB-WP"));
+	    newVector.
+	    addElement(new Option(
+	            "\tMemory budget, in MB, for the partitions of the samples in the nodes\n" +
+	            "\twhile the partial consolidated tree is developed; the exceeding ones\n" +
+	            "\tare spilled to a temporary file (0 = no limit). The samples at the\n" +
+	            "\troot are always kept in memory. It can not be used with the Original\n" +
+	            "\tpriority criteria or without cleanup (-L).\n" +
+	            "\t(default 0)",
+	            "PCTB-MB", 1, "-PCTB-MB <size>"));
 		newVector.
 		addElement(new Option(
 				"\tDetermines how many base trees will be shown:\n" +
@@ -937,6 +1174,13 @@ public class J48PartiallyConsolidated
 	 * the partially consolidated tree (or not). 
 	 * (Default: true)</pre>
 	 * 
+	 * <pre>-PCTB-MB size
+	 * Memory budget, in MB, for the partitions of the samples in the nodes while the
+	 * partial consolidated tree is developed; the exceeding ones are spilled to a
+	 * temporary file (0 = no limit). The samples at the root are always kept in memory.
+	 * It can not be used with the Original priority criteria or without cleanup (-L).
+	 * (Default: 0)</pre>
+	 * 
 	 * <pre>-PCTB-V mode
 	 * Determines how many base trees will be shown:
 	 * None, only the first ten (if they exist) or all.  
@@ -980,6 +1224,12 @@ public class J48PartiallyConsolidated
 
 		setPCTBpruneBaseTreesWithoutPreservingConsolidatedStructure(Utils.getFlag("PCTB-WP", options));
 
+		String PCTBmemoryBudgetString = Utils.getOption("PCTB-MB", options);
+		if (PCTBmemoryBudgetString.length() != 0)
+			setPCTBmemoryBudget(Double.parseDouble(PCTBmemoryBudgetString));
+		else
+			setPCTBmemoryBudget(0);
+
 		String PCTBvisualizeBaseTreesString = Utils.getOption("PCTB-V", options);
 		if (PCTBvisualizeBaseTreesString.length() != 0)
 			setPCTBvisualizeBaseTrees(new SelectedTag(Integer.parseInt(PCTBvisualizeBaseTreesString), TAGS_VISUALIZE_BASE_TREES));
@@ -1033,6 +1283,11 @@ public class J48PartiallyConsolidated
 		if (m_PCTBpruneBaseTreesWithoutPreservingConsolidatedStructure)
 			result.add("-PCTB-WP");
 
+		if (m_PCTBmemoryBudget > 0) {
+			result.add("-PCTB-MB");
+			result.add("" + m_PCTBmemoryBudget);
+		}
+
 		result.add("-PCTB-V");
 		result.add("" + m_PCTBvisualizeBaseTrees);
 
@@ -1354,6 +1609,8 @@ public class J48PartiallyConsolidated
 		newVector.addElement("measureMaxPercBaseTreesPreservingStructure");
 		newVector.addElement("measureMdnPercBaseTreesPreservingStructure");
 		newVector.addElement("measureDevPercBaseTreesPreservingStructure");
+		// Profile of the phases of the training
+		newVector.addAll(Arrays.asList(TrainingProfile.measureNames()));
 
 		return newVector.elements();
 	}
@@ -1434,6 +1691,10 @@ public class J48PartiallyConsolidated
 				return measureMdnPercBaseTreesPreservingStructure();
 			} else if (additionalMeasureName.compareToIgnoreCase("measureDevPercBaseTreesPreservingStructure") == 0) {
 				return measureDevPercBaseTreesPreservingStructure();
+			} else if (Arrays.asList(TrainingProfile.measureNames()).contains(additionalMeasureName)) {
+				if (m_trainingProfile == null)
+					return Double.NaN;
+				return m_trainingProfile.getMeasure(additionalMeasureName);
 			} else
 				throw new IllegalArgumentException(additionalMeasureName 
 					+ " not supported (J48PartiallyConsolidated)");
@@ -1696,6 +1957,41 @@ public class J48PartiallyConsolidated
 		return m_PCTBpruneBaseTreesWithoutPreservingConsolidatedStructure;
 	}
 
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String PCTBmemoryBudgetTipText() {
+		return "Memory budget, in MB, for the partitions of the samples in the nodes while the partial "
+				+ "consolidated tree is developed; the exceeding ones are spilled to a temporary file "
+				+ "(0 = no limit). The samples at the root are always kept in memory, so the budget only "
+				+ "bounds the partitions of the nodes below it. It can not be used with the Original priority "
+				+ "criteria or if the trees are not cleaned up.";
+	}
+
+	/**
+	 * Get the value of memoryBudget.
+	 *
+	 * @return Value of memoryBudget.
+	 */
+	public double getPCTBmemoryBudget() {
+
+		return m_PCTBmemoryBudget;
+	}
+
+	/**
+	 * Set the value of memoryBudget.
+	 *
+	 * @param v Value to assign to memoryBudget (in MB, 0 = no limit).
+	 */
+	public void setPCTBmemoryBudget(double v) {
+
+		if (v < 0)
+			throw new IllegalArgumentException("The memory budget has to be positive (or 0 = no limit)!");
+		m_PCTBmemoryBudget = v;
+	}
+
 	/**
 	 * Returns the tip text for this property
 	 * @return tip text for this property suitable for
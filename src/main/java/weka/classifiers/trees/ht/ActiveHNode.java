@@ -23,9 +23,7 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import weka.core.Attribute;
 import weka.core.Instance;
@@ -42,35 +40,46 @@ public class ActiveHNode extends LeafNode implements LearningNode, Serializable
   /**
    * For serialization
    */
-  private static final long serialVersionUID = 3284585939739561683L;
+  private static final long serialVersionUID = -1976801738864984818L;
 
   /** The weight of instances seen at the last split evaluation */
   public double m_weightSeenAtLastSplitEval = 0;
 
-  /** Statistics for nominal or numeric attributes conditioned on the class */
-  protected Map<String, ConditionalSufficientStats> m_nodeStats = new HashMap<String, ConditionalSufficientStats>();
+  /**
+   * Statistics for nominal or numeric attributes conditioned on the class,
+   * indexed by attribute (null for the class attribute)
+   */
+  protected ConditionalSufficientStats[] m_nodeStats;
+
+  /** The names of the attributes, indexed by attribute */
+  protected String[] m_attNames;
 
   @Override
   public void updateNode(Instance inst) throws Exception {
     super.updateDistribution(inst);
 
+    if (m_nodeStats == null) {
+      m_nodeStats = new ConditionalSufficientStats[inst.numAttributes()];
+      m_attNames = new String[inst.numAttributes()];
+    }
+
+    int classVal = (int) inst.classValue();
     for (int i = 0; i < inst.numAttributes(); i++) {
-      Attribute a = inst.attribute(i);
       if (i != inst.classIndex()) {
-        ConditionalSufficientStats stats = m_nodeStats.get(a.name());
+        ConditionalSufficientStats stats = m_nodeStats[i];
         if (stats == null) {
+          Attribute a = inst.attribute(i);
           if (a.isNumeric()) {
-            stats = new GaussianConditionalSufficientStats();
+            stats = new GaussianConditionalSufficientStats(inst.numClasses());
           } else {
-            stats = new NominalConditionalSufficientStats();
+            stats = new NominalConditionalSufficientStats(a.numValues(),
+                inst.numClasses());
           }
-          m_nodeStats.put(a.name(), stats);
+          m_nodeStats[i] = stats;
+          m_attNames[i] = a.name();
         }
 
-        stats
-            .update(inst.value(a),
-                inst.classAttribute().value((int) inst.classValue()),
-                inst.weight());
+        stats.update(inst.value(i), classVal, inst.weight());
       }
     }
   }
@@ -86,21 +95,25 @@ public class ActiveHNode extends LeafNode implements LearningNode, Serializable
     List<SplitCandidate> splits = new ArrayList<SplitCandidate>();
 
     // null split
-    List<Map<String, WeightMass>> nullDist = new ArrayList<Map<String, WeightMass>>();
+    List<double[]> nullDist = new ArrayList<double[]>(1);
     nullDist.add(m_classDistribution);
     SplitCandidate nullSplit = new SplitCandidate(null, nullDist,
         splitMetric.evaluateSplit(m_classDistribution, nullDist));
     splits.add(nullSplit);
 
-    for (Map.Entry<String, ConditionalSufficientStats> e : m_nodeStats
-        .entrySet()) {
-      ConditionalSufficientStats stat = e.getValue();
+    if (m_nodeStats != null) {
+      for (int i = 0; i < m_nodeStats.length; i++) {
+        ConditionalSufficientStats stat = m_nodeStats[i];
+        if (stat == null) {
+          continue;
+        }
 
-      SplitCandidate splitCandidate = stat.bestSplit(splitMetric,
-          m_classDistribution, e.getKey());
+        SplitCandidate splitCandidate = stat.bestSplit(splitMetric,
+            m_classDistribution, m_attNames[i]);
 
-      if (splitCandidate != null) {
-        splits.add(splitCandidate);
+        if (splitCandidate != null) {
+          splits.add(splitCandidate);
+        }
       }
     }
 
@@ -22,8 +22,6 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Records sufficient stats for an attribute
@@ -37,30 +35,39 @@ public abstract class ConditionalSufficientStats implements Serializable {
   /**
    * For serialization
    */
-  private static final long serialVersionUID = 8724787722646808376L;
+  private static final long serialVersionUID = -8425214402758591823L;
 
-  /** Lookup by class value */
-  protected Map<String, Object> m_classLookup = new HashMap<String, Object>();
+  /** The number of class values */
+  protected int m_numClasses;
+
+  /**
+   * Constructor
+   * 
+   * @param numClasses the number of class values
+   */
+  public ConditionalSufficientStats(int numClasses) {
+    m_numClasses = numClasses;
+  }
 
   /**
    * Update this stat with the supplied attribute value and class value
    * 
    * @param attVal the value of the attribute
-   * @param classVal the class value
+   * @param classVal the index of the class value
    * @param weight the weight of this observation
    */
-  public abstract void update(double attVal, String classVal, double weight);
+  public abstract void update(double attVal, int classVal, double weight);
 
   /**
    * Return the probability of an attribute value conditioned on a class value
    * 
    * @param attVal the attribute value to compute the conditional probability
    *          for
-   * @param classVal the class value
+   * @param classVal the index of the class value
    * @return the probability
    */
   public abstract double probabilityOfAttValConditionedOnClass(double attVal,
-      String classVal);
+      int classVal);
 
   /**
    * Return the best split
@@ -71,5 +78,5 @@ public abstract class ConditionalSufficientStats implements Serializable {
    * @return the best split for the attribute
    */
   public abstract SplitCandidate bestSplit(SplitMetric splitMetric,
-      Map<String, WeightMass> preSplitDist, String attName);
+      double[] preSplitDist, String attName);
 }
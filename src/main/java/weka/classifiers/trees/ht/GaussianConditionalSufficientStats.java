@@ -23,17 +23,18 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeSet;
 
+import weka.core.Statistics;
 import weka.core.Utils;
 import weka.estimators.UnivariateNormalEstimator;
 
 /**
  * Maintains sufficient stats for a Gaussian distribution for a numeric
- * attribute
+ * attribute. The normal estimators of the classes are held in parallel
+ * arrays indexed by class value, they follow the computations of
+ * {@link UnivariateNormalEstimator}.
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -45,60 +46,59 @@ public class GaussianConditionalSufficientStats extends
   /**
    * For serialization
    */
-  private static final long serialVersionUID = -1527915607201784762L;
+  private static final long serialVersionUID = -6703942953745474153L;
 
-  /**
-   * Inner class that implements a Gaussian estimator
-   * 
-   * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
-   */
-  protected class GaussianEstimator extends UnivariateNormalEstimator implements
-      Serializable {
+  /** The minimum variance of an estimator */
+  protected static final double MIN_VAR = 1.0E-6 * 1.0E-6;
 
-    /**
-     * For serialization
-     */
-    private static final long serialVersionUID = 4756032800685001315L;
+  /** The weighted sum of the values per class */
+  protected double[] m_weightedSum;
 
-    public double getSumOfWeights() {
-      return m_SumOfWeights;
-    }
-
-    public double probabilityDensity(double value) {
-      updateMeanAndVariance();
-
-      if (m_SumOfWeights > 0) {
-        double stdDev = Math.sqrt(m_Variance);
-        if (stdDev > 0) {
-          double diff = value - m_Mean;
-          return (1.0 / (CONST * stdDev))
-              * Math.exp(-(diff * diff / (2.0 * m_Variance)));
-        }
-        return value == m_Mean ? 1.0 : 0.0;
-      }
+  /** The weighted sum of the squared values per class */
+  protected double[] m_weightedSumSquared;
 
-      return 0.0;
-    }
+  /** The sum of the weights per class */
+  protected double[] m_sumOfWeights;
 
-    public double[] weightLessThanEqualAndGreaterThan(double value) {
-      double stdDev = Math.sqrt(m_Variance);
-      double equalW = probabilityDensity(value) * m_SumOfWeights;
+  /** The mean per class, as of the last density computation */
+  protected double[] m_mean;
 
-      double lessW = (stdDev > 0) ? weka.core.Statistics
-          .normalProbability((value - m_Mean) / stdDev)
-          * m_SumOfWeights
-          - equalW : (value < m_Mean) ? m_SumOfWeights - equalW : 0.0;
-      double greaterW = m_SumOfWeights - equalW - lessW;
+  /** The variance per class, as of the last density computation */
+  protected double[] m_variance;
 
-      return new double[] { lessW, equalW, greaterW };
-    }
-  }
+  /**
+   * The smallest value observed per class, positive infinity for classes
+   * without observations
+   */
+  protected double[] m_minValObservedPerClass;
 
-  protected Map<String, Double> m_minValObservedPerClass = new HashMap<String, Double>();
-  protected Map<String, Double> m_maxValObservedPerClass = new HashMap<String, Double>();
+  /**
+   * The largest value observed per class, negative infinity for classes
+   * without observations
+   */
+  protected double[] m_maxValObservedPerClass;
 
   protected int m_numBins = 10;
 
+  /**
+   * Constructor
+   * 
+   * @param numClasses the number of class values
+   */
+  public GaussianConditionalSufficientStats(int numClasses) {
+    super(numClasses);
+    m_weightedSum = new double[numClasses];
+    m_weightedSumSquared = new double[numClasses];
+    m_sumOfWeights = new double[numClasses];
+    m_mean = new double[numClasses];
+    m_variance = new double[numClasses];
+    Arrays.fill(m_variance, Double.MAX_VALUE);
+    m_minValObservedPerClass = new double[numClasses];
+    Arrays.fill(m_minValObservedPerClass, Double.POSITIVE_INFINITY);
+    m_maxValObservedPerClass = new double[numClasses];
+    Arrays.fill(m_maxValObservedPerClass, Double.NEGATIVE_INFINITY);
+  }
+
   public void setNumBins(int b) {
     m_numBins = b;
   }
@@ -107,114 +107,158 @@ public class GaussianConditionalSufficientStats extends
     return m_numBins;
   }
 
+  /**
+   * Returns true if values have been observed for the given class
+   * 
+   * @param classVal the index of the class value
+   * @return true if the class has been observed
+   */
+  protected boolean hasObservations(int classVal) {
+    return m_minValObservedPerClass[classVal] <= m_maxValObservedPerClass[classVal];
+  }
+
   @Override
-  public void update(double attVal, String classVal, double weight) {
+  public void update(double attVal, int classVal, double weight) {
     if (!Utils.isMissingValue(attVal)) {
-      GaussianEstimator norm = (GaussianEstimator) m_classLookup.get(classVal);
-      if (norm == null) {
-        norm = new GaussianEstimator();
-        m_classLookup.put(classVal, norm);
-        m_minValObservedPerClass.put(classVal, attVal);
-        m_maxValObservedPerClass.put(classVal, attVal);
-      } else {
-        if (attVal < m_minValObservedPerClass.get(classVal)) {
-          m_minValObservedPerClass.put(classVal, attVal);
-        }
+      if (attVal < m_minValObservedPerClass[classVal]) {
+        m_minValObservedPerClass[classVal] = attVal;
+      }
 
-        if (attVal > m_maxValObservedPerClass.get(classVal)) {
-          m_maxValObservedPerClass.put(classVal, attVal);
-        }
+      if (attVal > m_maxValObservedPerClass[classVal]) {
+        m_maxValObservedPerClass[classVal] = attVal;
       }
-      norm.addValue(attVal, weight);
+
+      m_weightedSum[classVal] += attVal * weight;
+      m_weightedSumSquared[classVal] += attVal * attVal * weight;
+      m_sumOfWeights[classVal] += weight;
+    }
+  }
+
+  /**
+   * Updates the mean and variance of the estimator of a class
+   * 
+   * @param classVal the index of the class value
+   */
+  protected void updateMeanAndVariance(int classVal) {
+    double sumOfWeights = m_sumOfWeights[classVal];
+
+    m_mean[classVal] = 0;
+    if (sumOfWeights > 0) {
+      m_mean[classVal] = m_weightedSum[classVal] / sumOfWeights;
+    }
+
+    m_variance[classVal] = Double.MAX_VALUE;
+    if (sumOfWeights > 0) {
+      m_variance[classVal] = m_weightedSumSquared[classVal] / sumOfWeights
+          - m_mean[classVal] * m_mean[classVal];
+    }
+
+    // Hack for case where variance is 0
+    if (m_variance[classVal] <= MIN_VAR) {
+      m_variance[classVal] = MIN_VAR;
     }
   }
 
+  /**
+   * Returns the density of the estimator of a class at the given value
+   * 
+   * @param classVal the index of the class value
+   * @param value the value
+   * @return the density
+   */
+  protected double probabilityDensity(int classVal, double value) {
+    updateMeanAndVariance(classVal);
+
+    if (m_sumOfWeights[classVal] > 0) {
+      double stdDev = Math.sqrt(m_variance[classVal]);
+      if (stdDev > 0) {
+        double diff = value - m_mean[classVal];
+        return (1.0 / (UnivariateNormalEstimator.CONST * stdDev))
+            * Math.exp(-(diff * diff / (2.0 * m_variance[classVal])));
+      }
+      return value == m_mean[classVal] ? 1.0 : 0.0;
+    }
+
+    return 0.0;
+  }
+
   @Override
   public double probabilityOfAttValConditionedOnClass(double attVal,
-      String classVal) {
-    GaussianEstimator norm = (GaussianEstimator) m_classLookup.get(classVal);
-    if (norm == null) {
+      int classVal) {
+    if (!hasObservations(classVal)) {
       return 0;
     }
 
-    // return Utils.lo
-    return norm.probabilityDensity(attVal);
+    return probabilityDensity(classVal, attVal);
   }
 
-  protected TreeSet<Double> getSplitPointCandidates() {
-    TreeSet<Double> splits = new TreeSet<Double>();
+  protected double[] getSplitPointCandidates() {
     double min = Double.POSITIVE_INFINITY;
     double max = Double.NEGATIVE_INFINITY;
 
-    for (String classVal : m_classLookup.keySet()) {
-      if (m_minValObservedPerClass.containsKey(classVal)) {
-        if (m_minValObservedPerClass.get(classVal) < min) {
-          min = m_minValObservedPerClass.get(classVal);
+    for (int c = 0; c < m_numClasses; c++) {
+      if (hasObservations(c)) {
+        if (m_minValObservedPerClass[c] < min) {
+          min = m_minValObservedPerClass[c];
         }
 
-        if (m_maxValObservedPerClass.get(classVal) > max) {
-          max = m_maxValObservedPerClass.get(classVal);
+        if (m_maxValObservedPerClass[c] > max) {
+          max = m_maxValObservedPerClass[c];
         }
       }
     }
 
+    double[] splits = new double[m_numBins];
+    int count = 0;
     if (min < Double.POSITIVE_INFINITY) {
       double bin = max - min;
       bin /= (m_numBins + 1);
       for (int i = 0; i < m_numBins; i++) {
         double split = min + (bin * (i + 1));
 
-        if (split > min && split < max) {
-          splits.add(split);
+        // the split points are ascending, skip duplicates
+        if (split > min && split < max
+            && (count == 0 || split > splits[count - 1])) {
+          splits[count++] = split;
         }
       }
     }
-    return splits;
+
+    return Arrays.copyOf(splits, count);
   }
 
-  protected List<Map<String, WeightMass>> classDistsAfterSplit(double splitVal) {
-    Map<String, WeightMass> lhsDist = new HashMap<String, WeightMass>();
-    Map<String, WeightMass> rhsDist = new HashMap<String, WeightMass>();
-
-    for (Map.Entry<String, Object> e : m_classLookup.entrySet()) {
-      String classVal = e.getKey();
-      GaussianEstimator attEst = (GaussianEstimator) e.getValue();
-
-      if (attEst != null) {
-        if (splitVal < m_minValObservedPerClass.get(classVal)) {
-          WeightMass mass = rhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            rhsDist.put(classVal, mass);
-          }
-          mass.m_weight += attEst.getSumOfWeights();
-        } else if (splitVal > m_maxValObservedPerClass.get(classVal)) {
-          WeightMass mass = lhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            lhsDist.put(classVal, mass);
-          }
-          mass.m_weight += attEst.getSumOfWeights();
-        } else {
-          double[] weights = attEst.weightLessThanEqualAndGreaterThan(splitVal);
-          WeightMass mass = lhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            lhsDist.put(classVal, mass);
-          }
-          mass.m_weight += weights[0] + weights[1]; // <=
-
-          mass = rhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            rhsDist.put(classVal, mass);
-          }
-          mass.m_weight += weights[2]; // >
-        }
+  protected List<double[]> classDistsAfterSplit(double splitVal) {
+    double[] lhsDist = new double[m_numClasses];
+    double[] rhsDist = new double[m_numClasses];
+
+    for (int c = 0; c < m_numClasses; c++) {
+      if (!hasObservations(c)) {
+        continue;
+      }
+
+      if (splitVal < m_minValObservedPerClass[c]) {
+        rhsDist[c] += m_sumOfWeights[c];
+      } else if (splitVal > m_maxValObservedPerClass[c]) {
+        lhsDist[c] += m_sumOfWeights[c];
+      } else {
+        // stdDev deliberately uses the variance of the previous density
+        // computation, like UnivariateNormalEstimator based code did
+        double sumOfWeights = m_sumOfWeights[c];
+        double stdDev = Math.sqrt(m_variance[c]);
+        double equalW = probabilityDensity(c, splitVal) * sumOfWeights;
+
+        double lessW = (stdDev > 0) ? Statistics
+            .normalProbability((splitVal - m_mean[c]) / stdDev)
+            * sumOfWeights
+            - equalW : (splitVal < m_mean[c]) ? sumOfWeights - equalW : 0.0;
+        double greaterW = sumOfWeights - equalW - lessW;
+
+        lhsDist[c] += lessW + equalW; // <=
+        rhsDist[c] += greaterW; // >
       }
     }
 
-    List<Map<String, WeightMass>> dists = new ArrayList<Map<String, WeightMass>>();
+    List<double[]> dists = new ArrayList<double[]>(2);
     dists.add(lhsDist);
     dists.add(rhsDist);
 
@@ -223,13 +267,12 @@ public class GaussianConditionalSufficientStats extends
 
   @Override
   public SplitCandidate bestSplit(SplitMetric splitMetric,
-      Map<String, WeightMass> preSplitDist, String attName) {
+      double[] preSplitDist, String attName) {
 
     SplitCandidate best = null;
 
-    TreeSet<Double> candidates = getSplitPointCandidates();
-    for (Double s : candidates) {
-      List<Map<String, WeightMass>> postSplitDists = classDistsAfterSplit(s);
+    for (double s : getSplitPointCandidates()) {
+      List<double[]> postSplitDists = classDistsAfterSplit(s);
 
       double splitMerit = splitMetric.evaluateSplit(preSplitDist,
           postSplitDists);
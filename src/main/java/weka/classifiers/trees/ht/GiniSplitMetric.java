@@ -23,7 +23,6 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Implements the gini splitting criterion
@@ -40,8 +39,7 @@ public class GiniSplitMetric extends SplitMetric implements Serializable {
   private static final long serialVersionUID = -2037586582742660298L;
 
   @Override
-  public double evaluateSplit(Map<String, WeightMass> preDist,
-      List<Map<String, WeightMass>> postDist) {
+  public double evaluateSplit(double[] preDist, List<double[]> postDist) {
     double totalWeight = 0.0;
     double[] distWeights = new double[postDist.size()];
 
@@ -65,12 +63,14 @@ public class GiniSplitMetric extends SplitMetric implements Serializable {
    * @param sumOfWeights the sum of the distribution weights
    * @return the gini metric
    */
-  protected static double gini(Map<String, WeightMass> dist, double sumOfWeights) {
+  protected static double gini(double[] dist, double sumOfWeights) {
     double gini = 1.0;
 
-    for (Map.Entry<String, WeightMass> e : dist.entrySet()) {
-      double frac = e.getValue().m_weight / sumOfWeights;
-      gini -= frac * frac;
+    for (double w : dist) {
+      if (w != 0) {
+        double frac = w / sumOfWeights;
+        gini -= frac * frac;
+      }
     }
 
     return gini;
@@ -82,12 +82,12 @@ public class GiniSplitMetric extends SplitMetric implements Serializable {
    * @param dist dist the distribution to compute the gini metric from
    * @return
    */
-  public static double gini(Map<String, WeightMass> dist) {
+  public static double gini(double[] dist) {
     return gini(dist, SplitMetric.sum(dist));
   }
 
   @Override
-  public double getMetricRange(Map<String, WeightMass> preDist) {
+  public double getMetricRange(double[] preDist) {
     return 1.0;
   }
 }
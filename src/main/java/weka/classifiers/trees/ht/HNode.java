@@ -22,8 +22,6 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 import weka.core.Attribute;
 import weka.core.Instance;
@@ -40,10 +38,14 @@ public abstract class HNode implements Serializable {
   /**
    * For serialization
    */
-  private static final long serialVersionUID = 197233928177240264L;
+  private static final long serialVersionUID = -561183317355615549L;
 
-  /** Class distribution at this node */
-  public Map<String, WeightMass> m_classDistribution = new LinkedHashMap<String, WeightMass>();
+  /**
+   * Class distribution at this node, indexed by class value. A class that has
+   * not been seen has a weight of zero, classes that have been seen start out
+   * with a weight of one. Null if no class has been seen yet.
+   */
+  public double[] m_classDistribution;
 
   /** Holds the leaf number (if this is a leaf) */
   protected int m_leafNum;
@@ -62,7 +64,7 @@ public abstract class HNode implements Serializable {
    * 
    * @param classDistrib
    */
-  public HNode(Map<String, WeightMass> classDistrib) {
+  public HNode(double[] classDistrib) {
     m_classDistribution = classDistrib;
   }
 
@@ -81,7 +83,48 @@ public abstract class HNode implements Serializable {
    * @return the number of entries in the class distribution
    */
   public int numEntriesInClassDistribution() {
-    return m_classDistribution.size();
+    return numEntries(m_classDistribution);
+  }
+
+  /**
+   * The number of classes that have been seen in a class distribution
+   * 
+   * @param dist the class distribution, may be null
+   * @return the number of classes with a non-zero weight
+   */
+  public static int numEntries(double[] dist) {
+    int count = 0;
+    if (dist != null) {
+      for (double w : dist) {
+        if (w != 0) {
+          count++;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the index of the class with the largest weight in a class
+   * distribution
+   * 
+   * @param dist the class distribution, may be null
+   * @return the index of the majority class, -1 if no class has been seen
+   */
+  public static int majorityClass(double[] dist) {
+    int maxIndex = -1;
+    double max = -1;
+    if (dist != null) {
+      for (int i = 0; i < dist.length; i++) {
+        if (dist[i] != 0 && dist[i] > max) {
+          max = dist[i];
+          maxIndex = i;
+        }
+      }
+    }
+
+    return maxIndex;
   }
 
   /**
@@ -90,9 +133,13 @@ public abstract class HNode implements Serializable {
    * @return true if the class distribution is pure
    */
   public boolean classDistributionIsPure() {
+    if (m_classDistribution == null) {
+      return true;
+    }
+
     int count = 0;
-    for (Map.Entry<String, WeightMass> el : m_classDistribution.entrySet()) {
-      if (el.getValue().m_weight > 0) {
+    for (double w : m_classDistribution) {
+      if (w > 0) {
         count++;
 
         if (count > 1) {
@@ -113,16 +160,15 @@ public abstract class HNode implements Serializable {
     if (inst.classIsMissing()) {
       return;
     }
-    String classVal = inst.stringValue(inst.classAttribute());
-
-    WeightMass m = m_classDistribution.get(classVal);
-    if (m == null) {
-      m = new WeightMass();
-      m.m_weight = 1.0;
+    if (m_classDistribution == null) {
+      m_classDistribution = new double[inst.numClasses()];
+    }
 
-      m_classDistribution.put(classVal, m);
+    int classVal = (int) inst.classValue();
+    if (m_classDistribution[classVal] == 0) {
+      m_classDistribution[classVal] = 1.0;
     }
-    m.m_weight += inst.weight();
+    m_classDistribution[classVal] += inst.weight();
   }
 
   /**
@@ -139,9 +185,8 @@ public abstract class HNode implements Serializable {
     double[] dist = new double[classAtt.numValues()];
 
     for (int i = 0; i < classAtt.numValues(); i++) {
-      WeightMass w = m_classDistribution.get(classAtt.value(i));
-      if (w != null) {
-        dist[i] = w.m_weight;
+      if (m_classDistribution != null && m_classDistribution[i] != 0) {
+        dist[i] = m_classDistribution[i];
       } else {
         dist[i] = 1.0;
       }
@@ -158,16 +203,12 @@ public abstract class HNode implements Serializable {
     return nodeNum;
   }
 
-  protected int dumpTree(int depth, int leafCount, StringBuffer buff) {
+  protected int dumpTree(int depth, int leafCount, StringBuffer buff,
+      Attribute classAtt) {
 
-    double max = -1;
-    String classVal = "";
-    for (Map.Entry<String, WeightMass> e : m_classDistribution.entrySet()) {
-      if (e.getValue().m_weight > max) {
-        max = e.getValue().m_weight;
-        classVal = e.getKey();
-      }
-    }
+    int maxIndex = majorityClass(m_classDistribution);
+    double max = (maxIndex < 0) ? -1 : m_classDistribution[maxIndex];
+    String classVal = (maxIndex < 0) ? "" : classAtt.value(maxIndex);
     buff.append(classVal + " (" + String.format("%-9.3f", max).trim() + ")");
     leafCount++;
     m_leafNum = leafCount;
@@ -178,16 +219,11 @@ public abstract class HNode implements Serializable {
   protected void printLeafModels(StringBuffer buff) {
   }
 
-  public void graphTree(StringBuffer text) {
+  public void graphTree(StringBuffer text, Attribute classAtt) {
 
-    double max = -1;
-    String classVal = "";
-    for (Map.Entry<String, WeightMass> e : m_classDistribution.entrySet()) {
-      if (e.getValue().m_weight > max) {
-        max = e.getValue().m_weight;
-        classVal = e.getKey();
-      }
-    }
+    int maxIndex = majorityClass(m_classDistribution);
+    double max = (maxIndex < 0) ? -1 : m_classDistribution[maxIndex];
+    String classVal = (maxIndex < 0) ? "" : classAtt.value(maxIndex);
 
     text.append("N" + m_nodeNum + " [label=\"" + classVal + " ("
         + String.format("%-9.3f", max).trim() + ")\" shape=box style=filled]\n");
@@ -197,15 +233,16 @@ public abstract class HNode implements Serializable {
    * Print a textual description of the tree
    * 
    * @param printLeaf true if leaf models (NB, NB adaptive) should be output
+   * @param classAtt the class attribute
    * @return a textual description of the tree
    */
-  public String toString(boolean printLeaf) {
+  public String toString(boolean printLeaf, Attribute classAtt) {
 
     installNodeNums(0);
 
     StringBuffer buff = new StringBuffer();
 
-    dumpTree(0, 0, buff);
+    dumpTree(0, 0, buff, classAtt);
 
     if (printLeaf) {
       buff.append("\n\n");
@@ -221,13 +258,7 @@ public abstract class HNode implements Serializable {
    * @return the total weight of instances seen at this node
    */
   public double totalWeight() {
-    double tw = 0;
-
-    for (Map.Entry<String, WeightMass> e : m_classDistribution.entrySet()) {
-      tw += e.getValue().m_weight;
-    }
-
-    return tw;
+    return SplitMetric.sum(m_classDistribution);
   }
 
   /**
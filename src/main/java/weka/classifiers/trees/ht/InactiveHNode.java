@@ -22,7 +22,6 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.Map;
 
 import weka.core.Instance;
 
@@ -46,7 +45,7 @@ public class InactiveHNode extends LeafNode implements LearningNode,
    * 
    * @param classDistrib the class distribution at this node
    */
-  public InactiveHNode(Map<String, WeightMass> classDistrib) {
+  public InactiveHNode(double[] classDistrib) {
     m_classDistribution = classDistrib;
   }
 
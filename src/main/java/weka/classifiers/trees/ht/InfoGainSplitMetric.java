@@ -23,7 +23,6 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.Map;
 
 import weka.core.ContingencyTables;
 import weka.core.Utils;
@@ -49,16 +48,10 @@ public class InfoGainSplitMetric extends SplitMetric implements Serializable {
   }
 
   @Override
-  public double evaluateSplit(Map<String, WeightMass> preDist,
-      List<Map<String, WeightMass>> postDist) {
+  public double evaluateSplit(double[] preDist, List<double[]> postDist) {
 
-    double[] pre = new double[preDist.size()];
-    int count = 0;
-    for (Map.Entry<String, WeightMass> e : preDist.entrySet()) {
-      pre[count++] = e.getValue().m_weight;
-    }
-
-    double preEntropy = ContingencyTables.entropy(pre);
+    // unseen classes have zero weight and do not contribute to the entropy
+    double preEntropy = ContingencyTables.entropy(preDist);
 
     double[] distWeights = new double[postDist.size()];
     double totalWeight = 0.0;
@@ -80,13 +73,8 @@ public class InfoGainSplitMetric extends SplitMetric implements Serializable {
 
     double postEntropy = 0;
     for (int i = 0; i < postDist.size(); i++) {
-      Map<String, WeightMass> d = postDist.get(i);
-      double[] post = new double[d.size()];
-      count = 0;
-      for (Map.Entry<String, WeightMass> e : d.entrySet()) {
-        post[count++] = e.getValue().m_weight;
-      }
-      postEntropy += distWeights[i] * ContingencyTables.entropy(post);
+      postEntropy += distWeights[i]
+          * ContingencyTables.entropy(postDist.get(i));
     }
 
     if (totalWeight > 0) {
@@ -97,9 +85,9 @@ public class InfoGainSplitMetric extends SplitMetric implements Serializable {
   }
 
   @Override
-  public double getMetricRange(Map<String, WeightMass> preDist) {
+  public double getMetricRange(double[] preDist) {
 
-    int numClasses = preDist.size();
+    int numClasses = HNode.numEntries(preDist);
     if (numClasses < 2) {
       numClasses = 2;
     }
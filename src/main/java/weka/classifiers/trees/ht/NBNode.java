@@ -99,8 +99,9 @@ public class NBNode extends ActiveHNode implements LearningNode, Serializable {
   }
 
   @Override
-  protected int dumpTree(int depth, int leafCount, StringBuffer buff) {
-    leafCount = super.dumpTree(depth, leafCount, buff);
+  protected int dumpTree(int depth, int leafCount, StringBuffer buff,
+      Attribute classAtt) {
+    leafCount = super.dumpTree(depth, leafCount, buff, classAtt);
 
     buff.append(" NB" + m_leafNum);
 
@@ -22,11 +22,8 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import weka.core.Utils;
 
@@ -43,77 +40,55 @@ public class NominalConditionalSufficientStats extends
   /**
    * For serialization
    */
-  private static final long serialVersionUID = -669902060601313488L;
+  private static final long serialVersionUID = 4286539571738517725L;
 
   /**
-   * Inner class that implements a discrete distribution
-   * 
-   * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
-   * 
+   * The weights of the attribute values per class, indexed by class and
+   * attribute value. A value that has been seen starts out with a weight of
+   * one, so unseen values have a weight of zero. Null for classes that have
+   * not been seen.
    */
-  protected class ValueDistribution implements Serializable {
-
-    /**
-     * For serialization
-     */
-    private static final long serialVersionUID = -61711544350888154L;
-
-    protected final Map<Integer, WeightMass> m_dist = new LinkedHashMap<Integer, WeightMass>();
+  protected double[][] m_counts;
 
-    private double m_sum;
+  /** The sum of the weights per class */
+  protected double[] m_sums;
 
-    public void add(int val, double weight) {
-      WeightMass count = m_dist.get(val);
-      if (count == null) {
-        count = new WeightMass();
-        count.m_weight = 1.0;
-        m_sum += 1.0;
-        m_dist.put(val, count);
-      }
-      count.m_weight += weight;
-      m_sum += weight;
-    }
-
-    public void delete(int val, double weight) {
-      WeightMass count = m_dist.get(val);
-      if (count != null) {
-        count.m_weight -= weight;
-        m_sum -= weight;
-      }
-    }
-
-    public double getWeight(int val) {
-      WeightMass count = m_dist.get(val);
-      if (count != null) {
-        return count.m_weight;
-      }
-
-      return 0.0;
-    }
-
-    public double sum() {
-      return m_sum;
-    }
-  }
+  /** The number of attribute values */
+  protected int m_numValues;
 
   protected double m_totalWeight;
   protected double m_missingWeight;
 
+  /**
+   * Constructor
+   * 
+   * @param numValues the number of values of the attribute
+   * @param numClasses the number of class values
+   */
+  public NominalConditionalSufficientStats(int numValues, int numClasses) {
+    super(numClasses);
+    m_numValues = numValues;
+    m_counts = new double[numClasses][];
+    m_sums = new double[numClasses];
+  }
+
   @Override
-  public void update(double attVal, String classVal, double weight) {
+  public void update(double attVal, int classVal, double weight) {
     if (Utils.isMissingValue(attVal)) {
       m_missingWeight += weight;
     } else {
-      new Integer((int) attVal);
-      ValueDistribution valDist = (ValueDistribution) m_classLookup
-        .get(classVal);
-      if (valDist == null) {
-        valDist = new ValueDistribution();
-        valDist.add((int) attVal, weight);
-        m_classLookup.put(classVal, valDist);
-      } else {
-        valDist.add((int) attVal, weight);
+      double[] counts = m_counts[classVal];
+      if (counts == null) {
+        counts = new double[m_numValues];
+        m_counts[classVal] = counts;
       }
+      int val = (int) attVal;
+      if (counts[val] == 0) {
+        counts[val] = 1.0;
+        m_sums[classVal] += 1.0;
+      }
+      counts[val] += weight;
+      m_sums[classVal] += weight;
     }
 
     m_totalWeight += weight;
@@ -121,50 +96,42 @@ public class NominalConditionalSufficientStats extends
 
   @Override
   public double probabilityOfAttValConditionedOnClass(double attVal,
-    String classVal) {
-    ValueDistribution valDist = (ValueDistribution) m_classLookup.get(classVal);
-    if (valDist != null) {
-      double prob = valDist.getWeight((int) attVal) / valDist.sum();
+    int classVal) {
+    double[] counts = m_counts[classVal];
+    if (counts != null) {
+      double prob = counts[(int) attVal] / m_sums[classVal];
       return prob;
     }
 
     return 0;
   }
 
-  protected List<Map<String, WeightMass>> classDistsAfterSplit() {
-
-    // att index keys to class distribution
-    Map<Integer, Map<String, WeightMass>> splitDists = new HashMap<Integer, Map<String, WeightMass>>();
+  protected List<double[]> classDistsAfterSplit() {
 
-    for (Map.Entry<String, Object> cls : m_classLookup.entrySet()) {
-      String classVal = cls.getKey();
-      ValueDistribution attDist = (ValueDistribution) cls.getValue();
+    // one class distribution per attribute value that has been seen
+    double[][] splitDists = new double[m_numValues][];
 
-      for (Map.Entry<Integer, WeightMass> att : attDist.m_dist.entrySet()) {
-        Integer attVal = att.getKey();
-        WeightMass attCount = att.getValue();
-
-        Map<String, WeightMass> clsDist = splitDists.get(attVal);
-        if (clsDist == null) {
-          clsDist = new HashMap<String, WeightMass>();
-          splitDists.put(attVal, clsDist);
-        }
-
-        WeightMass clsCount = clsDist.get(classVal);
+    for (int c = 0; c < m_numClasses; c++) {
+      double[] counts = m_counts[c];
+      if (counts == null) {
+        continue;
+      }
 
-        if (clsCount == null) {
-          clsCount = new WeightMass();
-          clsDist.put(classVal, clsCount);
+      for (int v = 0; v < m_numValues; v++) {
+        if (counts[v] != 0) {
+          if (splitDists[v] == null) {
+            splitDists[v] = new double[m_numClasses];
+          }
+          splitDists[v][c] += counts[v];
         }
-
-        clsCount.m_weight += attCount.m_weight;
       }
-
     }
 
-    List<Map<String, WeightMass>> result = new LinkedList<Map<String, WeightMass>>();
-    for (Map.Entry<Integer, Map<String, WeightMass>> v : splitDists.entrySet()) {
-      result.add(v.getValue());
+    List<double[]> result = new ArrayList<double[]>();
+    for (double[] dist : splitDists) {
+      if (dist != null) {
+        result.add(dist);
+      }
     }
 
     return result;
@@ -172,9 +139,9 @@ public class NominalConditionalSufficientStats extends
 
   @Override
   public SplitCandidate bestSplit(SplitMetric splitMetric,
-    Map<String, WeightMass> preSplitDist, String attName) {
+    double[] preSplitDist, String attName) {
 
-    List<Map<String, WeightMass>> postSplitDists = classDistsAfterSplit();
+    List<double[]> postSplitDists = classDistsAfterSplit();
     double merit = splitMetric.evaluateSplit(preSplitDist, postSplitDists);
     SplitCandidate candidate = new SplitCandidate(
       new UnivariateNominalMultiwaySplit(attName), postSplitDists, merit);
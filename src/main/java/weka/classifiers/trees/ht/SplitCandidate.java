@@ -22,7 +22,6 @@
 package weka.classifiers.trees.ht;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * Encapsulates a candidate split
@@ -39,7 +38,7 @@ public class SplitCandidate implements Comparable<SplitCandidate> {
    * list of class distributions resulting from a split - 2 entries in the outer
    * list for numeric splits and n for nominal splits
    */
-  public List<Map<String, WeightMass>> m_postSplitClassDistributions;
+  public List<double[]> m_postSplitClassDistributions;
 
   /** The merit of the split */
   public double m_splitMerit;
@@ -52,7 +51,7 @@ public class SplitCandidate implements Comparable<SplitCandidate> {
    * @param merit the merit of the split
    */
   public SplitCandidate(Split splitTest,
-      List<Map<String, WeightMass>> postSplitDists, double merit) {
+      List<double[]> postSplitDists, double merit) {
     m_splitTest = splitTest;
     m_postSplitClassDistributions = postSplitDists;
     m_splitMerit = merit;
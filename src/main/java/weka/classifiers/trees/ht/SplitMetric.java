@@ -23,7 +23,6 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Base class for split metrics
@@ -42,14 +41,16 @@ public abstract class SplitMetric implements Serializable {
   /**
    * Utility method to return the sum of instance weight in a distribution
    * 
-   * @param dist the distribution
+   * @param dist the distribution, indexed by class value (may be null)
    * @return the sum of the weights contained in a distribution
    */
-  public static double sum(Map<String, WeightMass> dist) {
+  public static double sum(double[] dist) {
     double sum = 0;
 
-    for (Map.Entry<String, WeightMass> e : dist.entrySet()) {
-      sum += e.getValue().m_weight;
+    if (dist != null) {
+      for (double w : dist) {
+        sum += w;
+      }
     }
 
     return sum;
@@ -62,8 +63,8 @@ public abstract class SplitMetric implements Serializable {
    * @param postDist the class distributions after the split
    * @return the merit of the split
    */
-  public abstract double evaluateSplit(Map<String, WeightMass> preDist,
-      List<Map<String, WeightMass>> postDist);
+  public abstract double evaluateSplit(double[] preDist,
+      List<double[]> postDist);
 
   /**
    * Get the range of the splitting metric
@@ -71,5 +72,5 @@ public abstract class SplitMetric implements Serializable {
    * @param preDist the pre-split class distribution
    * @return the range of the splitting metric
    */
-  public abstract double getMetricRange(Map<String, WeightMass> preDist);
+  public abstract double getMetricRange(double[] preDist);
 }
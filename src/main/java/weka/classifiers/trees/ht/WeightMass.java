@@ -1,40 +0,0 @@
-/*
- *   This program is free software: you can redistribute it and/or modify
- *   it under the terms of the GNU General Public License as published by
- *   the Free Software Foundation, either version 3 of the License, or
- *   (at your option) any later version.
- *
- *   This program is distributed in the hope that it will be useful,
- *   but WITHOUT ANY WARRANTY; without even the implied warranty of
- *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- *   GNU General Public License for more details.
- *
- *   You should have received a copy of the GNU General Public License
- *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
- */
-
-/*
- *    WeightMass.java
- *    Copyright (C) 2013 University of Waikato, Hamilton, New Zealand
- *
- */
-
-package weka.classifiers.trees.ht;
-
-import java.io.Serializable;
-
-/**
- * Simple container for a weight
- * 
- * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
- * @version $Revision: 9707 $
- */
-public class WeightMass implements Serializable {
-
-  /**
-   * For serialization
-   */
-  private static final long serialVersionUID = 6794839107050779425L;
-
-  public double m_weight;
-}
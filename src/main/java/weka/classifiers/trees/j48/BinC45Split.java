@@ -453,6 +453,34 @@ public class BinC45Split extends ClassifierSplitModel {
     m_distribution = newD;
   }
 
+  /**
+   * Sets distribution associated with model, for the given rows of the
+   * instances.
+   */
+  @Override
+  public void resetDistribution(Instances data, int[] rows, double[] weights)
+    throws Exception {
+
+    int numKnown = 0;
+    for (int row : rows) {
+      if (whichSubset(data.instance(row)) > -1) {
+        numKnown++;
+      }
+    }
+    int[] knownRows = new int[numKnown];
+    double[] knownWeights = new double[numKnown];
+    numKnown = 0;
+    for (int i = 0; i < rows.length; i++) {
+      if (whichSubset(data.instance(rows[i])) > -1) {
+        knownRows[numKnown] = rows[i];
+        knownWeights[numKnown++] = weights[i];
+      }
+    }
+    Distribution newD = new Distribution(data, knownRows, knownWeights, this);
+    newD.addInstWithUnknown(data, rows, weights, m_attIndex);
+    m_distribution = newD;
+  }
+
   /**
    * Returns weights if instance is assigned to more than one subset. Returns
    * null if instance is only assigned to one subset.
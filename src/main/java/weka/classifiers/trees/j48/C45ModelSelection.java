@@ -51,6 +51,9 @@ public class C45ModelSelection extends ModelSelection {
   /** Do not relocate split point to actual data value */
   protected final boolean m_doNotMakeSplitPointActualValue;
 
+  /** The bins to search for numeric split points on (null to sort the data) */
+  protected NumericBins m_bins;
+
   /**
    * Initializes the split selection method with the given parameters.
    * 
@@ -71,12 +74,37 @@ public class C45ModelSelection extends ModelSelection {
     m_doNotMakeSplitPointActualValue = doNotMakeSplitPointActualValue;
   }
 
+  /**
+   * Sets the bins to search for split points on numeric attributes on. Split
+   * points are then only searched for at the boundaries between bins, using
+   * per-class histograms of the data, instead of sorting the data.
+   * 
+   * @param bins the bins, or null to search on the sorted data
+   */
+  public void setNumericBins(NumericBins bins) {
+
+    m_bins = bins;
+  }
+
+  /**
+   * Returns the bins split points are searched for on.
+   * 
+   * @return the bins, or null if the data is sorted
+   */
+  public NumericBins getNumericBins() {
+
+    return m_bins;
+  }
+
   /**
    * Sets reference to training data to null.
    */
   public void cleanup() {
 
     m_allData = null;
+    if (m_bins != null) {
+      m_bins.cleanup();
+    }
   }
 
   /**
@@ -95,6 +123,7 @@ public class C45ModelSelection extends ModelSelection {
     Distribution checkDistribution;
     Attribute attribute;
     double sumOfWeights;
+    double[][] histograms = null;
     int i;
 
     try {
@@ -126,6 +155,9 @@ public class C45ModelSelection extends ModelSelection {
 
       currentModel = new C45Split[data.numAttributes()];
       sumOfWeights = data.sumOfWeights();
+      if ((m_bins != null) && m_bins.useHistograms(data)) {
+        histograms = m_bins.histograms(data);
+      }
 
       // For each attribute.
       for (i = 0; i < data.numAttributes(); i++) {
@@ -136,7 +168,11 @@ public class C45ModelSelection extends ModelSelection {
           // Get models for current attribute.
           currentModel[i] = new C45Split(i, m_minNoObj, sumOfWeights,
             m_useMDLcorrection);
-          currentModel[i].buildClassifier(data);
+          if (histograms != null) {
+            currentModel[i].buildClassifier(data, m_bins, histograms);
+          } else {
+            currentModel[i].buildClassifier(data);
+          }
 
           // Check if useful split for current attribute
           // exists and check for enumerated attributes with
@@ -189,9 +225,18 @@ public class C45ModelSelection extends ModelSelection {
       // the complete distribution is stored with the model.
       bestModel.distribution().addInstWithUnknown(data, bestModel.attIndex());
 
+      // Move a split point found on histograms between the node's values.
+      if (histograms != null) {
+        bestModel.refineSplitPoint(data);
+      }
+
       // Set the split point analogue to C45 if attribute numeric.
       if ((m_allData != null) && (!m_doNotMakeSplitPointActualValue)) {
-        bestModel.setSplitPoint(m_allData);
+        if (m_bins != null) {
+          bestModel.setSplitPoint(m_bins);
+        } else {
+          bestModel.setSplitPoint(m_allData);
+        }
       }
       return bestModel;
     } catch (Exception e) {
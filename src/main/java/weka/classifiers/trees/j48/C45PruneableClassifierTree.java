@@ -58,6 +58,22 @@ public class C45PruneableClassifierTree
   /** Cleanup after the tree has been built. */
   protected boolean m_cleanup = true;
 
+  /**
+   * The data the training rows of this node refer to. Pruning passes the
+   * training data down the tree as rows, and a node only holds its training
+   * data as rows while m_train is null.
+   */
+  protected transient Instances m_trainSource;
+
+  /** The rows of the training data of this node in m_trainSource. */
+  protected transient int[] m_trainRows;
+
+  /** The weights of the training rows, used instead of the instance weights. */
+  protected transient double[] m_trainWeights;
+
+  /** The training data of this node, while it is spilled out of memory. */
+  protected transient SpilledRows m_spilledTrain;
+
   /**
    * Constructor for pruneable tree structure. Stores reference
    * to associated training data at each node.
@@ -159,8 +175,8 @@ public class C45PruneableClassifierTree
       // Compute error for largest branch
       indexOfLargestBranch = localModel().distribution().maxBag();
       if (m_subtreeRaising) {
-	errorsLargestBranch = son(indexOfLargestBranch).
-	  getEstimatedErrorsForBranch((Instances)m_train);
+	errorsLargestBranch = 
+	  getEstimatedErrorsForRaisedBranch(indexOfLargestBranch);
       } else {
 	errorsLargestBranch = Double.MAX_VALUE;
       }
@@ -192,7 +208,7 @@ public class C45PruneableClassifierTree
 	m_sons = largestBranch.m_sons;
 	m_localModel = largestBranch.localModel();
 	m_isLeaf = largestBranch.m_isLeaf;
-	newDistribution(m_train);
+	newTrainingDistribution();
 	prune();
       }
     }
@@ -244,24 +260,71 @@ public class C45PruneableClassifierTree
   protected double getEstimatedErrorsForBranch(Instances data)
        throws Exception {
 
-    Instances [] localInstances;
+    int[] rows = new int[data.numInstances()];
+    double[] weights = new double[data.numInstances()];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = i;
+      weights[i] = data.instance(i).weight();
+    }
+    return getEstimatedErrorsForBranch(data, rows, weights,
+				       new Distribution(1, data.numClasses()));
+  }
+
+  /**
+   * Computes estimated errors for one branch, for the given rows of the
+   * data. The rows are split down the branch without copying instances.
+   *
+   * @param data the data the rows refer to
+   * @param rows the rows to work with
+   * @param weights the weights of the rows
+   * @param leafDistribution the distribution to reuse for the leaves
+   * @return the estimated errors
+   * @throws Exception if something goes wrong
+   */
+  protected double getEstimatedErrorsForBranch(Instances data, int[] rows,
+					       double[] weights,
+					       Distribution leafDistribution)
+       throws Exception {
+
     double errors = 0;
     int i;
 
-    if (m_isLeaf)
-      return getEstimatedErrorsForDistribution(new Distribution(data));
-    else{
+    if (m_isLeaf) {
+      leafDistribution.initialize();
+      for (i = 0; i < rows.length; i++)
+	leafDistribution.add(0, (int)data.instance(rows[i]).classValue(),
+			     weights[i]);
+      return getEstimatedErrorsForDistribution(leafDistribution);
+    } else{
       Distribution savedDist = localModel().m_distribution;
-      localModel().resetDistribution(data);
-      localInstances = (Instances[])localModel().split(data);
+      localModel().resetDistribution(data, rows, weights);
+      double[][] localWeights = new double[m_sons.length][];
+      int[][] localRows = localModel().split(data, rows, weights, localWeights);
       localModel().m_distribution = savedDist;
       for (i=0;i<m_sons.length;i++)
 	errors = errors+
-	  son(i).getEstimatedErrorsForBranch(localInstances[i]);
+	  son(i).getEstimatedErrorsForBranch(data, localRows[i],
+					     localWeights[i], leafDistribution);
       return errors;
     }
   }
 
+  /**
+   * Computes estimated errors for the branch of the given son if it
+   * replaced this node, i.e., for the training data of this node.
+   *
+   * @param index the index of the son
+   * @return the estimated errors
+   * @throws Exception if something goes wrong
+   */
+  protected double getEstimatedErrorsForRaisedBranch(int index)
+       throws Exception {
+
+    trainingRows();
+    return son(index).getEstimatedErrorsForBranch(m_trainSource, m_trainRows,
+      m_trainWeights, new Distribution(1, m_trainSource.numClasses()));
+  }
+
   /**
    * Computes estimated errors for leaf.
    * 
@@ -317,24 +380,157 @@ public class C45PruneableClassifierTree
    */
   protected void newDistribution(Instances data) throws Exception {
 
-    Instances [] localInstances;
-
-    localModel().resetDistribution(data);
     m_train = data;
+    newTrainingDistribution();
+  }
+
+  /**
+   * Computes new distributions of instances for nodes in tree, for the
+   * training data of this node.
+   *
+   * @throws Exception if something goes wrong
+   */
+  protected void newTrainingDistribution() throws Exception {
+
+    trainingRows();
+    newDistribution(m_trainSource, m_trainRows, m_trainWeights);
+  }
+
+  /**
+   * Computes new distributions of instances for nodes in tree, for the
+   * given rows of the data. The rows are split down the tree and kept at
+   * each node as its training data, without copying instances unless the
+   * tree is not cleaned up afterwards.
+   *
+   * @param data the data the rows refer to
+   * @param rows the rows to compute the distributions for
+   * @param weights the weights of the rows
+   * @throws Exception if something goes wrong
+   */
+  protected void newDistribution(Instances data, int[] rows, double[] weights)
+       throws Exception {
+
+    localModel().resetDistribution(data, rows, weights);
+    m_train = null;
+    m_spilledTrain = null;
+    m_trainSource = data;
+    m_trainRows = rows;
+    m_trainWeights = weights;
+    if (!m_cleanup) {
+      getTrainingData();
+    }
     if (!m_isLeaf){
-      localInstances = 
-	(Instances [])localModel().split(data);
+      double[][] localWeights = new double[m_sons.length][];
+      int[][] localRows = localModel().split(data, rows, weights, localWeights);
       for (int i = 0; i < m_sons.length; i++)
-	son(i).newDistribution(localInstances[i]);
+	son(i).newDistribution(data, localRows[i], localWeights[i]);
     } else {
 
       // Check whether there are some instances at the leaf now!
-      if (!Utils.eq(data.sumOfWeights(), 0)) {
+      if (!Utils.eq(Utils.sum(weights), 0)) {
 	m_isEmpty = false;
       }
     }
   }
 
+  /**
+   * Makes the training data of this node available as rows of
+   * m_trainSource.
+   */
+  protected void trainingRows() {
+
+    reloadTrainingData();
+    if (m_train != null && m_trainSource != m_train) {
+      m_trainSource = m_train;
+      m_trainRows = new int[m_train.numInstances()];
+      m_trainWeights = new double[m_train.numInstances()];
+      for (int i = 0; i < m_trainRows.length; i++) {
+	m_trainRows[i] = i;
+	m_trainWeights[i] = m_train.instance(i).weight();
+      }
+    }
+  }
+
+  /**
+   * Returns the training data of this node, copying the instances if
+   * the node holds it as rows.
+   *
+   * @return the training data
+   */
+  @Override
+  public Instances getTrainingData() {
+
+    reloadTrainingData();
+    if (m_train == null && m_trainRows != null) {
+      Instances data = new Instances(m_trainSource, m_trainRows.length);
+      for (int i = 0; i < m_trainRows.length; i++) {
+	data.add(m_trainSource.instance(m_trainRows[i]));
+	data.lastInstance().setWeight(m_trainWeights[i]);
+      }
+      m_train = data;
+      m_trainSource = null;
+      m_trainRows = null;
+      m_trainWeights = null;
+    }
+    return m_train;
+  }
+
+  /**
+   * Returns the training data of this node if it is held in memory as
+   * instances.
+   *
+   * @return the training data, or null if it is held as rows or spilled
+   */
+  public Instances getTrainingDataInMemory() {
+
+    return m_train;
+  }
+
+  /**
+   * Moves the training data of this node out of memory. It is reloaded as
+   * rows of the source of the spilled rows when the node needs it again.
+   *
+   * @param rows the spilled training data
+   */
+  public void spillTrainingData(SpilledRows rows) {
+
+    m_spilledTrain = rows;
+    m_train = null;
+    m_trainSource = null;
+    m_trainRows = null;
+    m_trainWeights = null;
+  }
+
+  /**
+   * Reloads the training data of this node as rows, if it has been spilled.
+   */
+  protected void reloadTrainingData() {
+
+    if (m_spilledTrain != null) {
+      int numRows = m_spilledTrain.numRows();
+      m_trainRows = new int[numRows];
+      m_trainWeights = new double[numRows];
+      m_spilledTrain.load(m_trainRows, m_trainWeights);
+      m_trainSource = m_spilledTrain.source();
+      m_spilledTrain = null;
+    }
+  }
+
+  /**
+   * Cleanup in order to save memory.
+   *
+   * @param justHeaderInfo
+   */
+  @Override
+  public void cleanup(Instances justHeaderInfo) {
+
+    m_spilledTrain = null;
+    m_trainSource = null;
+    m_trainRows = null;
+    m_trainWeights = null;
+    super.cleanup(justHeaderInfo);
+  }
+
   /**
    * Method just exists to make program easier to read.
    */
@@ -72,6 +72,9 @@ public class C45Split extends ClassifierSplitModel {
   /** Static reference to splitting criterion. */
   protected static GainRatioSplitCrit gainRatioCrit = new GainRatioSplitCrit();
 
+  /** The bins, if the split point has been searched for on histograms. */
+  protected transient NumericBins m_bins;
+
   /**
    * Initializes the split model.
    */
@@ -120,6 +123,37 @@ public class C45Split extends ClassifierSplitModel {
     }
   }
 
+  /**
+   * Creates a C4.5-type split on the given data, searching for the split point
+   * of a numeric attribute on the given histograms instead of on the sorted
+   * data. Only the boundaries between bins are considered, and the split point
+   * is the cut point of a bin until refineSplitPoint() is called.
+   * Assumes that none of the class values is missing.
+   * 
+   * @param trainInstances the data
+   * @param bins the bins of the numeric attributes
+   * @param histograms the histograms of the data
+   * @exception Exception if something goes wrong
+   */
+  public void buildClassifier(Instances trainInstances, NumericBins bins,
+    double[][] histograms) throws Exception {
+
+    m_bins = bins;
+    if (!bins.isBinned(m_attIndex)) {
+      buildClassifier(trainInstances);
+      return;
+    }
+
+    // Initialize the remaining instance variables.
+    m_numSubsets = 0;
+    m_splitPoint = Double.MAX_VALUE;
+    m_infoGain = 0;
+    m_gainRatio = 0;
+    m_complexityIndex = 2;
+    m_index = 0;
+    handleBinnedAttribute(trainInstances.numClasses(), histograms[m_attIndex]);
+  }
+
   /**
    * Returns index of attribute for which split was generated.
    */
@@ -327,6 +361,110 @@ public class C45Split extends ClassifierSplitModel {
       m_infoGain);
   }
 
+  /**
+   * Creates split on numeric attribute, using the per-class histogram of its
+   * bins.
+   * 
+   * @exception Exception if something goes wrong
+   */
+  private void handleBinnedAttribute(int numClasses, double[] histogram)
+    throws Exception {
+
+    int numBins = m_bins.numBins(m_attIndex);
+    int lastBin = -1;
+    int splitBin = -1;
+    double currentInfoGain;
+    double defaultEnt;
+    double minSplit;
+    double[] binWeights = new double[numBins];
+
+    // Current attribute is a numeric attribute.
+    m_distribution = new Distribution(2, numClasses);
+    for (int b = 0; b < numBins; b++) {
+      for (int c = 0; c < numClasses; c++) {
+        binWeights[b] += histogram[b * numClasses + c];
+        m_distribution.add(1, c, histogram[b * numClasses + c]);
+      }
+      if (Utils.gr(binWeights[b], 0)) {
+        lastBin = b;
+      }
+    }
+
+    // Compute minimum number of Instances required in each
+    // subset.
+    minSplit = 0.1 * (m_distribution.total()) / numClasses;
+    if (Utils.smOrEq(minSplit, m_minNoObj)) {
+      minSplit = m_minNoObj;
+    } else if (Utils.gr(minSplit, 25)) {
+      minSplit = 25;
+    }
+
+    // Enough Instances with known values? (Their weight is used, as the
+    // histogram holds no counts.)
+    if (Utils.sm(m_distribution.total(), 2 * minSplit)) {
+      return;
+    }
+
+    // Compute values of criteria for the boundaries between
+    // non-empty bins.
+    defaultEnt = infoGainCrit.oldEnt(m_distribution);
+    for (int b = 0; b < lastBin; b++) {
+      if (!Utils.gr(binWeights[b], 0)) {
+        continue;
+      }
+
+      // Move class values of the bin to the first subset.
+      for (int c = 0; c < numClasses; c++) {
+        m_distribution.add(0, c, histogram[b * numClasses + c]);
+        m_distribution.add(1, c, -histogram[b * numClasses + c]);
+      }
+
+      // Check if enough Instances in each subset and compute
+      // values for criteria.
+      if (Utils.grOrEq(m_distribution.perBag(0), minSplit)
+        && Utils.grOrEq(m_distribution.perBag(1), minSplit)) {
+        currentInfoGain = infoGainCrit.splitCritValue(m_distribution,
+          m_sumOfWeights, defaultEnt);
+        if (Utils.gr(currentInfoGain, m_infoGain)) {
+          m_infoGain = currentInfoGain;
+          splitBin = b;
+        }
+        m_index++;
+      }
+    }
+
+    // Was there any useful split?
+    if (m_index == 0) {
+      return;
+    }
+
+    // Compute modified information gain for best split.
+    if (m_useMDLcorrection) {
+      m_infoGain = m_infoGain - (Utils.log2(m_index) / m_sumOfWeights);
+    }
+    if (Utils.smOrEq(m_infoGain, 0)) {
+      return;
+    }
+
+    // Set instance variables' values to values for
+    // best split.
+    m_numSubsets = 2;
+    m_splitPoint = m_bins.cut(m_attIndex, splitBin);
+
+    // Restore distribution for best split.
+    double[][] table = new double[2][numClasses];
+    for (int b = 0; b < numBins; b++) {
+      for (int c = 0; c < numClasses; c++) {
+        table[(b <= splitBin) ? 0 : 1][c] += histogram[b * numClasses + c];
+      }
+    }
+    m_distribution = new Distribution(table);
+
+    // Compute modified gain ratio for best split.
+    m_gainRatio = gainRatioCrit.splitCritValue(m_distribution, m_sumOfWeights,
+      m_infoGain);
+  }
+
   /**
    * Returns (C4.5-type) information gain for the generated split.
    */
@@ -422,6 +560,70 @@ public class C45Split extends ClassifierSplitModel {
     }
   }
 
+  /**
+   * Moves a split point found on histograms to halfway between the largest
+   * value of the given (node's) data below it and the smallest one above it,
+   * as if it had been found on the sorted data. The subsets do not change.
+   * 
+   * @param data the data the split was built on
+   */
+  public final void refineSplitPoint(Instances data) {
+
+    if ((m_bins == null) || (m_numSubsets < 2)
+      || !data.attribute(m_attIndex).isNumeric()) {
+      return;
+    }
+    double lower = -Double.MAX_VALUE;
+    double upper = Double.MAX_VALUE;
+    for (int i = 0; i < data.numInstances(); i++) {
+      double value = data.instance(i).value(m_attIndex);
+      if (!Utils.isMissingValue(value)) {
+        if (value <= m_splitPoint) {
+          lower = Math.max(lower, value);
+        } else {
+          upper = Math.min(upper, value);
+        }
+      }
+    }
+    m_splitPoint = (lower + upper) / 2;
+
+    // In case we have a numerical precision problem we need to choose the
+    // smaller value
+    if (m_splitPoint == upper) {
+      m_splitPoint = lower;
+    }
+  }
+
+  /**
+   * Splits the given set of instances into subsets. If the split was built
+   * on histograms of the data, the histograms of the subsets are derived.
+   * 
+   * @exception Exception if something goes wrong
+   */
+  @Override
+  public Instances[] split(Instances data) throws Exception {
+
+    Instances[] result = super.split(data);
+    if (m_bins != null) {
+      m_bins.split(data, result);
+    }
+    return result;
+  }
+
+  /**
+   * Sets split point to greatest value of the full training data smaller or
+   * equal to old split point, like setSplitPoint(Instances), but looks it up
+   * in the sorted values kept by the given bins.
+   * 
+   * @param bins the bins built on the full training data
+   */
+  public final void setSplitPoint(NumericBins bins) {
+
+    if (bins.isBinned(m_attIndex) && (m_numSubsets > 1)) {
+      m_splitPoint = bins.actualValue(m_attIndex, m_splitPoint);
+    }
+  }
+
   /**
    * Returns the minsAndMaxs of the index.th subset.
    */
@@ -462,6 +664,34 @@ public class C45Split extends ClassifierSplitModel {
     m_distribution = newD;
   }
 
+  /**
+   * Sets distribution associated with model, for the given rows of the
+   * instances.
+   */
+  @Override
+  public void resetDistribution(Instances data, int[] rows, double[] weights)
+    throws Exception {
+
+    int numKnown = 0;
+    for (int row : rows) {
+      if (whichSubset(data.instance(row)) > -1) {
+        numKnown++;
+      }
+    }
+    int[] knownRows = new int[numKnown];
+    double[] knownWeights = new double[numKnown];
+    numKnown = 0;
+    for (int i = 0; i < rows.length; i++) {
+      if (whichSubset(data.instance(rows[i])) > -1) {
+        knownRows[numKnown] = rows[i];
+        knownWeights[numKnown++] = weights[i];
+      }
+    }
+    Distribution newD = new Distribution(data, knownRows, knownWeights, this);
+    newD.addInstWithUnknown(data, rows, weights, m_attIndex);
+    m_distribution = newD;
+  }
+
   /**
    * Returns weights if instance is assigned to more than one subset. Returns
    * null if instance is only assigned to one subset.
@@ -234,6 +234,16 @@ public abstract class ClassifierSplitModel
     m_distribution = new Distribution(data, this);
   }
 
+  /**
+   * Sets distribution associated with model, for the given rows of the
+   * instances. The given weights are used instead of the weights of the
+   * instances.
+   */
+  public void resetDistribution(Instances data, int[] rows, double[] weights)
+    throws Exception {
+    m_distribution = new Distribution(data, rows, weights, this);
+  }
+
   /**
    * Sets the distribution associated with model.
    *
@@ -291,6 +301,64 @@ public abstract class ClassifierSplitModel
     return instances;
   }
 
+  /**
+   * Splits the given rows of the instances into subsets, without copying
+   * the instances. The given weights are used instead of the weights of the
+   * instances.
+   *
+   * @param data the instances the rows refer to
+   * @param rows the rows to split
+   * @param weights the weights of the rows
+   * @param subsetWeights filled with the weights of the rows in each subset
+   * @return the rows in each subset
+   * @exception Exception if something goes wrong
+   */
+  public int [][] split(Instances data, int[] rows, double[] weights,
+                        double[][] subsetWeights) throws Exception {
+
+    // Find size and constitution of subsets
+    int[] subsetSize = new int[m_numSubsets];
+    for (int i = 0; i < rows.length; i++) {
+      Instance instance = data.instance(rows[i]);
+      int subset = whichSubset(instance);
+      if (subset > -1) {
+        subsetSize[subset]++;
+      } else {
+        double[] instWeights = weights(instance);
+        for (int j = 0; j < m_numSubsets; j++) {
+          if (Utils.gr(instWeights[j], 0)) {
+            subsetSize[j]++;
+          }
+        }
+      }
+    }
+
+    // Create subsets
+    int[][] subsetRows = new int[m_numSubsets][];
+    for (int j = 0; j < m_numSubsets; j++) {
+      subsetRows[j] = new int[subsetSize[j]];
+      subsetWeights[j] = new double[subsetSize[j]];
+      subsetSize[j] = 0;
+    }
+    for (int i = 0; i < rows.length; i++) {
+      Instance instance = data.instance(rows[i]);
+      int subset = whichSubset(instance);
+      if (subset > -1) {
+        subsetRows[subset][subsetSize[subset]] = rows[i];
+        subsetWeights[subset][subsetSize[subset]++] = weights[i];
+      } else {
+        double[] instWeights = weights(instance);
+        for (int j = 0; j < m_numSubsets; j++) {
+          if (Utils.gr(instWeights[j], 0)) {
+            subsetRows[j][subsetSize[j]] = rows[i];
+            subsetWeights[j][subsetSize[j]++] = instWeights[j] * weights[i];
+          }
+        }
+      }
+    }
+    return subsetRows;
+  }
+
   /**
    * Returns weights if instance is assigned to more than one subset.
    * Returns null if instance is only assigned to one subset.
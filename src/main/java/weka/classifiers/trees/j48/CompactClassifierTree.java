@@ -0,0 +1,720 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    CompactClassifierTree.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import weka.core.AdditionalMeasureProducer;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Immutable, compact representation of a trained C4.5 tree, for prediction
+ * only. The nodes are stored in breadth-first order in parallel arrays (the
+ * sons of a node are contiguous), and the leaves keep just their class counts
+ * in a shared array, instead of a node object with a split model and its
+ * distribution per node. The predictions are the same as the ones of the
+ * original tree, with and without the Laplace correction.
+ * <p>
+ * The description of the tree (its text, graph and prefix representations,
+ * size and additional measures) is rendered when the tree is frozen and kept
+ * in a side table, with the representations compressed. The tree can not be
+ * exported as source code.
+ *
+ * @version $Revision$
+ */
+public class CompactClassifierTree extends ClassifierTree implements
+	AdditionalMeasureProducer {
+
+	/** for serialization */
+	private static final long serialVersionUID = -3402539617372861450L;
+
+	/** Flag of the nodes whose split is a binary split (BinC45Split). */
+	protected static final byte BINARY_SPLIT = 1;
+
+	/** Flag of the empty nodes. */
+	protected static final byte EMPTY = 2;
+
+	/** The number of classes. */
+	protected final int m_numClasses;
+
+	/** The split attribute of each inner node (and of each leaf that keeps a split). */
+	protected final int[] m_attIndex;
+
+	/** The split point of each inner node on a numeric attribute (or binary split). */
+	protected final double[] m_splitPoint;
+
+	/** The flags of each node. */
+	protected final byte[] m_flags;
+
+	/** The index of the first son of each inner node (-1 for leaves). */
+	protected final int[] m_firstSon;
+
+	/** The number of sons of each inner node. */
+	protected final int[] m_numSons;
+
+	/** The weight of each node when the split attribute of its parent is missing. */
+	protected final double[] m_missingWeight;
+
+	/** The position of the class counts of each leaf in m_counts (-1 for inner nodes). */
+	protected final int[] m_countsOffset;
+
+	/**
+	 * The class counts of the leaves: the total, the count per class, the number
+	 * of bags of the split kept by the leaf (0 if none) and, for each bag, its
+	 * total and its count per class.
+	 */
+	protected final double[] m_counts;
+
+	/** The side table with the description of the tree. */
+	protected final Description m_description;
+
+	/**
+	 * The description of a frozen tree, rendered before its nodes are dropped.
+	 */
+	protected static class Description implements Serializable {
+
+		/** for serialization */
+		private static final long serialVersionUID = 2251478372154398532L;
+
+		/** The compressed text representation (null if not available). */
+		protected byte[] m_text;
+
+		/** The compressed graph representation (null if not available). */
+		protected byte[] m_graph;
+
+		/** The compressed prefix representation (null if not available). */
+		protected byte[] m_prefix;
+
+		/** The number of leaves. */
+		protected int m_numLeaves;
+
+		/** The number of nodes. */
+		protected int m_numNodes;
+
+		/** The average length of the branches. */
+		protected double m_branchesLength;
+
+		/** The weighted average length of the branches. */
+		protected double m_weightedBranchesLength;
+
+		/** The additional measures of the tree, if any. */
+		protected Map<String, Double> m_measures = new LinkedHashMap<String, Double>();
+	}
+
+	/**
+	 * Freezes the given trained tree into a compact representation. Only trees
+	 * made of C4.5 splits (C45Split, BinC45Split and their subclasses) and
+	 * NoSplit leaves can be frozen.
+	 *
+	 * @param tree the trained tree
+	 * @return the compact tree (the same tree if it is already frozen)
+	 * @throws Exception if the tree can not be frozen
+	 */
+	public static CompactClassifierTree freeze(ClassifierTree tree) throws Exception {
+
+		if (tree instanceof CompactClassifierTree) {
+			return (CompactClassifierTree) tree;
+		}
+		return new CompactClassifierTree(tree);
+	}
+
+	/**
+	 * Creates the compact representation of the given tree.
+	 *
+	 * @param tree the trained tree
+	 * @throws Exception if the tree can not be frozen
+	 */
+	protected CompactClassifierTree(ClassifierTree tree) throws Exception {
+
+		super(null);
+
+		// Nodes in breadth-first order, empty nodes are leaves
+		ArrayList<ClassifierTree> nodes = new ArrayList<ClassifierTree>();
+		ArrayList<Integer> parents = new ArrayList<Integer>();
+		nodes.add(tree);
+		parents.add(-1);
+		for (int n = 0; n < nodes.size(); n++) {
+			ClassifierTree node = nodes.get(n);
+			if (!isLeaf(node, n)) {
+				for (ClassifierTree son : node.m_sons) {
+					nodes.add(son);
+					parents.add(n);
+				}
+			}
+		}
+
+		int numNodes = nodes.size();
+		m_numClasses = tree.m_localModel.distribution().numClasses();
+		m_attIndex = new int[numNodes];
+		m_splitPoint = new double[numNodes];
+		m_flags = new byte[numNodes];
+		m_firstSon = new int[numNodes];
+		m_numSons = new int[numNodes];
+		m_missingWeight = new double[numNodes];
+		m_countsOffset = new int[numNodes];
+		double[] counts = new double[numNodes * (m_numClasses + 2)];
+		int numCounts = 0;
+		int nextSon = 1;
+
+		for (int n = 0; n < numNodes; n++) {
+			ClassifierTree node = nodes.get(n);
+			ClassifierSplitModel model = node.m_localModel;
+			m_attIndex[n] = -1;
+			m_firstSon[n] = -1;
+			m_countsOffset[n] = -1;
+			if (n > 0) {
+				// The weight of the son in the missing value case of its parent
+				ClassifierTree parent = nodes.get(parents.get(n));
+				int subset = n - m_firstSon[parents.get(n)];
+				Distribution parentDist = parent.m_localModel.distribution();
+				m_missingWeight[n] = parentDist.perBag(subset) / parentDist.total();
+				if (node.m_isEmpty) {
+					m_flags[n] |= EMPTY;
+				}
+			}
+
+			if (!isLeaf(node, n)) {
+				setSplit(n, model);
+				m_firstSon[n] = nextSon;
+				m_numSons[n] = node.m_sons.length;
+				nextSon += node.m_sons.length;
+			} else {
+				Distribution dist;
+				int numBags = 0;
+				if ((m_flags[n] & EMPTY) != 0) {
+					// An empty son takes the probabilities of its bag in its parent
+					dist = nodes.get(parents.get(n)).m_localModel.distribution();
+					int subset = n - m_firstSon[parents.get(n)];
+					if (Utils.gr(dist.perBag(subset), 0)) {
+						counts = ensureCapacity(counts, numCounts + m_numClasses + 2);
+						m_countsOffset[n] = numCounts;
+						counts[numCounts++] = dist.perBag(subset);
+						for (int c = 0; c < m_numClasses; c++) {
+							counts[numCounts++] = dist.perClassPerBag(subset, c);
+						}
+						counts[numCounts++] = 0;
+						continue;
+					}
+				} else {
+					dist = model.distribution();
+					if (!(model instanceof NoSplit)) {
+						// A leaf that keeps a split distributes the instances with missing values
+						setSplit(n, model);
+						numBags = dist.numBags();
+					}
+				}
+				counts = ensureCapacity(counts, numCounts + (numBags + 1) * (m_numClasses + 1) + 1);
+				m_countsOffset[n] = numCounts;
+				counts[numCounts++] = dist.total();
+				for (int c = 0; c < m_numClasses; c++) {
+					counts[numCounts++] = dist.perClass(c);
+				}
+				counts[numCounts++] = numBags;
+				for (int i = 0; i < numBags; i++) {
+					counts[numCounts++] = dist.perBag(i);
+					for (int c = 0; c < m_numClasses; c++) {
+						counts[numCounts++] = dist.perClassPerBag(i, c);
+					}
+				}
+			}
+		}
+		m_counts = Arrays.copyOf(counts, numCounts);
+
+		m_isLeaf = tree.m_isLeaf;
+		m_isEmpty = tree.m_isEmpty;
+		// Just the header of the data, shared with the original tree if it was cleaned up
+		m_train = tree.m_train;
+		if ((m_train != null) && (m_train.numInstances() > 0)) {
+			m_train = new Instances(m_train, 0);
+		}
+		m_description = describe(tree);
+	}
+
+	/**
+	 * Whether the given node is a leaf of the compact tree.
+	 *
+	 * @param node the node
+	 * @param n its index in breadth-first order
+	 * @return true if it is a leaf
+	 */
+	private static boolean isLeaf(ClassifierTree node, int n) {
+
+		return node.m_isLeaf || ((n > 0) && node.m_isEmpty);
+	}
+
+	/**
+	 * Stores the split of the given node.
+	 *
+	 * @param n the index of the node
+	 * @param model its split model
+	 * @throws Exception if the split model is not a C4.5 split
+	 */
+	private void setSplit(int n, ClassifierSplitModel model) throws Exception {
+
+		if (model instanceof C45Split) {
+			m_attIndex[n] = ((C45Split) model).attIndex();
+			m_splitPoint[n] = ((C45Split) model).splitPoint();
+		} else if (model instanceof BinC45Split) {
+			m_attIndex[n] = ((BinC45Split) model).attIndex();
+			m_splitPoint[n] = ((BinC45Split) model).splitPoint();
+			m_flags[n] |= BINARY_SPLIT;
+		} else {
+			throw new Exception("Only trees of C4.5 splits can be frozen: "
+				+ model.getClass().getName());
+		}
+	}
+
+	/**
+	 * Grows the given array, if needed, to the given capacity.
+	 *
+	 * @param array the array
+	 * @param capacity the capacity needed
+	 * @return the array, or a larger copy of it
+	 */
+	private static double[] ensureCapacity(double[] array, int capacity) {
+
+		if (array.length >= capacity) {
+			return array;
+		}
+		return Arrays.copyOf(array, Math.max(capacity, 2 * array.length));
+	}
+
+	/**
+	 * Renders the description of the given tree.
+	 *
+	 * @param tree the tree
+	 * @return the description
+	 */
+	private static Description describe(ClassifierTree tree) throws Exception {
+
+		Description description = new Description();
+		description.m_text = compress(tree.toString());
+		try {
+			description.m_graph = compress(tree.graph());
+		} catch (Exception e) {
+			description.m_graph = null;
+		}
+		try {
+			description.m_prefix = compress(tree.prefix());
+		} catch (Exception e) {
+			description.m_prefix = null;
+		}
+		description.m_numLeaves = tree.numLeaves();
+		description.m_numNodes = tree.numNodes();
+		description.m_branchesLength = tree.averageBranchesLength(false);
+		description.m_weightedBranchesLength = tree.averageBranchesLength(true);
+		if (tree instanceof AdditionalMeasureProducer) {
+			AdditionalMeasureProducer producer = (AdditionalMeasureProducer) tree;
+			Enumeration<String> names = producer.enumerateMeasures();
+			while (names.hasMoreElements()) {
+				String name = names.nextElement();
+				description.m_measures.put(name, producer.getMeasure(name));
+			}
+		}
+		return description;
+	}
+
+	/**
+	 * Compresses the given text.
+	 *
+	 * @param text the text
+	 * @return the compressed text
+	 * @throws UnsupportedEncodingException if UTF-8 is not supported
+	 */
+	private static byte[] compress(String text) throws UnsupportedEncodingException {
+
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setInput(text.getBytes("UTF-8"));
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished()) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decompresses the given text.
+	 *
+	 * @param compressed the compressed text
+	 * @return the text
+	 */
+	private static String decompress(byte[] compressed) {
+
+		Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		try {
+			while (!inflater.finished()) {
+				out.write(buffer, 0, inflater.inflate(buffer));
+			}
+			return out.toString("UTF-8");
+		} catch (DataFormatException | UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns the number of nodes kept in the compact arrays.
+	 *
+	 * @return the number of nodes
+	 */
+	public int numCompactNodes() {
+
+		return m_attIndex.length;
+	}
+
+	/**
+	 * Returns the subset of the given inner node the instance is assigned to, as
+	 * the C4.5 split of the node does.
+	 *
+	 * @param n the index of the node
+	 * @param instance the instance (with a value for the split attribute)
+	 * @return the subset
+	 */
+	private int whichSubset(int n, Instance instance) {
+
+		int att = m_attIndex[n];
+		if (instance.attribute(att).isNominal()) {
+			if ((m_flags[n] & BINARY_SPLIT) != 0) {
+				return ((int) m_splitPoint[n] == (int) instance.value(att)) ? 0 : 1;
+			}
+			return (int) instance.value(att);
+		}
+		return (instance.value(att) <= m_splitPoint[n]) ? 0 : 1;
+	}
+
+	/**
+	 * Returns the relative frequency of a class in a bag of the counts of a leaf
+	 * (or in all of them, if the bag is -1).
+	 *
+	 * @param offset the position of the counts of the leaf
+	 * @param classIndex the class index
+	 * @param bag the bag, or -1
+	 * @param useLaplace whether to use the Laplace correction
+	 * @return the relative frequency
+	 */
+	private double prob(int offset, int classIndex, int bag, boolean useLaplace) {
+
+		if (bag >= 0) {
+			int bagOffset = offset + m_numClasses + 2 + bag * (m_numClasses + 1);
+			double perBag = m_counts[bagOffset];
+			if (Utils.gr(perBag, 0)) {
+				double perClassPerBag = m_counts[bagOffset + 1 + classIndex];
+				return useLaplace ? (perClassPerBag + 1.0) / (perBag + m_numClasses)
+					: perClassPerBag / perBag;
+			}
+		}
+		double total = m_counts[offset];
+		double perClass = m_counts[offset + 1 + classIndex];
+		if (useLaplace) {
+			return (perClass + 1) / (total + m_numClasses);
+		}
+		return !Utils.eq(total, 0) ? perClass / total : 0;
+	}
+
+	/**
+	 * Returns the class probability of an instance at a leaf.
+	 *
+	 * @param n the index of the leaf
+	 * @param classIndex the class index
+	 * @param instance the instance
+	 * @param useLaplace whether to use the Laplace correction
+	 * @return the class probability
+	 */
+	private double leafProb(int n, int classIndex, Instance instance, boolean useLaplace) {
+
+		int offset = m_countsOffset[n];
+		int numBags = (int) m_counts[offset + m_numClasses + 1];
+		if ((numBags == 0) || !instance.isMissing(m_attIndex[n])) {
+			return prob(offset, classIndex, -1, useLaplace);
+		}
+		double total = m_counts[offset];
+		double prob = 0;
+		for (int i = 0; i < numBags; i++) {
+			double perBag = m_counts[offset + m_numClasses + 2 + i * (m_numClasses + 1)];
+			prob += (perBag / total) * prob(offset, classIndex, i, useLaplace);
+		}
+		return prob;
+	}
+
+	/**
+	 * Computes the probability of a class for a weighted instance from the
+	 * given node down.
+	 *
+	 * @param n the index of the node
+	 * @param classIndex the class index
+	 * @param instance the instance
+	 * @param weight the weight
+	 * @param useLaplace whether to use the Laplace correction
+	 * @return the probability
+	 */
+	private double getProbs(int n, int classIndex, Instance instance, double weight,
+		boolean useLaplace) {
+
+		while (m_firstSon[n] >= 0) {
+			if (instance.isMissing(m_attIndex[n])) {
+				double prob = 0;
+				for (int son = m_firstSon[n]; son < m_firstSon[n] + m_numSons[n]; son++) {
+					if ((m_flags[son] & EMPTY) == 0) {
+						prob += getProbs(son, classIndex, instance, m_missingWeight[son] * weight,
+							useLaplace);
+					}
+				}
+				return prob;
+			}
+			n = m_firstSon[n] + whichSubset(n, instance);
+		}
+		return weight * leafProb(n, classIndex, instance, useLaplace);
+	}
+
+	/**
+	 * Classifies an instance.
+	 *
+	 * @param instance the instance to classify
+	 * @return the classification
+	 */
+	@Override
+	public double classifyInstance(Instance instance) {
+
+		double maxProb = -1;
+		int maxIndex = 0;
+
+		for (int j = 0; j < instance.numClasses(); j++) {
+			double currentProb = getProbs(0, j, instance, 1, false);
+			if (Utils.gr(currentProb, maxProb)) {
+				maxIndex = j;
+				maxProb = currentProb;
+			}
+		}
+		return maxIndex;
+	}
+
+	/**
+	 * Returns class probabilities for a weighted instance.
+	 *
+	 * @param instance the instance to get the distribution for
+	 * @param useLaplace whether to use laplace or not
+	 * @return the distribution
+	 */
+	@Override
+	public double[] distributionForInstance(Instance instance, boolean useLaplace) {
+
+		double[] doubles = new double[instance.numClasses()];
+		for (int i = 0; i < doubles.length; i++) {
+			doubles[i] = getProbs(0, i, instance, 1, useLaplace);
+		}
+		return doubles;
+	}
+
+	/**
+	 * Computes a list that indicates node membership, in breadth-first order.
+	 *
+	 * @param instance the instance
+	 * @return the membership values
+	 */
+	@Override
+	public double[] getMembershipValues(Instance instance) {
+
+		double[] a = new double[m_attIndex.length];
+		a[0] = instance.weight();
+		for (int n = 0; n < a.length; n++) {
+			if (m_firstSon[n] >= 0) {
+				boolean missing = instance.isMissing(m_attIndex[n]);
+				int subset = missing ? -1 : whichSubset(n, instance);
+				for (int i = 0; i < m_numSons[n]; i++) {
+					double weight = missing ? m_missingWeight[m_firstSon[n] + i] : ((i == subset) ? 1.0 : 0.0);
+					a[m_firstSon[n] + i] = a[n] * weight;
+				}
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * A frozen tree can not be rebuilt.
+	 *
+	 * @param data the data
+	 * @throws Exception always
+	 */
+	@Override
+	public void buildClassifier(Instances data) throws Exception {
+
+		throw new Exception("A frozen tree can not be rebuilt!");
+	}
+
+	/**
+	 * Nothing to clean up in a frozen tree.
+	 *
+	 * @param justHeaderInfo the header of the data
+	 */
+	@Override
+	public void cleanup(Instances justHeaderInfo) {
+	}
+
+	/**
+	 * Returns the number of leaves of the original tree.
+	 *
+	 * @return the number of leaves
+	 */
+	@Override
+	public int numLeaves() {
+
+		return m_description.m_numLeaves;
+	}
+
+	/**
+	 * Returns the number of nodes of the original tree.
+	 *
+	 * @return the number of nodes
+	 */
+	@Override
+	public int numNodes() {
+
+		return m_description.m_numNodes;
+	}
+
+	/**
+	 * Returns the (weighted) average length of the branches from root to leaf.
+	 *
+	 * @param weighted whether to weight the branches by the size of the leaves
+	 * @return the average length of the branches
+	 */
+	@Override
+	public double averageBranchesLength(boolean weighted) {
+
+		return weighted ? m_description.m_weightedBranchesLength : m_description.m_branchesLength;
+	}
+
+	/**
+	 * Returns the graph of the tree, rendered when it was frozen.
+	 *
+	 * @return the graph
+	 * @throws Exception if it is not available
+	 */
+	@Override
+	public String graph() throws Exception {
+
+		if (m_description.m_graph == null) {
+			throw new Exception("The graph of the frozen tree is not available!");
+		}
+		return decompress(m_description.m_graph);
+	}
+
+	/**
+	 * Returns the tree in prefix order, rendered when it was frozen.
+	 *
+	 * @return the prefix order
+	 * @throws Exception if it is not available
+	 */
+	@Override
+	public String prefix() throws Exception {
+
+		if (m_description.m_prefix == null) {
+			throw new Exception("The prefix order of the frozen tree is not available!");
+		}
+		return decompress(m_description.m_prefix);
+	}
+
+	/**
+	 * A frozen tree can not be exported as source code.
+	 *
+	 * @param className the class name
+	 * @return nothing
+	 * @throws Exception always
+	 */
+	@Override
+	public StringBuffer[] toSource(String className) throws Exception {
+
+		throw new Exception("A frozen tree can not be exported as source code!");
+	}
+
+	/**
+	 * Returns the text of the tree, rendered when it was frozen.
+	 *
+	 * @return the tree structure
+	 */
+	@Override
+	public String toString() {
+
+		return decompress(m_description.m_text);
+	}
+
+	/**
+	 * Returns an enumeration of the additional measures of the original tree.
+	 *
+	 * @return an enumeration of the measure names
+	 */
+	@Override
+	public Enumeration<String> enumerateMeasures() {
+
+		return Collections.enumeration(m_description.m_measures.keySet());
+	}
+
+	/**
+	 * Returns the value of an additional measure of the original tree.
+	 *
+	 * @param additionalMeasureName the name of the measure
+	 * @return the value of the measure
+	 * @throws IllegalArgumentException if the measure is not supported
+	 */
+	@Override
+	public double getMeasure(String additionalMeasureName) {
+
+		for (Map.Entry<String, Double> measure : m_description.m_measures.entrySet()) {
+			if (measure.getKey().equalsIgnoreCase(additionalMeasureName)) {
+				return measure.getValue();
+			}
+		}
+		throw new IllegalArgumentException(additionalMeasureName
+			+ " not supported (frozen tree)");
+	}
+
+	/**
+	 * Returns the revision string.
+	 *
+	 * @return the revision
+	 */
+	@Override
+	public String getRevision() {
+		return RevisionUtils.extract("$Revision$");
+	}
+}
@@ -139,6 +139,29 @@ public class Distribution implements Cloneable, Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Creates a distribution according to the given rows of the instances and
+   * split model. The given weights are used instead of the weights of the
+   * instances.
+   * 
+   * @exception Exception if something goes wrong
+   */
+  public Distribution(Instances source, int[] rows, double[] weights,
+    ClassifierSplitModel modelToUse) throws Exception {
+
+    this(modelToUse.numSubsets(), source.numClasses());
+    for (int i = 0; i < rows.length; i++) {
+      Instance instance = source.instance(rows[i]);
+      int index = modelToUse.whichSubset(instance);
+      if (index != -1) {
+        add(index, (int) instance.classValue(), weights[i]);
+      } else {
+        addWeights((int) instance.classValue(), weights[i],
+          modelToUse.weights(instance));
+      }
+    }
+  }
+
   /**
    * Creates distribution with only one bag by merging all bags of given
    * distribution.
@@ -252,6 +275,18 @@ public class Distribution implements Cloneable, Serializable, RevisionHandler {
     totaL = totaL + weight;
   }
 
+  /**
+   * Adds the given weight of the given class to given bag.
+   */
+  public final void add(int bagIndex, int classIndex, double weight) {
+
+    m_perClassPerBag[bagIndex][classIndex] = m_perClassPerBag[bagIndex][classIndex]
+      + weight;
+    m_perBag[bagIndex] = m_perBag[bagIndex] + weight;
+    m_perClass[classIndex] = m_perClass[classIndex] + weight;
+    totaL = totaL + weight;
+  }
+
   /**
    * Subtracts given instance from given bag.
    * 
@@ -329,6 +364,47 @@ public class Distribution implements Cloneable, Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Adds the given rows of the instances with unknown values for given
+   * attribute, weighted according to frequency of instances in each bag. The
+   * given weights are used instead of the weights of the instances.
+   * 
+   * @exception Exception if something goes wrong
+   */
+  public final void addInstWithUnknown(Instances source, int[] rows,
+    double[] weights, int attIndex) throws Exception {
+
+    double[] probs;
+    double weight, newWeight;
+    int classIndex;
+    Instance instance;
+    int j;
+
+    probs = new double[m_perBag.length];
+    for (j = 0; j < m_perBag.length; j++) {
+      if (Utils.eq(totaL, 0)) {
+        probs[j] = 1.0 / probs.length;
+      } else {
+        probs[j] = m_perBag[j] / totaL;
+      }
+    }
+    for (int i = 0; i < rows.length; i++) {
+      instance = source.instance(rows[i]);
+      if (instance.isMissing(attIndex)) {
+        classIndex = (int) instance.classValue();
+        weight = weights[i];
+        m_perClass[classIndex] = m_perClass[classIndex] + weight;
+        totaL = totaL + weight;
+        for (j = 0; j < m_perBag.length; j++) {
+          newWeight = probs[j] * weight;
+          m_perClassPerBag[j][classIndex] = m_perClassPerBag[j][classIndex]
+            + newWeight;
+          m_perBag[j] = m_perBag[j] + newWeight;
+        }
+      }
+    }
+  }
+
   /**
    * Adds all instances in given range to given bag.
    * 
@@ -375,6 +451,22 @@ public class Distribution implements Cloneable, Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Adds the given weight of the given class to all bags, weighting it
+   * according to given weights.
+   */
+  public final void addWeights(int classIndex, double weight, double[] weights) {
+
+    for (int i = 0; i < m_perBag.length; i++) {
+      double newWeight = weight * weights[i];
+      m_perClassPerBag[i][classIndex] = m_perClassPerBag[i][classIndex]
+        + newWeight;
+      m_perBag[i] = m_perBag[i] + newWeight;
+      m_perClass[classIndex] = m_perClass[classIndex] + newWeight;
+      totaL = totaL + newWeight;
+    }
+  }
+
   /**
    * Checks if at least two bags contain a minimum number of instances.
    */
@@ -0,0 +1,323 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    NumericBins.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Quantizes the numeric attributes of the full training data into at most a
+ * given number of bins of (roughly) equal frequency, so that split points can
+ * be searched for on per-class histograms instead of on sorted data. Bin
+ * <code>b</code> holds the values in <code>(cut(b - 1), cut(b)]</code>, and
+ * the last bin everything above the last cut point. The cut points are
+ * values of the training data.
+ * <p>
+ * The histograms of a node are kept until the node is split, so that the
+ * histograms of its largest subset can be derived by subtracting the ones of
+ * the other subsets from them.
+ *
+ * @version $Revision$
+ */
+public class NumericBins implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -6418437155823937407L;
+
+  /** The cut points for each attribute (null if not binned) */
+  protected final double[][] m_cuts;
+
+  /** The number of classes */
+  protected final int m_numClasses;
+
+  /** The sorted values of each attribute in the full training data */
+  protected double[][] m_values;
+
+  /** The largest number of bins of any attribute */
+  protected int m_maxNumBins = 1;
+
+  /** The histograms of the nodes that have not been split yet */
+  protected transient Map<Instances, double[][]> m_pending;
+
+  /**
+   * Computes the cut points for all numeric attributes apart from the class.
+   *
+   * @param allData the full training data
+   * @param maxBins the maximum number of bins per attribute
+   */
+  public NumericBins(Instances allData, int maxBins) {
+
+    m_numClasses = allData.numClasses();
+    m_cuts = new double[allData.numAttributes()][];
+    m_values = new double[allData.numAttributes()][];
+    for (int att = 0; att < allData.numAttributes(); att++) {
+      if ((att == allData.classIndex()) || !allData.attribute(att).isNumeric()) {
+        continue;
+      }
+      double[] values = new double[allData.numInstances()];
+      int numValues = 0;
+      for (int i = 0; i < allData.numInstances(); i++) {
+        Instance instance = allData.instance(i);
+        if (!instance.isMissing(att)) {
+          values[numValues++] = instance.value(att);
+        }
+      }
+      Arrays.sort(values, 0, numValues);
+      m_values[att] = Arrays.copyOf(values, numValues);
+
+      // Equal frequency cut points, without duplicates or the maximum
+      double[] cuts = new double[maxBins - 1];
+      int numCuts = 0;
+      for (int b = 1; b < maxBins; b++) {
+        int index = (int) (((long) b * numValues) / maxBins) - 1;
+        if ((index < 0) || (values[index] == values[numValues - 1])) {
+          continue;
+        }
+        if ((numCuts == 0) || (values[index] > cuts[numCuts - 1])) {
+          cuts[numCuts++] = values[index];
+        }
+      }
+      m_cuts[att] = Arrays.copyOf(cuts, numCuts);
+      m_maxNumBins = Math.max(m_maxNumBins, numCuts + 1);
+    }
+  }
+
+  /**
+   * Returns whether the given attribute is binned.
+   *
+   * @param att the attribute index
+   * @return true if the attribute is binned
+   */
+  public final boolean isBinned(int att) {
+    return m_cuts[att] != null;
+  }
+
+  /**
+   * Returns the number of bins of the given attribute.
+   *
+   * @param att the attribute index
+   * @return the number of bins
+   */
+  public final int numBins(int att) {
+    return m_cuts[att].length + 1;
+  }
+
+  /**
+   * Returns the largest value that falls in the given bin.
+   *
+   * @param att the attribute index
+   * @param bin the bin, not the last one
+   * @return the cut point
+   */
+  public final double cut(int att, int bin) {
+    return m_cuts[att][bin];
+  }
+
+  /**
+   * Returns the bin the given value falls into.
+   *
+   * @param att the attribute index
+   * @param value the (non missing) value
+   * @return the bin
+   */
+  public final int bin(int att, double value) {
+    int index = Arrays.binarySearch(m_cuts[att], value);
+    return (index >= 0) ? index : -index - 1;
+  }
+
+  /**
+   * Returns the greatest value of the full training data smaller or equal to
+   * the given split point, without scanning the data.
+   *
+   * @param att the attribute index
+   * @param splitPoint the split point
+   * @return the value, or -Double.MAX_VALUE if there is none
+   */
+  public final double actualValue(int att, double splitPoint) {
+    double[] values = m_values[att];
+    int lo = 0;
+    int hi = values.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (values[mid] <= splitPoint) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return (lo > 0) ? values[lo - 1] : -Double.MAX_VALUE;
+  }
+
+  /**
+   * Returns whether split points should be searched for on histograms for the
+   * given node's data. For nodes with fewer instances than bins, sorting the
+   * data is cheaper than scanning the histograms, and exact.
+   *
+   * @param data the node's data
+   * @return true if histograms are to be used
+   */
+  public final boolean useHistograms(Instances data) {
+    return data.numInstances() >= m_maxNumBins;
+  }
+
+  /**
+   * Returns the histograms of the given node's data. For each binned
+   * attribute, the weight of class <code>c</code> in bin <code>b</code> is
+   * stored at <code>b * numClasses + c</code>. The histograms are computed in a single
+   * pass over the data, unless they have been derived already when the
+   * parent node was split.
+   *
+   * @param data the node's data
+   * @return the histograms (null for attributes that are not binned)
+   */
+  public double[][] histograms(Instances data) {
+
+    synchronized (this) {
+      if (m_pending != null) {
+        double[][] result = m_pending.get(data);
+        if (result != null) {
+          return result;
+        }
+      }
+    }
+
+    double[][] result = computeHistograms(data);
+    synchronized (this) {
+      if (m_pending == null) {
+        m_pending = new WeakHashMap<Instances, double[][]>();
+      }
+      m_pending.put(data, result);
+    }
+    return result;
+  }
+
+  /**
+   * Derives the histograms of the subsets a node has been split into. The
+   * histograms of the largest subset are the node's minus the others' (the
+   * fractions of an instance with a missing value sum up to its weight).
+   *
+   * @param data the node's data
+   * @param subsets the subsets of the data
+   */
+  public void split(Instances data, Instances[] subsets) {
+
+    double[][] parent;
+    synchronized (this) {
+      parent = (m_pending == null) ? null : m_pending.remove(data);
+    }
+    if (parent == null) {
+      return;
+    }
+    int largest = 0;
+    for (int i = 0; i < subsets.length; i++) {
+      if (subsets[i].numInstances() > subsets[largest].numInstances()) {
+        largest = i;
+      }
+    }
+    if (!useHistograms(subsets[largest])) {
+      return;
+    }
+
+    for (int i = 0; i < subsets.length; i++) {
+      if (i != largest) {
+        double[][] child = histograms(subsets[i]);
+        for (int att = 0; att < parent.length; att++) {
+          if (parent[att] != null) {
+            for (int j = 0; j < parent[att].length; j++) {
+              parent[att][j] -= child[att][j];
+            }
+          }
+        }
+      }
+    }
+    // Remove rounding errors left by the subtraction
+    for (double[] histogram : parent) {
+      if (histogram != null) {
+        for (int j = 0; j < histogram.length; j++) {
+          if (Math.abs(histogram[j]) < 1e-9) {
+            histogram[j] = 0;
+          }
+        }
+      }
+    }
+    synchronized (this) {
+      m_pending.put(subsets[largest], parent);
+    }
+  }
+
+  /**
+   * Releases the histograms of nodes that have not been split, and the values
+   * of the training data.
+   */
+  public synchronized void cleanup() {
+    m_pending = null;
+    m_values = null;
+  }
+
+  /**
+   * Computes the histograms of the given data.
+   *
+   * @param data the data
+   * @return the histograms
+   */
+  protected double[][] computeHistograms(Instances data) {
+
+    double[][] result = new double[m_cuts.length][];
+    int[] binned = new int[m_cuts.length];
+    int numBinned = 0;
+    for (int att = 0; att < m_cuts.length; att++) {
+      if (m_cuts[att] != null) {
+        result[att] = new double[numBins(att) * m_numClasses];
+        binned[numBinned++] = att;
+      }
+    }
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance instance = data.instance(i);
+      int classIndex = (int) instance.classValue();
+      double weight = instance.weight();
+      for (int j = 0; j < numBinned; j++) {
+        int att = binned[j];
+        if (!instance.isMissing(att)) {
+          result[att][bin(att, instance.value(att)) * m_numClasses + classIndex] += weight;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    SpilledRows.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import weka.core.Instances;
+
+/**
+ * Training data of a node that has been moved out of memory (e.g. to a
+ * temporary file) as rows of a source dataset, to be reloaded when the node
+ * needs it again.
+ *
+ * @version $Revision$
+ */
+public interface SpilledRows {
+
+  /**
+   * Returns the data the rows refer to.
+   *
+   * @return the source data
+   */
+  Instances source();
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return the number of rows
+   */
+  int numRows();
+
+  /**
+   * Reads the rows and their weights back into memory.
+   *
+   * @param rows the array to read the rows into
+   * @param weights the array to read the weights into
+   * @throws java.io.UncheckedIOException if the rows cannot be read
+   */
+  void load(int[] rows, double[] weights);
+}
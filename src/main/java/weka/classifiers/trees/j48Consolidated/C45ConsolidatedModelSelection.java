@@ -41,6 +41,18 @@ public class C45ConsolidatedModelSelection extends C45ModelSelection {
 				useMDLcorrection, doNotMakeSplitPointActualValue); 
 	}
 
+	/**
+	 * Sets the bins to search for split points on numeric attributes on, also
+	 * for the model selection method to consolidate.
+	 * 
+	 * @param bins the bins, or null to search on the sorted data
+	 */
+	@Override
+	public void setNumericBins(NumericBins bins) {
+		super.setNumericBins(bins);
+		((C45ModelSelection) m_toSelectModelToConsolidate).setNumericBins(bins);
+	}
+
 	/**
 	 * Getter of m_toSelectModelToConsolidate
 	 * @return the m_toSelectModelToConsolidate
@@ -0,0 +1,240 @@
+package weka.classifiers.trees.j48Consolidated;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instances;
+
+/**
+ * Generates the samples for the consolidation process from the positions of the
+ * instances of each class in the training data (see InstancesConsolidated.getClassRows()),
+ * drawing the instances of each class of a sample over index arrays, without copying
+ * the classes for each sample as the original way to generate them does.
+ * <p>
+ * Without replacement the instances of each class are drawn by a partial shuffle of
+ * its positions and, with replacement, as a multinomial draw over its positions with
+ * probabilities proportional to the weights of the instances (by Walker's alias method
+ * as in Instances.resampleWithWeights(Random)). The instances of the sample are then
+ * shuffled.
+ * <p>
+ * Each sample is generated with its own stream of random numbers, split from the seed
+ * in the order of the samples, so that the samples can be generated in parallel and
+ * they do not depend on the number of threads.
+ * ************************************************************************
+ *
+ * @author Jes&uacute;s M. P&eacute;rez (txus.perez@ehu.eus)
+ * @version $Revision: 1.0 $
+ */
+public class ClassBucketedResampler {
+
+	/** The training data */
+	protected final Instances m_data;
+
+	/** The positions of the instances of each class in the training data */
+	protected final int[][] m_classRows;
+
+	/** The size of each class in the samples */
+	protected final int[] m_newClassSizeVector;
+
+	/** Whether the samples are generated with replacement */
+	protected final boolean m_replacement;
+
+	/** Probabilities of the alias tables of the classes (null if the weights of the class are equal) */
+	protected final double[][] m_aliasProbabilities;
+
+	/** Aliases of the alias tables of the classes (null if the weights of the class are equal) */
+	protected final int[][] m_aliases;
+
+	/**
+	 * Creates a resampler.
+	 *
+	 * @param data the training data
+	 * @param classRows the positions of the instances of each class in the training data
+	 *   (an instance can appear more than once, e.g. if its class has been oversampled)
+	 * @param newClassSizeVector the size of each class in the samples (as much the size of the class)
+	 * @param replacement whether the samples are generated with replacement
+	 */
+	public ClassBucketedResampler(Instances data, int[][] classRows, int[] newClassSizeVector,
+			boolean replacement) {
+		m_data = data;
+		m_classRows = classRows;
+		m_newClassSizeVector = newClassSizeVector;
+		m_replacement = replacement;
+		m_aliasProbabilities = new double[classRows.length][];
+		m_aliases = new int[classRows.length][];
+		if (replacement)
+			for (int iClass = 0; iClass < classRows.length; iClass++)
+				buildAliasTable(iClass);
+	}
+
+	/**
+	 * Builds the alias table to draw the instances of the given class with
+	 * probabilities proportional to their weights (Vose's variant of Walker's method),
+	 * unless their weights are equal.
+	 *
+	 * @param iClass the index of the class
+	 */
+	private void buildAliasTable(int iClass) {
+		int[] rows = m_classRows[iClass];
+		int size = rows.length;
+		double[] weights = new double[size];
+		double sum = 0;
+		boolean equal = true;
+		for (int i = 0; i < size; i++) {
+			weights[i] = m_data.instance(rows[i]).weight();
+			if (weights[i] < 0)
+				throw new IllegalArgumentException("Weights have to be positive.");
+			sum += weights[i];
+			equal &= (weights[i] == weights[0]);
+		}
+		if (equal || (sum == 0))
+			return;
+		double[] probabilities = new double[size];
+		int[] aliases = new int[size];
+		int[] small = new int[size];
+		int[] large = new int[size];
+		int numSmall = 0, numLarge = 0;
+		for (int i = 0; i < size; i++) {
+			weights[i] = weights[i] * size / sum;
+			if (weights[i] < 1.0)
+				small[numSmall++] = i;
+			else
+				large[numLarge++] = i;
+		}
+		while ((numSmall > 0) && (numLarge > 0)) {
+			int iSmall = small[--numSmall];
+			int iLarge = large[--numLarge];
+			probabilities[iSmall] = weights[iSmall];
+			aliases[iSmall] = iLarge;
+			weights[iLarge] = (weights[iLarge] + weights[iSmall]) - 1.0;
+			if (weights[iLarge] < 1.0)
+				small[numSmall++] = iLarge;
+			else
+				large[numLarge++] = iLarge;
+		}
+		while (numLarge > 0)
+			probabilities[large[--numLarge]] = 1.0;
+		while (numSmall > 0) // only due to rounding errors
+			probabilities[small[--numSmall]] = 1.0;
+		m_aliasProbabilities[iClass] = probabilities;
+		m_aliases[iClass] = aliases;
+	}
+
+	/**
+	 * Draws the positions in the training data of the instances of a sample.
+	 *
+	 * @param random the stream of random numbers of the sample
+	 * @return the positions of the instances of the sample
+	 */
+	public int[] sampleRows(SplittableRandom random) {
+		int bagSize = 0;
+		for (int iClass = 0; iClass < m_classRows.length; iClass++)
+			bagSize += Math.min(m_newClassSizeVector[iClass], m_classRows[iClass].length);
+		int[] sampleRows = new int[bagSize];
+		int filled = 0;
+		for (int iClass = 0; iClass < m_classRows.length; iClass++) {
+			int[] rows = m_classRows[iClass];
+			int classSize = rows.length;
+			int newClassSize = Math.min(m_newClassSizeVector[iClass], classSize);
+			if (m_replacement) {
+				double[] probabilities = m_aliasProbabilities[iClass];
+				int[] aliases = m_aliases[iClass];
+				for (int i = 0; i < newClassSize; i++) {
+					int drawn = random.nextInt(classSize);
+					if ((probabilities != null) && (random.nextDouble() >= probabilities[drawn]))
+						drawn = aliases[drawn];
+					sampleRows[filled++] = rows[drawn];
+				}
+			} else {
+				// partial Fisher-Yates shuffle of the positions of the class
+				int[] shuffled = rows.clone();
+				for (int i = 0; i < newClassSize; i++) {
+					int j = i + random.nextInt(classSize - i);
+					int row = shuffled[j];
+					shuffled[j] = shuffled[i];
+					shuffled[i] = row;
+				}
+				System.arraycopy(shuffled, 0, sampleRows, filled, newClassSize);
+				filled += newClassSize;
+			}
+		}
+		// Shuffle the instances
+		for (int i = bagSize - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int row = sampleRows[j];
+			sampleRows[j] = sampleRows[i];
+			sampleRows[i] = row;
+		}
+		return sampleRows;
+	}
+
+	/**
+	 * Generates a sample. The instances drawn with replacement have weight 1,
+	 * as in Instances.resampleWithWeights(Random).
+	 *
+	 * @param random the stream of random numbers of the sample
+	 * @return the sample
+	 */
+	public Instances sample(SplittableRandom random) {
+		int[] rows = sampleRows(random);
+		Instances sample = new Instances(m_data, rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			sample.add(m_data.instance(rows[i]));
+			if (m_replacement)
+				sample.instance(i).setWeight(1);
+		}
+		return sample;
+	}
+
+	/**
+	 * Generates the given number of samples, in the given number of threads.
+	 *
+	 * @param numberSamples the number of samples
+	 * @param seed the seed the streams of random numbers of the samples are split from
+	 * @param numExecutionSlots the number of threads (1 to generate the samples one by one)
+	 * @return the vector of samples
+	 * @throws Exception if a sample could not be generated
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Instances[] samples(int numberSamples, long seed, int numExecutionSlots) throws Exception {
+		SplittableRandom seedRandom = new SplittableRandom(seed);
+		final SplittableRandom[] randoms = new SplittableRandom[numberSamples];
+		for (int iSample = 0; iSample < numberSamples; iSample++)
+			randoms[iSample] = seedRandom.split();
+		Instances[] samplesVector = new Instances[numberSamples];
+		if ((numExecutionSlots <= 1) || (numberSamples <= 1)) {
+			for (int iSample = 0; iSample < numberSamples; iSample++)
+				samplesVector[iSample] = sample(randoms[iSample]);
+			return samplesVector;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(numExecutionSlots, numberSamples));
+		try {
+			Future<Instances>[] futures = new Future[numberSamples];
+			for (int iSample = 0; iSample < numberSamples; iSample++) {
+				final SplittableRandom random = randoms[iSample];
+				futures[iSample] = pool.submit(new Callable<Instances>() {
+					@Override
+					public Instances call() {
+						return sample(random);
+					}
+				});
+			}
+			for (int iSample = 0; iSample < numberSamples; iSample++) {
+				try {
+					samplesVector[iSample] = futures[iSample].get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return samplesVector;
+	}
+}
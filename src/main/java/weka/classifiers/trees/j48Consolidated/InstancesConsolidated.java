@@ -1,6 +1,5 @@
 package weka.classifiers.trees.j48Consolidated;
 
-import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Utils;
 
@@ -41,64 +40,89 @@ public class InstancesConsolidated extends Instances {
 	}
 	
 	/**
-	 * Gets the vector of classes of the dataset like a set of samples
+	 * Constructor calling the constructor of the superclass
+	 * (Not necessary if the above methods are moved to the official class 'Instances')
+	 *
+	 * @param dataset the set whose header is to be copied
+	 * @param capacity the capacity of the new dataset
+	 */
+	public InstancesConsolidated(Instances dataset, int capacity) {
+		super(dataset, capacity);
+	}
+	
+	/**
+	 * Gets the vector of classes of the dataset like a set of samples.
+	 * The instances of each class keep their order in the dataset, which is not modified.
 	 *  
 	 * @return the vector of classes
 	 */
 	public InstancesConsolidated[] getClasses(){
-		int numClasses = numClasses();
-		InstancesConsolidated[] classesVector = new InstancesConsolidated[numClasses];
-		// Sort instances based on the class to extract the set of classes
-		sort(classIndex());
-		// Determine where each class starts in the sorted dataset
-		int[] classIndices = getClassIndices();
+		return getClasses(getClassRows());
+	}
 
-		for (int iClass = 0; iClass < numClasses; iClass++) {
-			int classSize;
-			if (iClass == numClasses - 1) // if the last class
-				classSize = numInstances() - classIndices[iClass];
-			else
-				classSize = classIndices[iClass + 1] - classIndices[iClass]; 
-			classesVector[iClass] = new InstancesConsolidated(this, classIndices[iClass], classSize);
+	/**
+	 * Gets the vector of classes of the dataset like a set of samples
+	 * from the positions of the instances of each class
+	 *  
+	 * @param classRows the positions of the instances of each class in the dataset
+	 * @return the vector of classes
+	 */
+	public InstancesConsolidated[] getClasses(int[][] classRows){
+		InstancesConsolidated[] classesVector = new InstancesConsolidated[classRows.length];
+		for (int iClass = 0; iClass < classRows.length; iClass++) {
+			classesVector[iClass] = new InstancesConsolidated(this, classRows[iClass].length);
+			for (int i = 0; i < classRows[iClass].length; i++)
+				classesVector[iClass].add(instance(classRows[iClass][i]));
 		}
-		classIndices = null;
 		return classesVector;
 	}
-	
+
 	/**
-	 * Creates an index containing the position where each class starts in 
-	 * the dataset. The dataset must be sorted by the class attribute.
-	 * (based on the method 'createSubsample()' of the class 'SpreadSubsample'
-	 *  of the package 'weka.filters.supervised.instances')
-	 * 
-	 * @return the positions
+	 * Gets the positions of the instances of each class in the dataset in a
+	 * single counting pass (instead of sorting the dataset based on the class).
+	 * Instances with missing class are not taken into account.
+	 *  
+	 * @return the positions of the instances of each class, in increasing order
 	 */
-	private int[] getClassIndices() {
-
-		// Create an index of where each class value starts
-		int [] classIndices = new int [numClasses() + 1];
-		int currentClass = 0;
-		classIndices[currentClass] = 0;
-		for (int i = 0; i < numInstances(); i++) {
-			Instance current = instance(i);
-			if (current.classIsMissing()) {
-				for (int j = currentClass + 1; j < classIndices.length; j++) {
-					classIndices[j] = i;
-				}
-				break;
-			} else if (current.classValue() != currentClass) {
-				for (int j = currentClass + 1; j <= current.classValue(); j++) {
-					classIndices[j] = i;
-				}          
-				currentClass = (int) current.classValue();
-			}
-		}
-		if (currentClass <= numClasses()) {
-			for (int j = currentClass + 1; j < classIndices.length; j++) {
-				classIndices[j] = numInstances();
+	public int[][] getClassRows(){
+		int numClasses = numClasses();
+		int classIndex = classIndex();
+		int numInstances = numInstances();
+		// Determine the size of each class
+		int[] classes = new int[numInstances];
+		int[] classSizeVector = new int[numClasses];
+		for (int i = 0; i < numInstances; i++) {
+			double classValue = instance(i).value(classIndex);
+			if (Utils.isMissingValue(classValue))
+				classes[i] = -1;
+			else {
+				classes[i] = (int) classValue;
+				classSizeVector[classes[i]]++;
 			}
 		}
-		return classIndices;
+		// Bucket the positions of the instances by class
+		int[][] classRows = new int[numClasses][];
+		for (int iClass = 0; iClass < numClasses; iClass++)
+			classRows[iClass] = new int[classSizeVector[iClass]];
+		int[] filled = new int[numClasses];
+		for (int i = 0; i < numInstances; i++)
+			if (classes[i] >= 0)
+				classRows[classes[i]][filled[classes[i]]++] = i;
+		return classRows;
+	}
+
+	/**
+	 * Gets the vector with the size of each class from the positions
+	 * of the instances of each class
+	 *  
+	 * @param classRows the positions of the instances of each class in the dataset
+	 * @return the vector of classes' size 
+	 */
+	public static int[] getClassesSize(int[][] classRows){
+		int classSizeVector[] = new int [classRows.length];
+		for (int iClass = 0; iClass < classRows.length; iClass++)
+			classSizeVector[iClass] = classRows[iClass].length;
+		return classSizeVector;
 	}
 
 	/**
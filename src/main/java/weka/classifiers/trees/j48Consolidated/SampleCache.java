@@ -0,0 +1,410 @@
+package weka.classifiers.trees.j48Consolidated;
+
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Process-wide cache of the sample vectors generated for the consolidation process.
+ * Schemes that only differ in options not related to the Resampling Method (e.g. the
+ * consolidation percent or the priority criteria of J48PartiallyConsolidated) generate
+ * exactly the same samples from the same training data, so the samples are generated
+ * only once and rebuilt from the cache for the rest. The schemes only use the cache
+ * when asked to (option -RM-cache), as it keeps the sample vectors for the life of
+ * the process.
+ * <p>
+ * A sample vector is stored as the indices of the instances of the training data that
+ * each sample contains (and their weights, if they differ from the original ones),
+ * keyed by a fingerprint of the training data and the resampling options. The cache
+ * is bounded by an estimation of its size in bytes and discards the least recently
+ * used sample vectors first.
+ * ************************************************************************
+ *
+ * @author Jes&uacute;s M. P&eacute;rez (txus.perez@ehu.eus)
+ * @version $Revision: 1.0 $
+ */
+public final class SampleCache {
+
+	/** Default maximum size of the cache (64MB) */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/** Estimated overhead of an array in bytes */
+	private static final int ARRAY_OVERHEAD = 16;
+
+	/** The cached sample vectors, least recently used first */
+	private static final LinkedHashMap<String, Entry> m_entries =
+			new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/** Maximum size of the cache in bytes */
+	private static long m_maxBytes = DEFAULT_MAX_BYTES;
+
+	/** Estimated current size of the cache in bytes */
+	private static long m_bytes = 0;
+
+	/** Number of sample vectors taken from the cache */
+	private static long m_hits = 0;
+
+	/** Number of sample vectors that had to be generated */
+	private static long m_misses = 0;
+
+	/** Number of sample vectors discarded to keep the cache within its size */
+	private static long m_evictions = 0;
+
+	/**
+	 * Not to be instantiated.
+	 */
+	private SampleCache() {
+	}
+
+	/**
+	 * A sample vector stored as indices of the instances of the training data.
+	 */
+	public static class Entry {
+
+		/** Indices of the instances of each sample */
+		protected final int[][] m_indices;
+
+		/** Weights of the instances of each sample (null if they keep the original ones) */
+		protected final double[][] m_weights;
+
+		/** Number of samples necessary based on coverage */
+		protected final int m_numberSamplesByCoverage;
+
+		/** True coverage achieved by the set of samples */
+		protected final double m_trueCoverage;
+
+		/** Exceptional situations occurred while generating the samples */
+		protected final String m_exceptionalSituationsMessage;
+
+		/**
+		 * Creates an entry from a sample vector generated from indexed instances.
+		 *
+		 * @param data the training data the samples were generated from
+		 * @param samplesVector the samples, containing instances created by indexed(Instances)
+		 * @param numberSamplesByCoverage number of samples necessary based on coverage
+		 * @param trueCoverage true coverage achieved by the set of samples
+		 * @param exceptionalSituationsMessage exceptional situations occurred
+		 */
+		public Entry(Instances data, Instances[] samplesVector, int numberSamplesByCoverage,
+				double trueCoverage, String exceptionalSituationsMessage) {
+			m_indices = new int[samplesVector.length][];
+			m_weights = new double[samplesVector.length][];
+			for (int iSample = 0; iSample < samplesVector.length; iSample++) {
+				Instances sample = samplesVector[iSample];
+				int[] indices = new int[sample.numInstances()];
+				double[] weights = null;
+				for (int i = 0; i < indices.length; i++) {
+					Instance instance = sample.instance(i);
+					indices[i] = ((IndexedInstance) instance).m_index;
+					if ((weights == null) && (instance.weight() != data.instance(indices[i]).weight())) {
+						weights = new double[indices.length];
+						for (int j = 0; j < i; j++)
+							weights[j] = sample.instance(j).weight();
+					}
+					if (weights != null)
+						weights[i] = instance.weight();
+				}
+				m_indices[iSample] = indices;
+				m_weights[iSample] = weights;
+			}
+			m_numberSamplesByCoverage = numberSamplesByCoverage;
+			m_trueCoverage = trueCoverage;
+			m_exceptionalSituationsMessage = exceptionalSituationsMessage;
+		}
+
+		/**
+		 * Builds the sample vector from the training data it was generated from.
+		 *
+		 * @param data the training data
+		 * @return the vector of samples
+		 */
+		public Instances[] samples(Instances data) {
+			Instances[] samplesVector = new Instances[m_indices.length];
+			for (int iSample = 0; iSample < m_indices.length; iSample++) {
+				int[] indices = m_indices[iSample];
+				double[] weights = m_weights[iSample];
+				Instances sample = new Instances(data, indices.length);
+				for (int i = 0; i < indices.length; i++) {
+					sample.add(data.instance(indices[i]));
+					if (weights != null)
+						sample.instance(i).setWeight(weights[i]);
+				}
+				samplesVector[iSample] = sample;
+			}
+			return samplesVector;
+		}
+
+		/**
+		 * Returns the number of samples necessary based on coverage.
+		 *
+		 * @return the number of samples
+		 */
+		public int getNumberSamplesByCoverage() {
+			return m_numberSamplesByCoverage;
+		}
+
+		/**
+		 * Returns the true coverage achieved by the set of samples.
+		 *
+		 * @return the true coverage
+		 */
+		public double getTrueCoverage() {
+			return m_trueCoverage;
+		}
+
+		/**
+		 * Returns the exceptional situations occurred while generating the samples.
+		 *
+		 * @return the message
+		 */
+		public String getExceptionalSituationsMessage() {
+			return m_exceptionalSituationsMessage;
+		}
+
+		/**
+		 * Returns the estimated size of the entry in bytes.
+		 *
+		 * @return the size in bytes
+		 */
+		public long sizeInBytes() {
+			long bytes = 2L * ARRAY_OVERHEAD + 8L * m_indices.length;
+			for (int iSample = 0; iSample < m_indices.length; iSample++) {
+				bytes += ARRAY_OVERHEAD + 4L * m_indices[iSample].length;
+				if (m_weights[iSample] != null)
+					bytes += ARRAY_OVERHEAD + 8L * m_weights[iSample].length;
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * An instance that remembers its position in the training data through copies,
+	 * so that the samples generated from it can be stored as indices.
+	 */
+	protected static class IndexedInstance extends DenseInstance {
+
+		/** for serialization */
+		private static final long serialVersionUID = -4930512046853011357L;
+
+		/** Index of the instance in the training data */
+		protected final int m_index;
+
+		/**
+		 * Creates an indexed copy of the given instance (sharing its values).
+		 *
+		 * @param instance the instance
+		 * @param index index of the instance in the training data
+		 */
+		public IndexedInstance(Instance instance, int index) {
+			super(instance);
+			m_index = index;
+		}
+
+		/**
+		 * Produces a shallow copy of this instance, keeping the index.
+		 *
+		 * @return the copy
+		 */
+		@Override
+		public Object copy() {
+			IndexedInstance result = new IndexedInstance(this, m_index);
+			result.m_Dataset = m_Dataset;
+			return result;
+		}
+	}
+
+	/**
+	 * Returns a copy of the training data whose instances remember their index, to
+	 * generate samples that can be stored with put(String, Entry).
+	 *
+	 * @param data the training data
+	 * @return the indexed copy
+	 */
+	public static InstancesConsolidated indexed(Instances data) {
+		InstancesConsolidated result = new InstancesConsolidated(data, 0, 0);
+		for (int i = 0; i < data.numInstances(); i++)
+			result.add(new IndexedInstance(data.instance(i), i));
+		return result;
+	}
+
+	/**
+	 * Computes a fingerprint of the given data: a hash of its header, class index,
+	 * values and weights.
+	 *
+	 * @param data the data
+	 * @return the fingerprint
+	 * @throws Exception if the hash algorithm is not available
+	 */
+	public static String fingerprint(Instances data) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		digest.update(new Instances(data, 0).toString().getBytes("UTF-8"));
+		byte[] buffer = new byte[8 * (data.numAttributes() + 2)];
+		for (int i = 0; i < data.numInstances(); i++) {
+			Instance instance = data.instance(i);
+			int pos = 0;
+			pos = putLong(buffer, pos, data.classIndex());
+			pos = putLong(buffer, pos, Double.doubleToLongBits(instance.weight()));
+			for (int att = 0; att < data.numAttributes(); att++)
+				pos = putLong(buffer, pos, Double.doubleToLongBits(instance.value(att)));
+			digest.update(buffer, 0, pos);
+		}
+		StringBuffer result = new StringBuffer();
+		for (byte b : digest.digest()) {
+			result.append(Character.forDigit((b >> 4) & 0xf, 16));
+			result.append(Character.forDigit(b & 0xf, 16));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes a long value into a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param pos the position to write at
+	 * @param value the value
+	 * @return the position after the value
+	 */
+	private static int putLong(byte[] buffer, int pos, long value) {
+		for (int i = 0; i < 8; i++) {
+			buffer[pos++] = (byte) value;
+			value >>>= 8;
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the cached sample vector with the given key and counts the lookup.
+	 *
+	 * @param key the key (fingerprint of the data and resampling options)
+	 * @return the entry, or null if it is not cached
+	 */
+	public static synchronized Entry get(String key) {
+		Entry entry = m_entries.get(key);
+		if (entry != null)
+			m_hits++;
+		else
+			m_misses++;
+		return entry;
+	}
+
+	/**
+	 * Stores a sample vector, discarding the least recently used ones if the cache
+	 * gets too big. Sample vectors bigger than the whole cache are not stored.
+	 *
+	 * @param key the key (fingerprint of the data and resampling options)
+	 * @param entry the sample vector
+	 */
+	public static synchronized void put(String key, Entry entry) {
+		long bytes = entry.sizeInBytes();
+		if (bytes > m_maxBytes)
+			return;
+		Entry old = m_entries.put(key, entry);
+		if (old != null)
+			m_bytes -= old.sizeInBytes();
+		m_bytes += bytes;
+		evict();
+	}
+
+	/**
+	 * Discards the least recently used sample vectors until the cache fits its size.
+	 */
+	private static void evict() {
+		Iterator<Map.Entry<String, Entry>> it = m_entries.entrySet().iterator();
+		while ((m_bytes > m_maxBytes) && it.hasNext()) {
+			m_bytes -= it.next().getValue().sizeInBytes();
+			it.remove();
+			m_evictions++;
+		}
+	}
+
+	/**
+	 * Sets the maximum size of the cache in bytes (0 disables it).
+	 *
+	 * @param maxBytes the maximum size
+	 */
+	public static synchronized void setMaxBytes(long maxBytes) {
+		m_maxBytes = Math.max(0, maxBytes);
+		evict();
+	}
+
+	/**
+	 * Returns the maximum size of the cache in bytes.
+	 *
+	 * @return the maximum size
+	 */
+	public static synchronized long getMaxBytes() {
+		return m_maxBytes;
+	}
+
+	/**
+	 * Returns the estimated size of the cached sample vectors in bytes.
+	 *
+	 * @return the size
+	 */
+	public static synchronized long sizeInBytes() {
+		return m_bytes;
+	}
+
+	/**
+	 * Returns the number of cached sample vectors.
+	 *
+	 * @return the number of entries
+	 */
+	public static synchronized int numEntries() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Returns the number of sample vectors taken from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public static synchronized long getHits() {
+		return m_hits;
+	}
+
+	/**
+	 * Returns the number of sample vectors that were not cached.
+	 *
+	 * @return the number of misses
+	 */
+	public static synchronized long getMisses() {
+		return m_misses;
+	}
+
+	/**
+	 * Returns the number of sample vectors discarded to keep the cache within its size.
+	 *
+	 * @return the number of evictions
+	 */
+	public static synchronized long getEvictions() {
+		return m_evictions;
+	}
+
+	/**
+	 * Removes all the sample vectors and resets the statistics.
+	 */
+	public static synchronized void clear() {
+		m_entries.clear();
+		m_bytes = 0;
+		m_hits = 0;
+		m_misses = 0;
+		m_evictions = 0;
+	}
+
+	/**
+	 * Returns a description of the use of the cache.
+	 *
+	 * @return the statistics
+	 */
+	public static synchronized String statistics() {
+		return "Sample cache: " + m_entries.size() + " sample vectors (" + (m_bytes / 1024) + "KB of "
+				+ (m_maxBytes / 1024) + "KB), " + m_hits + " hits, " + m_misses + " misses, "
+				+ m_evictions + " evictions";
+	}
+}
@@ -0,0 +1,266 @@
+package weka.classifiers.trees.j48Consolidated;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import weka.classifiers.trees.j48.SpilledRows;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Temporary file to spill the partitions of the samples (and of the training data) in the
+ * nodes of a consolidated tree to, when they exceed a memory budget while the tree is built.
+ * A partition is stored as the rows of the instances it contains in the training data (the
+ * base dataset, which has to be kept in memory anyway) and their weights, that is, 12 bytes
+ * per instance; and it is reloaded on demand as rows (e.g. to prune the tree) or as instances
+ * (e.g. to develop the node).
+ * <p>
+ * Only the partitions of data indexed with SampleCache.indexed(Instances) can be spilled,
+ * so that the rows of their instances are known.
+ * ************************************************************************
+ *
+ * @author Jes&uacute;s M. P&eacute;rez (txus.perez@ehu.eus)
+ * @version $Revision: 1.0 $
+ */
+public class SamplePartitionStore {
+
+	/** Estimated size in bytes of an instance in a partition in memory: the instance
+	 *  object, without its values (shared with the training data), and its reference */
+	public static final int INSTANCE_BYTES = 48;
+
+	/** Size in bytes of an instance in a spilled partition: its row and its weight */
+	private static final int ROW_BYTES = 4 + 8;
+
+	/** The training data the partitions refer to */
+	protected final Instances m_baseData;
+
+	/** Maximum size in bytes of the partitions to be kept in memory */
+	protected final long m_maxBytes;
+
+	/** The temporary file (created with the first spilled partition) */
+	protected File m_file;
+
+	/** The channel to read and write the temporary file */
+	protected FileChannel m_channel;
+
+	/** Number of spilled partitions */
+	protected int m_numSpilled = 0;
+
+	/** Number of reloaded partitions */
+	protected int m_numReloaded = 0;
+
+	/**
+	 * A partition spilled to the temporary file.
+	 */
+	public class Partition implements SpilledRows {
+
+		/** Position of the partition in the file */
+		protected final long m_position;
+
+		/** Number of instances of the partition */
+		protected final int m_numRows;
+
+		/**
+		 * Creates a partition.
+		 *
+		 * @param position position of the partition in the file
+		 * @param numRows number of instances of the partition
+		 */
+		protected Partition(long position, int numRows) {
+			m_position = position;
+			m_numRows = numRows;
+		}
+
+		/**
+		 * Returns the training data the rows refer to.
+		 *
+		 * @return the training data
+		 */
+		@Override
+		public Instances source() {
+			return m_baseData;
+		}
+
+		/**
+		 * Returns the number of instances of the partition.
+		 *
+		 * @return the number of instances
+		 */
+		@Override
+		public int numRows() {
+			return m_numRows;
+		}
+
+		/**
+		 * Reads the rows and weights of the partition.
+		 *
+		 * @param rows the array to read the rows into
+		 * @param weights the array to read the weights into
+		 */
+		@Override
+		public void load(int[] rows, double[] weights) {
+			ByteBuffer buffer = ByteBuffer.allocate(m_numRows * ROW_BYTES);
+			try {
+				long position = m_position;
+				while (buffer.hasRemaining()) {
+					int read = m_channel.read(buffer, position);
+					if (read < 0)
+						throw new IOException("Unexpected end of " + m_file);
+					position += read;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			buffer.flip();
+			for (int i = 0; i < m_numRows; i++) {
+				rows[i] = buffer.getInt();
+				weights[i] = buffer.getDouble();
+			}
+			m_numReloaded++;
+		}
+
+		/**
+		 * Reloads the partition as instances of the training data, which keep
+		 * their row, so that they can be spilled again.
+		 *
+		 * @return the instances
+		 */
+		public Instances instances() {
+			int[] rows = new int[m_numRows];
+			double[] weights = new double[m_numRows];
+			load(rows, weights);
+			Instances data = new Instances(m_baseData, m_numRows);
+			for (int i = 0; i < m_numRows; i++) {
+				data.add(m_baseData.instance(rows[i]));
+				data.lastInstance().setWeight(weights[i]);
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Creates a store for the partitions of the given training data.
+	 *
+	 * @param baseData the training data, indexed with SampleCache.indexed(Instances)
+	 * @param maxBytes maximum size in bytes of the partitions to be kept in memory
+	 */
+	public SamplePartitionStore(Instances baseData, long maxBytes) {
+		m_baseData = baseData;
+		m_maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the given partition in memory.
+	 *
+	 * @param data the partition (null if it is not in memory)
+	 * @return the size in bytes
+	 */
+	public static long estimatedBytes(Instances data) {
+		if (data == null)
+			return 0;
+		return (long)INSTANCE_BYTES * data.numInstances();
+	}
+
+	/**
+	 * Returns the maximum size in bytes of the partitions to be kept in memory.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMaxBytes() {
+		return m_maxBytes;
+	}
+
+	/**
+	 * Writes the given partition to the temporary file.
+	 *
+	 * @param data the partition
+	 * @return the spilled partition, or null if the data is not indexed and can not be spilled
+	 * @throws IOException if the file can not be written
+	 */
+	public Partition spill(Instances data) throws IOException {
+		int numRows = data.numInstances();
+		for (int i = 0; i < numRows; i++)
+			if (!(data.instance(i) instanceof SampleCache.IndexedInstance))
+				return null;
+		if (m_channel == null) {
+			m_file = File.createTempFile("weka-partitions", ".tmp");
+			m_file.deleteOnExit();
+			m_channel = new RandomAccessFile(m_file, "rw").getChannel();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(numRows * ROW_BYTES);
+		for (int i = 0; i < numRows; i++) {
+			Instance instance = data.instance(i);
+			buffer.putInt(((SampleCache.IndexedInstance) instance).m_index);
+			buffer.putDouble(instance.weight());
+		}
+		buffer.flip();
+		long position = m_channel.size();
+		long written = position;
+		while (buffer.hasRemaining())
+			written += m_channel.write(buffer, written);
+		m_numSpilled++;
+		return new Partition(position, numRows);
+	}
+
+	/**
+	 * Returns the number of spilled partitions.
+	 *
+	 * @return the number of partitions
+	 */
+	public int getNumSpilled() {
+		return m_numSpilled;
+	}
+
+	/**
+	 * Returns the number of times a partition has been reloaded.
+	 *
+	 * @return the number of reloads
+	 */
+	public int getNumReloaded() {
+		return m_numReloaded;
+	}
+
+	/**
+	 * Returns the size in bytes of the temporary file.
+	 *
+	 * @return the size in bytes
+	 * @throws IOException if the size can not be read
+	 */
+	public long fileSize() throws IOException {
+		return (m_channel == null) ? 0 : m_channel.size();
+	}
+
+	/**
+	 * Closes and deletes the temporary file. The spilled partitions can not be
+	 * reloaded afterwards.
+	 *
+	 * @throws IOException if the file can not be closed
+	 */
+	public void close() throws IOException {
+		if (m_channel != null) {
+			m_channel.close();
+			m_channel = null;
+			m_file.delete();
+		}
+	}
+
+	/**
+	 * Returns a description of the use of the store.
+	 *
+	 * @return the description
+	 */
+	public String toString() {
+		long size;
+		try {
+			size = fileSize();
+		} catch (IOException e) {
+			size = -1;
+		}
+		return "Partition store: " + m_numSpilled + " partitions spilled (" + (size / 1024) + "KB), "
+				+ m_numReloaded + " reloaded, memory budget " + (m_maxBytes / 1024) + "KB";
+	}
+}
@@ -1,6 +1,12 @@
 package weka.classifiers.trees.j48It;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import weka.classifiers.trees.J48It;
 import weka.classifiers.trees.j48.C45PruneableClassifierTree;
@@ -36,6 +42,10 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 	/** Indicates the criteria that should be used to build the tree */
 	private int m_priorityCriteria;
 
+	/** Number of threads to evaluate the splits of the nodes to be developed
+	 *  speculatively (1 = no parallelism) */
+	private int m_numExecutionSlots = 1;
+
 
 	/**
 	 * Constructor for pruneable consolidated tree structure. Calls the superclass
@@ -58,6 +68,18 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 		m_priorityCriteria = ITpriorityCriteria;
 	}
 
+	/**
+	 * Sets the number of threads to evaluate the splits of the nodes to be developed.
+	 * If it is greater than 1, the split of each node is selected in a pool of threads as
+	 * soon as the node is added to the list of nodes to be processed, and it is reused when
+	 * the node is developed. The order of the nodes, and thus the tree, is the same.
+	 *
+	 * @param numSlots the number of threads (1 = no parallelism)
+	 */
+	public void setNumExecutionSlots(int numSlots) {
+		m_numExecutionSlots = numSlots;
+	}
+
 	/**
 	 * Builds the consolidated tree structure. (based on the method buildTree() of
 	 * the class 'ClassifierTree')
@@ -69,10 +91,32 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 	 */
 	public void buildTree(Instances data, boolean keepData) throws Exception {
 
+		ExecutorService pool = null;
+		if (m_numExecutionSlots > 1)
+			pool = Executors.newFixedThreadPool(m_numExecutionSlots);
+		try {
+			buildTree(data, keepData, pool);
+		} finally {
+			if (pool != null)
+				pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Builds the tree structure iteratively, evaluating the splits of the nodes to be
+	 * developed in the given pool of threads (if any).
+	 *
+	 * @param data     the data to build the tree with
+	 * @param keepData is training data to be kept?
+	 * @param pool     the pool of threads (null to evaluate the splits when needed)
+	 * @throws Exception if something goes wrong
+	 */
+	protected void buildTree(Instances data, boolean keepData, ExecutorService pool) throws Exception {
+
 		ArrayList<Object[]> list = new ArrayList<>();
 
-						 // add(Data, tree, orderValue, currentLevel)
-		list.add(new Object[] { data, this, null, 0}); // The parent node is considered level 0
+						 // add(Data, tree, orderValue, currentLevel, splitModel)
+		list.add(new Object[] { data, this, null, 0, null}); // The parent node is considered level 0
 
 		Instances[] localInstances;
 
@@ -90,6 +134,8 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 
 			Instances currentData = (Instances) current[0];
 			C45ItPruneableClassifierTree currentTree = (C45ItPruneableClassifierTree) current[1];
+			@SuppressWarnings("unchecked")
+			Future<ClassifierSplitModel> splitModel = (Future<ClassifierSplitModel>) current[4];
 			currentTree.m_order = index;
 
 			if (keepData) {
@@ -99,7 +145,10 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 			currentTree.m_isLeaf = false;
 			currentTree.m_isEmpty = false;
 			currentTree.m_sons = null;
-			currentTree.m_localModel = currentTree.m_toSelectModel.selectModel(currentData);
+			if (splitModel != null)
+				currentTree.m_localModel = splitModel(splitModel);
+			else
+				currentTree.m_localModel = currentTree.m_toSelectModel.selectModel(currentData);
 
 			if ((currentTree.m_localModel.numSubsets() > 1) && ((m_priorityCriteria == J48It.Original)
 					|| ((m_priorityCriteria == J48It.Levelbylevel) && (currentLevel < m_maximumCriteria))
@@ -110,6 +159,11 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 				localInstances = currentTree.m_localModel.split(currentData);
 				currentData = null;
 				currentTree.m_sons = new ClassifierTree[currentTree.m_localModel.numSubsets()];
+				// The splits of the sons are needed to order them by gainratio, and they are kept to develop them
+				boolean orderByGainratio = (m_priorityCriteria == J48It.Gainratio)
+						|| (m_priorityCriteria == J48It.Gainratio_normalized);
+				Future<ClassifierSplitModel>[] sonModels = evaluateSplits(pool, currentTree.m_toSelectModel,
+						localInstances, orderByGainratio);
 				for (int i = 0; i < currentTree.m_sons.length; i++) {
 					ClassifierTree newTree = new C45ItPruneableClassifierTree(currentTree.m_toSelectModel,
 							m_pruneTheTree, m_CF, m_subtreeRaising, m_cleanup, m_collapseTheTree, m_maximumCriteria,
@@ -120,12 +174,11 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 
 						orderValue = currentTree.m_localModel.distribution().perBag(i);
 
-						Object[] son = new Object[] { localInstances[i], newTree, orderValue, currentLevel + 1 };
+						Object[] son = new Object[] { localInstances[i], newTree, orderValue, currentLevel + 1, sonModels[i] };
 						addSonOrderedByValue(list, son);
 					} else if (m_priorityCriteria == J48It.Gainratio) // Added by gainratio, largest to smallest
 					{
-						ClassifierSplitModel sonModel = ((C45ItPruneableClassifierTree) newTree).m_toSelectModel
-								.selectModel(localInstances[i]);
+						ClassifierSplitModel sonModel = splitModel(sonModels[i]);
 						if (sonModel.numSubsets() > 1) {
 
 							orderValue = ((C45Split) sonModel).gainRatio();
@@ -134,7 +187,7 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 
 							orderValue = (double) Double.MIN_VALUE;
 						}
-						Object[] son = new Object[] { localInstances[i], newTree, orderValue, currentLevel + 1 };
+						Object[] son = new Object[] { localInstances[i], newTree, orderValue, currentLevel + 1, sonModels[i] };
 						addSonOrderedByValue(list, son);
 					} else if (m_priorityCriteria == J48It.Gainratio_normalized) // Added by gainratio normalized,
 					// largest to smallest
@@ -142,8 +195,7 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 
 						double size = currentTree.m_localModel.distribution().perBag(i);
 						double gainRatio;
-						ClassifierSplitModel sonModel = ((C45ItPruneableClassifierTree) newTree).m_toSelectModel
-								.selectModel(localInstances[i]);
+						ClassifierSplitModel sonModel = splitModel(sonModels[i]);
 						if (sonModel.numSubsets() > 1) {
 
 							gainRatio = ((C45Split) sonModel).gainRatio();
@@ -153,11 +205,11 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 
 							orderValue = (double) Double.MIN_VALUE;
 						}
-						Object[] son = new Object[] { localInstances[i], newTree, orderValue, currentLevel + 1 };
+						Object[] son = new Object[] { localInstances[i], newTree, orderValue, currentLevel + 1, sonModels[i] };
 						addSonOrderedByValue(list, son);
 
 					} else {
-						listSons.add(new Object[] { localInstances[i], newTree, 0, currentLevel + 1 });
+						listSons.add(new Object[] { localInstances[i], newTree, 0, currentLevel + 1, sonModels[i] });
 					}
 
 					currentTree.m_sons[i] = newTree;
@@ -189,6 +241,56 @@ public class C45ItPruneableClassifierTree extends C45PruneableClassifierTree {
 
 	}
 
+	/**
+	 * Evaluates the splits of the given subsets of data: in the given pool of threads (if
+	 * any), or right now if they are needed anyway.
+	 *
+	 * @param pool           the pool of threads (null if there is no parallelism)
+	 * @param modelSelection the method to select the splits
+	 * @param subsets        the subsets of data
+	 * @param needed         whether the splits are needed right now
+	 * @return the evaluations of the splits (null elements if they are not evaluated)
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected static Future<ClassifierSplitModel>[] evaluateSplits(ExecutorService pool,
+			final ModelSelection modelSelection, Instances[] subsets, boolean needed) {
+		Future<ClassifierSplitModel>[] evaluations = new Future[subsets.length];
+		if ((pool == null) && !needed)
+			return evaluations;
+		for (int i = 0; i < subsets.length; i++) {
+			final Instances subset = subsets[i];
+			FutureTask<ClassifierSplitModel> evaluation = new FutureTask<>(new Callable<ClassifierSplitModel>() {
+				@Override
+				public ClassifierSplitModel call() throws Exception {
+					return modelSelection.selectModel(subset);
+				}
+			});
+			if (pool != null)
+				pool.execute(evaluation);
+			else
+				evaluation.run();
+			evaluations[i] = evaluation;
+		}
+		return evaluations;
+	}
+
+	/**
+	 * Waits for the evaluation of a split and returns it.
+	 *
+	 * @param evaluation the evaluation of the split
+	 * @return the split
+	 * @throws Exception if the split could not be selected
+	 */
+	protected static ClassifierSplitModel splitModel(Future<ClassifierSplitModel> evaluation) throws Exception {
+		try {
+			return evaluation.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+
 	/**
 	 * Help method for printing tree structure.
 	 * 
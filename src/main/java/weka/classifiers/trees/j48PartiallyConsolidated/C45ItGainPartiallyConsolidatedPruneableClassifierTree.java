@@ -90,6 +90,7 @@ public class C45ItGainPartiallyConsolidatedPruneableClassifierTree
 			Object[] current = list.get(0);
 			list.set(0, null); // Null to free up memory
 			list.remove(0);
+			loadPartitions(current);
 
 			currentData = (Instances)current[0];
 			currentSamplesVector = (Instances[])current[1];
@@ -107,7 +108,7 @@ public class C45ItGainPartiallyConsolidatedPruneableClassifierTree
 			 * Select the best model to split (if it is worth) based on the consolidation
 			 * proccess
 			 */
-			currentTree.setLocalModel(currentData, currentSamplesVector);
+			selectLocalModel(currentTree, currentData, currentSamplesVector);
 			for (int iSample = 0; iSample < numberSamples; iSample++)
 				currentTree.m_sampleTreeVector[iSample].setLocalModel(currentSamplesVector[iSample],
 						currentTree.getLocalModel());
@@ -172,6 +173,7 @@ public class C45ItGainPartiallyConsolidatedPruneableClassifierTree
 								newTree.m_sampleTreeVector[iSample]);
 
 					ClassifierSplitModel sonModel;
+					m_profile.begin(TrainingProfile.PHASE_SPLIT_SELECTION);
 					if ((m_priorityCriteria == J48PartiallyConsolidated.PriorCrit_GainratioWholeData) ||
 							(m_priorityCriteria == J48PartiallyConsolidated.PriorCrit_GainratioWholeData_Size))
 						sonModel = newTree.getToSelectModel().
@@ -179,6 +181,8 @@ public class C45ItGainPartiallyConsolidatedPruneableClassifierTree
 					else
 						sonModel = ((C45ConsolidatedModelSelection)newTree.getToSelectModel()).
 								selectModel(localInstances[iSon], localSamplesVector);
+					m_profile.end(TrainingProfile.PHASE_SPLIT_SELECTION, 1, numberSamples,
+							numInstances(localInstances[iSon], localSamplesVector));
 
 					if (sonModel.numSubsets() > 1) {
 						orderValue = ((C45Split) sonModel).gainRatio();
@@ -226,6 +230,7 @@ public class C45ItGainPartiallyConsolidatedPruneableClassifierTree
 				currentData = null;
 				currentSamplesVector = null;
 			}
+			keepWithinMemoryBudget(list, currentTree);
 			index++;
 		}
 	}
@@ -48,20 +48,7 @@ public class C45ItLevelPartiallyConsolidatedPruneableClassifierTree
 	 */
 	public void setNumberNodesToBeConsolidated(Instances data, Instances[] samplesVector, float consolidationPercent) throws Exception {
 		if (m_numberConsoNodesHowToSet == J48PartiallyConsolidated.NumberConsoNodes_Percentage) {
-			long trainTimeStart = 0, trainTimeElapsed = 0;
-			
-			trainTimeStart = System.currentTimeMillis();
-			super.buildTree(data, samplesVector, m_subtreeRaising || !m_cleanup); // build the tree without restrictions
-							
-			if (m_collapseTheCTree) {
-				collapse();
-			}
-			if (m_pruneTheConsolidatedTree) {
-				prune();
-			}
-			trainTimeElapsed = System.currentTimeMillis() - trainTimeStart;
-			System.out.println("Time taken to build the whole consolidated tree: " + Utils.doubleToString(trainTimeElapsed / 1000.0, 2) + " seconds\n");
-			m_elapsedTimeTrainingWholeCT = trainTimeElapsed / (double)1000.0;
+			buildWholeCT(data, samplesVector);
 
 			// m_priorityCriteria == J48PartiallyConsolidated.PriorCrit_Levelbylevel
 
@@ -73,11 +60,13 @@ public class C45ItLevelPartiallyConsolidatedPruneableClassifierTree
 			int numberLevelsConso = (int) (((treeLevels * consolidationPercent) / 100) + 0.5);
 			m_maximumCriteria = numberLevelsConso;
 			setNumInternalNodesConso(numberLevelsConso);
-			System.out.println(
-					"Number of levels to leave as consolidated: " + numberLevelsConso + " of " + treeLevels);
+			if (m_debug)
+				System.out.println(
+						"Number of levels to leave as consolidated: " + numberLevelsConso + " of " + treeLevels);
 		} else { // m_numberConsoNodesHowToSet == J48PartiallyConsolidated.NumberConsoNodes_Value
 			m_maximumCriteria = (int) consolidationPercent;
-			System.out.println("Number of levels to leave as consolidated: " + m_maximumCriteria);
+			if (m_debug)
+				System.out.println("Number of levels to leave as consolidated: " + m_maximumCriteria);
 			m_elapsedTimeTrainingWholeCT = (double)0.0;
 		}
 	}
@@ -117,6 +106,7 @@ public class C45ItLevelPartiallyConsolidatedPruneableClassifierTree
 			Object[] current = list.get(0);
 			list.set(0, null); // Null to free up memory
 			list.remove(0);
+			loadPartitions(current);
 
 			currentData = (Instances)current[0];
 			currentSamplesVector = (Instances[])current[1];
@@ -135,7 +125,7 @@ public class C45ItLevelPartiallyConsolidatedPruneableClassifierTree
 			 * Select the best model to split (if it is worth) based on the consolidation
 			 * proccess
 			 */
-			currentTree.setLocalModel(currentData, currentSamplesVector);
+			selectLocalModel(currentTree, currentData, currentSamplesVector);
 			for (int iSample = 0; iSample < numberSamples; iSample++)
 				currentTree.m_sampleTreeVector[iSample].setLocalModel(currentSamplesVector[iSample],
 						currentTree.getLocalModel());
@@ -225,6 +215,7 @@ public class C45ItLevelPartiallyConsolidatedPruneableClassifierTree
 				currentData = null;
 				currentSamplesVector = null;
 			}
+			keepWithinMemoryBudget(list, currentTree);
 			index++;
 		}
 	}
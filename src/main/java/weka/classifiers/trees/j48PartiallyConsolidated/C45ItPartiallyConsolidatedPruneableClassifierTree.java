@@ -7,7 +7,9 @@ package weka.classifiers.trees.j48PartiallyConsolidated;
 import java.util.ArrayList;
 
 import weka.classifiers.trees.j48Consolidated.C45ConsolidatedModelSelection;
+import weka.classifiers.trees.j48Consolidated.SamplePartitionStore;
 import weka.classifiers.trees.J48PartiallyConsolidated;
+import weka.classifiers.trees.j48.C45PruneableClassifierTree;
 import weka.classifiers.trees.j48.C45Split;
 import weka.classifiers.trees.j48.ClassifierTree;
 import weka.classifiers.trees.j48.ModelSelection;
@@ -86,6 +88,13 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 	
 	/** Standard Deviation percentage of base trees preserving structure throughout the tree. */
 	protected double m_devPercBaseTreesPreservingStructure = (double)Double.NaN;
+
+	/** Store to spill the partitions of the nodes to, when they exceed its memory budget
+	 *  while the partial tree is built (null if there is no budget) */
+	protected transient SamplePartitionStore m_partitionStore;
+
+	/** Developed nodes (but the root) whose partitions are still in memory */
+	protected transient ArrayList<C45ItPartiallyConsolidatedPruneableClassifierTree> m_nodesInMemory;
 	
 	/**
 	 * Constructor for pruneable consolidated tree structure. Calls the superclass
@@ -143,28 +152,41 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 	public void buildClassifier(Instances data, Instances[] samplesVector, float consolidationPercent) throws Exception {
 		long trainTimeStart = 0, trainTimeElapsed = 0;
 
+		setSampleSizes(samplesVector);
 		setNumberNodesToBeConsolidated(data, samplesVector, consolidationPercent);
 		// buildTree
-		trainTimeStart = System.currentTimeMillis();
+		trainTimeStart = System.nanoTime();
+		m_profile.begin(TrainingProfile.PHASE_PARTIAL_TREE_GROWTH);
 		buildPartialTreeItera(data, samplesVector, m_subtreeRaising || !m_cleanup);
-		if (m_collapseTheCTree) {
-			collapse();
-		}
-		if (m_pruneTheConsolidatedTree) {
-			prune();
-		}
-		trainTimeElapsed = System.currentTimeMillis() - trainTimeStart;
-		System.out.println("Time taken to build the partial consolidated tree: " + Utils.doubleToString(trainTimeElapsed / 1000.0, 2) + " seconds\n");
-		m_elapsedTimeTrainingPartialCT = trainTimeElapsed / (double)1000.0;
+		m_profile.end(TrainingProfile.PHASE_PARTIAL_TREE_GROWTH, numNodes(), samplesVector.length,
+				numInstances(data));
+		collapseAndPruneCT();
+		trainTimeElapsed = System.nanoTime() - trainTimeStart;
+		m_elapsedTimeTrainingPartialCT = trainTimeElapsed / 1e9;
 
-		trainTimeStart = System.currentTimeMillis();
+		trainTimeStart = System.nanoTime();
 		applyBagging();
-		trainTimeElapsed = System.currentTimeMillis() - trainTimeStart;
-		System.out.println("Time taken to build the associated Bagging: " + Utils.doubleToString(trainTimeElapsed / 1000.0, 2) + " seconds\n");
-		m_elapsedTimeTrainingAssocBagging = trainTimeElapsed / (double)1000.0;
+		trainTimeElapsed = System.nanoTime() - trainTimeStart;
+		m_elapsedTimeTrainingAssocBagging = trainTimeElapsed / 1e9;
 
 		if (m_cleanup)
-			cleanup(new Instances(data, 0));
+			cleanupAndProfile(new Instances(data, 0));
+		if(!m_isLeaf)
+			computeNumberBaseTreesPreservingPartialCTStructure();
+	}
+
+	/**
+	 * Extends the already built classifier with a base tree for each of the given new
+	 * samples, and updates the percentages of base trees preserving the structure
+	 * of the partial consolidated tree.
+	 *
+	 * @param samplesVector the vector of new samples
+	 * @throws Exception if something goes wrong
+	 */
+	public void addBaseTrees(Instances[] samplesVector) throws Exception {
+		long trainTimeStart = System.nanoTime();
+		super.addBaseTrees(samplesVector);
+		m_elapsedTimeTrainingAssocBagging += (System.nanoTime() - trainTimeStart) / 1e9;
 		if(!m_isLeaf)
 			computeNumberBaseTreesPreservingPartialCTStructure();
 	}
@@ -183,20 +205,7 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 	 */
 	public void setNumberNodesToBeConsolidated(Instances data, Instances[] samplesVector, float consolidationPercent) throws Exception {
 		if (m_numberConsoNodesHowToSet == J48PartiallyConsolidated.NumberConsoNodes_Percentage) {
-			long trainTimeStart = 0, trainTimeElapsed = 0;
-			
-			trainTimeStart = System.currentTimeMillis();
-			super.buildTree(data, samplesVector, m_subtreeRaising || !m_cleanup); // build the tree without restrictions
-							
-			if (m_collapseTheCTree) {
-				collapse();
-			}
-			if (m_pruneTheConsolidatedTree) {
-				prune();
-			}
-			trainTimeElapsed = System.currentTimeMillis() - trainTimeStart;
-			System.out.println("Time taken to build the whole consolidated tree: " + Utils.doubleToString(trainTimeElapsed / 1000.0, 2) + " seconds\n");
-			m_elapsedTimeTrainingWholeCT = trainTimeElapsed / (double)1000.0;
+			buildWholeCT(data, samplesVector);
 
 			// Number of internal nodes of the consolidated tree
 			int innerNodes = numNodes() - numLeaves();
@@ -206,15 +215,53 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 			int numberNodesConso = (int) (((innerNodes * consolidationPercent) / 100) + 0.5);
 			m_maximumCriteria = numberNodesConso;
 			setNumInternalNodesConso(numberNodesConso);
-			System.out.println(
-					"Number of nodes to leave as consolidated: " + numberNodesConso + " of " + innerNodes);
+			if (m_debug)
+				System.out.println(
+						"Number of nodes to leave as consolidated: " + numberNodesConso + " of " + innerNodes);
 		} else { // m_numberConsoNodesHowToSet == J48PartiallyConsolidated.NumberConsoNodes_Value
 			m_maximumCriteria = (int) consolidationPercent;
-			System.out.println("Number of nodes or levels to leave as consolidated: " + m_maximumCriteria);
+			if (m_debug)
+				System.out.println("Number of nodes or levels to leave as consolidated: " + m_maximumCriteria);
 			m_elapsedTimeTrainingWholeCT = (double)0.0;
 		}
 	}
 
+	/**
+	 * Builds the whole consolidated tree, collapsing and pruning it if required,
+	 * to know the number of nodes (or levels) to be consolidated.
+	 *
+	 * @param data          the data for pruning the consolidated tree
+	 * @param samplesVector the vector of samples for building the
+	 *                      consolidated tree
+	 * @throws Exception if something goes wrong
+	 */
+	protected void buildWholeCT(Instances data, Instances[] samplesVector) throws Exception {
+		long trainTimeStart = System.nanoTime();
+		m_profile.begin(TrainingProfile.PHASE_WHOLE_TREE_GROWTH);
+		super.buildTree(data, samplesVector, m_subtreeRaising || !m_cleanup); // build the tree without restrictions
+		m_profile.end(TrainingProfile.PHASE_WHOLE_TREE_GROWTH, numNodes(), samplesVector.length,
+				numInstances(data));
+		collapseAndPruneCT();
+		m_elapsedTimeTrainingWholeCT = (System.nanoTime() - trainTimeStart) / 1e9;
+	}
+
+	/**
+	 * Collapses and prunes the consolidated tree, if required.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	protected void collapseAndPruneCT() throws Exception {
+		m_profile.begin(TrainingProfile.PHASE_PRUNING);
+		int nodes = numNodes();
+		if (m_collapseTheCTree) {
+			collapse();
+		}
+		if (m_pruneTheConsolidatedTree) {
+			prune();
+		}
+		m_profile.end(TrainingProfile.PHASE_PRUNING, nodes, 0, 0);
+	}
+
 	/**
 	 * Builds the partial consolidated tree structure, in this case
 	 * iteratively (instead of recursively as in the original method, buildTree()).
@@ -252,6 +299,7 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 			Object[] current = list.get(0);
 			list.set(0, null); // Null to free up memory
 			list.remove(0);
+			loadPartitions(current);
 
 			currentData = (Instances)current[0];
 			currentSamplesVector = (Instances[])current[1];
@@ -269,7 +317,7 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 			 * Select the best model to split (if it is worth) based on the consolidation
 			 * proccess
 			 */
-			currentTree.setLocalModel(currentData, currentSamplesVector);
+			selectLocalModel(currentTree, currentData, currentSamplesVector);
 			for (int iSample = 0; iSample < numberSamples; iSample++)
 				currentTree.m_sampleTreeVector[iSample].setLocalModel(currentSamplesVector[iSample],
 						currentTree.getLocalModel());
@@ -362,6 +410,7 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 				currentData = null;
 				currentSamplesVector = null;
 			}
+			keepWithinMemoryBudget(list, currentTree);
 			index++;
 		}
 	}
@@ -384,6 +433,131 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 		}
 	}
 
+	/**
+	 * Sets the store to spill the partitions of the nodes to, when they exceed its
+	 * memory budget while the partial tree is built. The partitions of the developed
+	 * nodes are spilled first, as they are not needed until the trees are pruned and
+	 * completed, and then the ones of the nodes to be developed, starting from the last
+	 * one in the list (the coldest).
+	 *
+	 * @param store the store, or null to keep all the partitions in memory
+	 */
+	public void setPartitionStore(SamplePartitionStore store) {
+		m_partitionStore = store;
+		m_nodesInMemory = (store != null) ? new ArrayList<C45ItPartiallyConsolidatedPruneableClassifierTree>() : null;
+	}
+
+	/**
+	 * Reloads the partitions of the given node to be developed, if they have been spilled.
+	 *
+	 * @param node the node in the list of nodes to be processed (data, samplesVector, tree...)
+	 */
+	protected void loadPartitions(Object[] node) {
+		if (node[0] instanceof SamplePartitionStore.Partition[]) {
+			SamplePartitionStore.Partition[] partitions = (SamplePartitionStore.Partition[]) node[0];
+			Instances[] samplesVector = new Instances[partitions.length - 1];
+			for (int iSample = 0; iSample < samplesVector.length; iSample++)
+				samplesVector[iSample] = partitions[iSample + 1].instances();
+			node[0] = partitions[0].instances();
+			node[1] = samplesVector;
+		}
+	}
+
+	/**
+	 * Spills partitions to the store, if any, until the estimated size of the ones in
+	 * memory fits its budget, once the given node has been developed.
+	 *
+	 * @param list the list of nodes to be processed (data, samplesVector, tree...)
+	 * @param developedNode the node that has just been developed
+	 * @throws Exception if the partitions can not be spilled
+	 */
+	protected void keepWithinMemoryBudget(ArrayList<Object[]> list,
+			C45ItPartiallyConsolidatedPruneableClassifierTree developedNode) throws Exception {
+		if (m_partitionStore == null)
+			return;
+		// The partitions of the root are the training data and the samples themselves
+		if (developedNode != this)
+			m_nodesInMemory.add(developedNode);
+
+		long bytes = 0;
+		for (C45ItPartiallyConsolidatedPruneableClassifierTree node : m_nodesInMemory)
+			bytes += node.partitionsBytes();
+		for (Object[] node : list)
+			if (node[0] instanceof Instances) {
+				bytes += SamplePartitionStore.estimatedBytes((Instances) node[0]);
+				for (Instances sample : (Instances[]) node[1])
+					bytes += SamplePartitionStore.estimatedBytes(sample);
+			}
+
+		while ((bytes > m_partitionStore.getMaxBytes()) && (m_nodesInMemory.size() > 0))
+			bytes -= m_nodesInMemory.remove(0).spillPartitions(m_partitionStore);
+		for (int i = list.size() - 1; (i >= 0) && (bytes > m_partitionStore.getMaxBytes()); i--) {
+			Object[] node = list.get(i);
+			if (node[0] instanceof Instances) {
+				Instances[] samplesVector = (Instances[]) node[1];
+				SamplePartitionStore.Partition[] partitions = new SamplePartitionStore.Partition[samplesVector.length + 1];
+				partitions[0] = m_partitionStore.spill((Instances) node[0]);
+				for (int iSample = 0; (partitions[iSample] != null) && (iSample < samplesVector.length); iSample++)
+					partitions[iSample + 1] = m_partitionStore.spill(samplesVector[iSample]);
+				if (partitions[partitions.length - 1] == null)
+					continue; // Not indexed data
+				bytes -= SamplePartitionStore.estimatedBytes((Instances) node[0]);
+				for (Instances sample : samplesVector)
+					bytes -= SamplePartitionStore.estimatedBytes(sample);
+				node[0] = partitions;
+				node[1] = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the partitions of this node (and of its
+	 * base trees) kept in memory.
+	 *
+	 * @return the size in bytes
+	 */
+	protected long partitionsBytes() {
+		long bytes = SamplePartitionStore.estimatedBytes(getTrainingDataInMemory());
+		for (int iSample = 0; iSample < m_sampleTreeVector.length; iSample++)
+			bytes += SamplePartitionStore.estimatedBytes(m_sampleTreeVector[iSample].getTrainingDataInMemory());
+		return bytes;
+	}
+
+	/**
+	 * Spills the partitions of this node (and of its base trees) kept in memory
+	 * to the given store.
+	 *
+	 * @param store the store
+	 * @return the estimated size in bytes of the spilled partitions
+	 * @throws Exception if the partitions can not be spilled
+	 */
+	protected long spillPartitions(SamplePartitionStore store) throws Exception {
+		long bytes = spillPartition(this, store);
+		for (int iSample = 0; iSample < m_sampleTreeVector.length; iSample++)
+			bytes += spillPartition(m_sampleTreeVector[iSample], store);
+		return bytes;
+	}
+
+	/**
+	 * Spills the training data of the given node to the given store, if it is
+	 * kept in memory.
+	 *
+	 * @param node the node
+	 * @param store the store
+	 * @return the estimated size in bytes of the spilled data
+	 * @throws Exception if the data can not be spilled
+	 */
+	protected static long spillPartition(C45PruneableClassifierTree node, SamplePartitionStore store) throws Exception {
+		Instances data = node.getTrainingDataInMemory();
+		if (data == null)
+			return 0;
+		SamplePartitionStore.Partition partition = store.spill(data);
+		if (partition == null)
+			return 0;
+		node.spillTrainingData(partition);
+		return SamplePartitionStore.estimatedBytes(data);
+	}
+
 	/**
 	 * Initializes the base tree to be build.
 	 * @param data instances in the current node related to the corresponding base decision tree
@@ -425,6 +599,22 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 		m_localModel = ((C45ConsolidatedModelSelection)m_toSelectModel).selectModel(data, samplesVector);
 	}
 
+	/**
+	 * Sets m_localModel of the given node based on the consolidation proccess,
+	 * profiled as split selection.
+	 * @param node the node being developed
+	 * @param data instances in the node
+	 * @param samplesVector the vector of samples in the node
+	 * @throws Exception if something goes wrong
+	 */
+	protected void selectLocalModel(C45ItPartiallyConsolidatedPruneableClassifierTree node,
+			Instances data, Instances[] samplesVector) throws Exception {
+		m_profile.begin(TrainingProfile.PHASE_SPLIT_SELECTION);
+		node.setLocalModel(data, samplesVector);
+		m_profile.end(TrainingProfile.PHASE_SPLIT_SELECTION, 1, samplesVector.length,
+				numInstances(data, samplesVector));
+	}
+
 	/**
 	 * Creates the vector to save the sons of the current node.
 	 * @param numSons Number of sons
@@ -547,7 +737,7 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 		if(m_pruneBaseTreesWithoutPreservingConsolidatedStructure) {
 			/** Number of Samples. */
 			int numberSamples = m_sampleTreeVector.length;
-			m_numberBaseTreesWithThisSplitDecision = 0;
+			resetNumberBaseTreesWithThisSplitDecision();
 			for (int iSample = 0; iSample < numberSamples; iSample++)
 				computeWhetherBaseTreePreservesStructure((C45PruneableClassifierTreeExtended)(m_sampleTreeVector[iSample]));
 			ArrayList<Double> auxvPercBaseTrees = new ArrayList<>();
@@ -568,6 +758,16 @@ public class C45ItPartiallyConsolidatedPruneableClassifierTree extends C45Partia
 		}
 	}
 	
+	/**
+	 * Resets the number of base trees preserving the split decision of each node.
+	 */
+	protected void resetNumberBaseTreesWithThisSplitDecision() {
+		m_numberBaseTreesWithThisSplitDecision = 0;
+		if (!m_isLeaf)
+			for (int i=0;i<m_sons.length;i++)
+				((C45ItPartiallyConsolidatedPruneableClassifierTree)son(i)).resetNumberBaseTreesWithThisSplitDecision();
+	}
+
 	public void computeWhetherBaseTreePreservesStructure(ClassifierTree baseTree) {
 		if (m_isLeaf)
 			return;
@@ -72,6 +72,7 @@ public class C45ItSizePartiallyConsolidatedPruneableClassifierTree
 			Object[] current = list.get(0);
 			list.set(0, null); // Null to free up memory
 			list.remove(0);
+			loadPartitions(current);
 
 			currentData = (Instances)current[0];
 			currentSamplesVector = (Instances[])current[1];
@@ -89,7 +90,7 @@ public class C45ItSizePartiallyConsolidatedPruneableClassifierTree
 			 * Select the best model to split (if it is worth) based on the consolidation
 			 * proccess
 			 */
-			currentTree.setLocalModel(currentData, currentSamplesVector);
+			selectLocalModel(currentTree, currentData, currentSamplesVector);
 			for (int iSample = 0; iSample < numberSamples; iSample++)
 				currentTree.m_sampleTreeVector[iSample].setLocalModel(currentSamplesVector[iSample],
 						currentTree.getLocalModel());
@@ -189,6 +190,7 @@ public class C45ItSizePartiallyConsolidatedPruneableClassifierTree
 				currentData = null;
 				currentSamplesVector = null;
 			}
+			keepWithinMemoryBudget(list, currentTree);
 			index++;
 		}
 	}
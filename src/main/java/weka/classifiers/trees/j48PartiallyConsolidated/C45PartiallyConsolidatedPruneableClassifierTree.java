@@ -7,6 +7,7 @@ import weka.classifiers.trees.j48Consolidated.C45ConsolidatedModelSelection;
 import weka.classifiers.trees.j48Consolidated.C45ConsolidatedPruneableClassifierTree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 
 import weka.classifiers.trees.j48.ClassifierTree;
@@ -48,6 +49,15 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 	 * consolidated tree. */
 	protected boolean m_pruneWithoutPreservingConsolidatedStructure;
 
+	/** Profile of the phases of the training, shared by all the nodes of the tree */
+	protected TrainingProfile m_profile = new TrainingProfile();
+
+	/** Sizes of the samples the tree is built with (needed to profile the training) */
+	protected transient int[] m_sampleSizes;
+
+	/** Whether to print the number of nodes left as consolidated */
+	protected boolean m_debug = false;
+
 	/**
 	 * Constructor for pruneable consolidated tree structure. Calls
 	 * the superclass constructor.
@@ -89,18 +99,106 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 	 */
 	public void buildClassifier(Instances data, Instances[] samplesVector, float consolidationPercent) throws Exception {
 
+		setSampleSizes(samplesVector);
+		m_profile.begin(TrainingProfile.PHASE_WHOLE_TREE_GROWTH);
 		buildTree(data, samplesVector, m_subtreeRaising || !m_cleanup);
+		m_profile.end(TrainingProfile.PHASE_WHOLE_TREE_GROWTH, numNodes(), samplesVector.length,
+				numInstances(data));
+		m_profile.begin(TrainingProfile.PHASE_PRUNING);
+		int nodes = numNodes();
 		if (m_collapseTheTree) {
 			collapse();
 		}
 		if (m_pruneTheTree) {
 			prune();
 		}
+		m_profile.end(TrainingProfile.PHASE_PRUNING, nodes, 0, 0);
+		// The partial tree is obtained by leaving the heaviest nodes of the whole tree
+		m_profile.begin(TrainingProfile.PHASE_PARTIAL_TREE_GROWTH);
 		leavePartiallyConsolidated(consolidationPercent);
+		m_profile.end(TrainingProfile.PHASE_PARTIAL_TREE_GROWTH, numNodes(), samplesVector.length,
+				numInstances(data));
 		applyBagging();
 		
 		if (m_cleanup)
-			cleanup(new Instances(data, 0));
+			cleanupAndProfile(new Instances(data, 0));
+	}
+
+	/**
+	 * Sets the profile of the training, to be shared by all the nodes of the tree.
+	 *
+	 * @param profile the profile
+	 */
+	public void setTrainingProfile(TrainingProfile profile) {
+		m_profile = profile;
+	}
+
+	/**
+	 * Sets whether to print the number of nodes (or levels) left as consolidated.
+	 *
+	 * @param debug true to print it
+	 */
+	public void setDebug(boolean debug) {
+		m_debug = debug;
+	}
+
+	/**
+	 * Returns the profile of the training.
+	 *
+	 * @return the profile
+	 */
+	public TrainingProfile getTrainingProfile() {
+		return m_profile;
+	}
+
+	/**
+	 * Stores the sizes of the samples the tree is built with.
+	 *
+	 * @param samplesVector the vector of samples
+	 */
+	protected void setSampleSizes(Instances[] samplesVector) {
+		m_sampleSizes = new int[samplesVector.length];
+		for (int iSample = 0; iSample < samplesVector.length; iSample++)
+			m_sampleSizes[iSample] = samplesVector[iSample].numInstances();
+	}
+
+	/**
+	 * Returns the number of instances of the given data plus those of all the samples
+	 * the tree is built with.
+	 *
+	 * @param data the data
+	 * @return the number of instances
+	 */
+	protected long numInstances(Instances data) {
+		long instances = data.numInstances();
+		for (int iSample = 0; iSample < m_sampleSizes.length; iSample++)
+			instances += m_sampleSizes[iSample];
+		return instances;
+	}
+
+	/**
+	 * Returns the number of instances of the given data plus those of the given samples.
+	 *
+	 * @param data the data
+	 * @param samplesVector the vector of samples
+	 * @return the number of instances
+	 */
+	protected static long numInstances(Instances data, Instances[] samplesVector) {
+		long instances = data.numInstances();
+		for (int iSample = 0; iSample < samplesVector.length; iSample++)
+			instances += samplesVector[iSample].numInstances();
+		return instances;
+	}
+
+	/**
+	 * Cleanup in order to save memory, profiled as the cleanup phase.
+	 *
+	 * @param justHeaderInfo the header of the data
+	 */
+	protected void cleanupAndProfile(Instances justHeaderInfo) {
+		m_profile.begin(TrainingProfile.PHASE_CLEANUP);
+		cleanup(justHeaderInfo);
+		m_profile.end(TrainingProfile.PHASE_CLEANUP, numNodes(), m_sampleTreeVector.length, 0);
 	}
 	
 	/**
@@ -148,8 +246,7 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 			// Compute error for largest branch
 			indexOfLargestBranch = localModel().distribution().maxBag();
 			if (m_subtreeRaising) {
-				errorsLargestBranch = ((C45PartiallyConsolidatedPruneableClassifierTree)(son(indexOfLargestBranch))).
-						getEstimatedErrorsForBranch((Instances)m_train);
+				errorsLargestBranch = getEstimatedErrorsForRaisedBranch(indexOfLargestBranch);
 			} else {
 				errorsLargestBranch = Double.MAX_VALUE;
 			}
@@ -175,7 +272,7 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 				m_sons = largestBranch.m_sons;
 				m_localModel = largestBranch.localModel();
 				m_isLeaf = largestBranch.m_isLeaf;
-				newDistribution(m_train);
+				newTrainingDistribution();
 				// Replace current node with the largest branch in all base trees
 				for (int iSample=0; iSample < m_sampleTreeVector.length; iSample++)
 					m_sampleTreeVector[iSample].replaceWithIthSubtree(indexOfLargestBranch);
@@ -229,6 +326,7 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 				new C45PartiallyConsolidatedPruneableClassifierTree(m_toSelectModel, baseModelToForceDecision,
 						m_pruneTheTree, m_CF, m_subtreeRaising, m_cleanup, m_collapseTheTree , samplesVector.length,
 						m_pruneWithoutPreservingConsolidatedStructure);
+		newTree.m_profile = m_profile;
 		/** Set the recent created base trees like the sons of the given parent node */
 		for (int iSample = 0; iSample < numberSamples; iSample++)
 			((C45PruneableClassifierTreeExtended)sampleTreeVectorParent[iSample]).setIthSon(iSon, newTree.m_sampleTreeVector[iSample]);
@@ -263,7 +361,9 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 			m_sampleTreeVector[iSample].initiliazeTree(samplesVector[iSample], keepData);
 
 		/** Select the best model to split (if it is worth) based on the consolidation proccess */
+		m_profile.begin(TrainingProfile.PHASE_SPLIT_SELECTION);
 		m_localModel = ((C45ConsolidatedModelSelection)m_toSelectModel).selectModel(data, samplesVector);
+		m_profile.end(TrainingProfile.PHASE_SPLIT_SELECTION, 1, numberSamples, numInstances(data, samplesVector));
 		for (int iSample = 0; iSample < numberSamples; iSample++)
 			m_sampleTreeVector[iSample].setLocalModel(samplesVector[iSample],m_localModel);
 
@@ -330,6 +430,18 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 		return m_sampleTreeVector;
 	}
 
+	/**
+	 * Releases the nodes of the base trees referenced from the nodes of the partial
+	 * consolidated tree, once the base trees have been frozen into a compact form.
+	 * The number of base trees is kept, but they can not be extended anymore.
+	 */
+	public void releaseBaseTrees() {
+		Arrays.fill(m_sampleTreeVector, null);
+		if (!m_isLeaf)
+			for (ClassifierTree son : m_sons)
+				((C45PartiallyConsolidatedPruneableClassifierTree) son).releaseBaseTrees();
+	}
+
 	/**
 	 * Returns the i-th base decision tree of the vector.
 	 *
@@ -365,7 +477,8 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 		// Number of nodes of the consolidated tree to leave as consolidated based on given consolidationPercent 
 		int numberNodesConso = (int)(((innerNodes * consolidationPercent) / 100) + 0.5);
 		setNumInternalNodesConso(numberNodesConso);
-		System.out.println("Number of nodes to leave as consolidated: " + numberNodesConso + " of " + innerNodes);
+		if (m_debug)
+			System.out.println("Number of nodes to leave as consolidated: " + numberNodesConso + " of " + innerNodes);
 		// Vector storing the nodes to maintain as consolidated
 		ArrayList<C45PartiallyConsolidatedPruneableClassifierTree> nodesConsoVector = new ArrayList<C45PartiallyConsolidatedPruneableClassifierTree>();
 		// Vector storing the weight of the nodes of nodesConsoVector
@@ -414,7 +527,137 @@ public class C45PartiallyConsolidatedPruneableClassifierTree extends
 		/** Number of Samples. */
 		int numberSamples = m_sampleTreeVector.length;
 		for (int iSample = 0; iSample < numberSamples; iSample++)
-			m_sampleTreeVector[iSample].rebuildTreeFromConsolidatedStructureAndPrune();
+			completeBaseTree(m_sampleTreeVector[iSample], (m_sampleSizes != null) ? m_sampleSizes[iSample] : 0);
+	}
+
+	/**
+	 * Rebuilds the given base tree according to J48 algorithm from the leaves of the
+	 *  partial consolidated tree structure and prunes it, if required.
+	 * @param baseTree the base tree
+	 * @param sampleSize the size of the sample the base tree is built with
+	 * @throws Exception if something goes wrong
+	 */
+	protected void completeBaseTree(C45PruneableClassifierTreeExtended baseTree, int sampleSize) throws Exception {
+		m_profile.begin(TrainingProfile.PHASE_BASE_TREE_COMPLETION);
+		baseTree.rebuildTreeFromConsolidatedStructure();
+		m_profile.end(TrainingProfile.PHASE_BASE_TREE_COMPLETION, baseTree.numNodes(), 1, sampleSize);
+		if (m_pruneWithoutPreservingConsolidatedStructure) {
+			Instances header = new Instances(baseTree.getTrainingData(), 0);
+			m_profile.begin(TrainingProfile.PHASE_PRUNING);
+			int nodes = baseTree.numNodes();
+			baseTree.pruneWholeTree();
+			m_profile.end(TrainingProfile.PHASE_PRUNING, nodes, 1, 0);
+			if (m_cleanup) {
+				m_profile.begin(TrainingProfile.PHASE_CLEANUP);
+				baseTree.cleanup(header);
+				m_profile.end(TrainingProfile.PHASE_CLEANUP, baseTree.numNodes(), 1, 0);
+			}
+		}
+	}
+
+	/**
+	 * Extends the already built classifier with a base tree for each of the given new
+	 *  samples. Each sample is routed through the partial consolidated tree structure
+	 *  forcing the consolidated decisions (as when the structure was built), and then
+	 *  its base tree is completed according to J48 algorithm from the leaves of the
+	 *  structure. The consolidated tree itself is not changed.
+	 *
+	 * @param samplesVector the vector of new samples
+	 * @throws Exception if something goes wrong
+	 */
+	public void addBaseTrees(Instances[] samplesVector) throws Exception {
+		/** Number of new samples. */
+		int numberSamples = samplesVector.length;
+		if (m_sampleTreeVector.length == 0)
+			throw new Exception("The classifier has no base trees to take their settings from!");
+
+		C45PruneableClassifierTreeExtended[] newTrees = newBaseTrees(numberSamples);
+		addBaseTreeNodes(samplesVector, newTrees);
+		for (int iSample = 0; iSample < numberSamples; iSample++) {
+			C45PruneableClassifierTreeExtended baseTree = newTrees[iSample];
+			Instances header = new Instances(samplesVector[iSample], 0);
+			completeBaseTree(baseTree, samplesVector[iSample].numInstances());
+			if (m_cleanup && !m_pruneWithoutPreservingConsolidatedStructure) {
+				m_profile.begin(TrainingProfile.PHASE_CLEANUP);
+				baseTree.cleanup(header);
+				m_profile.end(TrainingProfile.PHASE_CLEANUP, baseTree.numNodes(), 1, 0);
+			}
+		}
+	}
+
+	/**
+	 * Creates the given number of empty base tree nodes, with the same settings as
+	 *  the current ones.
+	 *
+	 * @param numberSamples the number of nodes
+	 * @return the new nodes
+	 * @throws Exception if something goes wrong
+	 */
+	protected C45PruneableClassifierTreeExtended[] newBaseTrees(int numberSamples) throws Exception {
+		ModelSelection modelToConsolidate = ((C45ConsolidatedModelSelection)m_toSelectModel).getModelToConsolidate();
+		C45ModelSelectionExtended baseModelToForceDecision = m_sampleTreeVector[0].getBaseModelToForceDecision();
+		C45PruneableClassifierTreeExtended[] newTrees = new C45PruneableClassifierTreeExtended[numberSamples];
+		for (int iSample = 0; iSample < numberSamples; iSample++)
+			newTrees[iSample] = new C45PruneableClassifierTreeExtended(
+					modelToConsolidate,	baseModelToForceDecision, m_pruneTheTree, m_CF, m_subtreeRaising, m_cleanup,
+					m_collapseTheTree, m_pruneWithoutPreservingConsolidatedStructure);
+		return newTrees;
+	}
+
+	/**
+	 * Builds the given nodes of the new base trees forcing the decision of the current
+	 *  consolidated node, and continues recursively with the children, if any
+	 *  (based on the method buildTree()). The nodes are added to the vector of
+	 *  base trees of the consolidated node.
+	 *
+	 * @param samplesVector the vector of new samples in the current node
+	 * @param newNodes the nodes of the new base trees related to the current node
+	 * @throws Exception if something goes wrong
+	 */
+	protected void addBaseTreeNodes(Instances[] samplesVector, C45PruneableClassifierTreeExtended[] newNodes) throws Exception {
+		/** Number of new samples. */
+		int numberSamples = samplesVector.length;
+
+		/** Force the consolidated decision in the new base trees.
+		 *  The data is kept to complete the base trees from the leaves. */
+		for (int iSample = 0; iSample < numberSamples; iSample++) {
+			newNodes[iSample].initiliazeTree(samplesVector[iSample], true);
+			newNodes[iSample].setLocalModel(samplesVector[iSample], m_localModel);
+		}
+		if (!m_isLeaf) {
+			for (int iSample = 0; iSample < numberSamples; iSample++)
+				if (Utils.eq(newNodes[iSample].getLocalModel().distribution().total(), 0))
+					newNodes[iSample].setIsEmpty(true);
+
+			/** Split each sample according to the consolidated m_localModel */
+			ArrayList<Instances[]> localInstancesVector = new ArrayList<Instances[]>();
+			for (int iSample = 0; iSample < numberSamples; iSample++) {
+				localInstancesVector.add(m_localModel.split(samplesVector[iSample]));
+				newNodes[iSample].createSonsVector(m_sons.length);
+			}
+			for (int iSon = 0; iSon < m_sons.length; iSon++) {
+				/** Vector storing the subsamples related to the iSon-th son */
+				Instances[] localSamplesVector = new Instances[numberSamples];
+				C45PruneableClassifierTreeExtended[] sonNodes = newBaseTrees(numberSamples);
+				for (int iSample = 0; iSample < numberSamples; iSample++) {
+					localSamplesVector[iSample] = ((Instances[]) localInstancesVector.get(iSample))[iSon];
+					newNodes[iSample].setIthSon(iSon, sonNodes[iSample]);
+				}
+				((C45PartiallyConsolidatedPruneableClassifierTree)son(iSon)).addBaseTreeNodes(localSamplesVector, sonNodes);
+			}
+		} else {
+			for (int iSample = 0; iSample < numberSamples; iSample++)
+				newNodes[iSample].setIsLeaf(true);
+			if (Utils.eq(m_localModel.distribution().total(), 0))
+				for (int iSample = 0; iSample < numberSamples; iSample++)
+					newNodes[iSample].setIsEmpty(true);
+		}
+
+		/** Add the new nodes to the vector of base trees */
+		C45PruneableClassifierTreeExtended[] sampleTreeVector =
+				Arrays.copyOf(m_sampleTreeVector, m_sampleTreeVector.length + numberSamples);
+		System.arraycopy(newNodes, 0, sampleTreeVector, m_sampleTreeVector.length, numberSamples);
+		m_sampleTreeVector = sampleTreeVector;
 	}
 	
 	/**
@@ -144,7 +144,7 @@ public class C45PruneableClassifierTreeExtended extends C45PruneableClassifierTr
 		m_sons = newTree.getSons();
 		m_localModel = newTree.localModel();
 		m_isLeaf = newTree.isLeaf();
-		newDistribution(m_train);
+		newTrainingDistribution();
 	}
 
 	/**
@@ -162,6 +162,22 @@ public class C45PruneableClassifierTreeExtended extends C45PruneableClassifierTr
 	 */
 	public void rebuildTreeFromConsolidatedStructureAndPrune() throws Exception {
 		rebuildTreeFromConsolidatedStructure();
+		if (m_pruneWithoutPreservingConsolidatedStructure) {
+			Instances header = new Instances(getTrainingData(), 0);
+			pruneWholeTree();
+			if (m_cleanup) {
+				cleanup(header);
+			}
+		}
+	}
+
+	/**
+	 * Collapses and prunes the whole rebuilt tree, if required, when the base trees are
+	 *  pruned without preserving the structure of the partially consolidated tree
+	 *  (otherwise, each subtree has already been pruned when it was rebuilt).
+	 * @throws Exception if something goes wrong
+	 */
+	public void pruneWholeTree() throws Exception {
 		if (m_pruneWithoutPreservingConsolidatedStructure) {
 			/* Once the whole tree is grown, the pruning process will be applied to the tree. */
 			if (m_collapseTheTree) {
@@ -170,9 +186,6 @@ public class C45PruneableClassifierTreeExtended extends C45PruneableClassifierTr
 			if (m_pruneTheTree) {
 				prune();
 			}
-			if (m_cleanup) {
-				cleanup(new Instances(m_train, 0));
-			}
 		}
 	}
 	
@@ -197,12 +210,12 @@ public class C45PruneableClassifierTreeExtended extends C45PruneableClassifierTr
 				 * First grow the subtree with the data from the current node, replace the subtree
 				 * with the current node.
 				 * The pruning process shall be carried out, if necessary, on the entire grown tree. */
-				newTree.buildTree(m_train, m_subtreeRaising || !m_cleanup);
+				newTree.buildTree(getTrainingData(), m_subtreeRaising || !m_cleanup);
 			} else {
 				/* Build the tree but preserving the structure of the partially consolidated tree:
 				 * First grow the subtree with the data from the current node, prune it, if necessary,
 				 * and, finally, replace the subtree with the current node. */
-				newTree.buildClassifier(m_train);
+				newTree.buildClassifier(getTrainingData());
 			}
 			/** Replace current node with the recent built tree */
 			replaceWithSubtree(newTree);
@@ -0,0 +1,241 @@
+/**
+ *
+ */
+package weka.classifiers.trees.j48PartiallyConsolidated;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import weka.core.Utils;
+
+/**
+ * Class for profiling the phases of the training of a partially consolidated
+ * tree (PCTBagging): elapsed time in nanoseconds, bytes allocated by the
+ * training thread (if the JVM supports it) and the number of nodes, samples and
+ * instances handled in each phase. The phases are timed inclusively, that is,
+ * the split selection is also part of the growth of the tree it happens in.
+ * <p>
+ * A profile is meant to be filled in by a single training thread, it does not
+ * output anything while training.
+ *
+ * @author Jesús M. Pérez (txus.perez@ehu.eus)
+ * @version $Revision: 1.0 $
+ */
+public class TrainingProfile implements Serializable {
+
+	/** for serialization **/
+	private static final long serialVersionUID = -2263702311958474640L;
+
+	/** Generation of the set of samples */
+	public static final int PHASE_RESAMPLING = 0;
+	/** Selection of the consolidated split of a node (and of the candidate children, when used to rank them) */
+	public static final int PHASE_SPLIT_SELECTION = 1;
+	/** Growth of the whole consolidated tree (only when the number of nodes to be consolidated is a percentage) */
+	public static final int PHASE_WHOLE_TREE_GROWTH = 2;
+	/** Growth of the partial consolidated tree */
+	public static final int PHASE_PARTIAL_TREE_GROWTH = 3;
+	/** Completion of the base trees from the partial consolidated structure */
+	public static final int PHASE_BASE_TREE_COMPLETION = 4;
+	/** Collapsing and pruning of the consolidated tree and of the base trees */
+	public static final int PHASE_PRUNING = 5;
+	/** Cleanup of the training data kept in the trees */
+	public static final int PHASE_CLEANUP = 6;
+
+	/** Names of the phases, as used in the names of the additional measures */
+	public static final String[] PHASE_NAMES = {"Resampling", "SplitSelection", "WholeTreeGrowth",
+			"PartialTreeGrowth", "BaseTreeCompletion", "Pruning", "Cleanup"};
+
+	/** Names of the quantities measured for each phase */
+	public static final String[] QUANTITY_NAMES = {"Nanos", "AllocatedBytes", "Nodes", "Samples", "Instances"};
+
+	/** The thread management interface, to get the allocated bytes */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/** Elapsed time of each phase in nanoseconds */
+	protected long[] m_nanos = new long[PHASE_NAMES.length];
+
+	/** Bytes allocated in each phase by the training thread */
+	protected long[] m_allocatedBytes = new long[PHASE_NAMES.length];
+
+	/** Number of nodes handled in each phase */
+	protected long[] m_nodes = new long[PHASE_NAMES.length];
+
+	/** Number of samples handled in each phase */
+	protected long[] m_samples = new long[PHASE_NAMES.length];
+
+	/** Number of instances handled in each phase */
+	protected long[] m_instances = new long[PHASE_NAMES.length];
+
+	/** Start time of the current interval of each phase */
+	protected transient long[] m_startNanos = new long[PHASE_NAMES.length];
+
+	/** Allocated bytes at the start of the current interval of each phase */
+	protected transient long[] m_startBytes = new long[PHASE_NAMES.length];
+
+	/** Whether the allocated bytes could be measured */
+	protected boolean m_allocationSupported = allocatedBytes() >= 0;
+
+	/**
+	 * Returns the bytes allocated so far by the current thread.
+	 *
+	 * @return the allocated bytes, or -1 if not supported by the JVM
+	 */
+	public static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Starts an interval of the given phase.
+	 *
+	 * @param phase the phase
+	 */
+	public void begin(int phase) {
+		if (m_startNanos == null) { // deserialized
+			m_startNanos = new long[PHASE_NAMES.length];
+			m_startBytes = new long[PHASE_NAMES.length];
+		}
+		m_startBytes[phase] = m_allocationSupported ? allocatedBytes() : 0;
+		m_startNanos[phase] = System.nanoTime();
+	}
+
+	/**
+	 * Ends the current interval of the given phase and adds what was handled in it.
+	 *
+	 * @param phase the phase
+	 * @param nodes the number of nodes handled
+	 * @param samples the number of samples handled
+	 * @param instances the number of instances handled
+	 */
+	public void end(int phase, long nodes, long samples, long instances) {
+		m_nanos[phase] += System.nanoTime() - m_startNanos[phase];
+		if (m_allocationSupported)
+			m_allocatedBytes[phase] += allocatedBytes() - m_startBytes[phase];
+		m_nodes[phase] += nodes;
+		m_samples[phase] += samples;
+		m_instances[phase] += instances;
+	}
+
+	/**
+	 * Returns the elapsed time of the given phase.
+	 *
+	 * @param phase the phase
+	 * @return the time in nanoseconds
+	 */
+	public long getNanos(int phase) {
+		return m_nanos[phase];
+	}
+
+	/**
+	 * Returns the elapsed time of the given phase in seconds.
+	 *
+	 * @param phase the phase
+	 * @return the time in seconds
+	 */
+	public double getSeconds(int phase) {
+		return m_nanos[phase] / 1e9;
+	}
+
+	/**
+	 * Returns the bytes allocated by the training thread in the given phase.
+	 *
+	 * @param phase the phase
+	 * @return the allocated bytes, or -1 if not supported by the JVM
+	 */
+	public long getAllocatedBytes(int phase) {
+		return m_allocationSupported ? m_allocatedBytes[phase] : -1;
+	}
+
+	/**
+	 * Returns the number of nodes handled in the given phase.
+	 *
+	 * @param phase the phase
+	 * @return the number of nodes
+	 */
+	public long getNodes(int phase) {
+		return m_nodes[phase];
+	}
+
+	/**
+	 * Returns the number of samples handled in the given phase.
+	 *
+	 * @param phase the phase
+	 * @return the number of samples
+	 */
+	public long getSamples(int phase) {
+		return m_samples[phase];
+	}
+
+	/**
+	 * Returns the number of instances handled in the given phase.
+	 *
+	 * @param phase the phase
+	 * @return the number of instances
+	 */
+	public long getInstances(int phase) {
+		return m_instances[phase];
+	}
+
+	/**
+	 * Returns the names of the additional measures of the profile, of the form
+	 * "measure" + quantity + phase, e.g. measureNanosResampling.
+	 *
+	 * @return the names of the measures
+	 */
+	public static String[] measureNames() {
+		String[] names = new String[QUANTITY_NAMES.length * PHASE_NAMES.length];
+		int i = 0;
+		for (String quantity : QUANTITY_NAMES)
+			for (String phase : PHASE_NAMES)
+				names[i++] = "measure" + quantity + phase;
+		return names;
+	}
+
+	/**
+	 * Returns the value of the given additional measure.
+	 *
+	 * @param measureName the name of the measure
+	 * @return the value, NaN if the allocated bytes are not supported
+	 * @throws IllegalArgumentException if the measure is not a profile measure
+	 */
+	public double getMeasure(String measureName) {
+		for (int q = 0; q < QUANTITY_NAMES.length; q++)
+			for (int phase = 0; phase < PHASE_NAMES.length; phase++)
+				if (measureName.equalsIgnoreCase("measure" + QUANTITY_NAMES[q] + PHASE_NAMES[phase])) {
+					switch (q) {
+						case 0: return m_nanos[phase];
+						case 1: return m_allocationSupported ? m_allocatedBytes[phase] : Double.NaN;
+						case 2: return m_nodes[phase];
+						case 3: return m_samples[phase];
+						default: return m_instances[phase];
+					}
+				}
+		throw new IllegalArgumentException(measureName + " not supported (TrainingProfile)");
+	}
+
+	/**
+	 * Returns a table with the profile of each phase.
+	 *
+	 * @return the profile as text
+	 */
+	public String toString() {
+		StringBuffer text = new StringBuffer();
+		text.append("Phase               Time (s)  Alloc (MB)       Nodes     Samples   Instances\n");
+		for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+			text.append(Utils.padRight(PHASE_NAMES[phase], 18));
+			text.append(Utils.padLeft(Utils.doubleToString(getSeconds(phase), 3), 10));
+			text.append(Utils.padLeft(m_allocationSupported ?
+					Utils.doubleToString(m_allocatedBytes[phase] / (1024.0 * 1024.0), 1) : "?", 12));
+			text.append(Utils.padLeft("" + m_nodes[phase], 12));
+			text.append(Utils.padLeft("" + m_samples[phase], 12));
+			text.append(Utils.padLeft("" + m_instances[phase], 12));
+			text.append("\n");
+		}
+		return text.toString();
+	}
+}
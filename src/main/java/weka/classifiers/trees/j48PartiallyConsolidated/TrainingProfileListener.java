@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package weka.classifiers.trees.j48PartiallyConsolidated;
+
+import java.util.EventListener;
+
+import weka.classifiers.Classifier;
+
+/**
+ * Interface for objects that want to receive the profile of the phases
+ * of the training of a partially consolidated tree, once it is built.
+ *
+ * @author Jesús M. Pérez (txus.perez@ehu.eus)
+ * @version $Revision: 1.0 $
+ */
+public interface TrainingProfileListener extends EventListener {
+
+	/**
+	 * Called when a classifier has been trained.
+	 *
+	 * @param classifier the trained classifier
+	 * @param profile the profile of its training
+	 */
+	void trainingProfiled(Classifier classifier, TrainingProfile profile);
+}
@@ -23,12 +23,20 @@ package weka.clusterers;
 import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
@@ -37,6 +45,7 @@ import weka.core.Drawable;
 import weka.core.EuclideanDistance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.NormalizableDistance;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
@@ -83,6 +92,18 @@ import weka.core.Utils;
  * \If set, distance is interpreted as branch length, otherwise it is node height.
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads used for computing the distance matrix.
+ *  (default 1 - i.e. no parallelism, 0 - all available cores)
+ * </pre>
+ * 
+ * <pre>
+ * -nn-chain
+ *  Use the nearest-neighbor chain algorithm for single, complete and
+ *  average link. Faster, but may merge tied clusters in a different order.
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * 
@@ -125,6 +146,28 @@ public class HierarchicalClusterer extends AbstractClusterer implements
     m_DistanceFunction = distanceFunction;
   }
 
+  /** number of threads used for computing the distance matrix **/
+  protected int m_numExecutionSlots = 1;
+
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  public void setNumExecutionSlots(int slots) {
+    m_numExecutionSlots = slots;
+  }
+
+  /** whether to use the nearest-neighbor chain for reducible link types **/
+  protected boolean m_useNearestNeighborChain = false;
+
+  public boolean getUseNearestNeighborChain() {
+    return m_useNearestNeighborChain;
+  }
+
+  public void setUseNearestNeighborChain(boolean useChain) {
+    m_useNearestNeighborChain = useChain;
+  }
+
   /**
    * used for priority queue for efficient retrieval of pair of clusters to
    * merge
@@ -158,6 +201,46 @@ public class HierarchicalClusterer extends AbstractClusterer implements
     }
   }
 
+  /**
+   * condensed distance matrix, which stores the distances of the pairs i &lt; j
+   * row by row in a single array and so takes half the memory of a square
+   * matrix
+   **/
+  static class DistanceMatrix {
+    final int m_nSize;
+    final double[] m_fValues;
+
+    DistanceMatrix(int nSize) {
+      long nValues = (long) nSize * (nSize - 1) / 2;
+      if (nValues > Integer.MAX_VALUE - 8) {
+        throw new IllegalArgumentException(
+          "Too many instances for a distance matrix: " + nSize);
+      }
+      m_nSize = nSize;
+      m_fValues = new double[(int) nValues];
+    }
+
+    int index(int i, int j) {
+      if (i > j) {
+        int h = i;
+        i = j;
+        j = h;
+      }
+      return (int) ((long) i * (2L * m_nSize - i - 1) / 2) + j - i - 1;
+    }
+
+    double get(int i, int j) {
+      if (i == j) {
+        return 0;
+      }
+      return m_fValues[index(i, j)];
+    }
+
+    void set(int i, int j, double fDist) {
+      m_fValues[index(i, j)] = fDist;
+    }
+  }
+
   /** the various link types */
   final static int SINGLE = 0;
   final static int COMPLETE = 1;
@@ -498,70 +581,45 @@ public class HierarchicalClusterer extends AbstractClusterer implements
   } // neighborJoining
 
   /**
-   * Perform clustering using a link method This implementation uses a priority
-   * queue resulting in a O(n^2 log(n)) algorithm
+   * Perform clustering using a link method. This implementation uses a priority
+   * queue resulting in a O(n^2 log(n)) algorithm. Single, complete and average
+   * link are reducible, so on request these use the nearest-neighbor chain
+   * algorithm instead, which runs in O(n^2) but may break ties between equal
+   * distances differently
    * 
    * @param nClusters number of clusters
    * @param nClusterID
    * @param clusterNodes
+   * @throws Exception if the distance matrix cannot be computed
    */
   void doLinkClustering(int nClusters, Vector<Integer>[] nClusterID,
-    Node[] clusterNodes) {
+    Node[] clusterNodes) throws Exception {
     int nInstances = m_instances.numInstances();
+    DistanceMatrix fDistance0 = getDistanceMatrix(nClusterID);
+    if (m_useNearestNeighborChain
+      && (m_nLinkType == SINGLE || m_nLinkType == COMPLETE || m_nLinkType == AVERAGE)) {
+      nearestNeighborChain(fDistance0, nClusterID, clusterNodes);
+      return;
+    }
     PriorityQueue<Tuple> queue = new PriorityQueue<Tuple>(nClusters * nClusters
       / 2, new TupleComparator());
-    double[][] fDistance0 = new double[nClusters][nClusters];
-    double[][] fClusterDistance = null;
-    if (m_Debug) {
-      fClusterDistance = new double[nClusters][nClusters];
-    }
     for (int i = 0; i < nClusters; i++) {
-      fDistance0[i][i] = 0;
       for (int j = i + 1; j < nClusters; j++) {
-        fDistance0[i][j] = getDistance0(nClusterID[i], nClusterID[j]);
-        fDistance0[j][i] = fDistance0[i][j];
-        queue.add(new Tuple(fDistance0[i][j], i, j, 1, 1));
-        if (m_Debug) {
-          fClusterDistance[i][j] = fDistance0[i][j];
-          fClusterDistance[j][i] = fDistance0[i][j];
-        }
+        double fDist = fDistance0.get(i, j);
+        queue.add(new Tuple(fDist, i, j, 1, 1));
       }
     }
     while (nClusters > m_nNumClusters) {
-      int iMin1 = -1;
-      int iMin2 = -1;
-      // find closest two clusters
-      if (m_Debug) {
-        /* simple but inefficient implementation */
-        double fMinDistance = Double.MAX_VALUE;
-        for (int i = 0; i < nInstances; i++) {
-          if (nClusterID[i].size() > 0) {
-            for (int j = i + 1; j < nInstances; j++) {
-              if (nClusterID[j].size() > 0) {
-                double fDist = fClusterDistance[i][j];
-                if (fDist < fMinDistance) {
-                  fMinDistance = fDist;
-                  iMin1 = i;
-                  iMin2 = j;
-                }
-              }
-            }
-          }
-        }
-        merge(iMin1, iMin2, fMinDistance, fMinDistance, nClusterID,
-          clusterNodes);
-      } else {
-        // use priority queue to find next best pair to cluster
-        Tuple t;
-        do {
-          t = queue.poll();
-        } while (t != null
-          && (nClusterID[t.m_iCluster1].size() != t.m_nClusterSize1 || nClusterID[t.m_iCluster2]
-            .size() != t.m_nClusterSize2));
-        iMin1 = t.m_iCluster1;
-        iMin2 = t.m_iCluster2;
-        merge(iMin1, iMin2, t.m_fDist, t.m_fDist, nClusterID, clusterNodes);
-      }
+      // use priority queue to find next best pair to cluster
+      Tuple t;
+      do {
+        t = queue.poll();
+      } while (t != null
+        && (nClusterID[t.m_iCluster1].size() != t.m_nClusterSize1 || nClusterID[t.m_iCluster2]
+          .size() != t.m_nClusterSize2));
+      int iMin1 = t.m_iCluster1;
+      int iMin2 = t.m_iCluster2;
+      merge(iMin1, iMin2, t.m_fDist, t.m_fDist, nClusterID, clusterNodes);
       // merge clusters
 
       // update distances & queue
@@ -571,10 +629,6 @@ public class HierarchicalClusterer extends AbstractClusterer implements
           int i2 = Math.max(iMin1, i);
           double fDistance = getDistance(fDistance0, nClusterID[i1],
             nClusterID[i2]);
-          if (m_Debug) {
-            fClusterDistance[i1][i2] = fDistance;
-            fClusterDistance[i2][i1] = fDistance;
-          }
           queue.add(new Tuple(fDistance, i1, i2, nClusterID[i1].size(),
             nClusterID[i2].size()));
         }
@@ -584,6 +638,197 @@ public class HierarchicalClusterer extends AbstractClusterer implements
     }
   } // doLinkClustering
 
+  /**
+   * Calculates the distances between the initial clusters. When more than one
+   * execution slot is available, the rows are divided over several threads.
+   * This is only done for normalizable distance functions, which can be
+   * shared by several threads.
+   * 
+   * @param nClusterID the initial clusters
+   * @return the condensed distance matrix
+   * @throws Exception if a thread fails
+   */
+  DistanceMatrix getDistanceMatrix(final Vector<Integer>[] nClusterID)
+    throws Exception {
+    final int n = nClusterID.length;
+    final DistanceMatrix fDistance = new DistanceMatrix(n);
+    int nThreads = m_numExecutionSlots > 0 ? m_numExecutionSlots : Runtime
+      .getRuntime().availableProcessors();
+    nThreads = Math.min(nThreads, n);
+    if (nThreads <= 1 || !(m_DistanceFunction instanceof NormalizableDistance)) {
+      fillDistanceRows(fDistance, nClusterID, 0, 1);
+      return fDistance;
+    }
+
+    // rows get shorter towards the end, so they are dealt out round robin
+    ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int p = 0; p < nThreads; p++) {
+        final int iFirst = p;
+        final int nStep = nThreads;
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            fillDistanceRows(fDistance, nClusterID, iFirst, nStep);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return fDistance;
+  } // getDistanceMatrix
+
+  /** fills every nStep-th row of the distance matrix, starting at row iFirst **/
+  void fillDistanceRows(DistanceMatrix fDistance, Vector<Integer>[] nClusterID,
+    int iFirst, int nStep) {
+    int n = nClusterID.length;
+    for (int i = iFirst; i < n; i += nStep) {
+      for (int j = i + 1; j < n; j++) {
+        fDistance.set(i, j, getDistance0(nClusterID[i], nClusterID[j]));
+      }
+    }
+  } // fillDistanceRows
+
+  /**
+   * Clusters with the nearest-neighbor chain algorithm, which is valid for the
+   * reducible link types single, complete and average link. The distances to
+   * a merged cluster are obtained with the Lance-Williams update, so each
+   * merge takes linear time. The chain finds the merges in a different order
+   * than the greedy algorithm, so the complete hierarchy is built first and
+   * the merges are then replayed in order of increasing distance until the
+   * desired number of clusters is reached.
+   * 
+   * @param fDistance the distances between the instances, overwritten with
+   *          the distances between the clusters
+   * @param nClusterID
+   * @param clusterNodes
+   */
+  void nearestNeighborChain(DistanceMatrix fDistance,
+    Vector<Integer>[] nClusterID, Node[] clusterNodes) {
+    int n = nClusterID.length;
+    if (n < 2) {
+      return;
+    }
+    // a cluster is kept in the slot of its smallest instance index
+    int[] nSize = new int[n];
+    double[] fHeight = new double[n];
+    int[] nActive = new int[n];
+    int[] nPosition = new int[n];
+    for (int i = 0; i < n; i++) {
+      nSize[i] = 1;
+      nActive[i] = i;
+      nPosition[i] = i;
+    }
+    int nNumActive = n;
+    int[] nChain = new int[n];
+    int nChainLength = 0;
+    final int[] iMerge1 = new int[n - 1];
+    final int[] iMerge2 = new int[n - 1];
+    final double[] fMerge = new double[n - 1];
+
+    for (int m = 0; m < n - 1; m++) {
+      if (nChainLength == 0) {
+        nChain[nChainLength++] = nActive[0];
+      }
+      int iCurrent;
+      int iNearest;
+      double fNearest;
+      while (true) {
+        iCurrent = nChain[nChainLength - 1];
+        // the previous element of the chain wins ties, which guarantees
+        // that the chain ends in a pair of reciprocal nearest neighbors
+        iNearest = -1;
+        fNearest = Double.MAX_VALUE;
+        if (nChainLength > 1) {
+          iNearest = nChain[nChainLength - 2];
+          fNearest = fDistance.get(iCurrent, iNearest);
+        }
+        for (int k = 0; k < nNumActive; k++) {
+          int i = nActive[k];
+          if (i != iCurrent) {
+            double fDist = fDistance.get(iCurrent, i);
+            if (fDist < fNearest || iNearest < 0) {
+              fNearest = fDist;
+              iNearest = i;
+            }
+          }
+        }
+        if (nChainLength > 1 && iNearest == nChain[nChainLength - 2]) {
+          break;
+        }
+        nChain[nChainLength++] = iNearest;
+      }
+      nChainLength -= 2;
+
+      int i1 = Math.min(iCurrent, iNearest);
+      int i2 = Math.max(iCurrent, iNearest);
+      // guard against rounding, a merge may not be below the merges it
+      // depends on
+      fNearest = Math.max(fNearest, Math.max(fHeight[i1], fHeight[i2]));
+      iMerge1[m] = i1;
+      iMerge2[m] = i2;
+      fMerge[m] = fNearest;
+
+      int iPosition = nPosition[i2];
+      nNumActive--;
+      nActive[iPosition] = nActive[nNumActive];
+      nPosition[nActive[iPosition]] = iPosition;
+      for (int k = 0; k < nNumActive; k++) {
+        int i = nActive[k];
+        if (i != i1) {
+          double fDist1 = fDistance.get(i1, i);
+          double fDist2 = fDistance.get(i2, i);
+          double fDist;
+          switch (m_nLinkType) {
+          case SINGLE:
+            fDist = Math.min(fDist1, fDist2);
+            break;
+          case COMPLETE:
+            fDist = Math.max(fDist1, fDist2);
+            break;
+          default:
+            fDist = (nSize[i1] * fDist1 + nSize[i2] * fDist2)
+              / (nSize[i1] + nSize[i2]);
+            break;
+          }
+          fDistance.set(i1, i, fDist);
+        }
+      }
+      nSize[i1] += nSize[i2];
+      fHeight[i1] = fNearest;
+    }
+
+    // a stable sort keeps each merge after the merges it depends on
+    Integer[] nOrder = new Integer[n - 1];
+    for (int m = 0; m < n - 1; m++) {
+      nOrder[m] = m;
+    }
+    Arrays.sort(nOrder, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return Double.compare(fMerge[o1], fMerge[o2]);
+      }
+    });
+    for (int m = 0; m < n - m_nNumClusters; m++) {
+      int k = nOrder[m];
+      merge(iMerge1[k], iMerge2[k], fMerge[k], fMerge[k], nClusterID,
+        clusterNodes);
+    }
+  } // nearestNeighborChain
+
   void merge(int iMin1, int iMin2, double fDist1, double fDist2,
     Vector<Integer>[] nClusterID, Node[] clusterNodes) {
     if (m_Debug) {
@@ -634,12 +879,9 @@ public class HierarchicalClusterer extends AbstractClusterer implements
     case ADJCOMPLETE:
     case AVERAGE:
     case MEAN:
-      // set up two instances for distance function
-      Instance instance1 = (Instance) m_instances.instance(
-        cluster1.elementAt(0)).copy();
-      Instance instance2 = (Instance) m_instances.instance(
-        cluster2.elementAt(0)).copy();
-      fBestDist = m_DistanceFunction.distance(instance1, instance2);
+      fBestDist = m_DistanceFunction.distance(
+        m_instances.instance(cluster1.elementAt(0)),
+        m_instances.instance(cluster2.elementAt(0)));
       break;
     case WARD: {
       // finds the distance of the change in caused by merging the cluster.
@@ -667,7 +909,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements
    * @param cluster2 dito for second cluster
    * @return distance between clusters based on link type
    */
-  double getDistance(double[][] fDistance, Vector<Integer> cluster1,
+  double getDistance(DistanceMatrix fDistance, Vector<Integer> cluster1,
     Vector<Integer> cluster2) {
     double fBestDist = Double.MAX_VALUE;
     switch (m_nLinkType) {
@@ -680,7 +922,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements
         int i1 = cluster1.elementAt(i);
         for (int j = 0; j < cluster2.size(); j++) {
           int i2 = cluster2.elementAt(j);
-          double fDist = fDistance[i1][i2];
+          double fDist = fDistance.get(i1, i2);
           if (fBestDist > fDist) {
             fBestDist = fDist;
           }
@@ -697,7 +939,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements
         int i1 = cluster1.elementAt(i);
         for (int j = 0; j < cluster2.size(); j++) {
           int i2 = cluster2.elementAt(j);
-          double fDist = fDistance[i1][i2];
+          double fDist = fDistance.get(i1, i2);
           if (fBestDist < fDist) {
             fBestDist = fDist;
           }
@@ -712,7 +954,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements
         int i1 = cluster1.elementAt(i);
         for (int j = i + 1; j < cluster1.size(); j++) {
           int i2 = cluster1.elementAt(j);
-          double fDist = fDistance[i1][i2];
+          double fDist = fDistance.get(i1, i2);
           if (fMaxDist < fDist) {
             fMaxDist = fDist;
           }
@@ -722,7 +964,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements
         int i1 = cluster2.elementAt(i);
         for (int j = i + 1; j < cluster2.size(); j++) {
           int i2 = cluster2.elementAt(j);
-          double fDist = fDistance[i1][i2];
+          double fDist = fDistance.get(i1, i2);
           if (fMaxDist < fDist) {
             fMaxDist = fDist;
           }
@@ -737,7 +979,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements
         int i1 = cluster1.elementAt(i);
         for (int j = 0; j < cluster2.size(); j++) {
           int i2 = cluster2.elementAt(j);
-          fBestDist += fDistance[i1][i2];
+          fBestDist += fDistance.get(i1, i2);
         }
       }
       fBestDist /= (cluster1.size() * cluster2.size());
@@ -753,7 +995,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements
         int i1 = merged.elementAt(i);
         for (int j = i + 1; j < merged.size(); j++) {
           int i2 = merged.elementAt(j);
-          fBestDist += fDistance[i1][i2];
+          fBestDist += fDistance.get(i1, i2);
         }
       }
       int n = merged.size();
@@ -911,6 +1153,14 @@ public class HierarchicalClusterer extends AbstractClusterer implements
     newVector.add(new Option("\tDistance function to use.\n"
       + "\t(default: weka.core.EuclideanDistance)", "A", 1,
       "-A <classname and options>"));
+    newVector.addElement(new Option(
+      "\tNumber of threads used for computing the distance matrix.\n"
+        + "\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+      "num-slots", 1, "-num-slots <num>"));
+    newVector.addElement(new Option(
+      "\tUse the nearest-neighbor chain algorithm for single, complete and\n"
+        + "\taverage link. Faster, but may merge tied clusters in a different order.",
+      "nn-chain", 0, "-nn-chain"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -985,6 +1235,15 @@ public class HierarchicalClusterer extends AbstractClusterer implements
       setDistanceFunction(new EuclideanDistance());
     }
 
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
+    setUseNearestNeighborChain(Utils.getFlag("nn-chain", options));
+
     super.setOptions(options);
   }
 
@@ -1039,6 +1298,15 @@ public class HierarchicalClusterer extends AbstractClusterer implements
     options.add((m_DistanceFunction.getClass().getName() + " " + Utils
       .joinOptions(m_DistanceFunction.getOptions())).trim());
 
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
+
+    if (getUseNearestNeighborChain()) {
+      options.add("-nn-chain");
+    }
+
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[0]);
@@ -1121,6 +1389,24 @@ public class HierarchicalClusterer extends AbstractClusterer implements
       + "depending on the Link type).";
   }
 
+  /**
+   * @return a string to describe the number of execution slots
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used for computing the "
+      + "distance matrix, 0 uses all available cores.";
+  }
+
+  /**
+   * @return a string to describe the nearest-neighbor chain flag
+   */
+  public String useNearestNeighborChainTipText() {
+    return "Whether single, complete and average link use the nearest-neighbor "
+      + "chain algorithm, which runs in O(n^2) instead of O(n^2 log(n)). When "
+      + "distances are tied, it may merge the clusters in a different order "
+      + "than the default search and so give different clusters.";
+  }
+
   /**
    * @return a string to describe the Link type
    */
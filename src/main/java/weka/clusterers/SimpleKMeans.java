@@ -21,6 +21,7 @@
 package weka.clusterers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -579,6 +580,371 @@ public class SimpleKMeans extends RandomizableClusterer implements
     return converged;
   }
 
+  /**
+   * Assigns a range of instances to their nearest centroid, working on the
+   * dense, normalized copy of the data. Centroids that Hamerly's bounds rule
+   * out are skipped, and the members of each cluster are summed up on the way
+   * so that the centroids can be moved without another pass over the data.
+   */
+  private class KMeansDenseClusterTask implements Callable<Boolean> {
+
+    protected int m_start;
+    protected int m_end;
+    protected int m_numClusters;
+    protected int m_numAttributes;
+    protected double[] m_data;
+    protected double[] m_weights;
+    protected double[] m_centroids;
+    protected double[] m_halfSeparations;
+    protected double[] m_upperBounds;
+    protected double[] m_lowerBounds;
+    protected int[] m_nearest;
+    protected int[] m_clusterAssignments;
+
+    /** The weighted sums of the members of each cluster */
+    protected double[] m_sums;
+
+    /** The sum of weights of the members of each cluster */
+    protected double[] m_sumsOfWeights;
+
+    /** The number of members of each cluster */
+    protected int[] m_sizes;
+
+    public KMeansDenseClusterTask(int start, int end, int numClusters,
+      int numAttributes, double[] data, double[] weights, double[] centroids,
+      double[] halfSeparations, double[] upperBounds, double[] lowerBounds,
+      int[] nearest, int[] clusterAssignments) {
+      m_start = start;
+      m_end = end;
+      m_numClusters = numClusters;
+      m_numAttributes = numAttributes;
+      m_data = data;
+      m_weights = weights;
+      m_centroids = centroids;
+      m_halfSeparations = halfSeparations;
+      m_upperBounds = upperBounds;
+      m_lowerBounds = lowerBounds;
+      m_nearest = nearest;
+      m_clusterAssignments = clusterAssignments;
+      m_sums = new double[numClusters * numAttributes];
+      m_sumsOfWeights = new double[numClusters];
+      m_sizes = new int[numClusters];
+    }
+
+    @Override
+    public Boolean call() {
+      boolean converged = true;
+      int d = m_numAttributes;
+      for (int i = m_start; i < m_end; i++) {
+        int offset = i * d;
+        int nearest = m_nearest[i];
+        boolean scan = true;
+        if (nearest >= 0) {
+          double bound = Math.max(m_halfSeparations[nearest], m_lowerBounds[i]);
+          if (m_upperBounds[i] < bound) {
+            scan = false;
+          } else {
+            m_upperBounds[i] =
+              Math.sqrt(squaredDistance(m_data, offset, m_centroids, nearest
+                * d, d));
+            scan = m_upperBounds[i] >= bound;
+          }
+        }
+        if (scan) {
+          double minDist = Double.POSITIVE_INFINITY;
+          double secondDist = Double.POSITIVE_INFINITY;
+          nearest = 0;
+          for (int c = 0; c < m_numClusters; c++) {
+            double dist = squaredDistance(m_data, offset, m_centroids, c * d, d);
+            if (dist < minDist) {
+              secondDist = minDist;
+              minDist = dist;
+              nearest = c;
+            } else if (dist < secondDist) {
+              secondDist = dist;
+            }
+          }
+          m_nearest[i] = nearest;
+          m_upperBounds[i] = Math.sqrt(minDist);
+          m_lowerBounds[i] = Math.sqrt(secondDist);
+        }
+
+        if (nearest != m_clusterAssignments[i]) {
+          converged = false;
+        }
+        m_clusterAssignments[i] = nearest;
+
+        double weight = m_weights[i];
+        int sumOffset = nearest * d;
+        for (int j = 0; j < d; j++) {
+          m_sums[sumOffset + j] += weight * m_data[offset + j];
+        }
+        m_sumsOfWeights[nearest] += weight;
+        m_sizes[nearest]++;
+      }
+
+      return converged;
+    }
+  }
+
+  /**
+   * Computes the squared Euclidean distance between two rows of dense
+   * matrices.
+   * 
+   * @param first the first matrix
+   * @param firstOffset the start of the row in the first matrix
+   * @param second the second matrix
+   * @param secondOffset the start of the row in the second matrix
+   * @param length the length of the rows
+   * @return the squared distance
+   */
+  protected static double squaredDistance(double[] first, int firstOffset,
+    double[] second, int secondOffset, int length) {
+    double result = 0;
+    for (int j = 0; j < length; j++) {
+      double diff = first[firstOffset + j] - second[secondOffset + j];
+      result += diff * diff;
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if k means can run on a dense, normalized copy of the data
+   * rather than calling the distance function. This is the case for plain
+   * Euclidean distance on all attributes, when all attributes are numeric, no
+   * values are missing and all weights are positive.
+   * 
+   * @param insts the instances to be clustered
+   * @return true if the dense assignment can be used
+   */
+  protected boolean canUseDenseAssignment(Instances insts) {
+    if (m_DistanceFunction.getClass() != EuclideanDistance.class
+      || m_speedUpDistanceCompWithCanopies) {
+      return false;
+    }
+    EuclideanDistance df = (EuclideanDistance) m_DistanceFunction;
+    if (!df.getAttributeIndices().equals("first-last")
+      || df.getInvertSelection()) {
+      return false;
+    }
+    if ((long) insts.numInstances() * insts.numAttributes() > Integer.MAX_VALUE - 8) {
+      return false;
+    }
+    for (int j = 0; j < insts.numAttributes(); j++) {
+      if (!insts.attribute(j).isNumeric()) {
+        return false;
+      }
+    }
+    for (Instance inst : insts) {
+      if (inst.hasMissingValue() || !(inst.weight() > 0)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Normalizes a value the same way the distance function does.
+   * 
+   * @param ranges the ranges of the attributes
+   * @param normalize false if values are not normalized
+   * @param x the value
+   * @param j the index of the attribute
+   * @return the normalized value
+   */
+  protected static double normalize(double[][] ranges, boolean normalize,
+    double x, int j) {
+    if (!normalize) {
+      return x;
+    }
+    if (ranges[j][EuclideanDistance.R_WIDTH] == 0.0) {
+      return 0;
+    }
+    return (x - ranges[j][EuclideanDistance.R_MIN])
+      / ranges[j][EuclideanDistance.R_WIDTH];
+  }
+
+  /**
+   * Runs the k means iterations on a dense, normalized copy of the data,
+   * using Hamerly's bounds to skip distance computations. The assignment step
+   * also sums up the members of each cluster, from which the centroids are
+   * moved. Afterwards, the centroids are computed from the final clusters in
+   * the same way as in the general case.
+   * 
+   * @param insts the instances to be clustered
+   * @param clusterAssignments the array of cluster assignments
+   * @return the members of each cluster
+   * @throws Exception if a problem occurs
+   */
+  protected Instances[] denseKMeans(Instances insts, int[] clusterAssignments)
+    throws Exception {
+    int n = insts.numInstances();
+    int d = insts.numAttributes();
+    EuclideanDistance df = (EuclideanDistance) m_DistanceFunction;
+    double[][] ranges = df.getRanges();
+    boolean normalize = !df.getDontNormalize();
+
+    double[] data = new double[n * d];
+    double[] weights = new double[n];
+    for (int i = 0; i < n; i++) {
+      Instance inst = insts.instance(i);
+      for (int j = 0; j < d; j++) {
+        data[i * d + j] = normalize(ranges, normalize, inst.value(j), j);
+      }
+      weights[i] = inst.weight();
+    }
+
+    int k = m_NumClusters;
+    double[] centroids = new double[k * d];
+    for (int c = 0; c < k; c++) {
+      Instance centroid = m_ClusterCentroids.instance(c);
+      for (int j = 0; j < d; j++) {
+        centroids[c * d + j] =
+          normalize(ranges, normalize, centroid.value(j), j);
+      }
+    }
+
+    double[] upperBounds = new double[n];
+    double[] lowerBounds = new double[n];
+    int[] nearest = new int[n];
+    Arrays.fill(nearest, -1);
+
+    int numTasks =
+      (m_executionSlots <= 1 || n < 2 * m_executionSlots) ? 1
+        : m_executionSlots;
+    int numPerTask = n / numTasks;
+    int lastNumClusters = k;
+    boolean converged = false;
+
+    while (!converged) {
+      m_Iterations++;
+
+      // half the distance from each centroid to the nearest other one
+      double[] halfSeparations = new double[k];
+      Arrays.fill(halfSeparations, Double.POSITIVE_INFINITY);
+      for (int c = 0; c < k; c++) {
+        for (int o = c + 1; o < k; o++) {
+          double half =
+            Math.sqrt(squaredDistance(centroids, c * d, centroids, o * d, d)) / 2;
+          halfSeparations[c] = Math.min(halfSeparations[c], half);
+          halfSeparations[o] = Math.min(halfSeparations[o], half);
+        }
+      }
+
+      List<KMeansDenseClusterTask> tasks =
+        new ArrayList<KMeansDenseClusterTask>();
+      for (int t = 0; t < numTasks; t++) {
+        int start = t * numPerTask;
+        int end = (t == numTasks - 1) ? n : start + numPerTask;
+        tasks.add(new KMeansDenseClusterTask(start, end, k, d, data, weights,
+          centroids, halfSeparations, upperBounds, lowerBounds, nearest,
+          clusterAssignments));
+      }
+      converged = true;
+      if (numTasks == 1) {
+        converged = tasks.get(0).call();
+      } else {
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (KMeansDenseClusterTask task : tasks) {
+          results.add(m_executorPool.submit(task));
+        }
+        for (Future<Boolean> f : results) {
+          if (!f.get()) {
+            converged = false;
+          }
+        }
+      }
+
+      // merge the sums of the tasks and move the centroids
+      double[] sums = tasks.get(0).m_sums;
+      double[] sumsOfWeights = tasks.get(0).m_sumsOfWeights;
+      int[] sizes = tasks.get(0).m_sizes;
+      for (int t = 1; t < numTasks; t++) {
+        KMeansDenseClusterTask task = tasks.get(t);
+        for (int c = 0; c < k; c++) {
+          for (int j = 0; j < d; j++) {
+            sums[c * d + j] += task.m_sums[c * d + j];
+          }
+          sumsOfWeights[c] += task.m_sumsOfWeights[c];
+          sizes[c] += task.m_sizes[c];
+        }
+      }
+
+      int[] newIndex = new int[k];
+      int numNonEmpty = 0;
+      for (int c = 0; c < k; c++) {
+        newIndex[c] = sizes[c] > 0 ? numNonEmpty++ : -1;
+      }
+      double[] newCentroids = new double[numNonEmpty * d];
+      double[] drifts = new double[numNonEmpty];
+      for (int c = 0; c < k; c++) {
+        if (newIndex[c] >= 0) {
+          int offset = newIndex[c] * d;
+          for (int j = 0; j < d; j++) {
+            newCentroids[offset + j] = sums[c * d + j] / sumsOfWeights[c];
+          }
+          drifts[newIndex[c]] =
+            Math.sqrt(squaredDistance(centroids, c * d, newCentroids, offset, d));
+        }
+      }
+
+      // loosen the bounds by how far the centroids have moved
+      int maxDriftIndex = -1;
+      double maxDrift = 0;
+      double secondMaxDrift = 0;
+      for (int c = 0; c < numNonEmpty; c++) {
+        if (drifts[c] > maxDrift) {
+          secondMaxDrift = maxDrift;
+          maxDrift = drifts[c];
+          maxDriftIndex = c;
+        } else if (drifts[c] > secondMaxDrift) {
+          secondMaxDrift = drifts[c];
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        int c = newIndex[nearest[i]];
+        nearest[i] = c;
+        upperBounds[i] += drifts[c];
+        lowerBounds[i] -= (c == maxDriftIndex) ? secondMaxDrift : maxDrift;
+      }
+
+      lastNumClusters = k;
+      k = numNonEmpty;
+      m_NumClusters = k;
+      centroids = newCentroids;
+
+      if (m_Iterations == m_MaxIterations) {
+        converged = true;
+      }
+    }
+
+    // the final clusters, indexed as in the last assignment
+    Instances[] clusters = new Instances[lastNumClusters];
+    for (int c = 0; c < lastNumClusters; c++) {
+      clusters[c] = new Instances(insts, 0);
+    }
+    for (int i = 0; i < n; i++) {
+      clusters[clusterAssignments[i]].add(insts.instance(i));
+    }
+    Instances[] result = new Instances[m_NumClusters];
+    int index = 0;
+    for (int c = 0; c < lastNumClusters; c++) {
+      if (clusters[c].numInstances() > 0) {
+        result[index++] = clusters[c];
+      }
+    }
+
+    m_ClusterCentroids = new Instances(insts, m_NumClusters);
+    m_ClusterNominalCounts = new double[m_NumClusters][d][0];
+    m_ClusterMissingCounts = new double[m_NumClusters][d];
+    for (int c = 0; c < m_NumClusters; c++) {
+      moveCentroid(c, result[c], true, true);
+    }
+
+    return result;
+  }
+
   /**
    * Generates a clusterer. Has to initialize all fields of the clusterer that
    * are not being set via options.
@@ -727,6 +1093,11 @@ public class SimpleKMeans extends RandomizableClusterer implements
     m_ClusterMissingCounts = new double[m_NumClusters][instances.numAttributes()];
     startExecutorPool();
 
+    if (canUseDenseAssignment(instances)) {
+      tempI = denseKMeans(instances, clusterAssignments);
+      converged = true;
+    }
+
     while (!converged) {
       if (m_speedUpDistanceCompWithCanopies) {
         // re-assign canopies to the current cluster centers
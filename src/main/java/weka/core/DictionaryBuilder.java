@@ -47,6 +47,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.stemmers.NullStemmer;
 import weka.core.stemmers.Stemmer;
@@ -176,6 +181,12 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
   /** True if the input data contains string attributes to convert */
   protected boolean m_inputContainsStringAttributes;
 
+  /** The number of threads used for processing and vectorizing batches */
+  protected int m_numExecutionSlots = 1;
+
+  /** Scratch space for vectorizing single instances */
+  protected transient VectorizationBuffer m_vectorizationBuffer;
+
   /**
    * Set the average document length to use when normalizing
    *
@@ -742,6 +753,36 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
     return "The tokenizing algorithm to use on the strings.";
   }
 
+  /**
+   * Returns the tip text for this property.
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used for building the "
+      + "dictionary from a batch and for vectorizing a batch, 0 uses all "
+      + "available cores.";
+  }
+
+  /**
+   * Get the number of threads used for processing and vectorizing batches.
+   * 
+   * @return the number of threads, 0 for all available cores
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Set the number of threads used for processing and vectorizing batches.
+   * 
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+    m_numExecutionSlots = slots;
+  }
+
   /**
    * Returns an enumeration describing the available options.
    * 
@@ -823,6 +864,12 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
         + "\t(default: " + WordTokenizer.class.getName() + ")", "tokenizer", 1,
       "-tokenizer <spec>"));
 
+    result.addElement(new Option(
+      "\tNumber of threads used for building the dictionary from a batch\n"
+        + "\tand for vectorizing a batch.\n"
+        + "\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+      "num-slots", 1, "-num-slots <num>"));
+
     return result.elements();
   }
 
@@ -910,6 +957,11 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
 
     result.add(spec.trim());
 
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add(String.valueOf(getNumExecutionSlots()));
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -1009,6 +1061,13 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
    *  (default: weka.core.tokenizers.WordTokenizer)
    * </pre>
    *
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads used for building the dictionary from a batch
+   *  and for vectorizing a batch.
+   *  (default 1 - i.e. no parallelism, 0 - all available cores)
+   * </pre>
+   *
    * <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -1117,10 +1176,16 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
       setTokenizer(tokenizer);
     }
 
+    value = Utils.getOption("num-slots", options);
+    if (value.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(value));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     Utils.checkForRemainingOptions(options);
   }
 
-  @SuppressWarnings("unchecked")
   public void setup(Instances inputFormat) throws Exception {
 
     m_inputContainsStringAttributes = inputFormat.checkForStringAttributes();
@@ -1133,17 +1198,9 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
     m_numClasses =
       !m_doNotOperateOnPerClassBasis && m_inputFormat.classIndex() >= 0 && m_inputFormat.classAttribute().isNominal() ?
               m_inputFormat.numClasses() : 1;
-    m_dictsPerClass =
-      m_sortDictionary ? new TreeMap[m_numClasses]
-        : new LinkedHashMap[m_numClasses];
+    m_dictsPerClass = newDictionaries(m_numClasses);
     m_classIndex = m_inputFormat.classIndex();
 
-    for (int i = 0; i < m_numClasses; i++) {
-      m_dictsPerClass[i] =
-        m_sortDictionary ? new TreeMap<String, int[]>()
-          : new LinkedHashMap<String, int[]>();
-    }
-
     determineSelectedRange(inputFormat);
   }
 
@@ -1264,6 +1321,79 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
     return newFormat;
   }
 
+  /**
+   * Scratch space for vectorizing instances: the counts of the dictionary
+   * entries that occur in the current instance. Each thread that vectorizes
+   * instances uses its own buffer.
+   */
+  protected static class VectorizationBuffer {
+
+    /** the count of each dictionary entry */
+    protected double[] m_counts;
+
+    /** the document count of each dictionary entry, -1 if not available */
+    protected int[] m_docCounts;
+
+    /** the dictionary entries that occur in the current instance */
+    protected int[] m_entries;
+
+    /** the number of dictionary entries that occur in the current instance */
+    protected int m_numEntries;
+
+    /**
+     * Creates a buffer for a dictionary of the given size.
+     * 
+     * @param dictionarySize the number of entries in the dictionary
+     */
+    protected VectorizationBuffer(int dictionarySize) {
+      m_counts = new double[dictionarySize];
+      m_docCounts = new int[dictionarySize];
+      m_entries = new int[dictionarySize];
+    }
+  }
+
+  /**
+   * Returns the number of threads to use for processing or vectorizing a
+   * batch of the given size.
+   * 
+   * @param numInstances the number of instances in the batch
+   * @return the number of threads
+   */
+  protected int numThreads(int numInstances) {
+    int numThreads =
+      m_numExecutionSlots > 0 ? m_numExecutionSlots : Runtime.getRuntime()
+        .availableProcessors();
+    return Math.min(numThreads, numInstances);
+  }
+
+  /**
+   * Runs the given tasks on a thread pool and waits for them to finish.
+   * 
+   * @param tasks the tasks to run
+   * @throws Exception if a task fails
+   */
+  protected static void runTasks(List<Callable<Void>> tasks) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (Callable<Void> task : tasks) {
+        futures.add(pool.submit(task));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
   /**
    * Convert a batch of instances
    * 
@@ -1304,42 +1434,122 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
       m_normalize = false;
     }
 
-    if (batch.numInstances() > 0) {
-      int[] offsetHolder = new int[1];
-      vectorized.add(vectorizeInstance(batch.instance(0), offsetHolder, true));
-      for (int i = 1; i < batch.numInstances(); i++) {
-        vectorized
-          .add(vectorizeInstance(batch.instance(i), offsetHolder, true));
-      }
+    try {
+      if (batch.numInstances() > 0) {
+        int[] offsetHolder = new int[1];
+        Instance[] converted = vectorizeInstances(batch, offsetHolder);
+        for (Instance inst : converted) {
+          vectorized.add(inst);
+        }
 
-      if (setAvgDocLength) {
-        m_avgDocLength = 0;
-        for (int i = 0; i < vectorized.numInstances(); i++) {
-          Instance inst = vectorized.instance(i);
-          double docLength = 0;
-          for (int j = 0; j < inst.numValues(); j++) {
-            if (inst.index(j) >= offsetHolder[0]) {
-              docLength += inst.valueSparse(j) * inst.valueSparse(j);
+        if (setAvgDocLength) {
+          m_avgDocLength = 0;
+          for (int i = 0; i < vectorized.numInstances(); i++) {
+            Instance inst = vectorized.instance(i);
+            double docLength = 0;
+            for (int j = 0; j < inst.numValues(); j++) {
+              if (inst.index(j) >= offsetHolder[0]) {
+                docLength += inst.valueSparse(j) * inst.valueSparse(j);
+              }
             }
+            m_avgDocLength += Math.sqrt(docLength);
           }
-          m_avgDocLength += Math.sqrt(docLength);
-        }
-        m_avgDocLength /= vectorized.numInstances();
+          m_avgDocLength /= vectorized.numInstances();
 
-        if (normTemp) {
-          for (int i = 0; i < vectorized.numInstances(); i++) {
-            normalizeInstance(vectorized.instance(i), offsetHolder[0]);
+          if (normTemp) {
+            for (int i = 0; i < vectorized.numInstances(); i++) {
+              normalizeInstance(vectorized.instance(i), offsetHolder[0]);
+            }
           }
         }
       }
+    } finally {
+      m_normalize = normTemp;
     }
 
-    m_normalize = normTemp;
-
     vectorized.compactify();
     return vectorized;
   }
 
+  /**
+   * Returns true if the instances of a batch can be vectorized by several
+   * threads, i.e., if no string or relational attributes are passed through
+   * (their values are added to the shared output format).
+   * 
+   * @return true if instances can be vectorized concurrently
+   */
+  protected boolean canVectorizeConcurrently() {
+    for (int i = 0; i < m_inputFormat.numAttributes(); i++) {
+      if (!m_selectedRange.isInRange(i)
+        && (m_inputFormat.attribute(i).isString() || m_inputFormat
+          .attribute(i).isRelationValued())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Converts the instances of a batch, using several threads if configured.
+   * Each thread works on a contiguous part of the batch with its own copy of
+   * the tokenizer and stemmer; the dictionary is only read.
+   * 
+   * @param batch the batch to convert
+   * @param offsetHolder holds the index of the first dictionary attribute
+   *          after the call
+   * @return the converted instances, in the order of the batch
+   * @throws Exception if the instances can't be converted
+   */
+  protected Instance[] vectorizeInstances(final Instances batch,
+    int[] offsetHolder) throws Exception {
+
+    final Instance[] converted = new Instance[batch.numInstances()];
+    int numThreads = numThreads(batch.numInstances());
+    if (numThreads <= 1 || !canVectorizeConcurrently()) {
+      for (int i = 0; i < batch.numInstances(); i++) {
+        converted[i] = vectorizeInstance(batch.instance(i), offsetHolder, true);
+      }
+      return converted;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int p = 0; p < numThreads; p++) {
+      final int start = (int) ((long) p * batch.numInstances() / numThreads);
+      final int end =
+        (int) ((long) (p + 1) * batch.numInstances() / numThreads);
+      final Tokenizer tokenizer =
+        (Tokenizer) new SerializedObject(m_tokenizer).getObject();
+      final Stemmer stemmer =
+        (Stemmer) new SerializedObject(m_stemmer).getObject();
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          VectorizationBuffer buffer =
+            new VectorizationBuffer(m_consolidatedDict.size());
+          int[] offset = new int[1];
+          for (int i = start; i < end; i++) {
+            converted[i] =
+              vectorizeInstance(batch.instance(i), offset, true, tokenizer,
+                stemmer, buffer);
+          }
+          return null;
+        }
+      });
+    }
+    runTasks(tasks);
+
+    // the dictionary attributes follow the attributes that are passed through
+    int offset = 0;
+    for (int i = 0; i < m_inputFormat.numAttributes(); i++) {
+      if (!m_selectedRange.isInRange(i)) {
+        offset++;
+      }
+    }
+    offsetHolder[0] = offset;
+
+    return converted;
+  }
+
   /**
    * Convert an input instance. Any string attributes not being vectorized do
    * not have their values retained in memory (i.e. only the string values for
@@ -1385,31 +1595,66 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
       throw new Exception("Dictionary hasn't been built or consolidated yet!");
     }
 
+    if (m_vectorizationBuffer == null
+      || m_vectorizationBuffer.m_counts.length != m_consolidatedDict.size()) {
+      m_vectorizationBuffer =
+        new VectorizationBuffer(m_consolidatedDict.size());
+    }
+
+    return vectorizeInstance(input, offsetHolder,
+      retainStringAttValuesInMemory, m_tokenizer, m_stemmer,
+      m_vectorizationBuffer);
+  }
+
+  /**
+   * Convert an input instance using the given tokenizer, stemmer and scratch
+   * space. The dictionary is only read, so several threads can convert
+   * instances at once as long as no string or relational attribute is passed
+   * through.
+   * 
+   * @param input the input instance
+   * @param offsetHolder holds the index of the first dictionary attribute
+   *          after the call
+   * @param retainStringAttValuesInMemory true if the values of string
+   *          attributes not being vectorized should be retained in memory
+   * @param tokenizer the tokenizer to use
+   * @param stemmer the stemmer to use
+   * @param buffer the scratch space to use
+   * @return a converted instance
+   * @throws Exception if the instance can't be converted
+   */
+  private Instance vectorizeInstance(Instance input, int[] offsetHolder,
+    boolean retainStringAttValuesInMemory, Tokenizer tokenizer,
+    Stemmer stemmer, VectorizationBuffer buffer) throws Exception {
+
     int indexOffset = 0;
-    int classIndex = m_outputFormat.classIndex();
-    Map<Integer, double[]> contained = new TreeMap<Integer, double[]>();
+    int numPassedThrough = 0;
+    double[] passedThrough = new double[m_inputFormat.numAttributes()];
+    int[] passedThroughIndices = new int[m_inputFormat.numAttributes()];
     for (int i = 0; i < m_inputFormat.numAttributes(); i++) {
       if (!m_selectedRange.isInRange(i)) {
+        double value = 0;
         if (!m_inputFormat.attribute(i).isString()
           && !m_inputFormat.attribute(i).isRelationValued()) {
 
           // add nominal and numeric directly
-          if (input.value(i) != 0.0) {
-            contained.put(indexOffset, new double[] { input.value(i) });
-          }
+          value = input.value(i);
         } else {
           if (input.isMissing(i)) {
-            contained.put(indexOffset, new double[] { Utils.missingValue() });
+            value = Utils.missingValue();
           } else if (m_inputFormat.attribute(i).isString()) {
             String strVal = input.stringValue(i);
             if (retainStringAttValuesInMemory) {
-              double strIndex =
+              value =
                 m_outputFormat.attribute(indexOffset).addStringValue(strVal);
-              contained.put(indexOffset, new double[] { strIndex });
             } else {
               m_outputFormat.attribute(indexOffset).setStringValue(strVal);
-              contained.put(indexOffset, new double[] { 0 });
             }
+            // string values are stored even if their index is 0
+            passedThrough[numPassedThrough] = value;
+            passedThroughIndices[numPassedThrough++] = indexOffset;
+            indexOffset++;
+            continue;
           } else {
             // relational
             if (m_outputFormat.attribute(indexOffset).numValues() == 0) {
@@ -1420,12 +1665,19 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
               m_outputFormat.attribute(indexOffset).addRelation(
                 relationalHeader);
             }
-            int newIndex =
+            value =
               m_outputFormat.attribute(indexOffset).addRelation(
                 input.relationalValue(i));
-            contained.put(indexOffset, new double[] { newIndex });
+            passedThrough[numPassedThrough] = value;
+            passedThroughIndices[numPassedThrough++] = indexOffset;
+            indexOffset++;
+            continue;
           }
         }
+        if (value != 0.0) {
+          passedThrough[numPassedThrough] = value;
+          passedThroughIndices[numPassedThrough++] = indexOffset;
+        }
         indexOffset++;
       }
     }
@@ -1433,75 +1685,69 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
     offsetHolder[0] = indexOffset;
 
     // dictionary entries
+    double[] counts = buffer.m_counts;
+    buffer.m_numEntries = 0;
     for (int i = 0; i < m_inputFormat.numAttributes(); i++) {
       if (m_selectedRange.isInRange(i) && !input.isMissing(i)) {
-        m_tokenizer.tokenize(input.stringValue(i));
+        tokenizer.tokenize(input.stringValue(i));
 
-        while (m_tokenizer.hasMoreElements()) {
-          String word = m_tokenizer.nextElement();
+        while (tokenizer.hasMoreElements()) {
+          String word = tokenizer.nextElement();
           if (m_lowerCaseTokens) {
             word = word.toLowerCase();
           }
-          word = m_stemmer.stem(word);
+          word = stemmer.stem(word);
 
           int[] idxAndDocCount = m_consolidatedDict.get(word);
           if (idxAndDocCount != null) {
+            int entry = idxAndDocCount[0];
+            if (counts[entry] == 0) {
+              buffer.m_entries[buffer.m_numEntries++] = entry;
+              buffer.m_docCounts[entry] =
+                idxAndDocCount.length == 2 ? idxAndDocCount[1] : -1;
+            }
             if (m_outputCounts) {
-              double[] inputCount =
-                contained.get(idxAndDocCount[0] + indexOffset);
-              if (inputCount != null) {
-                inputCount[0]++;
-              } else {
-                contained.put(idxAndDocCount[0] + indexOffset,
-                  new double[] { 1 });
-              }
+              counts[entry]++;
             } else {
-              contained
-                .put(idxAndDocCount[0] + indexOffset, new double[] { 1 });
+              counts[entry] = 1;
             }
           }
         }
       }
     }
+    Arrays.sort(buffer.m_entries, 0, buffer.m_numEntries);
+
+    int numValues = numPassedThrough + buffer.m_numEntries;
+    double[] values = new double[numValues];
+    int[] indices = new int[numValues];
+    System.arraycopy(passedThrough, 0, values, 0, numPassedThrough);
+    System.arraycopy(passedThroughIndices, 0, indices, 0, numPassedThrough);
+    try {
+      for (int j = 0; j < buffer.m_numEntries; j++) {
+        int entry = buffer.m_entries[j];
+        double val = counts[entry];
 
-    // TF transform
-    if (m_TFTransform) {
-      for (Map.Entry<Integer, double[]> e : contained.entrySet()) {
-        int index = e.getKey();
-        if (index >= indexOffset) {
-          double[] val = e.getValue();
-          val[0] = Math.log(val[0] + 1);
+        // TF transform
+        if (m_TFTransform) {
+          val = Math.log(val + 1);
         }
-      }
-    }
 
-    // IDF transform
-    if (m_IDFTransform) {
-      for (Map.Entry<Integer, double[]> e : contained.entrySet()) {
-        int index = e.getKey();
-        if (index >= indexOffset) {
-          double[] val = e.getValue();
-          String word = m_outputFormat.attribute(index).name();
-          word = word.substring(m_Prefix.length());
-          int[] idxAndDocCount = m_consolidatedDict.get(word);
-          if (idxAndDocCount == null) {
-            throw new Exception("This should never occur");
-          }
-          if (idxAndDocCount.length != 2) {
+        // IDF transform
+        if (m_IDFTransform) {
+          if (buffer.m_docCounts[entry] < 0) {
             throw new Exception("Can't compute IDF transform as document "
               + "counts are not available");
           }
-          val[0] = val[0] * Math.log(m_count / (double) idxAndDocCount[1]);
+          val = val * Math.log(m_count / (double) buffer.m_docCounts[entry]);
         }
-      }
-    }
 
-    double[] values = new double[contained.size()];
-    int[] indices = new int[contained.size()];
-    int i = 0;
-    for (Map.Entry<Integer, double[]> e : contained.entrySet()) {
-      values[i] = e.getValue()[0];
-      indices[i++] = e.getKey().intValue();
+        values[numPassedThrough + j] = val;
+        indices[numPassedThrough + j] = entry + indexOffset;
+      }
+    } finally {
+      for (int j = 0; j < buffer.m_numEntries; j++) {
+        counts[buffer.m_entries[j]] = 0;
+      }
     }
 
     Instance inst =
@@ -1634,6 +1880,101 @@ public class DictionaryBuilder implements Aggregateable<DictionaryBuilder>,
     pruneDictionary();
   }
 
+  /**
+   * Process a batch of instances by tokenizing string attributes and updating
+   * the dictionary. If more than one execution slot is configured, the batch
+   * is split into contiguous shards that are processed by separate builders
+   * in parallel; the shard dictionaries are then aggregated in shard order,
+   * which gives the same dictionaries (including the order of their terms) as
+   * processing the instances one by one. Periodic pruning depends on the
+   * order in which instances are seen, so batches are processed sequentially
+   * if it is turned on.
+   * 
+   * @param batch the instances to process
+   * @throws Exception if a problem occurs
+   */
+  public void processBatch(final Instances batch) throws Exception {
+
+    if (!m_inputContainsStringAttributes) {
+      return;
+    }
+
+    int numThreads = numThreads(batch.numInstances());
+    if (numThreads <= 1 || m_periodicPruneRate > 0) {
+      for (int i = 0; i < batch.numInstances(); i++) {
+        processInstance(batch.instance(i));
+      }
+      return;
+    }
+
+    final DictionaryBuilder[] shards = new DictionaryBuilder[numThreads];
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int p = 0; p < numThreads; p++) {
+      final int start = (int) ((long) p * batch.numInstances() / numThreads);
+      final int end =
+        (int) ((long) (p + 1) * batch.numInstances() / numThreads);
+      final DictionaryBuilder shard = newShard();
+      shards[p] = shard;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int i = start; i < end; i++) {
+            shard.processInstance(batch.instance(i));
+          }
+          return null;
+        }
+      });
+    }
+    runTasks(tasks);
+
+    for (DictionaryBuilder shard : shards) {
+      aggregate(shard);
+    }
+  }
+
+  /**
+   * Creates a builder with the same configuration as this one (including its
+   * own copies of the tokenizer, stemmer and stopwords handler) but with
+   * empty dictionaries.
+   * 
+   * @return the new builder
+   * @throws Exception if the builder can't be copied
+   */
+  protected DictionaryBuilder newShard() throws Exception {
+    Map<String, int[]>[] dicts = m_dictsPerClass;
+    DictionaryBuilder shard;
+    m_dictsPerClass = null;
+    try {
+      shard = (DictionaryBuilder) new SerializedObject(this).getObject();
+    } finally {
+      m_dictsPerClass = dicts;
+    }
+    shard.m_count = 0;
+    shard.m_docLengthSum = 0;
+    shard.m_dictsPerClass = newDictionaries(m_numClasses);
+
+    return shard;
+  }
+
+  /**
+   * Creates empty dictionaries of the configured type.
+   * 
+   * @param numDictionaries the number of dictionaries
+   * @return the dictionaries
+   */
+  @SuppressWarnings("unchecked")
+  protected Map<String, int[]>[] newDictionaries(int numDictionaries) {
+    Map<String, int[]>[] dicts =
+      m_sortDictionary ? new TreeMap[numDictionaries]
+        : new LinkedHashMap[numDictionaries];
+    for (int i = 0; i < numDictionaries; i++) {
+      dicts[i] =
+        m_sortDictionary ? new TreeMap<String, int[]>()
+          : new LinkedHashMap<String, int[]>();
+    }
+    return dicts;
+  }
+
   /**
    * Prunes the dictionary of low frequency terms
    */
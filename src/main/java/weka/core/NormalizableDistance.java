@@ -69,8 +69,11 @@ public abstract class NormalizableDistance implements DistanceFunction,
   /** The boolean flags, whether an attribute will be used or not. */
   protected boolean[] m_ActiveIndices;
 
-  /** Whether all the necessary preparations have been done. */
-  protected boolean m_Validated;
+  /**
+   * Whether all the necessary preparations have been done. Volatile, since
+   * concurrent nearest neighbour queries may trigger the initialization.
+   */
+  protected volatile boolean m_Validated;
 
   /**
    * Invalidates the distance function, Instances must be still set.
@@ -280,8 +283,12 @@ public abstract class NormalizableDistance implements DistanceFunction,
    */
   protected void validate() {
     if (!m_Validated) {
-      initialize();
-      m_Validated = true;
+      synchronized (this) {
+        if (!m_Validated) {
+          initialize();
+          m_Validated = true;
+        }
+      }
     }
   }
 
@@ -0,0 +1,708 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ArffChunkParser.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+
+/**
+ * Parses the data section of an ARFF file in parallel. The data is read in
+ * large chunks that are split on row boundaries, the chunks are tokenized
+ * concurrently and the resulting instances are added to the dataset in file
+ * order.
+ * <p/>
+ * The tokenizer follows the syntax that
+ * {@link ArffLoader.ArffReader#initTokenizer()} sets up for the
+ * <code>StreamTokenizer</code> (field separator, quotes with backslash
+ * escapes, <code>%</code> comments, sparse rows and instance weights). Since
+ * rows are parsed independently of each other, only datasets with numeric and
+ * nominal attributes are supported; see {@link #canParse(Instances)}.
+ *
+ * @version $Revision$
+ */
+public class ArffChunkParser implements RevisionHandler {
+
+  /** the default number of characters read per chunk */
+  public static final int CHUNK_SIZE = 1 << 20;
+
+  /** token type for a word (or quoted string) */
+  protected static final int TT_WORD = -3;
+
+  /** token type for the end of a line */
+  protected static final int TT_EOL = '\n';
+
+  /** the header of the data */
+  protected Instances m_Structure;
+
+  /** the attribute types */
+  protected int[] m_Types;
+
+  /** value to index lookup for the nominal attributes */
+  protected HashMap<String, Integer>[] m_NominalIndices;
+
+  /** the field separator */
+  protected char m_FieldSeparator;
+
+  /** the enclosure (quote) characters */
+  protected char[] m_Enclosures;
+
+  /** the number of characters read per chunk */
+  protected int m_ChunkSize = CHUNK_SIZE;
+
+  /**
+   * Initializes the parser.
+   *
+   * @param structure the header of the data, must only contain numeric and
+   *          nominal attributes
+   * @param fieldSeparator the field separator, null for the default (comma)
+   * @param enclosures the enclosure characters, null for the defaults (single
+   *          and double quotes)
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public ArffChunkParser(Instances structure, String fieldSeparator,
+    List<String> enclosures) {
+
+    m_Structure = structure;
+    m_Types = new int[structure.numAttributes()];
+    m_NominalIndices = new HashMap[structure.numAttributes()];
+    for (int i = 0; i < structure.numAttributes(); i++) {
+      Attribute att = structure.attribute(i);
+      m_Types[i] = att.type();
+      if (att.isNominal()) {
+        m_NominalIndices[i] = new HashMap<String, Integer>(
+          (int) (att.numValues() / 0.75) + 1);
+        for (int j = 0; j < att.numValues(); j++) {
+          m_NominalIndices[i].put(att.value(j), j);
+        }
+      }
+    }
+
+    if (fieldSeparator != null && fieldSeparator.length() > 0) {
+      m_FieldSeparator = fieldSeparator.charAt(0);
+    } else {
+      m_FieldSeparator = ',';
+    }
+    if (enclosures != null && enclosures.size() > 0) {
+      m_Enclosures = new char[enclosures.size()];
+      for (int i = 0; i < enclosures.size(); i++) {
+        m_Enclosures[i] = enclosures.get(i).charAt(0);
+      }
+    } else {
+      m_Enclosures = new char[] { '"', '\'' };
+    }
+  }
+
+  /**
+   * Checks whether the rows of the given dataset can be parsed
+   * independently, i.e., whether it only contains numeric and nominal
+   * attributes. String and relational values have to be added to the header
+   * in file order and dates are parsed with a shared, non-thread-safe format.
+   *
+   * @param structure the header to check
+   * @return true if the data can be parsed in parallel
+   */
+  public static boolean canParse(Instances structure) {
+    for (int i = 0; i < structure.numAttributes(); i++) {
+      int type = structure.attribute(i).type();
+      if (type != Attribute.NUMERIC && type != Attribute.NOMINAL) {
+        return false;
+      }
+    }
+    return structure.numAttributes() > 0;
+  }
+
+  /**
+   * Sets the number of characters to read per chunk.
+   *
+   * @param value the chunk size
+   */
+  public void setChunkSize(int value) {
+    m_ChunkSize = Math.max(16, value);
+  }
+
+  /**
+   * Reads all rows from the reader and adds them to the dataset in file
+   * order.
+   *
+   * @param reader the reader positioned at the start of the data rows
+   * @param data the dataset to add the instances to
+   * @param firstLine the line number of the first row in the file
+   * @param numThreads the number of threads to use
+   * @param skipLineFeed whether to skip a leading line feed, i.e., the second
+   *          half of a "\r\n" line break already consumed by the caller
+   * @throws IOException if reading or parsing fails
+   */
+  public void read(Reader reader, Instances data, int firstLine,
+    int numThreads, boolean skipLineFeed) throws IOException {
+
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    ArrayDeque<Future<Instance[]>> pending =
+      new ArrayDeque<Future<Instance[]>>();
+    try {
+      char[] buffer = new char[m_ChunkSize];
+      int filled = 0;
+      int line = firstLine;
+      boolean eof = false;
+      while (!eof) {
+        int read = reader.read(buffer, filled, buffer.length - filled);
+        if (read == -1) {
+          eof = true;
+        } else {
+          if (skipLineFeed && read > 0) {
+            skipLineFeed = false;
+            if (buffer[filled] == '\n') {
+              System.arraycopy(buffer, filled + 1, buffer, filled, read - 1);
+              read--;
+            }
+          }
+          filled += read;
+          if (filled < buffer.length) {
+            continue;
+          }
+        }
+
+        // split at the last row boundary, the remainder is carried over
+        int end = filled;
+        if (!eof) {
+          end = lastLineBreak(buffer, filled) + 1;
+          if (end == 0) {
+            // the row does not fit into the buffer
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, filled);
+            buffer = larger;
+            continue;
+          }
+        }
+        if (end > 0) {
+          final char[] chunk = new char[end];
+          System.arraycopy(buffer, 0, chunk, 0, end);
+          final int chunkLine = line;
+          line += countLines(chunk);
+          pending.add(pool.submit(new Callable<Instance[]>() {
+            @Override
+            public Instance[] call() throws Exception {
+              return parse(chunk, 0, chunk.length, chunkLine);
+            }
+          }));
+        }
+        System.arraycopy(buffer, end, buffer, 0, filled - end);
+        filled -= end;
+
+        // bound the number of chunks held in memory
+        while (pending.size() >= 2 * numThreads) {
+          addAll(data, pending.poll());
+        }
+      }
+      while (!pending.isEmpty()) {
+        addAll(data, pending.poll());
+      }
+    } finally {
+      for (Future<Instance[]> future : pending) {
+        future.cancel(true);
+      }
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Adds the instances of a parsed chunk to the dataset.
+   *
+   * @param data the dataset
+   * @param future the parsed chunk
+   * @throws IOException if parsing the chunk failed
+   */
+  protected void addAll(Instances data, Future<Instance[]> future)
+    throws IOException {
+
+    Instance[] insts;
+    try {
+      insts = future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    for (Instance inst : insts) {
+      data.add(inst);
+    }
+  }
+
+  /**
+   * Returns the position of the last line break in the buffer.
+   *
+   * @param buffer the buffer
+   * @param length the number of characters in the buffer
+   * @return the position, -1 if none
+   */
+  protected static int lastLineBreak(char[] buffer, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\n' || buffer[i] == '\r') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Counts the lines in the chunk the way <code>StreamTokenizer</code> does,
+   * i.e., "\r\n" counts as one line.
+   *
+   * @param chunk the chunk
+   * @return the number of lines
+   */
+  protected static int countLines(char[] chunk) {
+    int count = 0;
+    for (int i = 0; i < chunk.length; i++) {
+      if (chunk[i] == '\n') {
+        count++;
+      } else if (chunk[i] == '\r') {
+        count++;
+        if (i + 1 < chunk.length && chunk[i + 1] == '\n') {
+          i++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Parses the rows in the given part of the buffer. Thread-safe, the parser
+   * only reads the shared lookup tables.
+   *
+   * @param buffer the characters
+   * @param start the first character of the first row
+   * @param end the position after the last row
+   * @param firstLine the line number of the first row
+   * @return the parsed instances
+   * @throws IOException if a row cannot be parsed
+   */
+  public Instance[] parse(char[] buffer, int start, int end, int firstLine)
+    throws IOException {
+
+    Tokenizer tokenizer = new Tokenizer(buffer, start, end, firstLine);
+    ArrayList<Instance> result = new ArrayList<Instance>();
+    int numAtts = m_Structure.numAttributes();
+    double[] valueBuffer = new double[numAtts];
+    int[] indicesBuffer = new int[numAtts];
+
+    while (tokenizer.nextLine()) {
+      int ttype = tokenizer.nextToken();
+      if (ttype == TT_EOL) {
+        continue;
+      }
+      Instance inst;
+      if (ttype == '{') {
+        inst = parseSparse(tokenizer, valueBuffer, indicesBuffer);
+      } else {
+        inst = parseFull(tokenizer);
+      }
+      inst.setDataset(m_Structure);
+      result.add(inst);
+    }
+
+    return result.toArray(new Instance[result.size()]);
+  }
+
+  /**
+   * Parses a dense row, the first token has already been read.
+   *
+   * @param tokenizer the tokenizer
+   * @return the instance
+   * @throws IOException if the row cannot be parsed
+   */
+  protected Instance parseFull(Tokenizer tokenizer) throws IOException {
+    double[] values = new double[m_Types.length];
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0 && tokenizer.nextToken() == TT_EOL) {
+        tokenizer.error("premature end of line");
+      }
+      values[i] = parseValue(tokenizer, i);
+    }
+
+    return new DenseInstance(parseWeight(tokenizer), values);
+  }
+
+  /**
+   * Parses a sparse row, the opening brace has already been read.
+   *
+   * @param tokenizer the tokenizer
+   * @param valueBuffer buffer for the values
+   * @param indicesBuffer buffer for the indices
+   * @return the instance
+   * @throws IOException if the row cannot be parsed
+   */
+  protected Instance parseSparse(Tokenizer tokenizer, double[] valueBuffer,
+    int[] indicesBuffer) throws IOException {
+
+    int numValues = 0;
+    int maxIndex = -1;
+    while (true) {
+      int ttype = tokenizer.nextToken();
+      if (ttype == TT_EOL) {
+        tokenizer.error("premature end of line");
+      }
+      if (ttype == '}') {
+        break;
+      }
+      int index = -1;
+      try {
+        index = Integer.parseInt(tokenizer.m_Sval);
+      } catch (NumberFormatException e) {
+        tokenizer.error("index number expected");
+      }
+      if (index <= maxIndex) {
+        tokenizer.error("indices have to be ordered");
+      }
+      if (index < 0 || index >= m_Types.length) {
+        tokenizer.error("index out of bounds");
+      }
+      maxIndex = index;
+
+      if (tokenizer.nextToken() == TT_EOL) {
+        tokenizer.error("premature end of line");
+      }
+      indicesBuffer[numValues] = index;
+      valueBuffer[numValues] = parseValue(tokenizer, index);
+      numValues++;
+    }
+
+    double weight = parseWeight(tokenizer);
+    double[] values = new double[numValues];
+    int[] indices = new int[numValues];
+    System.arraycopy(valueBuffer, 0, values, 0, numValues);
+    System.arraycopy(indicesBuffer, 0, indices, 0, numValues);
+    return new SparseInstance(weight, values, indices, m_Types.length);
+  }
+
+  /**
+   * Converts the current token into the internal value of an attribute.
+   *
+   * @param tokenizer the tokenizer
+   * @param att the index of the attribute
+   * @return the value
+   * @throws IOException if the token is not a valid value
+   */
+  protected double parseValue(Tokenizer tokenizer, int att)
+    throws IOException {
+
+    if (tokenizer.m_Ttype != TT_WORD) {
+      tokenizer.error("not a valid value");
+    }
+    if (!tokenizer.m_Quoted && tokenizer.m_Sval.equals("?")) {
+      return Utils.missingValue();
+    }
+    if (m_Types[att] == Attribute.NOMINAL) {
+      Integer index = m_NominalIndices[att].get(tokenizer.m_Sval);
+      if (index == null) {
+        tokenizer.error("nominal value not declared in header");
+      }
+      return index;
+    }
+    try {
+      return Double.parseDouble(tokenizer.m_Sval);
+    } catch (NumberFormatException e) {
+      tokenizer.error("number expected");
+    }
+    return Utils.missingValue();
+  }
+
+  /**
+   * Parses the optional instance weight and the end of the row.
+   *
+   * @param tokenizer the tokenizer
+   * @return the weight, 1 if none is given
+   * @throws IOException if the row does not end properly
+   */
+  protected double parseWeight(Tokenizer tokenizer) throws IOException {
+    int ttype = tokenizer.nextToken();
+    if (ttype == TT_EOL) {
+      return 1.0;
+    }
+    double weight = 1.0;
+    if (ttype == '{') {
+      tokenizer.nextToken();
+      try {
+        weight = Double.parseDouble(tokenizer.m_Sval);
+      } catch (Exception e) {
+        tokenizer.error("Problem reading instance weight");
+      }
+      if (tokenizer.nextToken() != '}') {
+        tokenizer.error("Problem reading instance weight: } expected");
+      }
+      ttype = tokenizer.nextToken();
+    }
+    if (ttype != TT_EOL) {
+      tokenizer.error("end of line expected");
+    }
+    return weight;
+  }
+
+  /**
+   * Splits the rows of a chunk into tokens.
+   */
+  protected class Tokenizer {
+
+    /** the characters */
+    protected char[] m_Buffer;
+
+    /** the current position */
+    protected int m_Pos;
+
+    /** the end of the chunk */
+    protected int m_End;
+
+    /** the end of the current line */
+    protected int m_LineEnd;
+
+    /** the current line number */
+    protected int m_Line;
+
+    /** the line number of the first row */
+    protected int m_FirstLine;
+
+    /** the type of the current token */
+    protected int m_Ttype;
+
+    /** the current word */
+    protected String m_Sval;
+
+    /** whether the current word was quoted */
+    protected boolean m_Quoted;
+
+    /** buffer for unescaping quoted strings */
+    protected StringBuilder m_Quote = new StringBuilder();
+
+    /**
+     * Initializes the tokenizer.
+     *
+     * @param buffer the characters
+     * @param start the start of the chunk
+     * @param end the end of the chunk
+     * @param firstLine the line number of the first row
+     */
+    protected Tokenizer(char[] buffer, int start, int end, int firstLine) {
+      m_Buffer = buffer;
+      m_Pos = start;
+      m_LineEnd = start;
+      m_End = end;
+      m_FirstLine = firstLine;
+      m_Line = firstLine - 1;
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return false if the end of the chunk has been reached
+     */
+    protected boolean nextLine() {
+      m_Pos = m_LineEnd;
+      if (m_Line < m_FirstLine) {
+        // the chunk starts with the first line, no line break to skip
+      } else if (m_Pos < m_End && m_Buffer[m_Pos] == '\r') {
+        m_Pos++;
+        if (m_Pos < m_End && m_Buffer[m_Pos] == '\n') {
+          m_Pos++;
+        }
+      } else if (m_Pos < m_End && m_Buffer[m_Pos] == '\n') {
+        m_Pos++;
+      }
+      if (m_Pos >= m_End) {
+        return false;
+      }
+      m_Line++;
+      m_LineEnd = m_Pos;
+      while (m_LineEnd < m_End && m_Buffer[m_LineEnd] != '\n'
+        && m_Buffer[m_LineEnd] != '\r') {
+        m_LineEnd++;
+      }
+      return true;
+    }
+
+    /**
+     * Checks whether the character is an enclosure.
+     *
+     * @param c the character
+     * @return true if the character starts a quoted string
+     */
+    protected boolean isEnclosure(char c) {
+      for (char e : m_Enclosures) {
+        if (c == e) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Reads the next token of the current line.
+     *
+     * @return the token type: TT_WORD, TT_EOL or the brace character
+     */
+    protected int nextToken() {
+      m_Sval = null;
+      m_Quoted = false;
+      while (m_Pos < m_LineEnd
+        && (m_Buffer[m_Pos] <= ' ' || m_Buffer[m_Pos] == m_FieldSeparator)) {
+        m_Pos++;
+      }
+      if (m_Pos >= m_LineEnd || m_Buffer[m_Pos] == '%') {
+        m_Pos = m_LineEnd;
+        m_Ttype = TT_EOL;
+        return m_Ttype;
+      }
+
+      char c = m_Buffer[m_Pos];
+      if (c == '{' || c == '}') {
+        m_Pos++;
+        m_Ttype = c;
+        return m_Ttype;
+      }
+
+      if (isEnclosure(c)) {
+        m_Pos++;
+        m_Sval = readQuoted(c);
+        m_Quoted = true;
+        m_Ttype = TT_WORD;
+        return m_Ttype;
+      }
+
+      int start = m_Pos;
+      while (m_Pos < m_LineEnd) {
+        c = m_Buffer[m_Pos];
+        if (c <= ' ' || c == m_FieldSeparator || c == '%' || c == '{'
+          || c == '}' || isEnclosure(c)) {
+          break;
+        }
+        m_Pos++;
+      }
+      m_Sval = new String(m_Buffer, start, m_Pos - start);
+      m_Ttype = TT_WORD;
+      return m_Ttype;
+    }
+
+    /**
+     * Reads a quoted string, resolving the escapes the way
+     * <code>StreamTokenizer</code> does. An unterminated string ends at the
+     * end of the line.
+     *
+     * @param quote the enclosure character
+     * @return the string
+     */
+    protected String readQuoted(char quote) {
+      m_Quote.setLength(0);
+      while (m_Pos < m_LineEnd) {
+        char c = m_Buffer[m_Pos++];
+        if (c == quote) {
+          break;
+        }
+        if (c == '\\' && m_Pos < m_LineEnd) {
+          c = m_Buffer[m_Pos++];
+          if (c >= '0' && c <= '7') {
+            int value = c - '0';
+            int max = (c <= '3') ? 2 : 1;
+            for (int i = 0; i < max && m_Pos < m_LineEnd
+              && m_Buffer[m_Pos] >= '0' && m_Buffer[m_Pos] <= '7'; i++) {
+              value = (value << 3) + (m_Buffer[m_Pos++] - '0');
+            }
+            c = (char) value;
+          } else {
+            switch (c) {
+            case 'a':
+              c = 0x7;
+              break;
+            case 'b':
+              c = '\b';
+              break;
+            case 'f':
+              c = 0xC;
+              break;
+            case 'n':
+              c = '\n';
+              break;
+            case 'r':
+              c = '\r';
+              break;
+            case 't':
+              c = '\t';
+              break;
+            case 'v':
+              c = 0xB;
+              break;
+            default:
+            }
+          }
+        }
+        m_Quote.append(c);
+      }
+      return m_Quote.toString();
+    }
+
+    /**
+     * Throws an error message with line number and last token read.
+     *
+     * @param msg the error message
+     * @throws IOException containing the error message
+     */
+    protected void error(String msg) throws IOException {
+      String token;
+      if (m_Ttype == TT_WORD) {
+        token = "Token[" + m_Sval + "]";
+      } else if (m_Ttype == TT_EOL) {
+        token = "Token[EOL]";
+      } else {
+        token = "Token['" + (char) m_Ttype + "']";
+      }
+      throw new IOException(msg + ", read " + token + ", line " + m_Line);
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
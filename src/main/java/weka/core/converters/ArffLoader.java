@@ -79,6 +79,9 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
    */
   protected boolean m_retainStringVals;
 
+  /** the number of threads used for parsing the data in batch mode */
+  protected int m_numThreads = 1;
+
   /**
    * Reads data from an ARFF file, either in incremental or batch mode.
    * <p/>
@@ -117,6 +120,12 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     /** the tokenizer for reading the stream */
     protected StreamTokenizer m_Tokenizer;
 
+    /** the reader the tokenizer reads from */
+    protected Reader m_Reader;
+
+    /** whether the header has been read, but no instances yet */
+    protected boolean m_AtDataStart = false;
+
     /** Buffer of values for sparse instance */
     protected double[] m_ValueBuffer;
 
@@ -156,6 +165,7 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     public ArffReader(Reader reader) throws IOException {
       m_retainStringValues = true;
       m_batchMode = true;
+      m_Reader = reader;
       m_Tokenizer = new StreamTokenizer(reader);
       initTokenizer();
 
@@ -198,6 +208,7 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
         throw new IllegalArgumentException("Capacity has to be positive!");
       }
 
+      m_Reader = reader;
       m_Tokenizer = new StreamTokenizer(reader);
       initTokenizer();
 
@@ -303,6 +314,7 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
       }
 
       m_Lines = lines;
+      m_Reader = reader;
       m_Tokenizer = new StreamTokenizer(reader);
       initTokenizer();
 
@@ -526,6 +538,7 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     protected Instance getInstance(Instances structure, boolean flag)
       throws IOException {
       m_Data = structure;
+      m_AtDataStart = false;
 
       // Check if any attributes have been declared.
       if (m_Data.numAttributes() == 0) {
@@ -826,6 +839,50 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
       }
 
       m_Data = new Instances(relationName, attributes, capacity);
+      m_AtDataStart = true;
+    }
+
+    /**
+     * Reads all remaining instances in batch mode and adds them to the given
+     * dataset. If more than one thread is requested and no data row has been
+     * read yet, the data is split into chunks of rows that are parsed
+     * concurrently (see {@link ArffChunkParser}), regardless of whether the
+     * reader was created in batch mode. Otherwise, or if
+     * the data contains string, date or relational attributes, the instances
+     * are read one by one with <code>readInstance()</code>.
+     * 
+     * @param data the dataset to add the instances to, its header has to match
+     *          the structure
+     * @param numThreads the number of threads to use, 0 or less for the number
+     *          of available processors
+     * @throws IOException if the information is not read successfully
+     */
+    public void readInstances(Instances data, int numThreads)
+      throws IOException {
+      if (numThreads <= 0) {
+        numThreads = Runtime.getRuntime().availableProcessors();
+      }
+
+      if (numThreads > 1 && m_AtDataStart && ArffChunkParser.canParse(data)) {
+        m_AtDataStart = false;
+        // consume the line break after the @data keyword
+        int ttype = m_Tokenizer.nextToken();
+        if (ttype == StreamTokenizer.TT_EOF) {
+          return;
+        }
+        if (ttype == StreamTokenizer.TT_EOL) {
+          ArffChunkParser parser =
+            new ArffChunkParser(data, m_fieldSeparator, m_enclosures);
+          parser.read(m_Reader, data, getLineNo(), numThreads, true);
+          return;
+        }
+        m_Tokenizer.pushBack();
+      }
+
+      Instance inst;
+      while ((inst = readInstance(data)) != null) {
+        data.add(inst);
+      }
     }
 
     /**
@@ -1100,6 +1157,36 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     return m_retainStringVals;
   }
 
+  /**
+   * Tool tip text for this property
+   * 
+   * @return the tool tip for this property
+   */
+  public String numThreadsTipText() {
+    return "The number of threads to use for parsing the data when loading "
+      + "in batch mode (0 = number of available processors). Only data with "
+      + "numeric and nominal attributes is parsed in parallel.";
+  }
+
+  /**
+   * Set the number of threads to use for parsing the data in batch mode.
+   * 
+   * @param value the number of threads, 0 or less for the number of available
+   *          processors
+   */
+  public void setNumThreads(int value) {
+    m_numThreads = value;
+  }
+
+  /**
+   * Get the number of threads to use for parsing the data in batch mode.
+   * 
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
   /**
    * Get the file extension used for arff files
    * 
@@ -1282,9 +1369,13 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
 
       // Read all instances
       insts = new Instances(m_structure, 0);
-      Instance inst;
-      while ((inst = m_ArffReader.readInstance(m_structure)) != null) {
-        insts.add(inst);
+      if (getNumThreads() != 1) {
+        m_ArffReader.readInstances(insts, getNumThreads());
+      } else {
+        Instance inst;
+        while ((inst = m_ArffReader.readInstance(m_structure)) != null) {
+          insts.add(inst);
+        }
       }
 
       // Instances readIn = new Instances(m_structure);
@@ -240,56 +240,77 @@ public class BallTree
    *  distance as the kth nearest neighbour).
    */
   public Instances kNearestNeighbours(Instance target, int k) throws Exception {
-    MyHeap heap = new MyHeap(k);
+    NeighbourBuffer heap = new NeighbourBuffer(k);
 
     if(m_Stats!=null)
       m_Stats.searchStart();
     
-    nearestNeighbours(heap, m_Root, target, k);
+    heap.startHeap(k);
+    nearestNeighbours(heap, m_Root, target, k, m_TreeStats);
+    heap.finish();
     
     if(m_Stats!=null)
       m_Stats.searchFinish();
 
-    Instances neighbours = new Instances(m_Instances, heap.totalSize());
-    m_Distances = new double[heap.totalSize()];
-    int [] indices = new int[heap.totalSize()];
-    int i=1; MyHeapElement h;
-    while(heap.noOfKthNearest()>0) {
-      h = heap.getKthNearest();
-      indices[indices.length-i] = h.index;
-      m_Distances[indices.length-i] = h.distance;
-      i++;
-    }
-    while(heap.size()>0) {
-      h = heap.get();
-      indices[indices.length-i] = h.index;
-      m_Distances[indices.length-i] = h.distance;
-      i++;
-    }
-    
-    m_DistanceFunction.postProcessDistances(m_Distances);
-    
-    for(i=0; i<indices.length; i++)
-      neighbours.add(m_Instances.instance(indices[i]));
+    m_DistanceFunction.postProcessDistances(heap.getDistances());
+    m_Distances = new double[heap.size()];
+    System.arraycopy(heap.getDistances(), 0, m_Distances, 0, heap.size());
+
+    Instances neighbours = new Instances(m_Instances, heap.size());
+    for(int i=0; i<heap.size(); i++)
+      neighbours.add(m_Instances.instance(heap.index(i)));
     
     return neighbours;  // <---Check this statement
   }
 
+  /**
+   * Returns whether queries into neighbour buffers are supported.
+   *
+   * @return true
+   */
+  @Override
+  public boolean supportsNeighbourBuffers() {
+    return true;
+  }
+
+  /**
+   * Stores the k nearest neighbours of the supplied instance in the given
+   * buffer. Does not record performance statistics.
+   * 
+   * @param target 	The instance to find the k nearest neighbours for.
+   * @param k		The number of nearest neighbours to find.
+   * @param result	The buffer receiving the neighbours.
+   * @return the number of neighbours found
+   * @throws Exception 	If the neighbours could not be found.
+   */
+  @Override
+  public int kNearestNeighbours(Instance target, int k, NeighbourBuffer result)
+    throws Exception {
+    result.startHeap(k);
+    nearestNeighbours(result, m_Root, target, k, null);
+    result.finish();
+    m_DistanceFunction.postProcessDistances(result.getDistances());
+
+    return result.size();
+  }
+
   /** 
    * Does NN search according to Moore's method. 
    * Should not be used by outside classes. They should instead
    * use kNearestNeighbours(Instance, int).
    * P.S.: The distance returned are squared. Need to post process the 
    * distances. 
-   * @param heap MyHeap object to store/update NNs found during the search.
+   * @param heap The buffer to store/update NNs found during the search.
    * @param node The BallNode to do the NN search on.
    * @param target The target instance for which the NNs are required.
    * @param k The number of NNs to find.
+   * @param stats The statistics to update, may be null.
    * @throws Exception If the structure of the BallTree is not correct, 
    * or if there is some problem putting NNs in the heap.
    */
-  protected void nearestNeighbours(MyHeap heap, BallNode node, Instance target,
-                                   int k) throws Exception{
+  protected void nearestNeighbours(NeighbourBuffer heap, BallNode node,
+                                   Instance target, int k,
+                                   TreePerformanceStats stats) throws Exception{
     double distance = Double.NEGATIVE_INFINITY;
 
     if (heap.totalSize() >= k)
@@ -297,12 +318,12 @@ public class BallTree
 
     // The radius is not squared so need to take sqrt before comparison
     if (distance > -0.000001
-        && Math.sqrt(heap.peek().distance) < distance - node.getRadius()) {
+        && Math.sqrt(heap.peekDistance()) < distance - node.getRadius()) {
       return;
     } else if (node.m_Left != null && node.m_Right != null) { // if node is not
                                                               // a leaf
-      if (m_TreeStats != null) {
-        m_TreeStats.incrIntNodeCount();
+      if (stats != null) {
+        stats.incrIntNodeCount();
       }
       double leftPivotDist = Math.sqrt(m_DistanceFunction.distance(target,
           node.m_Left.getPivot(), Double.POSITIVE_INFINITY));
@@ -313,22 +334,22 @@ public class BallTree
       // if target is inside both balls then see which center is closer
       if (leftBallDist < 0 && rightBallDist < 0) {
         if (leftPivotDist < rightPivotDist) {
-          nearestNeighbours(heap, node.m_Left, target, k);
-          nearestNeighbours(heap, node.m_Right, target, k);
+          nearestNeighbours(heap, node.m_Left, target, k, stats);
+          nearestNeighbours(heap, node.m_Right, target, k, stats);
         } else {
-          nearestNeighbours(heap, node.m_Right, target, k);
-          nearestNeighbours(heap, node.m_Left, target, k);
+          nearestNeighbours(heap, node.m_Right, target, k, stats);
+          nearestNeighbours(heap, node.m_Left, target, k, stats);
         }
       }
       // else see which ball is closer (if dist < 0 target is inside a ball, and
       // hence the ball is closer).
       else {
         if (leftBallDist < rightBallDist) {
-          nearestNeighbours(heap, node.m_Left, target, k);
-          nearestNeighbours(heap, node.m_Right, target, k);
+          nearestNeighbours(heap, node.m_Left, target, k, stats);
+          nearestNeighbours(heap, node.m_Right, target, k, stats);
         } else {
-          nearestNeighbours(heap, node.m_Right, target, k);
-          nearestNeighbours(heap, node.m_Left, target, k);
+          nearestNeighbours(heap, node.m_Right, target, k, stats);
+          nearestNeighbours(heap, node.m_Left, target, k, stats);
         }
       }
     } else if (node.m_Left != null || node.m_Right != null) { // invalid leaves
@@ -337,24 +358,24 @@ public class BallTree
                           "assigned. Please check code.");
     } else if (node.m_Left == null && node.m_Right == null) { // if node is a
                                                               // leaf
-      if (m_TreeStats != null) {
-        m_TreeStats.updatePointCount(node.numInstances());
-        m_TreeStats.incrLeafCount();
+      if (stats != null) {
+        stats.updatePointCount(node.numInstances());
+        stats.incrLeafCount();
       }
       for (int i = node.m_Start; i <= node.m_End; i++) {
         if (target == m_Instances.instance(m_InstList[i])) //for hold-one-out cross-validation
           continue;
         if (heap.totalSize() < k) {
           distance = m_DistanceFunction.distance(target, m_Instances
-              .instance(m_InstList[i]), Double.POSITIVE_INFINITY, m_Stats);
+              .instance(m_InstList[i]), Double.POSITIVE_INFINITY, stats);
           heap.put(m_InstList[i], distance);
         } else {
-          MyHeapElement head = heap.peek();
+          double headDistance = heap.peekDistance();
           distance = m_DistanceFunction.distance(target, 
-              m_Instances.instance(m_InstList[i]), head.distance, m_Stats);
-          if (distance < head.distance) {
+              m_Instances.instance(m_InstList[i]), headDistance, stats);
+          if (distance < headDistance) {
             heap.putBySubstitute(m_InstList[i], distance);
-          } else if (distance == head.distance) {
+          } else if (distance == headDistance) {
             heap.putKthNearest(m_InstList[i], distance);
           }
         }//end else(heap.totalSize())
@@ -1423,7 +1423,7 @@ public class CoverTree extends NearestNeighbourSearch implements
       for (int i = 0; i < zero_set.length; i++) {
         ele = zero_set.element(i);
         if (ele.dist <= upper_k.peek().distance) {
-          temp.insertSorted(ele.dist, ele.n.p()); // temp.push(ele.n.p());
+          temp.insertSorted(ele.dist, ele.n.p(), ele.n.idx); // temp.push(ele.n.p());
         }
       }
       results.push(temp);
@@ -1584,7 +1584,7 @@ public class CoverTree extends NearestNeighbourSearch implements
     // if root is the only node
     if (m_Root.num_children == 0) {
       NeighborList list = new NeighborList(k);
-      list.insertSorted(d, m_Root.p());
+      list.insertSorted(d, m_Root.p(), m_Root.idx);
       return list;
     }
     // else
@@ -1633,7 +1633,7 @@ public class CoverTree extends NearestNeighbourSearch implements
     for (int i = 0; i < zero_set.length; i++) {
       tmpnode = zero_set.element(i);
       if (tmpnode.dist <= upper_bound) {
-        list.insertSorted(tmpnode.dist, tmpnode.n.p());
+        list.insertSorted(tmpnode.dist, tmpnode.n.p(), tmpnode.n.idx);
       }
     }
 
@@ -1662,19 +1662,14 @@ public class CoverTree extends NearestNeighbourSearch implements
     if (m_Stats != null) {
       m_Stats.searchStart();
     }
-    CoverTree querytree = new CoverTree();
-    Instances insts = new Instances(m_Instances, 0);
-    insts.add(target);
-    querytree.setInstances(insts);
-    Stack<NeighborList> result = new Stack<NeighborList>();
-    batch_nearest_neighbor(k, this.m_Root, querytree.m_Root, result);
+    NeighborList list = findNeighbours(target, k);
     if (m_Stats != null) {
       m_Stats.searchFinish();
     }
 
-    insts = new Instances(m_Instances, 0);
-    NeighborNode node = result.element(0).getFirst();
-    m_DistanceList = new double[result.element(0).currentLength()];
+    Instances insts = new Instances(m_Instances, 0);
+    NeighborNode node = list.getFirst();
+    m_DistanceList = new double[list.currentLength()];
     int i = 0;
     while (node != null) {
       insts.add(node.m_Instance);
@@ -1685,6 +1680,69 @@ public class CoverTree extends NearestNeighbourSearch implements
     return insts;
   }
 
+  /**
+   * Returns whether queries into neighbour buffers are supported.
+   *
+   * @return true
+   */
+  @Override
+  public boolean supportsNeighbourBuffers() {
+    return true;
+  }
+
+  /**
+   * Stores the k-NNs of a given target instance in the given buffer. Builds a
+   * query tree like kNearestNeighbours(Instance, int), i.e., unlike the other
+   * searches this one is not allocation-free. Queries are serialized if
+   * performance statistics are measured.
+   * 
+   * @param target The instance for which k-NNs are required.
+   * @param k The number of k-NNs to find.
+   * @param result The buffer receiving the neighbours.
+   * @return The number of neighbours found.
+   * @throws Exception If there is some problem find the k-NNs.
+   */
+  @Override
+  public int kNearestNeighbours(Instance target, int k, NeighbourBuffer result)
+    throws Exception {
+    NeighborList list;
+    if (m_TreeStats != null) {
+      synchronized (this) {
+        list = findNeighbours(target, k);
+      }
+    } else {
+      list = findNeighbours(target, k);
+    }
+
+    result.setSize(list.currentLength());
+    NeighborNode node = list.getFirst();
+    for (int i = 0; node != null; i++) {
+      result.getIndices()[i] = node.m_Index;
+      result.getDistances()[i] = node.m_Distance;
+      node = node.m_Next;
+    }
+    return result.size();
+  }
+
+  /**
+   * Runs the batch search for a single target instance.
+   * 
+   * @param target The instance for which k-NNs are required.
+   * @param k The number of k-NNs to find.
+   * @return The k-NNs.
+   * @throws Exception If there is some problem find the k-NNs.
+   */
+  protected NeighborList findNeighbours(Instance target, int k)
+    throws Exception {
+    CoverTree querytree = new CoverTree();
+    Instances insts = new Instances(m_Instances, 0);
+    insts.add(target);
+    querytree.setInstances(insts);
+    Stack<NeighborList> result = new Stack<NeighborList>();
+    batch_nearest_neighbor(k, this.m_Root, querytree.m_Root, result);
+    return result.element(0);
+  }
+
   /**
    * Returns the NN instance of a given target instance, from among the
    * previously supplied training instances.
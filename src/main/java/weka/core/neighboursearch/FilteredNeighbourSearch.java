@@ -419,6 +419,50 @@ public class FilteredNeighbourSearch extends NearestNeighbourSearch implements C
     return neighbours;
   }
 
+  /**
+   * Returns whether queries into neighbour buffers are supported, i.e.,
+   * whether the base search method supports them.
+   *
+   * @return true if the base search method supports neighbour buffers
+   */
+  @Override
+  public boolean supportsNeighbourBuffers() {
+    return m_SearchMethod.supportsNeighbourBuffers();
+  }
+
+  /**
+   * Stores the nearest neighbours for the given instance, based on distance
+   * measured in the filtered space, in the given buffer. Only the filtering
+   * of the target instance is serialized, the search itself runs
+   * concurrently if the base search method supports it.
+   *
+   * @param target the instance for which to find the nearest neighbours
+   * @param k the number of nearest neighbours to find
+   * @param result the buffer receiving the neighbours
+   * @return the number of neighbours found
+   * @throws Exception if the neighbours could not be found
+   */
+  @Override
+  public int kNearestNeighbours(Instance target, int k, NeighbourBuffer result)
+    throws Exception {
+
+    Instance filtered;
+    synchronized (this) {
+      getFilter().input(target);
+      m_AddID.input(getFilter().output());
+      filtered = m_AddID.output();
+    }
+    m_ModifiedSearchMethod.kNearestNeighbours(filtered, k, result);
+
+    // map the neighbours back to the original space
+    Instances filteredData = m_ModifiedSearchMethod.getInstances();
+    int[] indices = result.getIndices();
+    for (int i = 0; i < result.size(); i++) {
+      indices[i] = (int) filteredData.instance(indices[i]).value(m_IndexOfID) - 1;
+    }
+    return result.size();
+  }
+
   /**
    * Returns the distances for the nearest neighbours in the FILTERED space
    * 
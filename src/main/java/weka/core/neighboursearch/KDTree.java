@@ -297,18 +297,20 @@ public class KDTree
    * @param target  The instance to find the nearest neighbours for.
    * @param node The KDTreeNode to start the search from.
    * @param k    The number of neighbours to find.
-   * @param heap The MyHeap object to store/update the kNNs found
+   * @param heap The buffer to store/update the kNNs found
    * during the search.
    * @param distanceToParents The distance of the supplied target 
    * to the parents of the supplied tree node. 
+   * @param stats The statistics to update, may be null.
    * @throws Exception  if the nearest neighbour could not be found.
    */
   protected void findNearestNeighbours(Instance target, KDTreeNode node, int k,
-      MyHeap heap, double distanceToParents) throws Exception {
+      NeighbourBuffer heap, double distanceToParents, TreePerformanceStats stats)
+      throws Exception {
     if (node.isALeaf()) {
-      if (m_TreeStats != null) {
-        m_TreeStats.updatePointCount(node.numInstances());
-        m_TreeStats.incrLeafCount();
+      if (stats != null) {
+        stats.updatePointCount(node.numInstances());
+        stats.incrLeafCount();
       }
       double distance;
       // look at all the instances in this leaf
@@ -317,25 +319,25 @@ public class KDTree
                                                               // hold-one-out
                                                               // cross-validation
           continue;
-        if (heap.size() < k) {
+        if (heap.heapSize() < k) {
           distance = m_EuclideanDistance.distance(target, m_Instances
-              .instance(m_InstList[idx]), Double.POSITIVE_INFINITY, m_Stats);
+              .instance(m_InstList[idx]), Double.POSITIVE_INFINITY, stats);
           heap.put(m_InstList[idx], distance);
         } else {
-          MyHeapElement temp = heap.peek();
+          double headDistance = heap.peekDistance();
           distance = m_EuclideanDistance.distance(target, m_Instances
-              .instance(m_InstList[idx]), temp.distance, m_Stats);
-          if (distance < temp.distance) {
+              .instance(m_InstList[idx]), headDistance, stats);
+          if (distance < headDistance) {
             heap.putBySubstitute(m_InstList[idx], distance);
-          } else if (distance == temp.distance) {
+          } else if (distance == headDistance) {
             heap.putKthNearest(m_InstList[idx], distance);
           }
         }// end else heap.size==k
       }// end for
 
     } else {
-      if (m_TreeStats != null) {
-        m_TreeStats.incrIntNodeCount();
+      if (stats != null) {
+        stats.incrIntNodeCount();
       }
       KDTreeNode nearer, further;
       boolean targetInLeft = m_EuclideanDistance.valueIsSmallerEqual(target,
@@ -348,22 +350,24 @@ public class KDTree
         nearer = node.m_Right;
         further = node.m_Left;
       }
-      findNearestNeighbours(target, nearer, k, heap, distanceToParents);
+      findNearestNeighbours(target, nearer, k, heap, distanceToParents, stats);
 
       // ... now look in further half if maxDist reaches into it
-      if (heap.size() < k) { // if haven't found the first k
+      if (heap.heapSize() < k) { // if haven't found the first k
         double distanceToSplitPlane = distanceToParents
             + m_EuclideanDistance.sqDifference(node.m_SplitDim, target
                 .value(node.m_SplitDim), node.m_SplitValue);
-        findNearestNeighbours(target, further, k, heap, distanceToSplitPlane);
+        findNearestNeighbours(target, further, k, heap, distanceToSplitPlane,
+            stats);
         return;
       } else { // else see if ball centered at query intersects with the other
                 // side.
         double distanceToSplitPlane = distanceToParents
             + m_EuclideanDistance.sqDifference(node.m_SplitDim, target
                 .value(node.m_SplitDim), node.m_SplitValue);
-        if (heap.peek().distance >= distanceToSplitPlane) {
-          findNearestNeighbours(target, further, k, heap, distanceToSplitPlane);
+        if (heap.peekDistance() >= distanceToSplitPlane) {
+          findNearestNeighbours(target, further, k, heap, distanceToSplitPlane,
+              stats);
         }
       }// end else
     }// end else_if an internal node
@@ -386,40 +390,60 @@ public class KDTree
     if (m_Stats != null)
       m_Stats.searchStart();
 
-    MyHeap heap = new MyHeap(k);
-    findNearestNeighbours(target, m_Root, k, heap, 0.0);
+    NeighbourBuffer heap = new NeighbourBuffer(k);
+    heap.startHeap(k);
+    findNearestNeighbours(target, m_Root, k, heap, 0.0, m_TreeStats);
+    heap.finish();
 
     if (m_Stats != null)
       m_Stats.searchFinish();
 
-    Instances neighbours = new Instances(m_Instances, (heap.size() + heap
-        .noOfKthNearest()));
-    m_DistanceList = new double[heap.size() + heap.noOfKthNearest()];
-    int[] indices = new int[heap.size() + heap.noOfKthNearest()];
-    int i = indices.length - 1;
-    MyHeapElement h;
-    while (heap.noOfKthNearest() > 0) {
-      h = heap.getKthNearest();
-      indices[i] = h.index;
-      m_DistanceList[i] = h.distance;
-      i--;
-    }
-    while (heap.size() > 0) {
-      h = heap.get();
-      indices[i] = h.index;
-      m_DistanceList[i] = h.distance;
-      i--;
-    }
-    m_DistanceFunction.postProcessDistances(m_DistanceList);
+    m_DistanceFunction.postProcessDistances(heap.getDistances());
+    m_DistanceList = new double[heap.size()];
+    System.arraycopy(heap.getDistances(), 0, m_DistanceList, 0, heap.size());
 
-    for (int idx = 0; idx < indices.length; idx++) {
-      neighbours.add(m_Instances.instance(indices[idx]));
+    Instances neighbours = new Instances(m_Instances, heap.size());
+    for (int idx = 0; idx < heap.size(); idx++) {
+      neighbours.add(m_Instances.instance(heap.index(idx)));
     }
 
     return neighbours;
   }
   
 
+  /**
+   * Returns whether queries into neighbour buffers are supported.
+   *
+   * @return true
+   */
+  @Override
+  public boolean supportsNeighbourBuffers() {
+    return true;
+  }
+
+  /**
+   * Stores the k nearest neighbours of the supplied instance in the given
+   * buffer. Does not record performance statistics.
+   * 
+   * @param target	The instance to find the nearest neighbours for.
+   * @param k 		The number of neighbours to find.
+   * @param result	The buffer receiving the neighbours.
+   * @return the number of neighbours found
+   * @throws Exception 	if the nearest neighbour could not be found.
+   */
+  @Override
+  public int kNearestNeighbours(Instance target, int k, NeighbourBuffer result)
+      throws Exception {
+    checkMissing(target);
+
+    result.startHeap(k);
+    findNearestNeighbours(target, m_Root, k, result, 0.0, null);
+    result.finish();
+    m_DistanceFunction.postProcessDistances(result.getDistances());
+
+    return result.size();
+  }
+
   /**
    * Returns the nearest neighbour of the supplied target 
    * instance. 
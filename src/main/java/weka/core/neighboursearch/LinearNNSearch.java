@@ -202,23 +202,75 @@ public class LinearNNSearch
    */
   public Instances kNearestNeighbours(Instance target, int kNN) throws Exception {
   
-    //debug
-    boolean print=false;
-
     if(m_Stats!=null)
       m_Stats.searchStart();
- 
-    MyHeap heap = new MyHeap(kNN);
+
+    NeighbourBuffer buffer = new NeighbourBuffer(kNN);
+    search(target, kNN, buffer, m_Stats);
+
+    m_Distances = new double[buffer.size()];
+    System.arraycopy(buffer.getDistances(), 0, m_Distances, 0, buffer.size());
+    Instances neighbours = new Instances(m_Instances, buffer.size());
+    for(int k=0; k<buffer.size(); k++) {
+      neighbours.add(m_Instances.instance(buffer.index(k)));
+    }
+    
+    if(m_Stats!=null)
+      m_Stats.searchFinish();
+    
+    return neighbours;    
+  }
+
+  /**
+   * Returns whether queries into neighbour buffers are supported.
+   *
+   * @return true
+   */
+  @Override
+  public boolean supportsNeighbourBuffers() {
+    return true;
+  }
+
+  /**
+   * Stores the k nearest neighbours of the supplied instance in the given
+   * buffer. Does not record performance statistics.
+   *
+   * @param target 	The instance to find the k nearest neighbours for.
+   * @param kNN		The number of nearest neighbours to find.
+   * @param result	The buffer receiving the neighbours.
+   * @return		the number of neighbours found
+   * @throws Exception  if the neighbours could not be found.
+   */
+  @Override
+  public int kNearestNeighbours(Instance target, int kNN, NeighbourBuffer result)
+    throws Exception {
+
+    search(target, kNN, result, null);
+    return result.size();
+  }
+
+  /**
+   * Scans the neighbourhood for the k nearest neighbours of the supplied
+   * instance.
+   *
+   * @param target 	The instance to find the k nearest neighbours for.
+   * @param kNN		The number of nearest neighbours to find.
+   * @param heap	The buffer receiving the neighbours.
+   * @param stats	The statistics to update, may be null.
+   * @throws Exception  if the neighbours could not be found.
+   */
+  protected void search(Instance target, int kNN, NeighbourBuffer heap,
+    PerformanceStats stats) throws Exception {
+
+    heap.startHeap(kNN);
     double distance; int firstkNN=0;
     for(int i=0; i<m_Instances.numInstances(); i++) {
       if(target == m_Instances.instance(i)) //for hold-one-out cross-validation
         continue;
-      if(m_Stats!=null) 
-        m_Stats.incrPointCount();
+      if(stats!=null) 
+        stats.incrPointCount();
       if(firstkNN<kNN) {
-        if(print)
-          System.out.println("K(a): "+(heap.size()+heap.noOfKthNearest()));
-        distance = m_DistanceFunction.distance(target, m_Instances.instance(i), Double.POSITIVE_INFINITY, m_Stats);
+        distance = m_DistanceFunction.distance(target, m_Instances.instance(i), Double.POSITIVE_INFINITY, stats);
         // Third condition in the following test is used because at least one nearest neighbour is needed
         if(distance == 0.0 && m_SkipIdentical && (i<m_Instances.numInstances()-1))
             continue;
@@ -226,49 +278,22 @@ public class LinearNNSearch
         firstkNN++;
       }
       else {
-        MyHeapElement temp = heap.peek();
-        if(print)
-          System.out.println("K(b): "+(heap.size()+heap.noOfKthNearest()));
-        distance = m_DistanceFunction.distance(target, m_Instances.instance(i), temp.distance, m_Stats);
+        double headDistance = heap.peekDistance();
+        distance = m_DistanceFunction.distance(target, m_Instances.instance(i), headDistance, stats);
         if(distance == 0.0 && m_SkipIdentical)
           continue;
-        if(distance < temp.distance) {
+        if(distance < headDistance) {
           heap.putBySubstitute(i, distance);
         }
-        else if(distance == temp.distance) {
+        else if(distance == headDistance) {
           heap.putKthNearest(i, distance);
         }
 
       }
     }
+    heap.finish();
     
-    Instances neighbours = new Instances(m_Instances, (heap.size()+heap.noOfKthNearest()));
-    m_Distances = new double[heap.size()+heap.noOfKthNearest()];
-    int [] indices = new int[heap.size()+heap.noOfKthNearest()];
-    int i=1; MyHeapElement h;
-    while(heap.noOfKthNearest()>0) {
-      h = heap.getKthNearest();
-      indices[indices.length-i] = h.index;
-      m_Distances[indices.length-i] = h.distance;
-      i++;
-    }
-    while(heap.size()>0) {
-      h = heap.get();
-      indices[indices.length-i] = h.index;
-      m_Distances[indices.length-i] = h.distance;
-      i++;
-    }
-    
-    m_DistanceFunction.postProcessDistances(m_Distances);
-    
-    for(int k=0; k<indices.length; k++) {
-      neighbours.add(m_Instances.instance(indices[k]));
-    }
-    
-    if(m_Stats!=null)
-      m_Stats.searchFinish();
-    
-    return neighbours;    
+    m_DistanceFunction.postProcessDistances(heap.getDistances());
   }
   
   /** 
@@ -322,6 +322,9 @@ public abstract class NearestNeighbourSearch implements Serializable,
     /** A link to the next neighbor instance. */
     public NeighborNode m_Next;
 
+    /** The index of the neighbor instance, -1 if unknown. */
+    public int m_Index = -1;
+
     /**
      * Create a new neighbor node.
      * 
@@ -335,6 +338,20 @@ public abstract class NearestNeighbourSearch implements Serializable,
       m_Next = next;
     }
 
+    /**
+     * Create a new neighbor node with a known index.
+     * 
+     * @param distance the distance to the neighbor
+     * @param instance the neighbor instance
+     * @param index the index of the neighbor instance
+     * @param next the next neighbor node
+     */
+    public NeighborNode(double distance, Instance instance, int index,
+      NeighborNode next) {
+      this(distance, instance, next);
+      m_Index = index;
+    }
+
     /**
      * Create a new neighbor node that doesn't link to any other nodes.
      * 
@@ -418,19 +435,32 @@ public abstract class NearestNeighbourSearch implements Serializable,
      * @param instance the neighboring instance
      */
     public void insertSorted(double distance, Instance instance) {
+      insertSorted(distance, instance, -1);
+    }
+
+    /**
+     * Inserts an instance neighbor with a known index into the list,
+     * maintaining the list sorted by distance.
+     * 
+     * @param distance the distance to the instance
+     * @param instance the neighboring instance
+     * @param index the index of the neighboring instance
+     */
+    public void insertSorted(double distance, Instance instance, int index) {
 
       if (isEmpty()) {
-        m_First = m_Last = new NeighborNode(distance, instance);
+        m_First = m_Last = new NeighborNode(distance, instance, index, null);
       } else {
         NeighborNode current = m_First;
         if (distance < m_First.m_Distance) {// Insert at head
-          m_First = new NeighborNode(distance, instance, m_First);
+          m_First = new NeighborNode(distance, instance, index, m_First);
         } else { // Insert further down the list
           for (; (current.m_Next != null)
             && (current.m_Next.m_Distance < distance); current = current.m_Next) {
             ;
           }
-          current.m_Next = new NeighborNode(distance, instance, current.m_Next);
+          current.m_Next = new NeighborNode(distance, instance, index,
+            current.m_Next);
           if (current.equals(m_Last)) {
             m_Last = current.m_Next;
           }
@@ -738,6 +768,41 @@ public abstract class NearestNeighbourSearch implements Serializable,
    */
   public abstract double[] getDistances() throws Exception;
 
+  /**
+   * Finds the k nearest neighbours of the supplied instance and stores their
+   * indices in the current neighbourhood and their (post-processed) distances
+   * in the given buffer, nearest first. More than k neighbours are returned
+   * if there are several at the distance of the kth nearest one. Unlike
+   * kNearestNeighbours(Instance, int), this method does not change the state
+   * of the search, so several threads can query the same search at once, each
+   * with its own buffer, as long as the neighbourhood is not modified
+   * concurrently.
+   *
+   * Only available if supportsNeighbourBuffers() returns true.
+   *
+   * @param target the instance to find the k nearest neighbours for
+   * @param k the number of nearest neighbours to find
+   * @param result the buffer receiving the neighbours
+   * @return the number of neighbours found
+   * @throws Exception if the neighbours could not be found
+   */
+  public int kNearestNeighbours(Instance target, int k, NeighbourBuffer result)
+    throws Exception {
+    throw new UnsupportedOperationException(getClass().getName()
+      + " does not support queries into neighbour buffers.");
+  }
+
+  /**
+   * Returns whether kNearestNeighbours(Instance, int, NeighbourBuffer) is
+   * supported. Callers that query the search concurrently should fall back to
+   * kNearestNeighbours(Instance, int) otherwise.
+   *
+   * @return true if queries into neighbour buffers are supported
+   */
+  public boolean supportsNeighbourBuffers() {
+    return false;
+  }
+
   /**
    * Updates the NearNeighbourSearch algorithm for the new added instance. P.S.:
    * The method assumes the instance has already been added to the m_Instances
@@ -0,0 +1,346 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    NeighbourBuffer.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.neighboursearch;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Caller-owned result buffer for
+ * {@link NearestNeighbourSearch#kNearestNeighbours(weka.core.Instance, int, NeighbourBuffer)}.
+ * Holds the indices (in the neighbourhood of the search) and the distances of
+ * the neighbours found by the last query, nearest first, together with the
+ * scratch space the search needs. The arrays only grow, so a buffer that is
+ * reused for the queries of one thread does not allocate once it has reached
+ * its working size. A buffer must not be shared between threads.
+ * <p/>
+ * The internal heap behaves exactly like the heap of
+ * {@link NearestNeighbourSearch}, i.e., more than k neighbours are kept if
+ * several are at the distance of the kth nearest one.
+ *
+ * @version $Revision$
+ */
+public class NeighbourBuffer implements RevisionHandler {
+
+  /** the indices of the neighbours found. */
+  protected int[] m_Indices;
+
+  /** the distances of the neighbours found. */
+  protected double[] m_Distances;
+
+  /** the number of neighbours found. */
+  protected int m_Size;
+
+  /** the indices in the heap (1-based). */
+  protected int[] m_HeapIndices;
+
+  /** the distances in the heap (1-based). */
+  protected double[] m_HeapDistances;
+
+  /** the number of elements in the heap. */
+  protected int m_HeapSize;
+
+  /** the indices of the further neighbours at the kth distance. */
+  protected int[] m_KthIndices;
+
+  /** the distances of the further neighbours at the kth distance. */
+  protected double[] m_KthDistances;
+
+  /** the number of further neighbours at the kth distance. */
+  protected int m_KthSize;
+
+  /**
+   * Creates a buffer for single nearest neighbour queries.
+   */
+  public NeighbourBuffer() {
+    this(1);
+  }
+
+  /**
+   * Creates a buffer for queries of the given number of neighbours.
+   *
+   * @param k the expected number of neighbours
+   */
+  public NeighbourBuffer(int k) {
+    k = Math.max(k, 1);
+    m_Indices = new int[k];
+    m_Distances = new double[k];
+    m_HeapIndices = new int[k + 1];
+    m_HeapDistances = new double[k + 1];
+    m_KthIndices = new int[10];
+    m_KthDistances = new double[10];
+  }
+
+  /**
+   * Returns the number of neighbours found by the last query.
+   *
+   * @return the number of neighbours
+   */
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the index of the given neighbour in the neighbourhood of the
+   * search.
+   *
+   * @param i the rank of the neighbour, 0 is the nearest
+   * @return the index of the neighbour
+   */
+  public int index(int i) {
+    return m_Indices[i];
+  }
+
+  /**
+   * Returns the distance of the given neighbour.
+   *
+   * @param i the rank of the neighbour, 0 is the nearest
+   * @return the distance of the neighbour
+   */
+  public double distance(int i) {
+    return m_Distances[i];
+  }
+
+  /**
+   * Returns the array with the indices of the neighbours. Only the first
+   * {@link #size()} entries are valid.
+   *
+   * @return the indices
+   */
+  public int[] getIndices() {
+    return m_Indices;
+  }
+
+  /**
+   * Returns the array with the distances of the neighbours. Only the first
+   * {@link #size()} entries are valid.
+   *
+   * @return the distances
+   */
+  public double[] getDistances() {
+    return m_Distances;
+  }
+
+  /**
+   * Prepares the heap for a query of k neighbours.
+   *
+   * @param k the number of neighbours to find
+   */
+  protected void startHeap(int k) {
+    if (m_HeapIndices.length < k + 1) {
+      m_HeapIndices = new int[k + 1];
+      m_HeapDistances = new double[k + 1];
+    }
+    m_HeapSize = 0;
+    m_KthSize = 0;
+    m_Size = 0;
+  }
+
+  /**
+   * Returns the number of elements in the heap.
+   *
+   * @return the size of the heap
+   */
+  protected int heapSize() {
+    return m_HeapSize;
+  }
+
+  /**
+   * Returns the number of elements in the heap plus the further neighbours
+   * at the kth distance.
+   *
+   * @return the total size
+   */
+  protected int totalSize() {
+    return m_HeapSize + m_KthSize;
+  }
+
+  /**
+   * Returns the largest distance in the heap.
+   *
+   * @return the distance of the head element
+   */
+  protected double peekDistance() {
+    return m_HeapDistances[1];
+  }
+
+  /**
+   * Adds an element to the heap.
+   *
+   * @param index the index of the instance
+   * @param distance the distance of the instance
+   */
+  protected void put(int index, double distance) {
+    m_HeapSize++;
+    m_HeapIndices[m_HeapSize] = index;
+    m_HeapDistances[m_HeapSize] = distance;
+    upheap();
+  }
+
+  /**
+   * Replaces the head element of the heap, keeping the old head as further
+   * neighbour at the kth distance if the new head is at the same distance.
+   *
+   * @param index the index of the instance
+   * @param distance the distance of the instance
+   * @throws Exception if the distance is larger than the one of the head
+   */
+  protected void putBySubstitute(int index, double distance) throws Exception {
+    int headIndex = m_HeapIndices[1];
+    double headDistance = m_HeapDistances[1];
+    removeHead();
+    put(index, distance);
+    if (headDistance == m_HeapDistances[1]) {
+      putKthNearest(headIndex, headDistance);
+    } else if (headDistance > m_HeapDistances[1]) {
+      m_KthSize = 0;
+    } else {
+      throw new Exception("The substituted element is smaller than the "
+        + "head element. put() should have been called "
+        + "in place of putBySubstitute()");
+    }
+  }
+
+  /**
+   * Stores a further neighbour at the kth distance.
+   *
+   * @param index the index of the instance
+   * @param distance the distance of the instance
+   */
+  protected void putKthNearest(int index, double distance) {
+    if (m_KthSize == m_KthIndices.length) {
+      int[] indices = new int[2 * m_KthSize];
+      double[] distances = new double[2 * m_KthSize];
+      System.arraycopy(m_KthIndices, 0, indices, 0, m_KthSize);
+      System.arraycopy(m_KthDistances, 0, distances, 0, m_KthSize);
+      m_KthIndices = indices;
+      m_KthDistances = distances;
+    }
+    m_KthIndices[m_KthSize] = index;
+    m_KthDistances[m_KthSize] = distance;
+    m_KthSize++;
+  }
+
+  /**
+   * Moves the contents of the heap into the result arrays, nearest first.
+   */
+  protected void finish() {
+    int total = totalSize();
+    if (m_Indices.length < total) {
+      m_Indices = new int[total];
+      m_Distances = new double[total];
+    }
+    int i = total - 1;
+    while (m_KthSize > 0) {
+      m_KthSize--;
+      m_Indices[i] = m_KthIndices[m_KthSize];
+      m_Distances[i] = m_KthDistances[m_KthSize];
+      i--;
+    }
+    while (m_HeapSize > 0) {
+      m_Indices[i] = m_HeapIndices[1];
+      m_Distances[i] = m_HeapDistances[1];
+      removeHead();
+      i--;
+    }
+    m_Size = total;
+  }
+
+  /**
+   * Sets the result to the given neighbours, used by searches that collect
+   * their neighbours without the heap.
+   *
+   * @param size the number of neighbours
+   */
+  protected void setSize(int size) {
+    if (m_Indices.length < size) {
+      m_Indices = new int[size];
+      m_Distances = new double[size];
+    }
+    m_Size = size;
+  }
+
+  /**
+   * Removes the head element of the heap.
+   */
+  protected void removeHead() {
+    m_HeapIndices[1] = m_HeapIndices[m_HeapSize];
+    m_HeapDistances[1] = m_HeapDistances[m_HeapSize];
+    m_HeapSize--;
+    downheap();
+  }
+
+  /**
+   * Swaps two elements of the heap.
+   *
+   * @param i the first position
+   * @param j the second position
+   */
+  protected void swap(int i, int j) {
+    int index = m_HeapIndices[i];
+    double distance = m_HeapDistances[i];
+    m_HeapIndices[i] = m_HeapIndices[j];
+    m_HeapDistances[i] = m_HeapDistances[j];
+    m_HeapIndices[j] = index;
+    m_HeapDistances[j] = distance;
+  }
+
+  /**
+   * Moves the last element of the heap up to its position.
+   */
+  protected void upheap() {
+    int i = m_HeapSize;
+    while (i > 1 && m_HeapDistances[i] > m_HeapDistances[i / 2]) {
+      swap(i, i / 2);
+      i = i / 2;
+    }
+  }
+
+  /**
+   * Moves the head element of the heap down to its position.
+   */
+  protected void downheap() {
+    double[] dist = m_HeapDistances;
+    int i = 1;
+    while (((2 * i) <= m_HeapSize && dist[i] < dist[2 * i])
+      || ((2 * i + 1) <= m_HeapSize && dist[i] < dist[2 * i + 1])) {
+      int child;
+      if ((2 * i + 1) <= m_HeapSize && dist[2 * i] <= dist[2 * i + 1]) {
+        child = 2 * i + 1;
+      } else {
+        child = 2 * i;
+      }
+      swap(i, child);
+      i = child;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -52,6 +52,13 @@ import javax.swing.*;
  *  (default temp file)
  * </pre>
  * 
+ * <pre>
+ * -resume
+ *  Resume an interrupted experiment: results whose keys are
+ *  listed in the index file (output file + .keys) are skipped
+ *  and new results are appended to the output file.
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
@@ -75,6 +82,12 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   /** The destination for results (typically connected to the output file) */
   protected transient PrintWriter m_Out = new PrintWriter(System.out, true);
 
+  /** Whether to resume from the results of a previous, interrupted run */
+  protected boolean m_Resume = false;
+
+  /** The index of completed result keys, null if not resuming */
+  protected transient ResultKeyIndex m_KeyIndex;
+
   /**
    * Sets temporary file.
    */
@@ -111,12 +124,19 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   @Override
   public Enumeration<Option> listOptions() {
 
-    Vector<Option> newVector = new Vector<Option>(1);
+    Vector<Option> newVector = new Vector<Option>(2);
 
     newVector.addElement(new Option(
       "\tThe filename where output will be stored. Use - for stdout.\n"
         + "\t(default temp file)", "O", 1, "-O <file name>"));
 
+    newVector.addElement(new Option(
+      "\tResume an interrupted experiment: results whose keys are\n"
+        + "\tlisted in the index file (output file + "
+        + ResultKeyIndex.FILE_EXTENSION + ") are skipped\n"
+        + "\tand new results are appended to the output file.", "resume", 0,
+      "-resume"));
+
     return newVector.elements();
   }
 
@@ -133,6 +153,13 @@ public class CSVResultListener implements ResultListener, OptionHandler,
    *  (default temp file)
    * </pre>
    * 
+   * <pre>
+   * -resume
+   *  Resume an interrupted experiment: results whose keys are
+   *  listed in the index file (output file + .keys) are skipped
+   *  and new results are appended to the output file.
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -141,6 +168,8 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   @Override
   public void setOptions(String[] options) throws Exception {
 
+    setResume(Utils.getFlag("resume", options));
+
     String fName = Utils.getOption('O', options);
     if (fName.length() != 0) {
       setOutputFile(new File(fName));
@@ -166,15 +195,16 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   @Override
   public String[] getOptions() {
 
-    String[] options = new String[2];
-    int current = 0;
+    Vector<String> options = new Vector<String>();
 
-    options[current++] = "-O";
-    options[current++] = getOutputFile().getName();
-    while (current < options.length) {
-      options[current++] = "";
+    options.add("-O");
+    options.add(getOutputFile().getName());
+
+    if (getResume()) {
+      options.add("-resume");
     }
-    return options;
+
+    return options.toArray(new String[options.size()]);
   }
 
   /**
@@ -229,6 +259,61 @@ public class CSVResultListener implements ResultListener, OptionHandler,
     m_OutputFileName = name;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String resumeTipText() {
+    return "If enabled, the keys of completed results are logged to an index "
+      + "file next to the output file, and results already listed there "
+      + "are not generated again when the experiment is restarted.";
+  }
+
+  /**
+   * Get whether an interrupted experiment is resumed.
+   * 
+   * @return true if completed results are skipped
+   */
+  public boolean getResume() {
+    return m_Resume;
+  }
+
+  /**
+   * Set whether an interrupted experiment is resumed.
+   * 
+   * @param value true if completed results are to be skipped
+   */
+  public void setResume(boolean value) {
+    m_Resume = value;
+  }
+
+  /**
+   * Opens the index of completed result keys, if resuming is enabled and the
+   * results are written to a file.
+   * 
+   * @param rp the ResultProducer that will generate the results
+   * @param storeResults whether the results have to be logged as well
+   * @param resumable whether the output of a previous run can be continued
+   * @return true if the results of a previous run are resumed
+   * @throws Exception if the index cannot be opened
+   */
+  protected boolean openKeyIndex(ResultProducer rp, boolean storeResults,
+    boolean resumable) throws Exception {
+
+    m_KeyIndex = null;
+    if (!getResume() || (m_OutputFile == null)
+      || (m_OutputFile.getName().equals("-"))) {
+      return false;
+    }
+    m_KeyIndex = new ResultKeyIndex(
+      ResultKeyIndex.indexFileFor(m_OutputFile), storeResults);
+    boolean resumed = resumable && m_KeyIndex.exists();
+    m_KeyIndex.open(rp, resumed);
+    return resumed;
+  }
+
   /**
    * Prepare for the results to be received.
    * 
@@ -239,13 +324,17 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   public void preProcess(ResultProducer rp) throws Exception {
 
     m_RP = rp;
+    boolean resumed = openKeyIndex(rp, false, (m_OutputFile != null)
+      && (m_OutputFile.length() > 0));
     if ((m_OutputFile == null) || (m_OutputFile.getName().equals("-"))) {
       m_Out = new PrintWriter(System.out, true);
     } else {
       m_Out = new PrintWriter(new BufferedOutputStream(new FileOutputStream(
-        m_OutputFile)), true);
+        m_OutputFile, resumed)), true);
+    }
+    if (!resumed) {
+      printResultNames(m_RP);
     }
-    printResultNames(m_RP);
   }
 
   /**
@@ -261,6 +350,9 @@ public class CSVResultListener implements ResultListener, OptionHandler,
     if (!(m_OutputFile == null) && !(m_OutputFile.getName().equals("-"))) {
       m_Out.close();
     }
+    if (m_KeyIndex != null) {
+      m_KeyIndex.close();
+    }
   }
 
   /**
@@ -314,11 +406,16 @@ public class CSVResultListener implements ResultListener, OptionHandler,
       }
     }
     m_Out.println("");
+
+    // the row is flushed, now it can be marked as completed
+    if ((m_KeyIndex != null) && (result != null)) {
+      m_KeyIndex.add(key, null);
+    }
   }
 
   /**
-   * Always says a result is required. If this is the first call, prints out the
-   * header for the csv output.
+   * Says a result is required, unless its key is listed in the index of
+   * results completed by a previous run that is being resumed.
    * 
    * @param rp the ResultProducer wanting to generate the result
    * @param key The key for which a result may be needed.
@@ -329,6 +426,9 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   public boolean isResultRequired(ResultProducer rp, Object[] key)
     throws Exception {
 
+    if (m_KeyIndex != null) {
+      return !m_KeyIndex.contains(key);
+    }
     return true;
   }
 
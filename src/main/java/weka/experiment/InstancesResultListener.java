@@ -50,6 +50,13 @@ import weka.core.Utils;
  *  (default temp file)
  * </pre>
  * 
+ * <pre>
+ * -resume
+ *  Resume an interrupted experiment: results whose keys are
+ *  listed in the index file (output file + .keys) are skipped
+ *  and new results are appended to the output file.
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
@@ -99,7 +106,9 @@ public class InstancesResultListener extends CSVResultListener {
   public String globalInfo() {
     return "Outputs the received results in arff format to "
       + "a Writer. All results must be received before the instances can be "
-      + "written out.";
+      + "written out. When resuming, the results are logged to the index "
+      + "file as they arrive, so the results of an interrupted run can be "
+      + "included in the output.";
   }
 
   /**
@@ -113,6 +122,9 @@ public class InstancesResultListener extends CSVResultListener {
   public void preProcess(ResultProducer rp) throws Exception {
 
     m_RP = rp;
+    // the arff file is only written at the end, so the results are replayed
+    // from the log of the index
+    boolean resumed = openKeyIndex(rp, true, true);
     if ((m_OutputFile == null) || (m_OutputFile.getName().equals("-"))) {
       m_Out = new PrintWriter(System.out, true);
     } else {
@@ -145,6 +157,16 @@ public class InstancesResultListener extends CSVResultListener {
         throw new Exception("Unknown attribute type in column " + (i + 1));
       }
     }
+
+    if (resumed) {
+      for (Object[] row : m_KeyIndex.getResults()) {
+        Object[] key = new Object[keyTypes.length];
+        Object[] result = new Object[resultTypes.length];
+        System.arraycopy(row, 0, key, 0, key.length);
+        System.arraycopy(row, key.length, result, 0, result.length);
+        addInstance(key, result);
+      }
+    }
   }
 
   /**
@@ -204,6 +226,9 @@ public class InstancesResultListener extends CSVResultListener {
     if (!(m_OutputFile == null) && !(m_OutputFile.getName().equals("-"))) {
       m_Out.close();
     }
+    if (m_KeyIndex != null) {
+      m_KeyIndex.close();
+    }
   }
 
   /**
@@ -222,6 +247,20 @@ public class InstancesResultListener extends CSVResultListener {
       throw new Error("Unrecognized ResultProducer sending results!!");
     }
 
+    addInstance(key, result);
+    if ((m_KeyIndex != null) && (result != null)) {
+      m_KeyIndex.add(key, result);
+    }
+  }
+
+  /**
+   * Turns a result into an instance and adjusts the header information.
+   * 
+   * @param key The key for the results.
+   * @param result The actual results.
+   */
+  protected void addInstance(Object[] key, Object[] result) {
+
     Instance newInst = new DenseInstance(m_AttributeTypes.length);
     for (int i = 0; i < m_AttributeTypes.length; i++) {
       Object val = null;
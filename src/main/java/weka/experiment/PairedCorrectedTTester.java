@@ -127,6 +127,12 @@ import weka.core.Utils;
  *  Produce table comparisons output suitable for GNUPlot
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads used for computing the pairwise tests.
+ *  (default 1 - i.e. no parallelism, 0 - all available cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
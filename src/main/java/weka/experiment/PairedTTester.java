@@ -26,6 +26,12 @@ import java.io.FileReader;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.Instance;
@@ -103,6 +109,12 @@ import weka.core.Utils;
  *  Produce table comparisons output suitable for GNUPlot
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads used for computing the pairwise tests.
+ *  (default 1 - i.e. no parallelism, 0 - all available cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
@@ -164,15 +176,156 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
   /** Stores a vector for each resultset holding all instances in each set */
   protected ArrayList<Resultset> m_Resultsets = new ArrayList<Resultset>();
 
+  /** Maps the values of the resultset key columns to the resultset index */
+  protected HashMap<KeyValues, Integer> m_ResultsetIndex =
+    new HashMap<KeyValues, Integer>();
+
   /** Indicates whether the instances have been partitioned */
   protected boolean m_ResultsetsValid;
 
+  /** The statistics computed since the instances have been partitioned */
+  protected transient Map<StatisticsKey, PairedStats> m_StatisticsCache;
+
+  /** The number of threads used for computing the pairwise tests */
+  protected int m_NumExecutionSlots = 1;
+
   /** Indicates whether standard deviations should be displayed */
   protected boolean m_ShowStdDevs = false;
 
   /** the instance of the class to produce the output. */
   protected ResultMatrix m_ResultMatrix = new ResultMatrixPlainText();
 
+  /**
+   * The values of an instance in a set of key columns, used for looking up
+   * resultsets and datasets by hashing instead of comparing against every
+   * template.
+   */
+  protected static class KeyValues implements RevisionHandler, Serializable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = -4447285926618254106L;
+
+    /** the values in the key columns */
+    protected double[] m_Values;
+
+    /** the hash code */
+    protected int m_HashCode;
+
+    /**
+     * Constructor
+     * 
+     * @param inst the instance
+     * @param columns the key columns
+     */
+    public KeyValues(Instance inst, int[] columns) {
+
+      m_Values = new double[columns.length];
+      for (int i = 0; i < columns.length; i++) {
+        // adding 0.0 turns -0.0 into 0.0, which are equal as keys
+        m_Values[i] = inst.value(columns[i]) + 0.0;
+      }
+      m_HashCode = Arrays.hashCode(m_Values);
+    }
+
+    @Override
+    public int hashCode() {
+      return m_HashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+      if (!(o instanceof KeyValues)) {
+        return false;
+      }
+      KeyValues other = (KeyValues) o;
+      if (other.m_Values.length != m_Values.length) {
+        return false;
+      }
+      for (int i = 0; i < m_Values.length; i++) {
+        if (other.m_Values[i] != m_Values[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the revision string.
+     * 
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  }
+
+  /** Identifies the statistics of a pair of resultsets on a dataset */
+  protected static class StatisticsKey implements RevisionHandler,
+    Serializable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = 2950340383410914178L;
+
+    /** the index of the dataset specifier */
+    protected int m_Dataset;
+
+    /** the index of the first resultset */
+    protected int m_Resultset1;
+
+    /** the index of the second resultset */
+    protected int m_Resultset2;
+
+    /** the index of the comparison column */
+    protected int m_Column;
+
+    /**
+     * Constructor
+     * 
+     * @param dataset the index of the dataset specifier
+     * @param resultset1 the index of the first resultset
+     * @param resultset2 the index of the second resultset
+     * @param column the index of the comparison column
+     */
+    public StatisticsKey(int dataset, int resultset1, int resultset2,
+      int column) {
+
+      m_Dataset = dataset;
+      m_Resultset1 = resultset1;
+      m_Resultset2 = resultset2;
+      m_Column = column;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((m_Dataset * 31 + m_Resultset1) * 31 + m_Resultset2) * 31
+        + m_Column;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+      if (!(o instanceof StatisticsKey)) {
+        return false;
+      }
+      StatisticsKey other = (StatisticsKey) o;
+      return other.m_Dataset == m_Dataset
+        && other.m_Resultset1 == m_Resultset1
+        && other.m_Resultset2 == m_Resultset2 && other.m_Column == m_Column;
+    }
+
+    /**
+     * Returns the revision string.
+     * 
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  }
+
   /** A list of unique "dataset" specifiers that have been observed */
   protected class DatasetSpecifiers implements RevisionHandler, Serializable {
 
@@ -182,35 +335,34 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     /** the specifiers that have been observed */
     ArrayList<Instance> m_Specifiers = new ArrayList<Instance>();
 
+    /** maps the values of the dataset key columns to the specifier index */
+    HashMap<KeyValues, Integer> m_Index = new HashMap<KeyValues, Integer>();
+
     /**
      * Removes all specifiers.
      */
     protected void removeAllSpecifiers() {
 
       m_Specifiers.clear();
+      m_Index.clear();
     }
 
     /**
      * Add an instance to the list of specifiers (if necessary)
      * 
      * @param inst the instance to add
+     * @return the index of the specifier matching the instance
      */
-    protected void add(Instance inst) {
-
-      for (int i = 0; i < m_Specifiers.size(); i++) {
-        Instance specifier = m_Specifiers.get(i);
-        boolean found = true;
-        for (int m_DatasetKeyColumn : m_DatasetKeyColumns) {
-          if (inst.value(m_DatasetKeyColumn) != specifier
-            .value(m_DatasetKeyColumn)) {
-            found = false;
-          }
-        }
-        if (found) {
-          return;
-        }
+    protected int add(Instance inst) {
+
+      KeyValues key = new KeyValues(inst, m_DatasetKeyColumns);
+      Integer index = m_Index.get(key);
+      if (index == null) {
+        index = m_Specifiers.size();
+        m_Specifiers.add(inst);
+        m_Index.put(key, index);
       }
-      m_Specifiers.add(inst);
+      return index;
     }
 
     /**
@@ -349,6 +501,9 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     /** the dataset */
     ArrayList<Dataset> m_Datasets;
 
+    /** maps the values of the dataset key columns to the dataset */
+    HashMap<KeyValues, Dataset> m_DatasetIndex;
+
     /**
      * Constructir
      * 
@@ -358,6 +513,7 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
       m_Template = template;
       m_Datasets = new ArrayList<Dataset>();
+      m_DatasetIndex = new HashMap<KeyValues, Dataset>();
       add(template);
     }
 
@@ -410,10 +566,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
      */
     public ArrayList<Instance> dataset(Instance inst) {
 
-      for (int i = 0; i < m_Datasets.size(); i++) {
-        if (m_Datasets.get(i).matchesTemplate(inst)) {
-          return m_Datasets.get(i).contents();
-        }
+      Dataset dataset = m_DatasetIndex.get(new KeyValues(inst,
+        m_DatasetKeyColumns));
+      if (dataset != null) {
+        return dataset.contents();
       }
       return null;
     }
@@ -422,17 +578,20 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
      * Adds an instance to this resultset
      * 
      * @param newInst a value of type 'Instance'
+     * @return the dataset the instance was added to
      */
-    public void add(Instance newInst) {
+    public Dataset add(Instance newInst) {
 
-      for (int i = 0; i < m_Datasets.size(); i++) {
-        if (m_Datasets.get(i).matchesTemplate(newInst)) {
-          m_Datasets.get(i).add(newInst);
-          return;
-        }
+      KeyValues key = new KeyValues(newInst, m_DatasetKeyColumns);
+      Dataset dataset = m_DatasetIndex.get(key);
+      if (dataset != null) {
+        dataset.add(newInst);
+        return dataset;
       }
       Dataset newDataset = new Dataset(newInst);
       m_Datasets.add(newDataset);
+      m_DatasetIndex.put(key, newDataset);
+      return newDataset;
     }
 
     /**
@@ -547,40 +706,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
     // Split the data up into result sets
     m_Resultsets.clear();
+    m_ResultsetIndex.clear();
     m_DatasetSpecifiers.removeAllSpecifiers();
     for (int i = 0; i < m_Instances.numInstances(); i++) {
-      Instance current = m_Instances.instance(i);
-      if (current.isMissing(m_RunColumn)) {
-        throw new Exception("Instance has missing value in run " + "column!\n"
-          + current);
-      }
-      for (int m_ResultsetKeyColumn : m_ResultsetKeyColumns) {
-        if (current.isMissing(m_ResultsetKeyColumn)) {
-          throw new Exception("Instance has missing value in resultset key "
-            + "column " + (m_ResultsetKeyColumn + 1) + "!\n" + current);
-        }
-      }
-      for (int m_DatasetKeyColumn : m_DatasetKeyColumns) {
-        if (current.isMissing(m_DatasetKeyColumn)) {
-          throw new Exception("Instance has missing value in dataset key "
-            + "column " + (m_DatasetKeyColumn + 1) + "!\n" + current);
-        }
-      }
-      boolean found = false;
-      for (int j = 0; j < m_Resultsets.size(); j++) {
-        Resultset resultset = m_Resultsets.get(j);
-        if (resultset.matchesTemplate(current)) {
-          resultset.add(current);
-          found = true;
-          break;
-        }
-      }
-      if (!found) {
-        Resultset resultset = new Resultset(current);
-        m_Resultsets.add(resultset);
-      }
-
-      m_DatasetSpecifiers.add(current);
+      addToResultsets(m_Instances.instance(i));
     }
 
     // Tell each resultset to sort on the run column
@@ -593,9 +722,232 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       resultset.sort(m_RunColumn);
     }
 
+    clearStatistics();
     m_ResultsetsValid = true;
   }
 
+  /**
+   * Adds an instance to the resultset and the dataset specifier matching its
+   * key columns, creating them if necessary.
+   * 
+   * @param current the instance to add
+   * @return the dataset the instance was added to
+   * @throws Exception if the instance has missing key values
+   */
+  protected Dataset addToResultsets(Instance current) throws Exception {
+
+    if (current.isMissing(m_RunColumn)) {
+      throw new Exception("Instance has missing value in run " + "column!\n"
+        + current);
+    }
+    for (int m_ResultsetKeyColumn : m_ResultsetKeyColumns) {
+      if (current.isMissing(m_ResultsetKeyColumn)) {
+        throw new Exception("Instance has missing value in resultset key "
+          + "column " + (m_ResultsetKeyColumn + 1) + "!\n" + current);
+      }
+    }
+    for (int m_DatasetKeyColumn : m_DatasetKeyColumns) {
+      if (current.isMissing(m_DatasetKeyColumn)) {
+        throw new Exception("Instance has missing value in dataset key "
+          + "column " + (m_DatasetKeyColumn + 1) + "!\n" + current);
+      }
+    }
+
+    Dataset dataset;
+    KeyValues key = new KeyValues(current, m_ResultsetKeyColumns);
+    Integer index = m_ResultsetIndex.get(key);
+    if (index != null) {
+      dataset = m_Resultsets.get(index).add(current);
+    } else {
+      Resultset resultset = new Resultset(current);
+      m_ResultsetIndex.put(key, m_Resultsets.size());
+      m_Resultsets.add(resultset);
+      dataset = resultset.m_Datasets.get(0);
+    }
+
+    m_DatasetSpecifiers.add(current);
+    return dataset;
+  }
+
+  /**
+   * Appends further results, e.g., the results of runs that finished after
+   * the previous test. If the data has already been partitioned, only the
+   * datasets that receive new results are sorted again and only the cached
+   * statistics that involve them are discarded.
+   * 
+   * @param results the results to append, with the same structure as the
+   *          current ones
+   * @throws Exception if the results are not compatible or have missing key
+   *           values
+   */
+  public void addResults(Instances results) throws Exception {
+
+    if (m_Instances == null) {
+      setInstances(new Instances(results));
+      return;
+    }
+    String msg = m_Instances.equalHeadersMsg(results);
+    if (msg != null) {
+      throw new Exception("Results are not compatible with the current "
+        + "results: " + msg);
+    }
+    if (!m_ResultsetsValid) {
+      for (int i = 0; i < results.numInstances(); i++) {
+        m_Instances.add(results.instance(i));
+      }
+      return;
+    }
+
+    Set<Dataset> changed = new HashSet<Dataset>();
+    for (int i = 0; i < results.numInstances(); i++) {
+      m_Instances.add(results.instance(i));
+      changed.add(addToResultsets(m_Instances.lastInstance()));
+    }
+    for (Dataset dataset : changed) {
+      if (m_FoldColumn >= 0) {
+        dataset.sort(m_FoldColumn);
+      }
+      dataset.sort(m_RunColumn);
+    }
+
+    // discard the statistics of the pairs that involve a changed dataset
+    if (m_StatisticsCache != null) {
+      Iterator<StatisticsKey> iter = m_StatisticsCache.keySet().iterator();
+      while (iter.hasNext()) {
+        StatisticsKey key = iter.next();
+        Instance specifier = m_DatasetSpecifiers.specifier(key.m_Dataset);
+        if (isChanged(changed, key.m_Resultset1, specifier)
+          || isChanged(changed, key.m_Resultset2, specifier)) {
+          iter.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether the dataset of the given resultset that matches the
+   * specifier is among the changed ones.
+   * 
+   * @param changed the changed datasets
+   * @param resultsetIndex the index of the resultset
+   * @param specifier the dataset specifier
+   * @return true if the dataset has changed
+   */
+  protected boolean isChanged(Set<Dataset> changed, int resultsetIndex,
+    Instance specifier) {
+
+    Dataset dataset = m_Resultsets.get(resultsetIndex).m_DatasetIndex
+      .get(new KeyValues(specifier, m_DatasetKeyColumns));
+    return dataset != null && changed.contains(dataset);
+  }
+
+  /**
+   * Discards all cached statistics.
+   */
+  protected void clearStatistics() {
+
+    if (m_StatisticsCache != null) {
+      m_StatisticsCache.clear();
+    }
+  }
+
+  /**
+   * Returns the statistics of a pair of resultsets on a dataset, computing
+   * them with calculateStatistics only if they haven't been cached yet.
+   * 
+   * @param datasetIndex the index of the dataset specifier
+   * @param resultset1Index the index of the first resultset
+   * @param resultset2Index the index of the second resultset
+   * @param comparisonColumn the column containing values to compare
+   * @return the results of the paired comparison
+   * @throws Exception if an error occurs
+   */
+  protected PairedStats getStatistics(int datasetIndex, int resultset1Index,
+    int resultset2Index, int comparisonColumn) throws Exception {
+
+    if (!m_ResultsetsValid) {
+      prepareData();
+    }
+    if (m_StatisticsCache == null) {
+      m_StatisticsCache = new ConcurrentHashMap<StatisticsKey, PairedStats>();
+    }
+    StatisticsKey key = new StatisticsKey(datasetIndex, resultset1Index,
+      resultset2Index, comparisonColumn);
+    PairedStats result = m_StatisticsCache.get(key);
+    if (result == null) {
+      result = calculateStatistics(
+        m_DatasetSpecifiers.specifier(datasetIndex), resultset1Index,
+        resultset2Index, comparisonColumn);
+      m_StatisticsCache.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Computes the statistics of the given pairs of resultsets on all datasets
+   * in parallel and caches them, if more than one execution slot is
+   * available. Failing comparisons are skipped here, they are reported when
+   * the statistics are requested with getStatistics.
+   * 
+   * @param pairs the pairs of resultset indices
+   * @param comparisonColumn the column containing values to compare
+   * @throws Exception if an error occurs
+   */
+  protected void computeStatistics(List<int[]> pairs,
+    final int comparisonColumn) throws Exception {
+
+    final List<int[]> work = new ArrayList<int[]>();
+    for (int k = 0; k < getNumDatasets(); k++) {
+      for (int[] pair : pairs) {
+        work.add(new int[] { k, pair[0], pair[1] });
+      }
+    }
+    int numThreads = m_NumExecutionSlots > 0 ? m_NumExecutionSlots : Runtime
+      .getRuntime().availableProcessors();
+    numThreads = Math.min(numThreads, work.size());
+    if (numThreads <= 1) {
+      return;
+    }
+    if (m_StatisticsCache == null) {
+      m_StatisticsCache = new ConcurrentHashMap<StatisticsKey, PairedStats>();
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int p = 0; p < numThreads; p++) {
+        final int start = (int) ((long) p * work.size() / numThreads);
+        final int end = (int) ((long) (p + 1) * work.size() / numThreads);
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int w = start; w < end; w++) {
+              int[] item = work.get(w);
+              try {
+                getStatistics(item[0], item[1], item[2], comparisonColumn);
+              } catch (Exception ex) {
+                // reported again when requested
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
   /**
    * Gets the number of datasets in the resultsets
    * 
@@ -831,6 +1183,13 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     int numResultsets = getNumResultsets();
     int[][] win = new int[numResultsets][numResultsets];
     // int [][] nonSigWin = new int [numResultsets][numResultsets];
+    List<int[]> pairs = new ArrayList<int[]>();
+    for (int i = 0; i < numResultsets; i++) {
+      for (int j = i + 1; j < numResultsets; j++) {
+        pairs.add(new int[] { i, j });
+      }
+    }
+    computeStatistics(pairs, comparisonColumn);
     for (int i = 0; i < numResultsets; i++) {
       for (int j = i + 1; j < numResultsets; j++) {
         System.err
@@ -838,8 +1197,8 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
         System.err.flush();
         for (int k = 0; k < getNumDatasets(); k++) {
           try {
-            PairedStats pairedStats = calculateStatistics(
-              m_DatasetSpecifiers.specifier(k), i, j, comparisonColumn);
+            PairedStats pairedStats = getStatistics(k, i, j,
+              comparisonColumn);
             if (pairedStats.differencesSignificance < 0) {
               win[i][j]++;
             } else if (pairedStats.differencesSignificance > 0) {
@@ -938,6 +1297,12 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
     double[] sortValues = new double[getNumDatasets()];
 
+    List<int[]> pairs = new ArrayList<int[]>();
+    for (int j = 0; j < getNumResultsets(); j++) {
+      pairs.add(new int[] { baseResultset, j });
+    }
+    computeStatistics(pairs, comparisonColumn);
+
     // determine max field width
     for (int i = 0; i < getNumDatasets(); i++) {
       sortValues[i] = Double.POSITIVE_INFINITY; // sorts skipped cols to end
@@ -947,8 +1312,7 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
           continue;
         }
         try {
-          PairedStats pairedStats = calculateStatistics(
-            m_DatasetSpecifiers.specifier(i), baseResultset, j,
+          PairedStats pairedStats = getStatistics(i, baseResultset, j,
             comparisonColumn);
           if (!Double.isInfinite(pairedStats.yStats.mean)
             && !Double.isNaN(pairedStats.yStats.mean)) {
@@ -961,8 +1325,7 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
           if (j == baseResultset) {
             if (getSortColumn() != -1) {
-              sortValues[i] = calculateStatistics(
-                m_DatasetSpecifiers.specifier(i), baseResultset, j,
+              sortValues[i] = getStatistics(i, baseResultset, j,
                 getSortColumn()).xStats.mean;
             } else {
               sortValues[i] = i;
@@ -1024,8 +1387,7 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       for (int j = 0; j < getNumResultsets(); j++) {
         try {
           // calc stats
-          PairedStats pairedStats = calculateStatistics(
-            m_DatasetSpecifiers.specifier(i), baseResultset, j,
+          PairedStats pairedStats = getStatistics(i, baseResultset, j,
             comparisonColumn);
 
           // count
@@ -1116,6 +1478,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     newVector.addElement(new Option(
       "\tProduce table comparisons output suitable for GNUPlot", "gnuplot", 0,
       "-gnuplot"));
+    newVector.addElement(new Option(
+      "\tNumber of threads used for computing the pairwise tests.\n"
+        + "\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+      "num-slots", 1, "-num-slots <num>"));
     newVector.addElement(new Option(
             "",
             "", 0, "\nOptions specific to result matrix "
@@ -1191,6 +1557,12 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
    *  Produce table comparisons output suitable for GNUPlot
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads used for computing the pairwise tests.
+   *  (default 1 - i.e. no parallelism, 0 - all available cores)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options an array containing options to set.
@@ -1263,6 +1635,13 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       generatorRange.setRanges(resultsetList);
     }
     setResultsetKeyColumns(generatorRange);
+
+    String slotsStr = Utils.getOption("num-slots", options);
+    if (slotsStr.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsStr));
+    } else {
+      setNumExecutionSlots(1);
+    }
   }
 
   /**
@@ -1292,6 +1671,11 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       options.add("-V");
     }
 
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
+
     options.add("-result-matrix");
     String spec = getResultMatrix().getClass().getName();
     if (getResultMatrix() instanceof OptionHandler) {
@@ -1367,6 +1751,27 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
   public void setSignificanceLevel(double newSignificanceLevel) {
 
     m_SignificanceLevel = newSignificanceLevel;
+    clearStatistics();
+  }
+
+  /**
+   * Get the number of threads used for computing the pairwise tests.
+   * 
+   * @return the number of threads, 0 for all available cores
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Set the number of threads used for computing the pairwise tests.
+   * 
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+
+    m_NumExecutionSlots = slots;
   }
 
   /**
@@ -1514,6 +1919,9 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     setRunColumn(tester.getRunColumn());
     setFoldColumn(tester.getFoldColumn());
     setSortColumn(tester.getSortColumn());
+    if (tester instanceof PairedTTester) {
+      setNumExecutionSlots(((PairedTTester) tester).getNumExecutionSlots());
+    }
   }
 
   /**
@@ -0,0 +1,338 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ResultKeyIndex.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.experiment;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Append-only log of the results that a file based result listener has
+ * completed. Each line holds the tab separated key fields of one result,
+ * optionally followed by its result fields. When an experiment is restarted
+ * the log is read back once into a hash set, so that
+ * {@link ResultListener#isResultRequired(ResultProducer, Object[])} can be
+ * answered in constant time and results of the interrupted run are not
+ * generated again.
+ * <p/>
+ * Fields are encoded with {@link Utils#quote(String)}, the missing value is
+ * written as an unquoted question mark.
+ *
+ * @version $Revision$
+ */
+public class ResultKeyIndex implements RevisionHandler {
+
+  /** The file suffix appended to the output file of the listener */
+  public static final String FILE_EXTENSION = ".keys";
+
+  /** the field separator */
+  protected static final char SEPARATOR = '\t';
+
+  /** The file backing the index */
+  protected File m_IndexFile;
+
+  /** Whether the result fields are logged together with the keys */
+  protected boolean m_StoreResults;
+
+  /** The keys of the completed results */
+  protected HashSet<String> m_Keys = new HashSet<String>();
+
+  /** The results read back from the log (key and result fields per row) */
+  protected List<Object[]> m_Results = new ArrayList<Object[]>();
+
+  /** The writer appending to the log */
+  protected PrintWriter m_Out;
+
+  /**
+   * Creates an index backed by the given file.
+   *
+   * @param indexFile the file holding the log
+   * @param storeResults whether to log the result fields as well
+   */
+  public ResultKeyIndex(File indexFile, boolean storeResults) {
+    m_IndexFile = indexFile;
+    m_StoreResults = storeResults;
+  }
+
+  /**
+   * Returns the index file that belongs to the given output file.
+   *
+   * @param outputFile the output file of the result listener
+   * @return the index file
+   */
+  public static File indexFileFor(File outputFile) {
+    return new File(outputFile.getPath() + FILE_EXTENSION);
+  }
+
+  /**
+   * Returns the file backing this index.
+   *
+   * @return the file
+   */
+  public File getIndexFile() {
+    return m_IndexFile;
+  }
+
+  /**
+   * Checks whether there is a log on disk that can be resumed.
+   *
+   * @return true if the index file exists
+   */
+  public boolean exists() {
+    return m_IndexFile.exists() && m_IndexFile.isFile();
+  }
+
+  /**
+   * Opens the index for appending. If resume is true, the keys (and results)
+   * of an existing log are read back first, otherwise the log is truncated.
+   *
+   * @param rp the result producer generating the results, used for
+   *          determining the field types
+   * @param resume whether to continue an existing log
+   * @throws Exception if the log cannot be read or opened
+   */
+  public void open(ResultProducer rp, boolean resume) throws Exception {
+    m_Keys.clear();
+    m_Results.clear();
+
+    if (resume && exists()) {
+      load(rp);
+    } else {
+      resume = false;
+    }
+    m_Out = new PrintWriter(new BufferedWriter(new FileWriter(m_IndexFile,
+      resume)));
+  }
+
+  /**
+   * Reads the keys (and results) of an existing log.
+   *
+   * @param rp the result producer, used for determining the field types
+   * @throws Exception if the log cannot be parsed
+   */
+  protected void load(ResultProducer rp) throws Exception {
+    Object[] keyTypes = rp.getKeyTypes();
+    Object[] resultTypes = m_StoreResults ? rp.getResultTypes() : new Object[0];
+    BufferedReader reader = new BufferedReader(new FileReader(m_IndexFile));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = split(line);
+        // incomplete line written by a crashed run
+        if (fields.length != keyTypes.length + resultTypes.length) {
+          continue;
+        }
+        m_Keys.add(join(fields, keyTypes.length));
+        if (m_StoreResults) {
+          Object[] row = new Object[fields.length];
+          for (int i = 0; i < fields.length; i++) {
+            Object type = (i < keyTypes.length) ? keyTypes[i]
+              : resultTypes[i - keyTypes.length];
+            row[i] = decode(fields[i], type);
+          }
+          m_Results.add(row);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns whether the result for the given key has already been logged.
+   *
+   * @param key the key of the result
+   * @return true if the result was completed before
+   */
+  public boolean contains(Object[] key) {
+    return m_Keys.contains(encode(key, key.length));
+  }
+
+  /**
+   * Appends a completed result to the log. The line is flushed immediately,
+   * so the log survives a crash of the experiment.
+   *
+   * @param key the key of the result
+   * @param result the result fields, only written if results are stored
+   */
+  public void add(Object[] key, Object[] result) {
+    String encodedKey = encode(key, key.length);
+    m_Keys.add(encodedKey);
+    m_Out.print(encodedKey);
+    if (m_StoreResults) {
+      for (Object element : result) {
+        m_Out.print(SEPARATOR);
+        m_Out.print(encode(element));
+      }
+    }
+    m_Out.println();
+    m_Out.flush();
+  }
+
+  /**
+   * Returns the rows (key fields followed by result fields) read back from
+   * the log when it was opened. Empty if results are not stored.
+   *
+   * @return the logged rows
+   */
+  public List<Object[]> getResults() {
+    return m_Results;
+  }
+
+  /**
+   * Returns the number of completed results.
+   *
+   * @return the number of keys
+   */
+  public int size() {
+    return m_Keys.size();
+  }
+
+  /**
+   * Closes the log.
+   */
+  public void close() {
+    if (m_Out != null) {
+      m_Out.close();
+      m_Out = null;
+    }
+  }
+
+  /**
+   * Deletes the log from disk.
+   *
+   * @throws IOException if the file cannot be deleted
+   */
+  public void delete() throws IOException {
+    close();
+    if (exists() && !m_IndexFile.delete()) {
+      throw new IOException("Cannot delete " + m_IndexFile);
+    }
+  }
+
+  /**
+   * Encodes the first fields of the given array as a line of the log.
+   *
+   * @param fields the fields
+   * @param count the number of fields to use
+   * @return the encoded fields
+   */
+  protected static String encode(Object[] fields, int count) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        result.append(SEPARATOR);
+      }
+      result.append(encode(fields[i]));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Joins the first of the already encoded fields of a log line.
+   *
+   * @param fields the encoded fields
+   * @param count the number of fields to use
+   * @return the joined fields
+   */
+  protected static String join(String[] fields, int count) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        result.append(SEPARATOR);
+      }
+      result.append(fields[i]);
+    }
+    return result.toString();
+  }
+
+  /**
+   * Encodes a single field.
+   *
+   * @param field the field, may be null for the missing value
+   * @return the encoded field
+   */
+  protected static String encode(Object field) {
+    if (field == null) {
+      return "?";
+    }
+    return Utils.quote(field.toString());
+  }
+
+  /**
+   * Turns an encoded field back into a String or Double.
+   *
+   * @param field the encoded field
+   * @param type the type of the column (a String or a Double)
+   * @return the decoded field, null for the missing value
+   */
+  protected static Object decode(String field, Object type) {
+    if (field.equals("?")) {
+      return null;
+    }
+    String value = Utils.unquote(field);
+    if (type instanceof Double) {
+      return Double.valueOf(value);
+    }
+    return value;
+  }
+
+  /**
+   * Splits a line of the log into its encoded fields. Tabs never occur
+   * within a field, since {@link Utils#quote(String)} backquotes them.
+   *
+   * @param line the line to split
+   * @return the fields
+   */
+  protected static String[] split(String line) {
+    ArrayList<String> fields = new ArrayList<String>();
+    int start = 0;
+    int pos;
+    while ((pos = line.indexOf(SEPARATOR, start)) != -1) {
+      fields.add(line.substring(start, pos));
+      start = pos + 1;
+    }
+    fields.add(line.substring(start));
+    return fields.toArray(new String[fields.size()]);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -44,10 +44,18 @@ import weka.core.converters.ConverterUtils.DataSource;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * An abstract class for instance filters: objects that take instances as input,
@@ -113,6 +121,15 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
   /** True if the first batch has been done */
   protected boolean m_FirstBatchDone = false;
 
+  /**
+   * The number of threads that may be used for converting the current batch,
+   * only set while useFilter(Instances, Filter, int) is running
+   */
+  protected transient int m_BatchThreads = 1;
+
+  /** The threads shared by all filters for converting batches in parallel */
+  private static ExecutorService m_BatchPool;
+
   /** Whether the classifier is run in debug mode. */
   protected boolean m_Debug = false;
 
@@ -719,6 +736,206 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
     return newData;
   }
 
+  /**
+   * Filters an entire set of instances through a filter and returns the new
+   * set, using up to the given number of threads. Filters implementing
+   * RowIndependentFilter convert contiguous partitions of the data
+   * concurrently once their output format and statistics are determined; on
+   * the first batch, they may convert the buffered data in parallel at the end
+   * of batchFinished(). All other filters are applied as with
+   * useFilter(Instances, Filter). The order of the instances is preserved.
+   *
+   * @param data the data to be filtered
+   * @param filter the filter to be used
+   * @param numThreads the maximum number of threads, a value less than 1 uses
+   *          all available processors
+   * @return the filtered set of data
+   * @throws Exception if the filter can't be used successfully
+   */
+  public static Instances useFilter(Instances data, Filter filter,
+    int numThreads) throws Exception {
+
+    if (numThreads < 1) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    if (numThreads > 1) {
+      Instances result = filter.filterBatchInParallel(data, numThreads);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    filter.m_BatchThreads = numThreads;
+    try {
+      return useFilter(data, filter);
+    } finally {
+      filter.m_BatchThreads = 1;
+    }
+  }
+
+  /**
+   * Filters a whole batch with several threads, if the filter supports this
+   * in its current state. This implementation handles ready
+   * RowIndependentFilters, see canFilterInParallel().
+   *
+   * @param data the data to be filtered
+   * @param numThreads the number of threads to use
+   * @return the filtered data, or null if the batch has to be filtered with
+   *         input()/batchFinished()/output()
+   * @throws Exception if the filtering fails
+   */
+  protected Instances filterBatchInParallel(Instances data, int numThreads)
+    throws Exception {
+
+    if (!canFilterInParallel()) {
+      return null;
+    }
+    if (m_NewBatch) {
+      resetQueue();
+      m_NewBatch = false;
+    }
+    Instance[] filtered = filterInParallel(data, numThreads);
+    batchFinished();
+
+    Instances result = getOutputFormat();
+    for (Instance inst : filtered) {
+      if (inst != null) {
+        result.add(inst);
+      }
+    }
+    Instance processed;
+    while ((processed = output()) != null) {
+      result.add(processed);
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether the filter is a RowIndependentFilter that is ready to
+   * convert instances and whether input and output format are free of string
+   * and relational attributes, whose values would have to be copied between
+   * the formats one instance at a time.
+   *
+   * @return true if instances can be converted concurrently
+   */
+  protected boolean canFilterInParallel() {
+
+    if (!(this instanceof RowIndependentFilter) || (m_OutputFormat == null)
+      || (m_InputFormat == null)
+      || !((RowIndependentFilter) this).canFilterInstance()) {
+      return false;
+    }
+    return (m_InputStringAtts.getAttributeIndices().length == 0)
+      && (m_InputRelAtts.getAttributeIndices().length == 0)
+      && (m_OutputStringAtts.getAttributeIndices().length == 0)
+      && (m_OutputRelAtts.getAttributeIndices().length == 0);
+  }
+
+  /**
+   * Converts the given instances with RowIndependentFilter.filterInstance(),
+   * splitting them into contiguous partitions that are processed
+   * concurrently.
+   *
+   * @param data the instances to convert
+   * @param numThreads the number of threads to use
+   * @return the converted instances in the order of the input, null for
+   *         removed instances
+   * @throws Exception if an instance cannot be converted
+   */
+  protected Instance[] filterInParallel(final Instances data, int numThreads)
+    throws Exception {
+
+    final RowIndependentFilter filter = (RowIndependentFilter) this;
+    final Instance[] result = new Instance[data.numInstances()];
+    int numPartitions = Math.min(numThreads, result.length);
+    if (numPartitions <= 1) {
+      for (int i = 0; i < result.length; i++) {
+        result[i] = filter.filterInstance(data.instance(i));
+      }
+      return result;
+    }
+
+    ExecutorService pool = getBatchPool();
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    try {
+      for (int p = 0; p < numPartitions; p++) {
+        final int start = (int) ((long) p * result.length / numPartitions);
+        final int end = (int) ((long) (p + 1) * result.length / numPartitions);
+        futures.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = start; i < end; i++) {
+              result[i] = filter.filterInstance(data.instance(i));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      // stop the other partitions if one of them failed
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the pool of threads shared by all filters for converting batches
+   * in parallel. The threads are daemons and are released after being idle
+   * for a minute, so the pool is never shut down.
+   *
+   * @return the pool of threads
+   */
+  protected static synchronized ExecutorService getBatchPool() {
+
+    if (m_BatchPool == null) {
+      m_BatchPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "Filter batch");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return m_BatchPool;
+  }
+
+  /**
+   * Converts the given instances and pushes them to the output queue in
+   * order, using several threads if allowed for the current batch. Filters
+   * that determine statistics on the first batch call this at the end of
+   * batchFinished().
+   *
+   * @param data the instances to convert
+   * @return false if the instances cannot be converted concurrently and
+   *         nothing was pushed
+   * @throws Exception if an instance cannot be converted
+   */
+  protected boolean pushInParallel(Instances data) throws Exception {
+
+    if ((m_BatchThreads <= 1) || !canFilterInParallel()) {
+      return false;
+    }
+    for (Instance inst : filterInParallel(data, m_BatchThreads)) {
+      if (inst != null) {
+        push(inst, false);
+      }
+    }
+    return true;
+  }
+
   /**
    * Returns a description of the filter, by default only the classname.
    *
@@ -475,7 +475,37 @@ public class MultiFilter extends SimpleStreamFilter implements
         }
         getFilter(i).setInputFormat(result);
       }
-      result = Filter.useFilter(result, getFilter(i));
+      result = Filter.useFilter(result, getFilter(i),
+        Math.max(1, m_BatchThreads));
+    }
+
+    return result;
+  }
+
+  /**
+   * Filters a whole batch with several threads once the first batch has been
+   * processed, by passing the complete batch through each of the filters in
+   * turn with Filter.useFilter(Instances, Filter, int). The first batch is
+   * processed by process(Instances), which also hands on the number of
+   * threads.
+   * 
+   * @param data the data to be filtered
+   * @param numThreads the number of threads to use
+   * @return the filtered data, or null if this is the first batch or there
+   *         are no filters
+   * @throws Exception if the filtering fails
+   */
+  @Override
+  protected Instances filterBatchInParallel(Instances data, int numThreads)
+    throws Exception {
+
+    if (!isFirstBatchDone() || (getFilters().length == 0)) {
+      return null;
+    }
+
+    Instances result = data;
+    for (int i = 0; i < getFilters().length; i++) {
+      result = Filter.useFilter(result, getFilter(i), numThreads);
     }
 
     return result;
@@ -0,0 +1,55 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    RowIndependentFilter.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.filters;
+
+import weka.core.Instance;
+
+/**
+ * Interface for filters that, once their output format and any statistics
+ * are determined, convert every instance independently of all other
+ * instances. Such filters can be applied to a batch of instances by several
+ * threads at once, see {@link Filter#useFilter(weka.core.Instances, Filter, int)}.
+ *
+ * @version $Revision$
+ */
+public interface RowIndependentFilter {
+
+  /**
+   * Returns whether the filter is ready to convert single instances with
+   * {@link #filterInstance(Instance)}, i.e., whether the output format and
+   * all statistics of the filter are determined.
+   *
+   * @return true if instances can be converted
+   */
+  public boolean canFilterInstance();
+
+  /**
+   * Converts a single instance without adding it to the output queue. The
+   * given instance is not modified. Must not change the state of the filter,
+   * since it may be called by several threads concurrently.
+   *
+   * @param instance the instance to convert
+   * @return the converted instance, or null if the instance is removed
+   * @throws Exception if the instance cannot be converted
+   */
+  public Instance filterInstance(Instance instance) throws Exception;
+}
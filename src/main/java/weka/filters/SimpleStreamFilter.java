@@ -216,6 +216,15 @@ public abstract class SimpleStreamFilter extends SimpleFilter implements
 
     result = new Instances(getOutputFormat(), 0);
 
+    if ((m_BatchThreads > 1) && canFilterInParallel()) {
+      for (Instance processed : filterInParallel(instances, m_BatchThreads)) {
+        if (processed != null) {
+          result.add(processed);
+        }
+      }
+      return result;
+    }
+
     for (i = 0; i < instances.numInstances(); i++) {
       result.add(process(instances.instance(i)));
     }
@@ -223,6 +232,34 @@ public abstract class SimpleStreamFilter extends SimpleFilter implements
     return result;
   }
 
+  /**
+   * Returns whether single instances can be processed, i.e., whether the
+   * output format is available. Used by subclasses that implement
+   * RowIndependentFilter, since process(Instance) is expected to not depend
+   * on other instances.
+   * 
+   * @return true if instances can be processed
+   * @see RowIndependentFilter
+   */
+  public boolean canFilterInstance() {
+    return hasImmediateOutputFormat() || isFirstBatchDone();
+  }
+
+  /**
+   * Processes a copy of the given instance without adding it to the output
+   * queue. Subclasses whose process(Instance) does not change the state of
+   * the filter can implement RowIndependentFilter and are then applied to
+   * batches by several threads, see Filter.useFilter(Instances, Filter, int).
+   * 
+   * @param instance the instance to process
+   * @return the processed instance, null if the instance is removed
+   * @throws Exception in case the processing goes wrong
+   * @see RowIndependentFilter
+   */
+  public Instance filterInstance(Instance instance) throws Exception {
+    return process((Instance) instance.copy());
+  }
+
   /**
    * In case the output format cannot be returned immediately, this method is
    * called before the actual processing of the instances. Derived classes can
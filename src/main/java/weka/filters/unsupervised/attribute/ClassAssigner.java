@@ -26,6 +26,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowIndependentFilter;
 import weka.filters.SimpleStreamFilter;
 
 /**
@@ -53,7 +54,8 @@ import weka.filters.SimpleStreamFilter;
  * @author fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision: 14534 $
  */
-public class ClassAssigner extends SimpleStreamFilter implements WeightedInstancesHandler, WeightedAttributesHandler {
+public class ClassAssigner extends SimpleStreamFilter implements
+  RowIndependentFilter, WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization. */
   private static final long serialVersionUID = 1775780193887394115L;
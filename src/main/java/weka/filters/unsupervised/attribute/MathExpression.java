@@ -40,6 +40,7 @@ import weka.core.expressionlanguage.parser.Parser;
 import weka.core.expressionlanguage.weka.InstancesHelper;
 import weka.core.expressionlanguage.weka.StatsHelper;
 import weka.experiment.Stats;
+import weka.filters.RowIndependentFilter;
 import weka.filters.UnsupervisedFilter;
 
 /**
@@ -86,7 +87,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision: 14534 $
  */
 public class MathExpression extends PotentialClassIgnorer implements
-  UnsupervisedFilter, WeightedInstancesHandler, WeightedAttributesHandler {
+  UnsupervisedFilter, RowIndependentFilter, WeightedInstancesHandler,
+  WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = -3713222714671997901L;
@@ -100,20 +102,73 @@ public class MathExpression extends PotentialClassIgnorer implements
   /** The modification expression */
   private String m_expression = m_defaultExpression;
   
-  /** The compiled modification expression */
-  private DoubleExpression m_CompiledExpression;
-
   /** Attributes statistics */
   private Stats[] m_attStats;
 
-  /** InstancesHelpers for different indices */
-  private InstancesHelper m_InstancesHelper;
-  
-  /** StatsHelpers for different indices */
-  private StatsHelper m_StatsHelper;
-  
-  /** VariableInitializer for the current value 'A' in an expression */
-  private VariableInitializer m_CurrentValue;
+  /**
+   * The compiled modification expressions, one per converting thread, since
+   * the helpers of an expression hold the instance being converted
+   */
+  private transient volatile ThreadLocal<Program> m_Programs;
+
+  /**
+   * The compiled modification expression together with the helpers that
+   * provide its variables.
+   */
+  private static class Program {
+
+    /** The compiled modification expression */
+    private DoubleExpression m_CompiledExpression;
+
+    /** InstancesHelpers for different indices */
+    private InstancesHelper m_InstancesHelper;
+
+    /** StatsHelpers for different indices */
+    private StatsHelper m_StatsHelper;
+
+    /** VariableInitializer for the current value 'A' in an expression */
+    private VariableInitializer m_CurrentValue;
+
+    /**
+     * Compiles the expression.
+     *
+     * @param expression the expression to compile
+     * @param inputFormat the input format of the filter
+     * @throws Exception if a compilation error occurs
+     */
+    private Program(String expression, Instances inputFormat) throws Exception {
+
+      m_InstancesHelper = new InstancesHelper(inputFormat);
+      m_StatsHelper = new StatsHelper();
+      SimpleVariableDeclarations currentValueDeclaration = new SimpleVariableDeclarations();
+      currentValueDeclaration.addDouble("A");
+
+      Node node = Parser.parse(
+          // expression
+          expression,
+          // variables
+          new VariableDeclarationsCompositor(
+              m_InstancesHelper,
+              m_StatsHelper,
+              currentValueDeclaration
+              ),
+          // macros
+          new MacroDeclarationsCompositor(
+              m_InstancesHelper,
+              new MathFunctions(),
+              new IfElseMacro(),
+              new JavaMacro()
+              )
+          );
+
+      if (!(node instanceof DoubleExpression))
+        throw new Exception("Expression must be of type double!");
+
+      m_CurrentValue = currentValueDeclaration.getInitializer();
+
+      m_CompiledExpression = (DoubleExpression) node;
+    }
+  }
 
   /**
    * Constructor
@@ -201,36 +256,34 @@ public class MathExpression extends PotentialClassIgnorer implements
    */
   private void compile() throws Exception {
 
-    m_InstancesHelper = new InstancesHelper(getInputFormat());
-    m_StatsHelper = new StatsHelper();
-    SimpleVariableDeclarations currentValueDeclaration = new SimpleVariableDeclarations();
-    currentValueDeclaration.addDouble("A");
-
-    Node node = Parser.parse(
-        // expression
-        m_expression,
-        // variables
-        new VariableDeclarationsCompositor(
-            m_InstancesHelper,
-            m_StatsHelper,
-            currentValueDeclaration
-            ),
-        // macros
-        new MacroDeclarationsCompositor(
-            m_InstancesHelper,
-            new MathFunctions(),
-            new IfElseMacro(),
-            new JavaMacro()
-            )
-        );
-
-    if (!(node instanceof DoubleExpression))
-      throw new Exception("Expression must be of type double!");
-    
-    m_CurrentValue = currentValueDeclaration.getInitializer();
+    m_Programs = new ThreadLocal<Program>();
+    m_Programs.set(new Program(m_expression, getInputFormat()));
+  }
 
-    m_CompiledExpression = (DoubleExpression) node;
-    
+  /**
+   * Returns the compiled expression of the calling thread, compiling it
+   * first if necessary.
+   * 
+   * @return the compiled expression
+   * @throws Exception if a compilation error occurs
+   */
+  private Program getProgram() throws Exception {
+
+    ThreadLocal<Program> programs = m_Programs;
+    if (programs == null) {
+      synchronized (this) {
+        if (m_Programs == null) {
+          m_Programs = new ThreadLocal<Program>();
+        }
+        programs = m_Programs;
+      }
+    }
+    Program result = programs.get();
+    if (result == null) {
+      result = new Program(m_expression, getInputFormat());
+      programs.set(result);
+    }
+    return result;
   }
 
   /**
@@ -296,11 +349,13 @@ public class MathExpression extends PotentialClassIgnorer implements
           m_attStats[i].calculateDerived();
         }
       }
-      
+      m_FirstBatchDone = true;
 
       // Convert pending input instances
-      for (int i = 0; i < input.numInstances(); i++) {
-        convertInstance(input.instance(i));
+      if (!pushInParallel(input)) {
+        for (int i = 0; i < input.numInstances(); i++) {
+          convertInstance(input.instance(i));
+        }
       }
     }
     // Free memory
@@ -320,6 +375,31 @@ public class MathExpression extends PotentialClassIgnorer implements
    */
   private void convertInstance(Instance instance) throws Exception {
 
+    push(filterInstance(instance), false); // No need to copy instance
+  }
+
+  /**
+   * Returns whether single instances can be converted, i.e., whether the
+   * statistics of the first batch have been computed.
+   * 
+   * @return true if instances can be converted
+   */
+  @Override
+  public boolean canFilterInstance() {
+    return m_FirstBatchDone;
+  }
+
+  /**
+   * Converts a single instance without adding it to the output queue.
+   * 
+   * @param instance the instance to convert
+   * @return the converted instance
+   * @throws Exception if instance cannot be converted
+   */
+  @Override
+  public Instance filterInstance(Instance instance) throws Exception {
+
+    Program program = getProgram();
     double[] vals = instance.toDoubleArray();
     for (int i = 0; i < instance.numAttributes(); i++) {
 
@@ -331,17 +411,17 @@ public class MathExpression extends PotentialClassIgnorer implements
           ) {
 
         // setup program
-        m_InstancesHelper.setInstance(instance);
-        m_StatsHelper.setStats(m_attStats[i]);
-        if (m_CurrentValue.hasVariable("A"))
-          m_CurrentValue.setDouble("A", vals[i]);
+        program.m_InstancesHelper.setInstance(instance);
+        program.m_StatsHelper.setStats(m_attStats[i]);
+        if (program.m_CurrentValue.hasVariable("A"))
+          program.m_CurrentValue.setDouble("A", vals[i]);
 
         // compute
-        double value = m_CompiledExpression.evaluate();
+        double value = program.m_CompiledExpression.evaluate();
 
         // set new value
         if (Double.isNaN(value) || Double.isInfinite(value) ||
-            m_InstancesHelper.missingAccessed()) {
+            program.m_InstancesHelper.missingAccessed()) {
           System.err
           .println("WARNING:Error in evaluating the expression: missing value set");
           vals[i] = Utils.missingValue();
@@ -359,7 +439,7 @@ public class MathExpression extends PotentialClassIgnorer implements
       outInstance = new DenseInstance(instance.weight(), vals);
     }
     outInstance.setDataset(instance.dataset());
-    push(outInstance, false); // No need to copy instance
+    return outInstance;
   }
 
   /**
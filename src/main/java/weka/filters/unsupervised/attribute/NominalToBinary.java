@@ -28,6 +28,7 @@ import java.util.Vector;
 import weka.core.*;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
+import weka.filters.RowIndependentFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -77,7 +78,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision: 14534 $
  */
 public class NominalToBinary extends Filter implements UnsupervisedFilter,
-  OptionHandler, StreamableFilter, WeightedAttributesHandler, WeightedInstancesHandler {
+  OptionHandler, StreamableFilter, RowIndependentFilter,
+  WeightedAttributesHandler, WeightedInstancesHandler {
 
   /** for serialization */
   static final long serialVersionUID = -1130642825710549138L;
@@ -565,6 +567,17 @@ public class NominalToBinary extends Filter implements UnsupervisedFilter,
     setOutputFormat(outputFormat);
   }
 
+  /**
+   * Returns whether single instances can be converted, i.e., whether the
+   * input format has been set.
+   * 
+   * @return true if instances can be converted
+   */
+  @Override
+  public boolean canFilterInstance() {
+    return isOutputFormatDefined();
+  }
+
   /**
    * Convert a single instance over if the class is nominal. The converted
    * instance is added to the end of the output queue.
@@ -578,6 +591,22 @@ public class NominalToBinary extends Filter implements UnsupervisedFilter,
       return;
     }
 
+    push(filterInstance(instance)); // No need to copy instance
+  }
+
+  /**
+   * Converts a single instance without adding it to the output queue.
+   * 
+   * @param instance the instance to convert
+   * @return the converted instance
+   */
+  @Override
+  public Instance filterInstance(Instance instance) {
+
+    if (!m_needToTransform) {
+      return (Instance) instance.copy();
+    }
+
     double[] vals = new double[outputFormatPeek().numAttributes()];
     int attSoFar = 0;
 
@@ -618,7 +647,7 @@ public class NominalToBinary extends Filter implements UnsupervisedFilter,
 
     copyValues(inst, false, instance.dataset(), getOutputFormat());
 
-    push(inst); // No need to copy instance
+    return inst;
   }
 
   /**
@@ -27,6 +27,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowIndependentFilter;
 import weka.filters.Sourcable;
 import weka.filters.UnsupervisedFilter;
 
@@ -68,7 +69,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision: 14534 $
  */
 public class Normalize extends PotentialClassIgnorer implements
-  UnsupervisedFilter, Sourcable, OptionHandler, WeightedInstancesHandler, WeightedAttributesHandler {
+  UnsupervisedFilter, Sourcable, OptionHandler, RowIndependentFilter,
+  WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization. */
   static final long serialVersionUID = -8158531150984362898L;
@@ -313,8 +315,10 @@ public class Normalize extends PotentialClassIgnorer implements
       }
 
       // Convert pending input instances
-      for (int i = 0; i < input.numInstances(); i++) {
-        convertInstance(input.instance(i));
+      if (!pushInParallel(input)) {
+        for (int i = 0; i < input.numInstances(); i++) {
+          convertInstance(input.instance(i));
+        }
       }
     }
     // Free memory
@@ -332,6 +336,29 @@ public class Normalize extends PotentialClassIgnorer implements
    * @throws Exception if conversion fails
    */
   protected void convertInstance(Instance instance) throws Exception {
+    push(filterInstance(instance), false); // No need to copy
+  }
+
+  /**
+   * Returns whether single instances can be converted, i.e., whether the
+   * minimums and maximums have been computed.
+   * 
+   * @return true if instances can be converted
+   */
+  @Override
+  public boolean canFilterInstance() {
+    return m_MinArray != null;
+  }
+
+  /**
+   * Normalizes a single instance without adding it to the output queue.
+   * 
+   * @param instance the instance to convert
+   * @return the converted instance
+   * @throws Exception if conversion fails
+   */
+  @Override
+  public Instance filterInstance(Instance instance) throws Exception {
     Instance inst = null;
     if (instance instanceof SparseInstance) {
       double[] newVals = new double[instance.numAttributes()];
@@ -394,7 +421,7 @@ public class Normalize extends PotentialClassIgnorer implements
       inst = new DenseInstance(instance.weight(), vals);
     }
     inst.setDataset(instance.dataset());
-    push(inst, false); // No need to copy
+    return inst;
   }
 
   /**
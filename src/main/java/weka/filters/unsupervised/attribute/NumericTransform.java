@@ -29,6 +29,7 @@ import java.util.Vector;
 import weka.core.*;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
+import weka.filters.RowIndependentFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -70,7 +71,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision: 14534 $
  */
 public class NumericTransform extends Filter implements UnsupervisedFilter,
-  StreamableFilter, OptionHandler, WeightedInstancesHandler, WeightedAttributesHandler {
+  StreamableFilter, RowIndependentFilter, OptionHandler,
+  WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = -8561413333351366934L;
@@ -173,6 +175,32 @@ public class NumericTransform extends Filter implements UnsupervisedFilter,
       m_NewBatch = false;
     }
 
+    push(filterInstance(instance), false); // No need to copy
+    return true;
+  }
+
+  /**
+   * Returns whether single instances can be transformed, i.e., whether the
+   * input format has been set.
+   * 
+   * @return true if instances can be transformed
+   */
+  @Override
+  public boolean canFilterInstance() {
+    return isOutputFormatDefined();
+  }
+
+  /**
+   * Transforms a single instance without adding it to the output queue.
+   * 
+   * @param instance the instance to transform
+   * @return the transformed instance
+   * @throws InvocationTargetException if there is a problem applying the
+   *           configured transform method.
+   */
+  @Override
+  public Instance filterInstance(Instance instance) throws Exception {
+
     Method m = (Class.forName(m_Class)).getMethod(m_Method,
       new Class[] { Double.TYPE });
 
@@ -203,8 +231,7 @@ public class NumericTransform extends Filter implements UnsupervisedFilter,
       inst = new DenseInstance(instance.weight(), vals);
     }
     inst.setDataset(instance.dataset());
-    push(inst, false); // No need to copy
-    return true;
+    return inst;
   }
 
   /**
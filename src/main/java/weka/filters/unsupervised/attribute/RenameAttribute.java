@@ -28,6 +28,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowIndependentFilter;
 import weka.filters.SimpleStreamFilter;
 
 /**
@@ -87,7 +88,8 @@ import weka.filters.SimpleStreamFilter;
  * @author fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision: 14534 $
  */
-public class RenameAttribute extends SimpleStreamFilter implements WeightedInstancesHandler, WeightedAttributesHandler {
+public class RenameAttribute extends SimpleStreamFilter implements
+  RowIndependentFilter, WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization. */
   private static final long serialVersionUID = 4216491776378279596L;
@@ -23,6 +23,7 @@ package weka.filters.unsupervised.attribute;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowIndependentFilter;
 import weka.filters.Sourcable;
 import weka.filters.UnsupervisedFilter;
 
@@ -49,8 +50,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision: 14797 $
  */
 public class ReplaceMissingValues extends PotentialClassIgnorer implements
-  UnsupervisedFilter, Sourcable, WeightedInstancesHandler,
-  WeightedAttributesHandler {
+  UnsupervisedFilter, Sourcable, RowIndependentFilter,
+  WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = 8349568310991609867L;
@@ -204,8 +205,16 @@ public class ReplaceMissingValues extends PotentialClassIgnorer implements
       }
 
       // Convert pending input instances
-      for (int i = 0; i < getInputFormat().numInstances(); i++) {
-        convertInstance(getInputFormat().instance(i));
+      boolean converted;
+      try {
+        converted = pushInParallel(getInputFormat());
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      if (!converted) {
+        for (int i = 0; i < getInputFormat().numInstances(); i++) {
+          convertInstance(getInputFormat().instance(i));
+        }
       }
     }
     // Free memory
@@ -223,9 +232,35 @@ public class ReplaceMissingValues extends PotentialClassIgnorer implements
    */
   private void convertInstance(Instance instance) {
 
-    Instance inst = instance;
+    push(filterInstance(instance), false); // No need to copy, already a copy
+  }
+
+  /**
+   * Returns whether single instances can be converted, i.e., whether the
+   * modes and means have been computed.
+   *
+   * @return true if instances can be converted
+   */
+  @Override
+  public boolean canFilterInstance() {
+    return m_ModesAndMeans != null;
+  }
+
+  /**
+   * Replaces the missing values of a single instance without adding it to
+   * the output queue.
+   *
+   * @param instance the instance to convert
+   * @return the converted instance
+   */
+  @Override
+  public Instance filterInstance(Instance instance) {
+
+    Instance inst;
     boolean hasMissing = instance.hasMissingValue();
-    if (hasMissing) {
+    if (!hasMissing) {
+      inst = (Instance) instance.copy();
+    } else {
       if (instance instanceof SparseInstance) {
         double[] vals = new double[instance.numValues()];
         int[] indices = new int[instance.numValues()];
@@ -275,7 +310,7 @@ public class ReplaceMissingValues extends PotentialClassIgnorer implements
       }
     }
     inst.setDataset(instance.dataset());
-    push(inst, !hasMissing); // No need to shallow copy if we've deep copied already
+    return inst;
   }
 
   /**
@@ -29,6 +29,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowIndependentFilter;
 import weka.filters.SimpleStreamFilter;
 
 /**
@@ -69,7 +70,8 @@ import weka.filters.SimpleStreamFilter;
  * @author fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision: 14534 $
  */
-public class SortLabels extends SimpleStreamFilter implements WeightedInstancesHandler, WeightedAttributesHandler{
+public class SortLabels extends SimpleStreamFilter implements
+  RowIndependentFilter, WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization. */
   private static final long serialVersionUID = 7815204879694105691L;
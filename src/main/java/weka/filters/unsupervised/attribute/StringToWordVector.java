@@ -124,6 +124,11 @@ import weka.filters.UnsupervisedFilter;
  *  instead of in plain text form. Use in conjunction with
  *  -dictionary</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of threads used for building the dictionary and
+ *  for converting the first batch.
+ *  (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Len Trigg (len@reeltwo.com)
@@ -270,6 +275,12 @@ public class StringToWordVector extends Filter implements UnsupervisedFilter,
       + "serialized object\n\tinstead of in plain text form. Use in conjunction "
       + "with\n\t-dictionary", "binary-dict", 0, "-binary-dict"));
 
+    result.addElement(new Option(
+      "\tNumber of threads used for building the dictionary and\n"
+        + "\tfor converting the first batch.\n"
+        + "\t(default 1 - i.e. no parallelism, 0 - all available cores)",
+      "num-slots", 1, "-num-slots <num>"));
+
     return result.elements();
   }
 
@@ -350,6 +361,11 @@ public class StringToWordVector extends Filter implements UnsupervisedFilter,
    *  instead of in plain text form. Use in conjunction with
    *  -dictionary</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of threads used for building the dictionary and
+   *  for converting the first batch.
+   *  (default 1 - i.e. no parallelism, 0 - all available cores)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -464,6 +480,13 @@ public class StringToWordVector extends Filter implements UnsupervisedFilter,
 
     setSaveDictionaryInBinaryForm(Utils.getFlag("binary-dict", options));
 
+    value = Utils.getOption("num-slots", options);
+    if (value.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(value));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -559,6 +582,10 @@ public class StringToWordVector extends Filter implements UnsupervisedFilter,
       }
     }
 
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add(String.valueOf(getNumExecutionSlots()));
+    }
 
     return result.toArray(new String[result.size()]);
   }
@@ -672,10 +699,7 @@ public class StringToWordVector extends Filter implements UnsupervisedFilter,
       m_dictionaryBuilder.setPeriodicPruning(pruneRate);
       // m_dictionaryBuilder.setNormalize(m_filterType == FILTER_NORMALIZE_ALL);
 
-      for (int i = 0; i < getInputFormat().numInstances(); i++) {
-        Instance toProcess = getInputFormat().instance(i);
-        m_dictionaryBuilder.processInstance(toProcess);
-      }
+      m_dictionaryBuilder.processBatch(getInputFormat());
       m_dictionaryBuilder.finalizeDictionary();
 
       setOutputFormat(m_dictionaryBuilder.getVectorizedFormat());
@@ -1282,6 +1306,38 @@ public class StringToWordVector extends Filter implements UnsupervisedFilter,
     return "The tokenizing algorithm to use on the strings.";
   }
 
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used for building the "
+      + "dictionary and for converting the first batch, 0 uses all "
+      + "available cores.";
+  }
+
+  /**
+   * Get the number of threads used for building the dictionary and for
+   * converting the first batch.
+   *
+   * @return the number of threads, 0 for all available cores
+   */
+  public int getNumExecutionSlots() {
+    return m_dictionaryBuilder.getNumExecutionSlots();
+  }
+
+  /**
+   * Set the number of threads used for building the dictionary and for
+   * converting the first batch.
+   *
+   * @param slots the number of threads, 0 for all available cores
+   */
+  public void setNumExecutionSlots(int slots) {
+    m_dictionaryBuilder.setNumExecutionSlots(slots);
+  }
+
   /**
    * Returns the revision string.
    *
@@ -29,6 +29,8 @@ import weka.gui.Logger;
 import weka.core.PluginManager;
 import weka.gui.knowledgeflow.GraphicalEnvironmentCommandHandler;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -98,6 +100,20 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
    */
   protected transient ExecutorService m_singleThreadService;
 
+  /**
+   * The bounded queues in front of steps that receive instance streams. Only
+   * used when the streaming queue capacity setting is > 0
+   */
+  protected transient List<StreamingQueue> m_streamingQueues =
+    new ArrayList<StreamingQueue>();
+
+  /** Capacity of the streaming queues (0 = process streams synchronously) */
+  protected int m_streamingQueueCapacity;
+
+  /** Maximum number of instances a streaming queue worker takes in one go */
+  protected int m_streamingBatchSize =
+    BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE;
+
   /** The log */
   protected transient Logger m_log;
 
@@ -284,6 +300,7 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
     if (getFlowExecutor() != null) {
       getFlowExecutor().stopProcessing();
     }
+    shutdownStreamingQueues();
     if (m_executorService != null) {
       m_executorService.shutdownNow();
       m_executorService = null;
@@ -358,6 +375,67 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
           .availableProcessors());
 
     m_singleThreadService = Executors.newSingleThreadExecutor();
+
+    shutdownStreamingQueues();
+    m_streamingQueueCapacity =
+      getSettings().getSetting(KFDefaults.APP_ID,
+        BaseExecutionEnvironmentDefaults.STREAMING_QUEUE_CAPACITY_KEY,
+        BaseExecutionEnvironmentDefaults.STREAMING_QUEUE_CAPACITY);
+    m_streamingBatchSize =
+      getSettings().getSetting(KFDefaults.APP_ID,
+        BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE_KEY,
+        BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE);
+    if (m_streamingQueueCapacity > 0) {
+      m_logHandler.logDebug("Streaming queue capacity: "
+        + m_streamingQueueCapacity + ", batch size: " + m_streamingBatchSize);
+    }
+  }
+
+  /**
+   * Discards the contents of all streaming queues and stops their worker
+   * threads
+   */
+  protected void shutdownStreamingQueues() {
+    if (m_streamingQueues == null) {
+      m_streamingQueues = new ArrayList<StreamingQueue>();
+    }
+    synchronized (m_streamingQueues) {
+      for (StreamingQueue q : m_streamingQueues) {
+        q.shutdown();
+      }
+      m_streamingQueues.clear();
+    }
+  }
+
+  /**
+   * Gets the streaming queue in front of the supplied step, creating it if
+   * necessary. Returns null if streams are to be processed synchronously.
+   * Only plain instance streams are queued - incremental classifier streams
+   * carry a model that is still being updated by the upstream step, so these
+   * have to be processed before the upstream step continues.
+   *
+   * @param step the step receiving the streaming data
+   * @param data the streaming data
+   * @return the streaming queue, or null
+   */
+  protected StreamingQueue getStreamingQueue(StepManagerImpl step, Data data) {
+    if (m_streamingQueueCapacity <= 0
+      || !StepManager.CON_INSTANCE.equals(data.getConnectionName())) {
+      return null;
+    }
+    synchronized (step) {
+      StreamingQueue result = step.getStreamingQueue();
+      if (result == null) {
+        result =
+          new StreamingQueue(step, m_streamingQueueCapacity,
+            m_streamingBatchSize, step.getStreamingParallelism());
+        step.setStreamingQueue(result);
+        synchronized (m_streamingQueues) {
+          m_streamingQueues.add(result);
+        }
+      }
+      return result;
+    }
   }
 
   /**
@@ -393,6 +471,8 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
     if (m_singleThreadService != null) {
       m_singleThreadService.shutdown();
     }
+
+    shutdownStreamingQueues();
   }
 
   /**
@@ -460,8 +540,14 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
       if (data.length == 1
         && (StepManagerImpl.connectionIsIncremental(data[0]))) {
         // we don't want the overhead of spinning up a thread for single
-        // instance (streaming) connections.
-        step.processIncoming(data[0]);
+        // instance (streaming) connections. Instead, streams are either
+        // processed synchronously or passed through a bounded queue
+        StreamingQueue queue = getStreamingQueue(step, data[0]);
+        if (queue != null) {
+          queue.put(data[0]);
+        } else {
+          step.processIncoming(data[0]);
+        }
       } else {
         String taskType =
           step.getStepMustRunSingleThreaded() ? " (single-threaded)" : (step
@@ -529,6 +615,21 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
 
     /** Default (0) means use as many threads as there are cpu processors */
     public static final int RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS = 0;
+
+    public static final Settings.SettingKey STREAMING_QUEUE_CAPACITY_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingQueueCapacity",
+        "Capacity of the queues between streaming steps",
+        "<html>Instance streams are passed through bounded queues of this<br>"
+          + "size, so that a slow step holds up the steps upstream of it.<br>"
+          + "0 = pass each instance on synchronously.</html>");
+
+    /** Default (0) means that instance streams are processed synchronously */
+    public static final int STREAMING_QUEUE_CAPACITY = 0;
+
+    public static final Settings.SettingKey STREAMING_BATCH_SIZE_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingBatchSize",
+        "Number of queued instances processed in one go", "");
+    public static final int STREAMING_BATCH_SIZE = 100;
     private static final long serialVersionUID = -3386792058002464330L;
 
     public BaseExecutionEnvironmentDefaults() {
@@ -538,6 +639,8 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
         STEP_EXECUTOR_SERVICE_NUM_THREADS);
       m_defaults.put(RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS_KEY,
         RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS);
+      m_defaults.put(STREAMING_QUEUE_CAPACITY_KEY, STREAMING_QUEUE_CAPACITY);
+      m_defaults.put(STREAMING_BATCH_SIZE_KEY, STREAMING_BATCH_SIZE);
     }
   }
 }
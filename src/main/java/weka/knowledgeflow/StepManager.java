@@ -304,6 +304,28 @@ public interface StepManager {
    */
   boolean isStepBusy();
 
+  /**
+   * Set the number of threads that may pass streaming data to the managed step
+   * concurrently, when the execution environment queues instance streams.
+   * Steps should only set this to more than 1 if their processIncoming() method
+   * can handle instances concurrently. Note that with more than 1 thread the
+   * instances are no longer passed to the step in the order they were
+   * produced (only the end-of-stream marker is guaranteed to come after all of
+   * them), so steps whose output depends on the order of the instances must
+   * not use this.
+   *
+   * @param parallelism the number of threads (1 = no concurrency)
+   */
+  void setStreamingParallelism(int parallelism);
+
+  /**
+   * Get the number of threads that may pass streaming data to the managed step
+   * concurrently
+   *
+   * @return the number of threads
+   */
+  int getStreamingParallelism();
+
   /**
    * Return true if a stop has been requested by the runtime environment
    *
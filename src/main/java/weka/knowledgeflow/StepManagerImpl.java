@@ -129,6 +129,15 @@ public class StepManagerImpl implements StepManager {
   /** For measuring performance of instance streams */
   protected transient StreamThroughput m_throughput;
 
+  /**
+   * The number of threads that may pass streaming data to the managed step
+   * concurrently when the execution environment queues instance streams
+   */
+  protected int m_streamingParallelism = 1;
+
+  /** The queue (if any) in front of the managed step for instance streams */
+  protected transient StreamingQueue m_streamingQueue;
+
   /**
    * Used when interrogating the managed step for what output connections it can
    * produce at present given the incoming connections to the step. Normally, a
@@ -416,6 +425,10 @@ public class StepManagerImpl implements StepManager {
     }
 
     m_throughput = null;
+    if (m_streamingQueue != null) {
+      m_streamingQueue.shutdown();
+      m_streamingQueue = null;
+    }
 
     return initializedOK;
   }
@@ -428,7 +441,90 @@ public class StepManagerImpl implements StepManager {
    */
   @Override
   public boolean isStepBusy() {
-    return m_stepIsBusy;
+    StreamingQueue queue = m_streamingQueue;
+    return m_stepIsBusy || (queue != null && queue.isBusy());
+  }
+
+  /**
+   * Set the number of threads that may pass streaming data to the managed step
+   * concurrently. Only has an effect when the execution environment queues
+   * instance streams. With more than 1 thread the instances no longer reach
+   * the managed step in the order they were produced.
+   *
+   * @param parallelism the number of threads (1 = no concurrency)
+   */
+  @Override
+  public void setStreamingParallelism(int parallelism) {
+    m_streamingParallelism = Math.max(parallelism, 1);
+  }
+
+  /**
+   * Get the number of threads that may pass streaming data to the managed step
+   * concurrently
+   *
+   * @return the number of threads
+   */
+  @Override
+  public int getStreamingParallelism() {
+    return m_streamingParallelism;
+  }
+
+  /**
+   * Set the queue in front of the managed step for instance streams
+   *
+   * @param queue the queue to use
+   */
+  protected void setStreamingQueue(StreamingQueue queue) {
+    m_streamingQueue = queue;
+  }
+
+  /**
+   * Get the queue (if any) in front of the managed step for instance streams
+   *
+   * @return the queue, or null if streams are processed synchronously
+   */
+  protected StreamingQueue getStreamingQueue() {
+    return m_streamingQueue;
+  }
+
+  /**
+   * Get the number of instances currently waiting in the streaming queue
+   *
+   * @return the queue depth (0 if streams are processed synchronously)
+   */
+  public int getStreamingQueueDepth() {
+    StreamingQueue queue = m_streamingQueue;
+    return queue != null ? queue.getDepth() : 0;
+  }
+
+  /**
+   * Get the largest number of instances waiting in the streaming queue so far
+   *
+   * @return the maximum queue depth (0 if streams are processed synchronously)
+   */
+  public int getStreamingMaxQueueDepth() {
+    StreamingQueue queue = m_streamingQueue;
+    return queue != null ? queue.getMaxDepth() : 0;
+  }
+
+  /**
+   * Get the number of instances taken from the streaming queue and processed
+   *
+   * @return the number processed (0 if streams are processed synchronously)
+   */
+  public long getStreamingNumProcessed() {
+    StreamingQueue queue = m_streamingQueue;
+    return queue != null ? queue.getNumProcessed() : 0;
+  }
+
+  /**
+   * Get the number of queued instances processed per second
+   *
+   * @return the throughput (0 if streams are processed synchronously)
+   */
+  public double getStreamingThroughput() {
+    StreamingQueue queue = m_streamingQueue;
+    return queue != null ? queue.getThroughput() : 0;
   }
 
   /**
@@ -510,11 +606,13 @@ public class StepManagerImpl implements StepManager {
    */
   @Override
   public void throughputUpdateStart() {
-    if (m_throughput == null) {
-      m_throughput = new StreamThroughput(stepStatusMessagePrefix());
-    }
     processing();
-    m_throughput.updateStart();
+    synchronized (this) {
+      if (m_throughput == null) {
+        m_throughput = new StreamThroughput(stepStatusMessagePrefix());
+      }
+      m_throughput.updateStart();
+    }
   }
 
   /**
@@ -524,7 +622,9 @@ public class StepManagerImpl implements StepManager {
   @Override
   public void throughputUpdateEnd() {
     if (m_throughput != null) {
-      m_throughput.updateEnd(m_log.getLog());
+      synchronized (this) {
+        m_throughput.updateEnd(m_log.getLog());
+      }
 
       if (isStopRequested()) {
         finished();
@@ -553,7 +653,9 @@ public class StepManagerImpl implements StepManager {
       outputData(data);
     }
     if (m_throughput != null) {
-      m_throughput.finished(m_log.getLog());
+      synchronized (this) {
+        m_throughput.finished(m_log.getLog());
+      }
     }
     // not actually interrupted - we just abuse this method in order to
     // set the busy flag to false
@@ -1063,6 +1165,9 @@ public class StepManagerImpl implements StepManager {
    */
   protected void stopStep() {
     m_stopRequested = true;
+    if (m_streamingQueue != null) {
+      m_streamingQueue.clear();
+    }
     getManagedStep().stop();
   }
 
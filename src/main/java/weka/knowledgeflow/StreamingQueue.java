@@ -0,0 +1,354 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    StreamingQueue.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.knowledgeflow;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.WekaException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A bounded queue in front of a step that receives an instance stream. The
+ * producing step only blocks when the queue is full, so a slow step slows
+ * down the steps upstream of it (backpressure) without running them in
+ * lock-step. Worker threads take the queued data in micro-batches and pass
+ * it to the step. With more than one worker the step must be able to process
+ * instances concurrently; the end-of-stream marker is always processed after
+ * everything queued before it has been processed.
+ *
+ * @version $Revision$
+ */
+public class StreamingQueue {
+
+  /** How long (ms) blocked operations wait before checking for a stop */
+  protected static final long POLL_INTERVAL = 100;
+
+  /** The step that receives the queued data */
+  protected StepManagerImpl m_target;
+
+  /** The queued data */
+  protected BlockingQueue<Data> m_queue;
+
+  /** The maximum number of data objects taken from the queue in one go */
+  protected int m_batchSize;
+
+  /** The worker threads */
+  protected Thread[] m_workers;
+
+  /** Makes taking a batch and starting to process it atomic */
+  protected final Object m_drainLock = new Object();
+
+  /**
+   * Batches are processed under the read lock, the end of a stream under the
+   * write lock
+   */
+  protected final ReentrantReadWriteLock m_processLock =
+    new ReentrantReadWriteLock();
+
+  /** The number of data objects queued or being processed */
+  protected final AtomicInteger m_pending = new AtomicInteger();
+
+  /** The number of data objects processed */
+  protected final AtomicLong m_numProcessed = new AtomicLong();
+
+  /** The largest number of queued data objects seen */
+  protected volatile int m_maxDepth;
+
+  /** The time the first data object was queued */
+  protected volatile long m_startTime = -1;
+
+  /** The time the last data object was processed */
+  protected volatile long m_endTime = -1;
+
+  /** True once the queue has been shut down */
+  protected volatile boolean m_shutdown;
+
+  /**
+   * Constructor
+   *
+   * @param target the step that receives the queued data
+   * @param capacity the maximum number of queued data objects
+   * @param batchSize the maximum number of data objects taken in one go
+   * @param parallelism the number of worker threads
+   */
+  public StreamingQueue(StepManagerImpl target, int capacity, int batchSize,
+    int parallelism) {
+    m_target = target;
+    m_queue = new ArrayBlockingQueue<Data>(Math.max(capacity, 1));
+    m_batchSize = Math.max(batchSize, 1);
+    m_workers = new Thread[Math.max(parallelism, 1)];
+  }
+
+  /**
+   * Queues a data object for the step, blocking while the queue is full. The
+   * data object is copied, as producers usually reuse their data objects.
+   *
+   * @param data the data to queue
+   * @throws WekaException if interrupted while waiting
+   */
+  public void put(Data data) throws WekaException {
+    if (m_shutdown) {
+      return;
+    }
+    startWorkers();
+    Data copy = copy(data);
+    m_pending.incrementAndGet();
+    try {
+      while (!m_queue.offer(copy, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+        if (m_shutdown || m_target.isStopRequested()) {
+          m_pending.decrementAndGet();
+          return;
+        }
+      }
+    } catch (InterruptedException ex) {
+      m_pending.decrementAndGet();
+      Thread.currentThread().interrupt();
+      throw new WekaException(ex);
+    }
+    int depth = m_queue.size();
+    if (depth > m_maxDepth) {
+      m_maxDepth = depth;
+    }
+  }
+
+  /**
+   * Starts the worker threads, if not done yet
+   */
+  protected synchronized void startWorkers() {
+    if (m_workers[0] != null) {
+      return;
+    }
+    m_startTime = System.currentTimeMillis();
+    for (int i = 0; i < m_workers.length; i++) {
+      m_workers[i] = new Thread(m_target.getName() + " stream worker " + i) {
+        @Override
+        public void run() {
+          work();
+        }
+      };
+      m_workers[i].setDaemon(true);
+      m_workers[i].start();
+    }
+  }
+
+  /**
+   * The loop of a worker thread
+   */
+  protected void work() {
+    List<Data> batch = new ArrayList<Data>(m_batchSize);
+    while (!m_shutdown) {
+      batch.clear();
+      try {
+        synchronized (m_drainLock) {
+          Data first = m_queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+          if (first == null) {
+            continue;
+          }
+          batch.add(first);
+          m_queue.drainTo(batch, m_batchSize - 1);
+          m_processLock.readLock().lock();
+        }
+      } catch (InterruptedException ex) {
+        break;
+      }
+      try {
+        for (Data d : batch) {
+          if (m_workers.length > 1 && m_target.isStreamFinished(d)) {
+            m_processLock.readLock().unlock();
+            m_processLock.writeLock().lock();
+            try {
+              process(d);
+            } finally {
+              m_processLock.writeLock().unlock();
+              m_processLock.readLock().lock();
+            }
+          } else {
+            process(d);
+          }
+        }
+      } finally {
+        m_processLock.readLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Passes a data object to the step
+   *
+   * @param data the data to process
+   */
+  protected void process(Data data) {
+    try {
+      if (!m_shutdown && !m_target.isStopRequested()) {
+        m_target.processIncoming(data);
+        m_numProcessed.incrementAndGet();
+      }
+    } finally {
+      m_endTime = System.currentTimeMillis();
+      m_pending.decrementAndGet();
+    }
+    if (m_target.isStreamFinished(data)) {
+      m_target.logDetailed("Stream queue: " + getNumProcessed()
+        + " processed, max queue depth " + getMaxDepth() + ", "
+        + String.format("%.1f", getThroughput()) + " per second");
+    }
+  }
+
+  /**
+   * Returns true if data is queued or being processed
+   *
+   * @return true if the queue is busy
+   */
+  public boolean isBusy() {
+    return m_pending.get() > 0;
+  }
+
+  /**
+   * Removes all queued data, e.g., when a stop has been requested
+   */
+  public void clear() {
+    List<Data> removed = new ArrayList<Data>();
+    m_queue.drainTo(removed);
+    m_pending.addAndGet(-removed.size());
+  }
+
+  /**
+   * Discards the queued data and stops the worker threads
+   */
+  public void shutdown() {
+    m_shutdown = true;
+    clear();
+    synchronized (this) {
+      for (Thread worker : m_workers) {
+        if (worker != null) {
+          worker.interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of currently queued data objects
+   *
+   * @return the queue depth
+   */
+  public int getDepth() {
+    return m_queue.size();
+  }
+
+  /**
+   * Gets the largest number of queued data objects seen
+   *
+   * @return the maximum queue depth
+   */
+  public int getMaxDepth() {
+    return m_maxDepth;
+  }
+
+  /**
+   * Gets the number of data objects processed
+   *
+   * @return the number processed
+   */
+  public long getNumProcessed() {
+    return m_numProcessed.get();
+  }
+
+  /**
+   * Gets the number of data objects processed per second since the first one
+   * was queued
+   *
+   * @return the throughput
+   */
+  public double getThroughput() {
+    long start = m_startTime;
+    long end = m_endTime;
+    if (start < 0 || end <= start) {
+      return 0;
+    }
+    return getNumProcessed() * 1000.0 / (end - start);
+  }
+
+  /**
+   * Copies a data object. The payload elements are shared, except for an
+   * instance with string or relational values: in a stream these are kept in
+   * the header, which the producer overwrites for the next instance, so the
+   * instance gets a header of its own.
+   *
+   * @param data the data to copy
+   * @return the copy
+   */
+  protected static Data copy(Data data) {
+    Data result = new Data();
+    result.m_connectionName = data.m_connectionName;
+    result.m_sourceStep = data.m_sourceStep;
+    for (Map.Entry<String, Object> e : data.m_payloadMap.entrySet()) {
+      Object value = e.getValue();
+      if (value instanceof Instance) {
+        value = ownHeader((Instance) value);
+      }
+      result.m_payloadMap.put(e.getKey(), value);
+    }
+    return result;
+  }
+
+  /**
+   * Gives an instance with string or relational values a header of its own
+   * that holds these values.
+   *
+   * @param inst the instance
+   * @return the instance itself, or a copy with its own header
+   */
+  protected static Instance ownHeader(Instance inst) {
+    Instances header = inst.dataset();
+    if (header == null
+      || !(header.checkForStringAttributes() || header
+        .checkForAttributeType(Attribute.RELATIONAL))) {
+      return inst;
+    }
+    Instances own = header.stringFreeStructure();
+    Instance result = (Instance) inst.copy();
+    for (int i = 0; i < inst.numAttributes(); i++) {
+      if (inst.isMissing(i)) {
+        continue;
+      }
+      if (inst.attribute(i).isString()) {
+        result.setValue(i, own.attribute(i).addStringValue(inst.stringValue(i)));
+      } else if (inst.attribute(i).isRelationValued()) {
+        result.setValue(i,
+          own.attribute(i).addRelation(inst.relationalValue(i)));
+      }
+    }
+    result.setDataset(own);
+    return result;
+  }
+}
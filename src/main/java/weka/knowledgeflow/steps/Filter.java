@@ -24,6 +24,7 @@ package weka.knowledgeflow.steps;
 import weka.core.EnvironmentHandler;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.OptionMetadata;
 import weka.core.WekaException;
 import weka.filters.StreamableFilter;
 import weka.gui.ProgrammaticProperty;
@@ -56,7 +57,19 @@ public class Filter extends WekaAlgorithmWrapper {
   protected weka.filters.Filter m_streamingFilter;
 
   /** True if we've been reset */
-  protected boolean m_isReset;
+  protected volatile boolean m_isReset;
+
+  /**
+   * Number of threads that may filter streaming instances concurrently (only
+   * used when the execution environment queues instance streams)
+   */
+  protected int m_streamingParallelism = 1;
+
+  /** The streaming filter used by each thread, if streaming in parallel */
+  protected transient ThreadLocal<weka.filters.Filter> m_threadFilter;
+
+  /** All streaming filters in use, if streaming in parallel */
+  protected transient List<weka.filters.Filter> m_streamingFilters;
 
   /** True if we're streaming */
   protected boolean m_streaming;
@@ -120,6 +133,33 @@ public class Filter extends WekaAlgorithmWrapper {
     return (weka.filters.Filter) getWrappedAlgorithm();
   }
 
+  /**
+   * Set the number of threads that may filter streaming instances concurrently.
+   * Only has an effect when the execution environment queues instance streams,
+   * and should only be used with filters that process each instance
+   * independently of the others. The order of the output instances is not
+   * preserved when more than one thread is used.
+   *
+   * @param parallelism the number of threads (1 = no concurrency)
+   */
+  @OptionMetadata(displayName = "Streaming parallelism",
+    description = "Number of threads that may filter streaming instances "
+      + "concurrently (only applies when streaming queues are enabled, and to "
+      + "filters that process each instance independently). With more than "
+      + "1 thread the order of the output instances is not preserved")
+  public void setStreamingParallelism(int parallelism) {
+    m_streamingParallelism = parallelism;
+  }
+
+  /**
+   * Get the number of threads that may filter streaming instances concurrently
+   *
+   * @return the number of threads (1 = no concurrency)
+   */
+  public int getStreamingParallelism() {
+    return m_streamingParallelism;
+  }
+
   /**
    * Get a list of incoming connection types that this step can accept. Ideally
    * (and if appropriate), this should take into account the state of the step
@@ -232,6 +272,9 @@ public class Filter extends WekaAlgorithmWrapper {
     m_waitingTestData.clear();
     m_streaming = false;
     m_stringAttsPresent = false;
+    m_streamingFilters = null;
+    m_threadFilter = null;
+    getStepManager().setStreamingParallelism(m_streamingParallelism);
     m_isReset = true;
   }
 
@@ -248,22 +291,11 @@ public class Filter extends WekaAlgorithmWrapper {
       data.getPayloadElement(StepManager.CON_AUX_DATA_MAX_SET_NUM);
 
     if (m_isReset) {
-      m_isReset = false;
-      m_setCount = new AtomicInteger(maxSetNum != null ? maxSetNum : 1);
-      getStepManager().processing();
-      if (data.getConnectionName().equals(StepManager.CON_INSTANCE)) {
-        Instances incomingStructure =
-          ((Instance) data.getPayloadElement(StepManager.CON_INSTANCE))
-            .dataset();
-        m_streaming = true;
-        getStepManager().logBasic("Initializing streaming filter");
-        try {
-          m_streamingFilter = weka.filters.Filter.makeCopy(m_filterTemplate);
-          m_streamingFilter.setInputFormat(incomingStructure);
-          m_stringAttsPresent =
-            m_streamingFilter.getOutputFormat().checkForStringAttributes();
-        } catch (Exception ex) {
-          throw new WekaException(ex);
+      // streaming instances can arrive on several threads at once
+      synchronized (this) {
+        if (m_isReset) {
+          initProcessing(data, maxSetNum);
+          m_isReset = false;
         }
       }
     }
@@ -420,6 +452,60 @@ public class Filter extends WekaAlgorithmWrapper {
     }
   }
 
+  /**
+   * Sets up processing for the first data object received after a reset
+   *
+   * @param data the first data object
+   * @param maxSetNum the maximum set number (may be null)
+   * @throws WekaException if a problem occurs
+   */
+  protected void initProcessing(Data data, Integer maxSetNum)
+    throws WekaException {
+    m_setCount = new AtomicInteger(maxSetNum != null ? maxSetNum : 1);
+    getStepManager().processing();
+    if (data.getConnectionName().equals(StepManager.CON_INSTANCE)) {
+      Instances incomingStructure =
+        ((Instance) data.getPayloadElement(StepManager.CON_INSTANCE))
+          .dataset();
+      m_streaming = true;
+      getStepManager().logBasic("Initializing streaming filter");
+      try {
+        m_streamingFilter = weka.filters.Filter.makeCopy(m_filterTemplate);
+        m_streamingFilter.setInputFormat(incomingStructure);
+        m_stringAttsPresent =
+          m_streamingFilter.getOutputFormat().checkForStringAttributes();
+        if (getStepManager().getStreamingParallelism() > 1) {
+          m_streamingFilters = new ArrayList<weka.filters.Filter>();
+          m_threadFilter = new ThreadLocal<weka.filters.Filter>();
+        }
+      } catch (Exception ex) {
+        throw new WekaException(ex);
+      }
+    }
+  }
+
+  /**
+   * Get the streaming filter to use in the current thread. Each thread gets its
+   * own copy of the initialized filter when streaming in parallel.
+   *
+   * @return the streaming filter
+   * @throws Exception if the filter can't be copied
+   */
+  protected weka.filters.Filter getStreamingFilter() throws Exception {
+    if (m_threadFilter == null) {
+      return m_streamingFilter;
+    }
+    weka.filters.Filter result = m_threadFilter.get();
+    if (result == null) {
+      synchronized (m_streamingFilters) {
+        result = weka.filters.Filter.makeCopy(m_streamingFilter);
+        m_streamingFilters.add(result);
+      }
+      m_threadFilter.set(result);
+    }
+    return result;
+  }
+
   /**
    * Process an instance
    *
@@ -430,8 +516,9 @@ public class Filter extends WekaAlgorithmWrapper {
     Instance toFilter = data.getPrimaryPayload();
     getStepManager().throughputUpdateStart();
     try {
-      if (m_streamingFilter.input(toFilter)) {
-        Instance filteredI = m_streamingFilter.output();
+      weka.filters.Filter streamingFilter = getStreamingFilter();
+      if (streamingFilter.input(toFilter)) {
+        Instance filteredI = streamingFilter.output();
         if (m_stringAttsPresent) {
           for (int i = 0; i < filteredI.numAttributes(); i++) {
             if (filteredI.dataset().attribute(i).isString()
@@ -442,10 +529,13 @@ public class Filter extends WekaAlgorithmWrapper {
             }
           }
         }
-        m_incrementalData
-          .setPayloadElement(StepManager.CON_INSTANCE, filteredI);
+        // a reused data object can't be shared by concurrent threads
+        Data output =
+          m_threadFilter == null ? m_incrementalData : new Data(
+            StepManager.CON_INSTANCE);
+        output.setPayloadElement(StepManager.CON_INSTANCE, filteredI);
         if (!isStopRequested()) {
-          getStepManager().outputData(m_incrementalData);
+          getStepManager().outputData(output);
         }
       }
     } catch (Exception ex) {
@@ -460,13 +550,34 @@ public class Filter extends WekaAlgorithmWrapper {
    * @throws WekaException if a problem occurs
    */
   protected void checkPendingStreaming() throws WekaException {
+    if (m_streamingFilters == null) {
+      checkPendingStreaming(m_streamingFilter);
+    } else {
+      // the template filter has only been used to make the per-thread copies
+      synchronized (m_streamingFilters) {
+        for (weka.filters.Filter f : m_streamingFilters) {
+          checkPendingStreaming(f);
+        }
+      }
+    }
+  }
+
+  /**
+   * Check to see if there are any pending instances to output from the
+   * supplied streaming filter
+   *
+   * @param streamingFilter the streaming filter to check
+   * @throws WekaException if a problem occurs
+   */
+  protected void checkPendingStreaming(weka.filters.Filter streamingFilter)
+    throws WekaException {
     try {
-      m_streamingFilter.batchFinished();
+      streamingFilter.batchFinished();
       Instances structureCopy =
-        m_streamingFilter.getOutputFormat().stringFreeStructure();
-      while (m_streamingFilter.numPendingOutput() > 0) {
+        streamingFilter.getOutputFormat().stringFreeStructure();
+      while (streamingFilter.numPendingOutput() > 0) {
         getStepManager().throughputUpdateStart();
-        Instance filteredI = m_streamingFilter.output();
+        Instance filteredI = streamingFilter.output();
         if (m_stringAttsPresent) {
           for (int i = 0; i < filteredI.numAttributes(); i++) {
             if (filteredI.attribute(i).isString() && ! filteredI.isMissing(i)) {
@@ -21,6 +21,13 @@ package weka.associations;
 
 import weka.associations.AbstractAssociatorTest;
 import weka.associations.Associator;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +51,39 @@ public class FPGrowthTest
     return new FPGrowth();
   }
 
+  /**
+   * Tests whether mining the FP-tree with several threads finds the same
+   * rules, in the same order, as mining it sequentially.
+   */
+  public void testParallelMining() throws Exception {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int i = 0; i < 15; i++) {
+      atts.add(new Attribute("item" + i, Arrays.asList("f", "t")));
+    }
+    Instances data = new Instances("baskets", atts, 300);
+    Random random = new Random(1);
+    for (int n = 0; n < 300; n++) {
+      double[] values = new double[atts.size()];
+      int group = random.nextInt(3);
+      for (int i = 0; i < values.length; i++) {
+        double p = (i % 3 == group) ? 0.7 : 0.2;
+        values[i] = random.nextDouble() < p ? 1 : 0;
+      }
+      data.add(new DenseInstance(1.0, values));
+    }
+
+    FPGrowth sequential = new FPGrowth();
+    sequential.setOptions(new String[] { "-S", "-M", "0.05", "-C", "0.5" });
+    sequential.buildAssociations(data);
+    FPGrowth parallel = new FPGrowth();
+    parallel.setOptions(new String[] { "-S", "-M", "0.05", "-C", "0.5",
+      "-num-slots", "3" });
+    parallel.buildAssociations(data);
+
+    assertTrue(sequential.getAssociationRules().getNumRules() > 0);
+    assertEquals(sequential.toString(), parallel.toString());
+  }
+
   public static Test suite() {
     return new TestSuite(FPGrowthTest.class);
   }
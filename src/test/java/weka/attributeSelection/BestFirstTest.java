@@ -21,6 +21,9 @@ package weka.attributeSelection;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.core.Instances;
+import weka.core.TestInstances;
 
 /**
  * Tests BestFirst. Run from the command line with:<p/>
@@ -46,6 +49,38 @@ public class BestFirstTest
     return new CfsSubsetEval();
   }
 
+  /**
+   * Tests whether evaluating the candidates of an expansion concurrently
+   * selects the same attributes as the sequential search.
+   */
+  public void testParallelSearch() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(80);
+    test.setNumNominal(5);
+    test.setNumNumeric(5);
+    test.setNumClasses(2);
+    Instances data = test.generate();
+
+    int[][] selected = new int[2][];
+    for (int n = 0; n < 2; n++) {
+      BestFirst search = new BestFirst();
+      search.setDirection(new weka.core.SelectedTag(
+        BestFirst.SELECTION_BIDIRECTIONAL, BestFirst.TAGS_SELECTION));
+      search.setNumExecutionSlots(n == 0 ? 1 : 3);
+      WrapperSubsetEval eval = new WrapperSubsetEval();
+      eval.setClassifier(new NaiveBayes());
+      AttributeSelection selection = new AttributeSelection();
+      selection.setEvaluator(eval);
+      selection.setSearch(search);
+      selection.SelectAttributes(data);
+      selected[n] = selection.selectedAttributes();
+    }
+    assertEquals(selected[0].length, selected[1].length);
+    for (int i = 0; i < selected[0].length; i++) {
+      assertEquals(selected[0][i], selected[1][i]);
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(BestFirstTest.class);
   }
@@ -19,8 +19,14 @@
 
 package weka.attributeSelection;
 
+import java.io.File;
+import java.util.BitSet;
+import java.util.Random;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Instances;
+import weka.core.TestInstances;
 
 /**
  * Tests BestFirst. Run from the command line with:<p/>
@@ -46,6 +52,106 @@ public class CfsSubsetEvalTest
     return new CfsSubsetEval();
   }
 
+  /**
+   * Generates data with a nominal class and some missing values.
+   *
+   * @return the data
+   * @throws Exception if generation fails
+   */
+  protected Instances getCorrelationData() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(100);
+    test.setNumNominal(20);
+    test.setNumNumeric(20);
+    test.setNumClasses(3);
+    Instances data = test.generate();
+    Random random = new Random(1);
+    for (int i = 0; i < data.numInstances(); i++) {
+      int att = random.nextInt(data.numAttributes());
+      if (att != data.classIndex()) {
+        data.instance(i).setMissing(att);
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Tests whether correlations computed in parallel batches give the same
+   * merits as the lazily computed ones.
+   */
+  public void testParallelCorrelations() throws Exception {
+    Instances data = getCorrelationData();
+    CfsSubsetEval serial = new CfsSubsetEval();
+    serial.buildEvaluator(data);
+    CfsSubsetEval parallel = new CfsSubsetEval();
+    parallel.setPoolSize(4);
+    parallel.setNumThreads(8);
+    parallel.buildEvaluator(data);
+    CfsSubsetEval precomputed = new CfsSubsetEval();
+    precomputed.setPoolSize(4);
+    precomputed.setPreComputeCorrelationMatrix(true);
+    precomputed.buildEvaluator(data);
+
+    Random random = new Random(42);
+    for (int n = 0; n < 20; n++) {
+      BitSet subset = new BitSet(data.numAttributes());
+      for (int i = 0; i < data.numAttributes(); i++) {
+        if ((i != data.classIndex()) && random.nextBoolean()) {
+          subset.set(i);
+        }
+      }
+      double merit = serial.evaluateSubset(subset);
+      assertEquals(merit, parallel.evaluateSubset(subset), 1e-12);
+      assertEquals(merit, precomputed.evaluateSubset(subset), 1e-12);
+    }
+  }
+
+  /**
+   * Tests whether a persisted correlation matrix is reused for the same data
+   * and ignored for different data.
+   */
+  public void testPersistedCorrelationMatrix() throws Exception {
+    Instances data = getCorrelationData();
+    File file = File.createTempFile("weka_cfs", ".matrix");
+    file.delete();
+    try {
+      AttributeSelection selection = new AttributeSelection();
+      CfsSubsetEval eval = new CfsSubsetEval();
+      eval.setCorrelationMatrixFile(file);
+      selection.setEvaluator(eval);
+      selection.setSearch(new BestFirst());
+      selection.SelectAttributes(data);
+      assertTrue(file.exists());
+      assertTrue(eval.m_numFilled.get() > 0);
+      int[] selected = selection.selectedAttributes();
+
+      selection = new AttributeSelection();
+      eval = new CfsSubsetEval();
+      eval.setCorrelationMatrixFile(file);
+      selection.setEvaluator(eval);
+      selection.setSearch(new BestFirst());
+      selection.SelectAttributes(data);
+      assertEquals(0, eval.m_numFilled.get());
+      assertEquals(selected.length, selection.selectedAttributes().length);
+      for (int i = 0; i < selected.length; i++) {
+        assertEquals(selected[i], selection.selectedAttributes()[i]);
+      }
+
+      data.instance(0).setValue(0, data.instance(1).value(0));
+      data.instance(0).setMissing(1);
+      eval = new CfsSubsetEval();
+      eval.setCorrelationMatrixFile(file);
+      eval.buildEvaluator(data);
+      BitSet subset = new BitSet(data.numAttributes());
+      subset.set(0);
+      subset.set(1);
+      eval.evaluateSubset(subset);
+      assertTrue(eval.m_numFilled.get() > 0);
+    } finally {
+      file.delete();
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(CfsSubsetEvalTest.class);
   }
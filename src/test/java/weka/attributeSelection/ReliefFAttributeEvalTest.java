@@ -21,6 +21,9 @@ package weka.attributeSelection;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
 
 /**
  * Tests BestFirst. Run from the command line with:<p/>
@@ -46,6 +49,37 @@ public class ReliefFAttributeEvalTest
     return new ReliefFAttributeEval();
   }
 
+  /**
+   * Tests whether processing the sampled instances with several threads
+   * gives the same weights as processing them sequentially.
+   */
+  public void testParallelWeights() throws Exception {
+    for (int classType : new int[] { Attribute.NOMINAL, Attribute.NUMERIC }) {
+      TestInstances test = new TestInstances();
+      test.setNumInstances(80);
+      test.setNumNominal(3);
+      test.setNumNumeric(5);
+      test.setClassType(classType);
+      test.setNumClasses(3);
+      Instances data = test.generate();
+
+      ReliefFAttributeEval sequential = new ReliefFAttributeEval();
+      sequential.setWeightByDistance(classType == Attribute.NUMERIC);
+      sequential.buildEvaluator(data);
+      ReliefFAttributeEval parallel = new ReliefFAttributeEval();
+      parallel.setWeightByDistance(classType == Attribute.NUMERIC);
+      parallel.setNumExecutionSlots(3);
+      parallel.buildEvaluator(data);
+
+      for (int i = 0; i < data.numAttributes(); i++) {
+        if (i != data.classIndex()) {
+          assertEquals("attribute " + i, sequential.evaluateAttribute(i),
+            parallel.evaluateAttribute(i), 1e-10);
+        }
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(ReliefFAttributeEvalTest.class);
   }
@@ -19,8 +19,17 @@
 
 package weka.attributeSelection;
 
+import java.util.BitSet;
+import java.util.Random;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.classifiers.Evaluation;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Remove;
 
 /**
  * Tests BestFirst. Run from the command line with:<p/>
@@ -48,6 +57,107 @@ public class WrapperSubsetEvalTest
     return eval;
   }
 
+  /**
+   * Computes the merit of a subset with repeated calls of
+   * crossValidateModel, the way the evaluator used to.
+   *
+   * @param data the data
+   * @param subset the subset to evaluate
+   * @param threshold the threshold for another repetition
+   * @return the merit of the subset
+   * @throws Exception if the evaluation fails
+   */
+  protected double crossValidatedMerit(Instances data, BitSet subset,
+    double threshold) throws Exception {
+    BitSet selected = (BitSet) subset.clone();
+    selected.set(data.classIndex());
+    int[] indices = new int[selected.cardinality()];
+    for (int i = selected.nextSetBit(0), j = 0; i >= 0; i = selected
+      .nextSetBit(i + 1)) {
+      indices[j++] = i;
+    }
+    Remove remove = new Remove();
+    remove.setInvertSelection(true);
+    remove.setAttributeIndicesArray(indices);
+    remove.setInputFormat(data);
+    Instances filtered = Filter.useFilter(data, remove);
+
+    Random random = new Random(1);
+    double[] errors = new double[5];
+    int reps = 0;
+    while (reps < 5) {
+      Evaluation eval = new Evaluation(filtered);
+      eval.crossValidateModel(new J48(), filtered, 5, random);
+      errors[reps++] = eval.errorRate();
+      if (threshold < 0) {
+        break;
+      }
+      if (reps > 1) {
+        double mean = 0;
+        for (int i = 0; i < reps; i++) {
+          mean += errors[i];
+        }
+        mean /= reps;
+        double variance = 0;
+        for (int i = 0; i < reps; i++) {
+          variance += (errors[i] - mean) * (errors[i] - mean);
+        }
+        variance /= reps;
+        if (variance > 0) {
+          variance = Math.sqrt(variance);
+        }
+        if (variance / mean <= threshold) {
+          break;
+        }
+      }
+    }
+    double error = 0;
+    for (int i = 0; i < reps; i++) {
+      error += errors[i];
+    }
+    return 1 - error / reps;
+  }
+
+  /**
+   * Tests whether evaluating subsets on the precomputed folds, with and
+   * without the subset cache, gives the merits of plain cross-validation.
+   */
+  public void testFoldPlanAndCache() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(60);
+    test.setNumNominal(4);
+    test.setNumNumeric(4);
+    test.setNumClasses(3);
+    Instances data = test.generate();
+    data.instance(3).setClassMissing();
+
+    for (double threshold : new double[] { -1, 0.01 }) {
+      WrapperSubsetEval cached = (WrapperSubsetEval) getEvaluator();
+      cached.setThreshold(threshold);
+      cached.buildEvaluator(data);
+      WrapperSubsetEval uncached = (WrapperSubsetEval) getEvaluator();
+      uncached.setThreshold(threshold);
+      uncached.setSubsetCacheSize(0);
+      uncached.buildEvaluator(data);
+
+      Random random = new Random(42);
+      for (int n = 0; n < 6; n++) {
+        BitSet subset = new BitSet(data.numAttributes());
+        for (int i = 0; i < data.numAttributes(); i++) {
+          if ((i != data.classIndex()) && random.nextBoolean()) {
+            subset.set(i);
+          }
+        }
+        double merit = crossValidatedMerit(data, subset, threshold);
+        assertEquals(merit, uncached.evaluateSubset(subset), 1e-12);
+        assertEquals(merit, cached.evaluateSubset(subset), 1e-12);
+        // the class bit does not change the cached subset
+        subset.set(data.classIndex());
+        assertEquals(merit, cached.evaluateSubset(subset), 1e-12);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(WrapperSubsetEvalTest.class);
   }
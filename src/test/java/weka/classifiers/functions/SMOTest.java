@@ -21,6 +21,10 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.supportVector.RBFKernel;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +45,38 @@ public class SMOTest extends AbstractClassifierTest {
     return new SMO();
   }
 
+  /**
+   * Tests that training the pairwise models in parallel, with a shared kernel
+   * cache, gives the same model as training them one after the other.
+   */
+  public void testParallelPairwiseModels() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumNominal(0);
+    test.setNumNumeric(5);
+    test.setNumInstances(150);
+    test.setClassType(Attribute.NOMINAL);
+    test.setNumClasses(4);
+    Instances data = test.generate();
+
+    SMO sequential = new SMO();
+    sequential.setKernel(new RBFKernel());
+    sequential.buildClassifier(data);
+
+    SMO parallel = new SMO();
+    parallel.setKernel(new RBFKernel());
+    parallel.setNumExecutionSlots(3);
+    ((RBFKernel) parallel.getKernel()).setCacheSize(1009);
+    parallel.buildClassifier(data);
+
+    for (int i = 0; i < data.numInstances(); i++) {
+      double[] expected = sequential.distributionForInstance(data.instance(i));
+      double[] actual = parallel.distributionForInstance(data.instance(i));
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(expected[j], actual[j], 1e-6);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(SMOTest.class);
   }
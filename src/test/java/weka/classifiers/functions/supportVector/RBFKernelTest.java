@@ -21,6 +21,10 @@ package weka.classifiers.functions.supportVector;
 
 import weka.classifiers.functions.supportVector.AbstractKernelTest;
 import weka.classifiers.functions.supportVector.Kernel;
+import weka.core.Instances;
+import weka.core.TestInstances;
+
+import java.util.Random;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +48,103 @@ public class RBFKernelTest
     return new RBFKernel();
   }
 
+  /**
+   * Generates numeric data.
+   *
+   * @param numInsts the number of instances
+   * @return the data
+   * @throws Exception if generation fails
+   */
+  protected Instances numericData(int numInsts) throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumNominal(0);
+    test.setNumNumeric(4);
+    test.setNumInstances(numInsts);
+    test.setClassType(weka.core.Attribute.NOMINAL);
+    test.setNumClasses(2);
+    return test.generate();
+  }
+
+  /**
+   * Evaluates the kernel for random pairs of instances, repeating pairs so
+   * that cached values are used and evicted.
+   *
+   * @param kernel the kernel to evaluate
+   * @param data the data the kernel is built on
+   * @return the kernel values
+   * @throws Exception if evaluation fails
+   */
+  protected double[] evaluatePairs(RBFKernel kernel, Instances data)
+    throws Exception {
+    Random random = new Random(42);
+    double[] result = new double[5000];
+    for (int i = 0; i < result.length; i++) {
+      int id1 = random.nextInt(data.numInstances());
+      int id2 = random.nextInt(data.numInstances());
+      result[i] = kernel.eval(id1, id2, data.instance(id1));
+    }
+    return result;
+  }
+
+  /**
+   * Tests that small caches, memory budgets and row caching give the same
+   * kernel values as no cache at all.
+   */
+  public void testCacheVariants() throws Exception {
+    Instances data = numericData(100);
+    RBFKernel uncached = new RBFKernel(data, -1, 0.5);
+    double[] expected = evaluatePairs(uncached, data);
+
+    String[][] variants = { { "-C", "7" }, { "-C", "0" },
+      { "-C", "3", "-cache-rows" }, { "-C", "250007", "-cache-mb", "0.01" },
+      { "-C", "250007", "-cache-mb", "0.01", "-cache-rows" } };
+    for (String[] options : variants) {
+      RBFKernel kernel = new RBFKernel();
+      kernel.setOptions(options.clone());
+      kernel.setGamma(0.5);
+      kernel.buildKernel(data);
+      double[] actual = evaluatePairs(kernel, data);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(weka.core.Utils.joinOptions(options), expected[i],
+          actual[i], 1e-12);
+      }
+      assertTrue(kernel.numCacheHits() > 0);
+    }
+  }
+
+  /**
+   * Tests kernels built on subsets of the data sharing one cache.
+   */
+  public void testSharedCache() throws Exception {
+    Instances data = numericData(60);
+    RBFKernel full = new RBFKernel(data, -1, 0.5);
+
+    RBFKernel template = new RBFKernel();
+    template.setGamma(0.5);
+    template.setCacheSize(5);
+    KernelCache cache = template.createCache(data.numInstances());
+    for (int s = 0; s < 3; s++) {
+      // every third instance, starting at s, in reverse order
+      Instances subset = new Instances(data, 0);
+      int[] indices = new int[20];
+      for (int i = 0; i < indices.length; i++) {
+        indices[i] = data.numInstances() - 3 - 3 * i + s;
+        subset.add(data.instance(indices[i]));
+      }
+      RBFKernel kernel = (RBFKernel) Kernel.makeCopy(template);
+      kernel.setSharedCache(cache, indices);
+      kernel.buildKernel(subset);
+      for (int i = 0; i < indices.length; i++) {
+        for (int j = 0; j < indices.length; j++) {
+          assertEquals(full.eval(indices[i], indices[j],
+            data.instance(indices[i])), kernel.eval(i, j, subset.instance(i)),
+            1e-12);
+        }
+      }
+    }
+    assertTrue(cache.size() > 0);
+  }
+
   public static Test suite() {
     return new TestSuite(RBFKernelTest.class);
   }
@@ -21,6 +21,13 @@ package weka.classifiers.lazy;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.core.TestInstances;
+import weka.core.neighboursearch.KDTree;
+import weka.core.neighboursearch.LinearNNSearch;
+import weka.core.neighboursearch.NeighbourBuffer;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +48,89 @@ public class IBkTest extends AbstractClassifierTest {
     return new IBk();
   }
 
+  /**
+   * Tests whether predicting a batch with several threads gives the same
+   * distributions as predicting the instances one by one.
+   */
+  public void testParallelBatchPrediction() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(60);
+    test.setNumNominal(2);
+    test.setNumNumeric(4);
+    Instances data = test.generate();
+
+    for (int search = 0; search < 2; search++) {
+      IBk sequential = new IBk(5);
+      sequential.setDistanceWeighting(new SelectedTag(
+        IBk.WEIGHT_INVERSE, IBk.TAGS_WEIGHTING));
+      IBk parallel = new IBk(5);
+      parallel.setDistanceWeighting(new SelectedTag(
+        IBk.WEIGHT_INVERSE, IBk.TAGS_WEIGHTING));
+      parallel.setNumExecutionSlots(3);
+      if (search == 1) {
+        sequential.setNearestNeighbourSearchAlgorithm(new KDTree());
+        parallel.setNearestNeighbourSearchAlgorithm(new KDTree());
+      }
+      sequential.buildClassifier(data);
+      parallel.buildClassifier(data);
+
+      assertTrue(parallel.implementsMoreEfficientBatchPrediction());
+      double[][] dists = parallel.distributionsForInstances(data);
+      for (int i = 0; i < data.numInstances(); i++) {
+        double[] expected = sequential.distributionForInstance(data.instance(i));
+        for (int j = 0; j < expected.length; j++) {
+          assertEquals("instance " + i, expected[j], dists[i][j], 1e-12);
+        }
+      }
+    }
+  }
+
+  /**
+   * A search that does not support queries into neighbour buffers, like
+   * searches that are not part of this package.
+   */
+  protected static class UnbufferedSearch extends LinearNNSearch {
+
+    private static final long serialVersionUID = 2630541203316453722L;
+
+    @Override
+    public int kNearestNeighbours(Instance target, int k,
+      NeighbourBuffer result) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean supportsNeighbourBuffers() {
+      return false;
+    }
+  }
+
+  /**
+   * Tests that predicting a batch with several threads falls back to
+   * predicting the instances one by one if the search does not support
+   * neighbour buffers.
+   */
+  public void testParallelBatchPredictionFallback() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(40);
+    Instances data = test.generate();
+
+    IBk sequential = new IBk(3);
+    sequential.buildClassifier(data);
+    IBk parallel = new IBk(3);
+    parallel.setNearestNeighbourSearchAlgorithm(new UnbufferedSearch());
+    parallel.setNumExecutionSlots(3);
+    parallel.buildClassifier(data);
+
+    double[][] dists = parallel.distributionsForInstances(data);
+    for (int i = 0; i < data.numInstances(); i++) {
+      double[] expected = sequential.distributionForInstance(data.instance(i));
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals("instance " + i, expected[j], dists[i][j], 1e-12);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(IBkTest.class);
   }
@@ -21,6 +21,8 @@ package weka.classifiers.lazy;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
+import weka.core.TestInstances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +43,35 @@ public class LWLTest extends AbstractClassifierTest {
     return new LWL();
   }
 
+  /**
+   * Tests whether predicting a batch with several threads gives the same
+   * distributions as predicting the instances one by one.
+   */
+  public void testParallelBatchPrediction() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(60);
+    test.setNumNominal(2);
+    test.setNumNumeric(4);
+    Instances data = test.generate();
+
+    LWL sequential = new LWL();
+    sequential.setKNN(20);
+    LWL parallel = new LWL();
+    parallel.setKNN(20);
+    parallel.setNumExecutionSlots(3);
+    sequential.buildClassifier(data);
+    parallel.buildClassifier(data);
+
+    assertTrue(parallel.implementsMoreEfficientBatchPrediction());
+    double[][] dists = parallel.distributionsForInstances(data);
+    for (int i = 0; i < data.numInstances(); i++) {
+      double[] expected = sequential.distributionForInstance(data.instance(i));
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals("instance " + i, expected[j], dists[i][j], 1e-12);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(LWLTest.class);
   }
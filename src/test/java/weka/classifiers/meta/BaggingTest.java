@@ -21,6 +21,9 @@ package weka.classifiers.meta;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +44,41 @@ public class BaggingTest extends AbstractClassifierTest {
     return new Bagging();
   }
 
+  /**
+   * Tests that the out-of-bag error does not depend on the number of
+   * execution slots and that an error is recorded for each member.
+   */
+  public void testOutOfBagError() throws Exception {
+    for (int classType : new int[] { Attribute.NOMINAL, Attribute.NUMERIC }) {
+      TestInstances test = new TestInstances();
+      test.setNumInstances(200);
+      test.setClassType(classType);
+      Instances data = test.generate();
+
+      double[] errors = new double[2];
+      double[][] memberErrors = new double[2][];
+      for (int slots = 1; slots <= 2; slots++) {
+        Bagging bagging = new Bagging();
+        bagging.setCalcOutOfBag(true);
+        bagging.setNumIterations(15);
+        bagging.setNumExecutionSlots(slots == 1 ? 1 : 4);
+        bagging.buildClassifier(data);
+
+        errors[slots - 1] = bagging.measureOutOfBagError();
+        memberErrors[slots - 1] = bagging.getMemberOutOfBagErrors();
+        assertEquals(15, memberErrors[slots - 1].length);
+        for (double error : memberErrors[slots - 1]) {
+          assertTrue("member error " + error, error >= 0);
+        }
+      }
+      // the votes of the threads are summed in a different order
+      assertEquals(errors[0], errors[1], 1e-10);
+      for (int i = 0; i < 15; i++) {
+        assertEquals(memberErrors[0][i], memberErrors[1][i], 0);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(BaggingTest.class);
   }
@@ -0,0 +1,97 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.meta;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.AbstractClassifierTest;
+import weka.classifiers.Classifier;
+import weka.classifiers.SourcableCompiler;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.J48Consolidated;
+import weka.classifiers.trees.J48PartiallyConsolidated;
+import weka.core.Instances;
+import weka.core.SerializedObject;
+import weka.core.TestInstances;
+
+/**
+ * Tests CompiledSourceClassifier. Run from the command line with:<p/>
+ * java weka.classifiers.meta.CompiledSourceClassifierTest
+ *
+ * @version $Revision$
+ */
+public class CompiledSourceClassifierTest extends AbstractClassifierTest {
+
+  public CompiledSourceClassifierTest(String name) {
+    super(name);
+  }
+
+  /** Creates a default CompiledSourceClassifier */
+  @Override
+  public Classifier getClassifier() {
+    return new CompiledSourceClassifier();
+  }
+
+  /**
+   * Tests that the compiled code predicts the same as the trees it was
+   * generated from, and that compiled models are cached.
+   */
+  public void testSamePredictions() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(300);
+    test.setNumNominal(3);
+    test.setNumNumeric(3);
+    test.setNumClasses(3);
+    Instances data = test.generate();
+
+    Classifier[] trees = new Classifier[] { new J48(),
+      new J48Consolidated(), new J48PartiallyConsolidated() };
+    for (Classifier tree : trees) {
+      Classifier base = AbstractClassifier.makeCopy(tree);
+      base.buildClassifier(data);
+
+      CompiledSourceClassifier compiled = new CompiledSourceClassifier();
+      compiled.setClassifier(tree);
+      compiled.buildClassifier(data);
+      for (int i = 0; i < data.numInstances(); i++) {
+        assertEquals(tree.getClass().getName(),
+          base.classifyInstance(data.instance(i)),
+          compiled.classifyInstance(data.instance(i)), 0);
+      }
+
+      // a deserialized copy finds its compiled code in the cache
+      int cached = SourcableCompiler.cacheSize();
+      Classifier copy =
+        (Classifier) new SerializedObject(compiled).getObject();
+      assertEquals(compiled.classifyInstance(data.instance(0)),
+        copy.classifyInstance(data.instance(0)), 0);
+      assertEquals(cached, SourcableCompiler.cacheSize());
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(CompiledSourceClassifierTest.class);
+  }
+
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+}
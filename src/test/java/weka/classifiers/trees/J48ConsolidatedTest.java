@@ -0,0 +1,151 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.trees;
+
+import weka.classifiers.AbstractClassifierTest;
+import weka.classifiers.Classifier;
+import weka.classifiers.trees.j48Consolidated.InstancesConsolidated;
+import weka.classifiers.trees.j48Consolidated.SampleCache;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests J48Consolidated. Run from the command line with:<p>
+ * java weka.classifiers.trees.J48ConsolidatedTest
+ *
+ * @version $Revision$
+ */
+public class J48ConsolidatedTest extends AbstractClassifierTest {
+
+  public J48ConsolidatedTest(String name) { super(name);  }
+
+  /** Creates a default J48Consolidated */
+  public Classifier getClassifier() {
+    return new J48Consolidated();
+  }
+
+  /**
+   * Tests that the consolidated trees built from cached sample vectors are
+   * the same as the ones built from generated samples.
+   */
+  public void testSampleCache() throws Exception {
+    Instances data = J48Test.generateData(300, 2, 2, 2);
+
+    SampleCache.clear();
+    String[][] options = new String[][] { {}, { "-RM-D", "-2", "-RM-B", "50" },
+      { "-RM-R", "-RM-B", "100", "-RM-D", "-1" } };
+    for (String[] option : options) {
+      J48Consolidated generated = new J48Consolidated();
+      generated.setOptions(option.clone());
+      // the cache is only used on request
+      assertFalse(generated.getRMuseSampleCache());
+      generated.buildClassifier(data);
+      assertEquals(0, generated.measureSamplesFromCache(), 0);
+
+      for (int i = 0; i < 2; i++) {
+        J48Consolidated cached = new J48Consolidated();
+        cached.setOptions(option.clone());
+        cached.setRMuseSampleCache(true);
+        cached.buildClassifier(data);
+        assertEquals(i, cached.measureSamplesFromCache(), 0);
+        assertEquals(generated.toString(), cached.toString());
+      }
+    }
+    assertEquals(3, SampleCache.getHits());
+    assertEquals(3, SampleCache.numEntries());
+
+    // the partially consolidated tree shares the samples of the same options
+    J48PartiallyConsolidated partial = new J48PartiallyConsolidated();
+    partial.setOptions(new String[] { "-RM-R", "-RM-B", "100", "-RM-D", "-1",
+      "-PCTB-C", "1", "-RM-cache" });
+    partial.buildClassifier(data);
+    assertEquals(1, partial.measureSamplesFromCache(), 0);
+  }
+
+  /**
+   * Tests that the class-bucketed resampling keeps the class distribution and
+   * generates the same samples for any number of threads.
+   */
+  public void testBucketedResampling() throws Exception {
+    Instances data = J48Test.generateData(400, 2, 2, 3);
+
+    // the instances of each class are bucketed keeping their order
+    InstancesConsolidated instances = new InstancesConsolidated(data);
+    int[][] classRows = instances.getClassRows();
+    InstancesConsolidated[] classes = instances.getClasses();
+    instances.sort(instances.classIndex());
+    int first = 0;
+    for (int iClass = 0; iClass < classRows.length; iClass++) {
+      assertEquals(classRows[iClass].length, classes[iClass].numInstances());
+      for (int i = 0; i < classRows[iClass].length; i++) {
+        assertEquals(iClass, (int) data.instance(classRows[iClass][i]).classValue());
+        assertEquals(instances.instance(first + i).toString(),
+          classes[iClass].instance(i).toString());
+      }
+      first += classRows[iClass].length;
+    }
+
+    String[][] options = new String[][] { { "-RM-D", "-2", "-RM-B", "50" },
+      { "-RM-D", "-2", "-RM-B", "100", "-RM-R" }, { "-RM-D", "-1", "-RM-B", "70" },
+      { "-RM-D", "50", "-RM-B", "-1" } };
+    for (String[] option : options) {
+      J48Consolidated sequential = new J48Consolidated();
+      sequential.setOptions(Utils.joinOptions(option).concat(
+        " -RM-N 10 -RM-bucketed").split(" "));
+      assertTrue(sequential.getRMbucketedResampling());
+      Instances[] samples = sequential.generateSamples(data);
+      assertEquals(10, samples.length);
+
+      J48Consolidated parallel = new J48Consolidated();
+      parallel.setOptions(Utils.joinOptions(option).concat(
+        " -RM-N 10 -RM-bucketed -RM-num-slots 4").split(" "));
+      assertEquals("4", Utils.getOption("RM-num-slots", parallel.getOptions()));
+      Instances[] parallelSamples = parallel.generateSamples(data);
+      for (int iSample = 0; iSample < samples.length; iSample++) {
+        assertEquals(samples[iSample].toString(),
+          parallelSamples[iSample].toString());
+      }
+
+      if (option[1].equals("-2")) {
+        // stratified: the class distribution of the data is kept
+        double ratio = samples[0].numInstances() / (double) data.numInstances();
+        int[] counts = new int[data.numClasses()];
+        for (int i = 0; i < samples[0].numInstances(); i++) {
+          counts[(int) samples[0].instance(i).classValue()]++;
+        }
+        for (int iClass = 0; iClass < classRows.length; iClass++) {
+          assertEquals(classRows[iClass].length * ratio, counts[iClass], 1.0);
+        }
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(J48ConsolidatedTest.class);
+  }
+
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.trees;
+
+import weka.classifiers.AbstractClassifierTest;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests J48It. Run from the command line with:<p>
+ * java weka.classifiers.trees.J48ItTest
+ *
+ * @version $Revision$
+ */
+public class J48ItTest extends AbstractClassifierTest {
+
+  public J48ItTest(String name) { super(name);  }
+
+  /** Creates a default J48It */
+  public Classifier getClassifier() {
+    return new J48It();
+  }
+
+  /**
+   * Tests that evaluating the splits of the nodes to be developed in a pool
+   * of threads builds the same trees as evaluating them one by one.
+   */
+  public void testParallelSplitEvaluation() throws Exception {
+    Instances data = J48Test.generateData(500, 3, 3, 3);
+
+    String[] criteria = new String[] { "-IT-PO", "-IT-PL", "-IT-PP", "-IT-PS",
+      "-IT-PG", "-IT-PGR" };
+    for (String criterion : criteria) {
+      for (String maximum : new String[] { "2", "99999" }) {
+        J48It sequential = new J48It();
+        sequential.setOptions(new String[] { criterion, "-IT-MC", maximum });
+        sequential.buildClassifier(data);
+
+        J48It parallel = new J48It();
+        parallel.setOptions(new String[] { criterion, "-IT-MC", maximum,
+          "-IT-num-slots", "4" });
+        assertEquals("4", Utils.getOption("IT-num-slots", parallel.getOptions()));
+        parallel.buildClassifier(data);
+
+        assertEquals(criterion + " " + maximum, sequential.toString(),
+          parallel.toString());
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(J48ItTest.class);
+  }
+
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.trees;
+
+import weka.classifiers.AbstractClassifierTest;
+import weka.classifiers.Classifier;
+import weka.classifiers.trees.j48.C45Split;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48Consolidated.SampleCache;
+import weka.classifiers.trees.j48Consolidated.SamplePartitionStore;
+import weka.classifiers.trees.j48PartiallyConsolidated.TrainingProfile;
+import weka.classifiers.trees.j48PartiallyConsolidated.TrainingProfileListener;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests J48PartiallyConsolidated. Run from the command line with:<p>
+ * java weka.classifiers.trees.J48PartiallyConsolidatedTest
+ *
+ * @version $Revision$
+ */
+public class J48PartiallyConsolidatedTest extends AbstractClassifierTest {
+
+  public J48PartiallyConsolidatedTest(String name) { super(name);  }
+
+  /** Creates a default J48PartiallyConsolidated */
+  public Classifier getClassifier() {
+    return new J48PartiallyConsolidated();
+  }
+
+  /**
+   * Tests the profile of the training phases of the partially consolidated
+   * tree, both through the additional measures and the listeners.
+   */
+  public void testTrainingProfile() throws Exception {
+    Instances data = J48Test.generateData(300, 2, 2, 2);
+
+    String[][] options = new String[][] { {},
+      { "-PCTB-BP", "-PCTB-C", "50", "-PCTB-PC", "5" },
+      { "-PCTB-BP", "-PCTB-C", "100", "-PCTB-PC", "0", "-PCTB-CC" } };
+    for (String[] option : options) {
+      J48PartiallyConsolidated partial = new J48PartiallyConsolidated();
+      partial.setOptions(option.clone());
+      final TrainingProfile[] notified = new TrainingProfile[1];
+      partial.addTrainingProfileListener(new TrainingProfileListener() {
+        @Override
+        public void trainingProfiled(Classifier classifier,
+          TrainingProfile profile) {
+          notified[0] = profile;
+        }
+      });
+      assertTrue(Double.isNaN(partial.getMeasure("measureNanosResampling")));
+      partial.buildClassifier(data);
+
+      TrainingProfile profile = partial.getTrainingProfile();
+      assertSame(profile, notified[0]);
+      for (String measure : TrainingProfile.measureNames()) {
+        double value = partial.getMeasure(measure);
+        assertTrue(measure, Double.isNaN(value) || (value >= 0));
+      }
+      assertEquals(partial.m_Classifiers.length,
+        profile.getSamples(TrainingProfile.PHASE_RESAMPLING));
+      assertTrue(profile.getNodes(TrainingProfile.PHASE_SPLIT_SELECTION) > 0);
+      assertTrue(profile.getNanos(TrainingProfile.PHASE_PARTIAL_TREE_GROWTH) > 0);
+      assertTrue(profile.getInstances(TrainingProfile.PHASE_RESAMPLING) > 0);
+    }
+  }
+
+  /**
+   * Tests extending a built partially consolidated tree with more base trees,
+   * which have to preserve the partial consolidated structure.
+   */
+  public void testAddBaseTrees() throws Exception {
+    Instances data = J48Test.generateData(300, 2, 2, 2);
+
+    String[][] options = new String[][] { { "-RM-N", "4" },
+      { "-RM-N", "4", "-PCTB-BP", "-PCTB-C", "100", "-PCTB-PC", "0", "-PCTB-CC" } };
+    for (String[] option : options) {
+      J48PartiallyConsolidated partial = new J48PartiallyConsolidated();
+      partial.setOptions(option.clone());
+      partial.buildClassifier(data);
+      assertEquals(4, partial.m_Classifiers.length);
+      partial.addBaseTrees(data, 3);
+      partial.addBaseTrees(data, 2);
+      assertEquals(9, partial.m_Classifiers.length);
+      assertEquals(9, partial.getTrainingProfile().getSamples(
+        TrainingProfile.PHASE_RESAMPLING));
+
+      ClassifierTree consolidated = partial.m_root;
+      for (ClassifierTree baseTree : partial.m_Classifiers) {
+        if (!consolidated.isLeaf() && !baseTree.isLeaf()) {
+          assertEquals(
+            ((C45Split) consolidated.getLocalModel()).attIndex(),
+            ((C45Split) baseTree.getLocalModel()).attIndex());
+        }
+      }
+      for (int i = 0; i < data.numInstances(); i++) {
+        double[] dist = partial.distributionForInstance(data.instance(i));
+        assertEquals(1, Utils.sum(dist), 1e-6);
+      }
+
+      // the extension is deterministic
+      J48PartiallyConsolidated other = new J48PartiallyConsolidated();
+      other.setOptions(option.clone());
+      other.buildClassifier(data);
+      other.addBaseTrees(data, 3);
+      other.addBaseTrees(data, 2);
+      for (int i = 0; i < partial.m_Classifiers.length; i++) {
+        assertEquals(partial.m_Classifiers[i].toString(),
+          other.m_Classifiers[i].toString());
+      }
+    }
+  }
+
+  /**
+   * Tests that spilling the partitions of the nodes under a memory budget
+   * does not change the partially consolidated tree.
+   */
+  public void testMemoryBudget() throws Exception {
+    Instances data = J48Test.generateData(300, 2, 2, 2);
+
+    // a partition spilled to the store is reloaded as is
+    Instances indexed = SampleCache.indexed(data);
+    indexed.instance(7).setWeight(2.5);
+    SamplePartitionStore store = new SamplePartitionStore(indexed, 0);
+    SamplePartitionStore.Partition partition = store.spill(new Instances(
+      indexed, 5, 10));
+    assertNull(store.spill(data));
+    Instances reloaded = partition.instances();
+    assertEquals(10, reloaded.numInstances());
+    for (int i = 0; i < reloaded.numInstances(); i++) {
+      assertEquals(indexed.instance(5 + i).toString(),
+        reloaded.instance(i).toString());
+      assertEquals(indexed.instance(5 + i).weight(),
+        reloaded.instance(i).weight(), 0);
+    }
+    assertEquals(1, store.getNumSpilled());
+    assertEquals(1, store.getNumReloaded());
+    store.close();
+
+    String[][] options = new String[][] { {},
+      { "-PCTB-PC", "1" },
+      { "-PCTB-PC", "2", "-PCTB-WP" },
+      { "-PCTB-PC", "5", "-PCTB-C", "100" } };
+    for (String[] option : options) {
+      J48PartiallyConsolidated partial = new J48PartiallyConsolidated();
+      partial.setOptions(option.clone());
+      partial.buildClassifier(data);
+
+      J48PartiallyConsolidated budgeted = new J48PartiallyConsolidated();
+      budgeted.setOptions(option.clone());
+      budgeted.setPCTBmemoryBudget(0.001);
+      budgeted.buildClassifier(data);
+
+      assertEquals(partial.toString(), budgeted.toString());
+      for (int i = 0; i < data.numInstances(); i++) {
+        double[] expected = partial.distributionForInstance(data.instance(i));
+        double[] actual = budgeted.distributionForInstance(data.instance(i));
+        for (int j = 0; j < expected.length; j++)
+          assertEquals(expected[j], actual[j], 1e-12);
+      }
+    }
+
+    // the budget can not be applied with the Original priority criteria or
+    // without cleanup, so it is rejected instead of being ignored
+    String[][] rejected = new String[][] { { "-PCTB-PC", "0", "-PCTB-C", "100" },
+      { "-L" } };
+    for (String[] option : rejected) {
+      J48PartiallyConsolidated budgeted = new J48PartiallyConsolidated();
+      budgeted.setOptions(option.clone());
+      budgeted.setPCTBmemoryBudget(1);
+      try {
+        budgeted.buildClassifier(data);
+        fail("Memory budget accepted with " + Utils.joinOptions(option));
+      } catch (Exception e) {
+        assertTrue(e.getMessage(), e.getMessage().indexOf("memoryBudget") >= 0);
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(J48PartiallyConsolidatedTest.class);
+  }
+
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+
+}
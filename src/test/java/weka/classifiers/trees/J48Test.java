@@ -19,8 +19,17 @@
 
 package weka.classifiers.trees;
 
+import java.util.Arrays;
+import java.util.Random;
+
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.trees.j48.CompactClassifierTree;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +50,136 @@ public class J48Test extends AbstractClassifierTest {
     return new J48();
   }
 
+  /**
+   * Generates a dataset with the given number of instances, nominal and
+   * numeric attributes and classes, with two values for each nominal
+   * attribute.
+   *
+   * @param numInstances the number of instances
+   * @param numNominal the number of nominal attributes
+   * @param numNumeric the number of numeric attributes
+   * @param numClasses the number of classes
+   * @return the dataset
+   * @throws Exception if the dataset can't be generated
+   */
+  protected static Instances generateData(int numInstances, int numNominal,
+    int numNumeric, int numClasses) throws Exception {
+    return generateData(numInstances, numNominal, numNumeric, numClasses, 2);
+  }
+
+  /**
+   * Generates a dataset with the given number of instances, nominal and
+   * numeric attributes, classes and values for each nominal attribute.
+   *
+   * @param numInstances the number of instances
+   * @param numNominal the number of nominal attributes
+   * @param numNumeric the number of numeric attributes
+   * @param numClasses the number of classes
+   * @param numNominalValues the number of values of each nominal attribute
+   * @return the dataset
+   * @throws Exception if the dataset can't be generated
+   */
+  protected static Instances generateData(int numInstances, int numNominal,
+    int numNumeric, int numClasses, int numNominalValues) throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(numInstances);
+    test.setNumNominal(numNominal);
+    test.setNumNumeric(numNumeric);
+    test.setNumClasses(numClasses);
+    test.setNumNominalValues(numNominalValues);
+    return test.generate();
+  }
+
+  /**
+   * Tests that the histogram split search finds the same trees as the search
+   * on sorted data when there is a bin for each value, and that it also works
+   * with few bins.
+   */
+  public void testHistogramSplits() throws Exception {
+    Instances data = generateData(1000, 2, 4, 3);
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      for (int j = 0; j < data.numAttributes(); j++) {
+        if (data.attribute(j).isNumeric()) {
+          if (i % 17 == j) {
+            inst.setMissing(j);
+          } else {
+            inst.setValue(j, Math.round(inst.value(j) * 10) / 10.0);
+          }
+        }
+      }
+    }
+
+    J48[] trees = new J48[] { new J48(), new J48Consolidated(),
+      new J48PartiallyConsolidated() };
+    for (J48 tree : trees) {
+      J48 exact = (J48) AbstractClassifier.makeCopy(tree);
+      exact.buildClassifier(data);
+      J48 binned = (J48) AbstractClassifier.makeCopy(tree);
+      binned.setHistogramBins(1000);
+      binned.buildClassifier(data);
+      assertEquals(exact.toString(), binned.toString());
+
+      binned.setHistogramBins(4);
+      assertEquals("4", Utils.getOption("histogram-bins", binned.getOptions()));
+      binned.buildClassifier(data);
+      for (int i = 0; i < data.numInstances(); i++) {
+        binned.distributionForInstance(data.instance(i));
+      }
+    }
+  }
+
+  /**
+   * Tests that freezing a tree keeps its predictions and its output.
+   */
+  public void testFreeze() throws Exception {
+    Instances data = generateData(300, 3, 3, 3, 3);
+    Random random = new Random(1);
+    for (int i = 0; i < data.numInstances(); i++) {
+      for (int j = 0; j < data.numAttributes(); j++) {
+        if (j != data.classIndex() && random.nextDouble() < 0.05) {
+          data.instance(i).setMissing(j);
+        }
+      }
+    }
+
+    J48[] trees = new J48[] { new J48(), new J48(), new J48(), new J48It(),
+      new J48Consolidated(), new J48PartiallyConsolidated() };
+    String[][] options = new String[][] { {}, { "-A", "-U" }, { "-B" },
+      { "-IT-PS", "-IT-MC", "6", "-U" }, {}, { "-PCTB-C", "3" } };
+    for (int t = 0; t < trees.length; t++) {
+      J48 tree = trees[t];
+      tree.setOptions(options[t]);
+      tree.buildClassifier(data);
+      String text = tree.toString();
+      String graph = tree.graph();
+      double[][] dists = new double[data.numInstances()][];
+      for (int i = 0; i < data.numInstances(); i++) {
+        dists[i] = tree.distributionForInstance(data.instance(i));
+      }
+
+      assertFalse(tree.isFrozen());
+      tree.freeze();
+      assertTrue(tree.isFrozen());
+      assertEquals(text, tree.toString());
+      assertEquals(graph, tree.graph());
+      for (int i = 0; i < data.numInstances(); i++) {
+        assertTrue(Arrays.equals(dists[i],
+          tree.distributionForInstance(data.instance(i))));
+      }
+    }
+
+    // the base trees of a frozen model can not be extended
+    J48PartiallyConsolidated partial = (J48PartiallyConsolidated) trees[5];
+    assertTrue(partial.m_Classifiers[0] instanceof CompactClassifierTree);
+    try {
+      partial.addBaseTrees(data, 1);
+      fail("Frozen base trees were extended");
+    } catch (Exception e) {
+      // expected
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(J48Test.class);
   }
@@ -0,0 +1,154 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.trees.j48;
+
+import java.util.Random;
+
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.J48Consolidated;
+import weka.classifiers.trees.J48PartiallyConsolidated;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.Utils;
+import weka.test.Regression;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the pruning of C4.5 trees. Run from the command line with:<p/>
+ * java weka.classifiers.trees.j48.C45PruneableClassifierTreeTest
+ *
+ * @version $Revision$
+ */
+public class C45PruneableClassifierTreeTest extends TestCase {
+
+  public C45PruneableClassifierTreeTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates a dataset with nominal and numeric attributes, in which 30% of
+   * the class values are replaced by random ones, so that the trees get
+   * pruned, and the given fraction of all values is missing.
+   *
+   * @param numClasses the number of classes
+   * @param missing the fraction of missing values
+   * @param seed the seed for the data, the noise and the missing values
+   * @return the dataset
+   * @throws Exception if the dataset can't be generated
+   */
+  protected Instances generateData(int numClasses, double missing, int seed)
+    throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(500);
+    test.setNumNominal(4);
+    test.setNumNominalValues(3);
+    test.setNumNumeric(4);
+    test.setNumClasses(numClasses);
+    test.setSeed(seed);
+    Instances data = test.generate();
+    Random random = new Random(seed);
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (random.nextDouble() < 0.3) {
+        data.instance(i).setClassValue(random.nextInt(numClasses));
+      }
+      for (int j = 0; j < data.numAttributes(); j++) {
+        if (random.nextDouble() < missing) {
+          data.instance(i).setMissing(j);
+        }
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Escapes the characters outside of ASCII, so that the reference does not
+   * depend on the default encoding of the platform.
+   *
+   * @param text the text to escape
+   * @return the escaped text
+   */
+  protected String escape(String text) {
+    StringBuilder result = new StringBuilder();
+    for (char c : text.toCharArray()) {
+      if (c < 128) {
+        result.append(c);
+      } else {
+        result.append(String.format("\\u%04x", (int) c));
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Tests that the pruned trees, which are built on the rows of the training
+   * data, are the same as the ones built on copies of the training data
+   * before. The reference contains the trees of J48, J48Consolidated and
+   * J48PartiallyConsolidated (PCTBagging) built with the copies, with and
+   * without subtree raising, and on data with missing values. Reduced-error
+   * pruning is only available in J48. PCTBagging is only built without subtree
+   * raising if the tree is not cleaned up, since it needs the training data of
+   * the nodes.
+   */
+  public void testRegression() throws Exception {
+    J48[] trees = new J48[] { new J48(), new J48(), new J48(), new J48(),
+      new J48(), new J48(), new J48(), new J48Consolidated(),
+      new J48Consolidated(), new J48Consolidated(), new J48Consolidated(),
+      new J48PartiallyConsolidated(), new J48PartiallyConsolidated(),
+      new J48PartiallyConsolidated(), new J48PartiallyConsolidated(),
+      new J48PartiallyConsolidated() };
+    String[][] options = new String[][] { {}, { "-S" }, { "-C", "0.1" },
+      { "-B" }, { "-R" }, { "-L" }, { "-S", "-L" }, {}, { "-S" },
+      { "-C", "0.1" }, { "-L" }, { "-PCTB-C", "3" },
+      { "-S", "-L", "-PCTB-C", "3" }, { "-C", "0.1", "-PCTB-C", "3" },
+      { "-PCTB-C", "3", "-PCTB-WP" }, { "-L", "-PCTB-C", "3" } };
+    Instances[] data = new Instances[] { generateData(3, 0.05, 3),
+      generateData(2, 0.15, 3) };
+
+    Regression reg = new Regression(this.getClass());
+    for (int d = 0; d < data.length; d++) {
+      for (int t = 0; t < trees.length; t++) {
+        J48 tree = trees[t];
+        tree.setOptions(options[t].clone());
+        tree.buildClassifier(data[d]);
+        reg.println("=== " + tree.getClass().getName() + " "
+          + Utils.joinOptions(options[t]) + " on data " + d + " ===");
+        reg.println(escape(tree.toString()));
+      }
+    }
+
+    String diff = reg.diff();
+    if (diff == null) {
+      System.err.println("Warning: No reference available, creating.");
+    } else if (!diff.equals("")) {
+      fail("Regression test failed. Difference:\n" + diff);
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(C45PruneableClassifierTreeTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -19,8 +19,15 @@
 
 package weka.clusterers;
 
+import java.util.ArrayList;
+import java.util.Random;
+
 import weka.clusterers.AbstractClustererTest;
 import weka.clusterers.Clusterer;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.SelectedTag;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +51,147 @@ public class HierarchicalClustererTest
     return new HierarchicalClusterer();
   }
 
+  /**
+   * Generates random numeric data without ties.
+   *
+   * @return the data
+   */
+  protected Instances randomData() {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int j = 0; j < 3; j++) {
+      atts.add(new Attribute("att" + j));
+    }
+    Instances data = new Instances("random", atts, 0);
+    Random random = new Random(1);
+    for (int i = 0; i < 40; i++) {
+      double[] values = new double[3];
+      for (int j = 0; j < 3; j++) {
+        values[j] = random.nextGaussian() + (i % 3) * 2;
+      }
+      data.add(new DenseInstance(1, values));
+    }
+    return data;
+  }
+
+  /**
+   * Generates points on a grid, whose Manhattan distances are integers with
+   * many ties.
+   *
+   * @return the data
+   */
+  protected Instances tiedData() {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("x"));
+    atts.add(new Attribute("y"));
+    Instances data = new Instances("ties", atts, 0);
+    for (int i = 0; i < 12; i++) {
+      data.add(new DenseInstance(1, new double[] { i % 8, i / 8 }));
+    }
+    return data;
+  }
+
+  /**
+   * Returns the cluster assignments of the training data.
+   *
+   * @param clusterer the clusterer to build
+   * @param data the training data
+   * @return the cluster of each instance
+   * @throws Exception if clustering fails
+   */
+  protected int[] clusters(HierarchicalClusterer clusterer, Instances data)
+    throws Exception {
+    clusterer.buildClusterer(data);
+    int[] result = new int[data.numInstances()];
+    for (int i = 0; i < data.numInstances(); i++) {
+      result[i] = clusterer.clusterInstance(data.instance(i));
+    }
+    return result;
+  }
+
+  /**
+   * Tests that the nearest-neighbor chain finds the same clusters and
+   * hierarchy as the default search on data without ties.
+   */
+  public void testNearestNeighborChain() throws Exception {
+    Instances data = randomData();
+    int[] linkTypes = { HierarchicalClusterer.SINGLE,
+      HierarchicalClusterer.COMPLETE, HierarchicalClusterer.AVERAGE };
+    for (int linkType : linkTypes) {
+      for (int numClusters = 1; numClusters <= 4; numClusters++) {
+        HierarchicalClusterer greedy = new HierarchicalClusterer();
+        greedy.setLinkType(new SelectedTag(linkType,
+          HierarchicalClusterer.TAGS_LINK_TYPE));
+        greedy.setNumClusters(numClusters);
+        HierarchicalClusterer chain = new HierarchicalClusterer();
+        chain.setLinkType(new SelectedTag(linkType,
+          HierarchicalClusterer.TAGS_LINK_TYPE));
+        chain.setNumClusters(numClusters);
+        chain.setUseNearestNeighborChain(true);
+
+        int[] expected = clusters(greedy, data);
+        int[] actual = clusters(chain, data);
+        for (int i = 0; i < expected.length; i++) {
+          assertEquals("link type " + linkType + ", instance " + i,
+            expected[i], actual[i]);
+        }
+        assertEquals(greedy.graph(), chain.graph());
+      }
+    }
+  }
+
+  /**
+   * Tests that tied distances are still merged in the order of the priority
+   * queue by default. The expected clusters are those of the search without
+   * the condensed distance matrix, the debug flag must not change them.
+   */
+  public void testTiedDistances() throws Exception {
+    Instances data = tiedData();
+    String[][] expected = {
+      { "SINGLE", "000000001110", "000000012220", "000011123330" },
+      { "COMPLETE", "000011110000", "000122220001", "000122223331" },
+      { "AVERAGE", "000011110000", "000122220001", "000122330001" } };
+    for (String[] linkType : expected) {
+      for (int numClusters = 2; numClusters <= 4; numClusters++) {
+        for (boolean debug : new boolean[] { false, true }) {
+          HierarchicalClusterer clusterer = new HierarchicalClusterer();
+          clusterer.setOptions(new String[] { "-L", linkType[0], "-N",
+            "" + numClusters, "-A", "weka.core.ManhattanDistance -D" });
+          clusterer.setDebug(debug);
+          StringBuilder actual = new StringBuilder();
+          for (int cluster : clusters(clusterer, data)) {
+            actual.append(cluster);
+          }
+          assertEquals(linkType[0] + ", " + numClusters + " clusters",
+            linkType[numClusters - 1], actual.toString());
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that computing the distance matrix in parallel gives the same
+   * clusters.
+   */
+  public void testParallelDistanceMatrix() throws Exception {
+    Instances data = randomData();
+    HierarchicalClusterer sequential = new HierarchicalClusterer();
+    sequential.setLinkType(new SelectedTag(HierarchicalClusterer.WARD,
+      HierarchicalClusterer.TAGS_LINK_TYPE));
+    sequential.setNumClusters(3);
+    HierarchicalClusterer parallel = new HierarchicalClusterer();
+    parallel.setLinkType(new SelectedTag(HierarchicalClusterer.WARD,
+      HierarchicalClusterer.TAGS_LINK_TYPE));
+    parallel.setNumClusters(3);
+    parallel.setNumExecutionSlots(3);
+
+    int[] expected = clusters(sequential, data);
+    int[] actual = clusters(parallel, data);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("instance " + i, expected[i], actual[i]);
+    }
+    assertEquals(sequential.graph(), parallel.graph());
+  }
+
   public static Test suite() {
     return new TestSuite(HierarchicalClustererTest.class);
   }
@@ -21,6 +21,10 @@ package weka.clusterers;
 
 import weka.clusterers.AbstractClustererTest;
 import weka.clusterers.Clusterer;
+import weka.core.Attribute;
+import weka.core.EuclideanDistance;
+import weka.core.Instances;
+import weka.core.TestInstances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +48,65 @@ public class SimpleKMeansTest
     return new SimpleKMeans();
   }
 
+  /**
+   * Builds SimpleKMeans on numeric data.
+   *
+   * @param data the data to cluster
+   * @param dense false if the dense assignment is to be avoided
+   * @param slots the number of execution slots
+   * @return the built clusterer
+   * @throws Exception if clustering fails
+   */
+  protected SimpleKMeans buildKMeans(Instances data, boolean dense, int slots)
+    throws Exception {
+    SimpleKMeans result = new SimpleKMeans();
+    result.setNumClusters(5);
+    result.setPreserveInstancesOrder(true);
+    result.setNumExecutionSlots(slots);
+    if (!dense) {
+      // a subclass of EuclideanDistance takes the general code path
+      result.setDistanceFunction(new EuclideanDistance() {
+        private static final long serialVersionUID = 1L;
+      });
+    }
+    result.buildClusterer(data);
+    return result;
+  }
+
+  /**
+   * Tests that the dense assignment, sequential and in parallel, gives the
+   * same clusters as the general code path.
+   */
+  public void testDenseAssignment() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumNominal(0);
+    test.setNumNumeric(6);
+    test.setNumInstances(500);
+    test.setClassType(Attribute.NUMERIC);
+    test.setClassIndex(TestInstances.NO_CLASS);
+    Instances data = test.generate();
+
+    SimpleKMeans expected = buildKMeans(data, false, 1);
+    for (int slots : new int[] { 1, 3 }) {
+      SimpleKMeans actual = buildKMeans(data, true, slots);
+      assertEquals(expected.getNumClusters(), actual.getNumClusters());
+      int[] expectedAssignments = expected.getAssignments();
+      int[] actualAssignments = actual.getAssignments();
+      for (int i = 0; i < expectedAssignments.length; i++) {
+        assertEquals(expectedAssignments[i], actualAssignments[i]);
+      }
+      assertEquals(expected.getSquaredError(), actual.getSquaredError(), 1e-8);
+      Instances expectedCentroids = expected.getClusterCentroids();
+      Instances actualCentroids = actual.getClusterCentroids();
+      for (int c = 0; c < expectedCentroids.numInstances(); c++) {
+        for (int j = 0; j < data.numAttributes(); j++) {
+          assertEquals(expectedCentroids.instance(c).value(j), actualCentroids
+            .instance(c).value(j), 1e-8);
+        }
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(SimpleKMeansTest.class);
   }
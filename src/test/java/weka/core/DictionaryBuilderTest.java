@@ -354,6 +354,61 @@ public class DictionaryBuilderTest extends TestCase {
     assertEquals(17, consolidated.size());
   }
 
+  public void testProcessAndVectorizeBatchInParallel() throws Exception {
+    Instances data2 = getData2();
+    Instances data = new Instances(data2, 0);
+    String[] words = { "quick", "brown", "fox", "slow", "tank", "lazy",
+      "turnip", "beetle", "the", "over" };
+    java.util.Random random = new java.util.Random(1);
+    for (int i = 0; i < 50; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = 3 + random.nextInt(8);
+      for (int j = 0; j < length; j++) {
+        text.append(words[random.nextInt(words.length - (i % 3))]).append(" ");
+      }
+      double[] values =
+        { data.attribute(0).addStringValue(text.toString()), i % 2 };
+      data.add(new DenseInstance(1.0, values));
+    }
+
+    DictionaryBuilder sequential = new DictionaryBuilder();
+    sequential.setOptions(new String[] { "-C", "-T", "-I", "-W", "6" });
+    sequential.setup(new Instances(data, 0));
+    for (int i = 0; i < data.numInstances(); i++) {
+      sequential.processInstance(data.instance(i));
+    }
+    Map<String, int[]>[] expectedDicts = sequential.getDictionaries(false);
+    String[][] expectedTerms = new String[expectedDicts.length][];
+    for (int i = 0; i < expectedDicts.length; i++) {
+      expectedTerms[i] = expectedDicts[i].keySet().toArray(new String[0]);
+    }
+    sequential.finalizeDictionary();
+    Instances expected = sequential.vectorizeBatch(data, false);
+
+    DictionaryBuilder parallel = new DictionaryBuilder();
+    parallel.setOptions(new String[] { "-C", "-T", "-I", "-W", "6",
+      "-num-slots", "3" });
+    parallel.setup(new Instances(data, 0));
+    parallel.processBatch(data);
+    Map<String, int[]>[] dicts = parallel.getDictionaries(false);
+    for (int i = 0; i < dicts.length; i++) {
+      assertEquals(java.util.Arrays.asList(expectedTerms[i]),
+        new java.util.ArrayList<String>(dicts[i].keySet()));
+      for (Map.Entry<String, int[]> e : dicts[i].entrySet()) {
+        assertEquals(expectedDicts[i].get(e.getKey())[0], e.getValue()[0]);
+        assertEquals(expectedDicts[i].get(e.getKey())[1], e.getValue()[1]);
+      }
+    }
+    parallel.finalizeDictionary();
+    Instances vectorized = parallel.vectorizeBatch(data, false);
+
+    assertEquals(expected.numInstances(), vectorized.numInstances());
+    for (int i = 0; i < expected.numInstances(); i++) {
+      assertEquals(expected.instance(i).toString(), vectorized.instance(i)
+        .toString());
+    }
+  }
+
   public void testSaveLoadDictionaryPlainTextNoNormalize() throws Exception {
     Instances data1 = getData1();
     Instances structure = new Instances(data1, 0);
@@ -19,8 +19,15 @@
 
 package weka.core.converters;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
 
 /**
  * Tests ArffLoader/ArffSaver. Run from the command line with:<p/>
@@ -59,6 +66,146 @@ public class ArffTest
     return new ArffSaver();
   }
 
+  /** data with dense and sparse rows, weights, quotes and comments */
+  protected static final String PARALLEL_DATA = "@relation test\r\n"
+    + "@attribute num numeric\r\n"
+    + "@attribute 'nom att' {a, 'b c', ?, \"d'e\"}\r\n"
+    + "@attribute other numeric\r\n"
+    + "@data\r\n"
+    + "1.5,a,3\r\n"
+    + "% a comment\r\n"
+    + "\r\n"
+    + "?,'b c',-2e3 % trailing comment\r\n"
+    + "4 , '?' , ?, {2.5}\r\n"
+    + "{0 7, 1 \"d'e\"}\r\n"
+    + "{1 'b c'}, {0.5}\r\n"
+    + "{}\r\n"
+    + "8,\"d\\'e\",9";
+
+  /**
+   * Loads the given data with the given number of threads.
+   * 
+   * @param data the ARFF content
+   * @param numThreads the number of threads
+   * @return the loaded data
+   * @throws Exception if loading fails
+   */
+  protected Instances loadParallel(String data, int numThreads)
+    throws Exception {
+    ArffLoader loader = new ArffLoader();
+    loader.setNumThreads(numThreads);
+    loader.setSource(new ByteArrayInputStream(data.getBytes("UTF-8")));
+    return loader.getDataSet();
+  }
+
+  /**
+   * Compares the values and weights of two datasets.
+   * 
+   * @param expected the expected data
+   * @param actual the actual data
+   */
+  protected void assertSameData(Instances expected, Instances actual) {
+    assertEquals(expected.numInstances(), actual.numInstances());
+    for (int i = 0; i < expected.numInstances(); i++) {
+      assertEquals("row " + i, expected.instance(i).toString(), actual
+        .instance(i).toString());
+      assertEquals("weight of row " + i, expected.instance(i).weight(), actual
+        .instance(i).weight(), 0.0);
+    }
+  }
+
+  /**
+   * tests parsing the data section with several threads
+   */
+  public void testParallelBatch() throws Exception {
+    Instances serial = loadParallel(PARALLEL_DATA, 1);
+    assertEquals(7, serial.numInstances());
+    assertSameData(serial, loadParallel(PARALLEL_DATA, 4));
+
+    // data with string attributes is read one instance at a time
+    Instances data = m_Instances;
+    assertSameData(data, loadParallel(data.toString(), 4));
+  }
+
+  /**
+   * Checks that the data section was handed to the chunk parser, i.e., that
+   * the tokenizer of the reader stopped before the last line.
+   * 
+   * @param loader the loader that read the data
+   */
+  protected void assertParsedInChunks(ArffLoader loader) {
+    int numLines = PARALLEL_DATA.split("\r\n").length;
+    assertTrue("line " + loader.m_ArffReader.getLineNo(),
+      loader.m_ArffReader.getLineNo() < numLines);
+  }
+
+  /**
+   * tests that the data is parsed in chunks if the structure was retrieved
+   * before the data
+   */
+  public void testParallelAfterStructure() throws Exception {
+    Instances serial = loadParallel(PARALLEL_DATA, 1);
+    ArffLoader loader = new ArffLoader();
+    loader.setNumThreads(4);
+    loader.setSource(new ByteArrayInputStream(PARALLEL_DATA.getBytes("UTF-8")));
+    loader.getStructure();
+    assertSameData(serial, loader.getDataSet());
+    assertParsedInChunks(loader);
+  }
+
+  /**
+   * tests that the data is parsed in chunks when it is loaded through a
+   * DataSource
+   */
+  public void testParallelThroughDataSource() throws Exception {
+    Instances serial = loadParallel(PARALLEL_DATA, 1);
+    File file = File.createTempFile("arfftest", ".arff");
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      out.write(PARALLEL_DATA.getBytes("UTF-8"));
+      out.close();
+      ArffLoader loader = new ArffLoader();
+      loader.setNumThreads(4);
+      loader.setFile(file);
+      DataSource source = new DataSource(loader);
+      assertEquals(serial.numAttributes(), source.getStructure()
+        .numAttributes());
+      assertSameData(serial, source.getDataSet());
+      assertParsedInChunks(loader);
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * tests that rows split across chunks are reassembled in file order
+   */
+  public void testChunkedParsing() throws Exception {
+    Instances serial = loadParallel(PARALLEL_DATA, 1);
+    String rows = PARALLEL_DATA.substring(PARALLEL_DATA.indexOf("@data")
+      + "@data\r\n".length());
+    for (int chunkSize = 16; chunkSize < 64; chunkSize += 7) {
+      ArffChunkParser parser = new ArffChunkParser(serial, null, null);
+      parser.setChunkSize(chunkSize);
+      Instances parallel = new Instances(serial, 0);
+      parser.read(new StringReader(rows), parallel, 6, 3, false);
+      assertSameData(serial, parallel);
+    }
+  }
+
+  /**
+   * tests that parse errors report the line of the offending row
+   */
+  public void testParallelError() throws Exception {
+    String data = PARALLEL_DATA.replace("{1 'b c'}", "{1 'x'}");
+    try {
+      loadParallel(data, 4);
+      fail("Undeclared nominal value not detected");
+    } catch (Exception e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("line 12"));
+    }
+  }
+
   /**
    * returns a test suite
    * 
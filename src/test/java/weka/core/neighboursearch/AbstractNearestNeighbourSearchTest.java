@@ -314,6 +314,68 @@ public abstract class AbstractNearestNeighbourSearchTest extends TestCase {
     }
   }
 
+  /**
+   * tests whether queries into neighbour buffers return the same neighbours
+   * and distances as kNearestNeighbours(Instance, int), also when the same
+   * buffer is reused and when several threads query concurrently
+   */
+  public void testNeighbourBuffer() throws Exception {
+    final int[] ks = { 1, m_NumNeighbors, 10 };
+
+    assertTrue(m_NearestNeighbourSearch.supportsNeighbourBuffers());
+    m_NearestNeighbourSearch.setInstances(m_Instances);
+
+    // reference results of the stateful API
+    final String[][] expected = new String[m_Instances.numInstances()][ks.length];
+    for (int n = 0; n < m_Instances.numInstances(); n++) {
+      for (int i = 0; i < ks.length; i++) {
+        Instances neighbors = m_NearestNeighbourSearch.kNearestNeighbours(
+          m_Instances.instance(n), ks[i]);
+        double[] distances = m_NearestNeighbourSearch.getDistances();
+        StringBuffer item = new StringBuffer();
+        for (int m = 0; m < neighbors.numInstances(); m++) {
+          item.append(distances[m] + " " + neighbors.instance(m) + "\n");
+        }
+        expected[n][i] = item.toString();
+      }
+    }
+
+    final String[] failure = new String[1];
+    Thread[] threads = new Thread[3];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          NeighbourBuffer buffer = new NeighbourBuffer();
+          try {
+            for (int n = 0; n < m_Instances.numInstances(); n++) {
+              for (int i = 0; i < ks.length; i++) {
+                int size = m_NearestNeighbourSearch.kNearestNeighbours(
+                  m_Instances.instance(n), ks[i], buffer);
+                StringBuffer item = new StringBuffer();
+                for (int m = 0; m < size; m++) {
+                  item.append(buffer.distance(m) + " "
+                    + m_Instances.instance(buffer.index(m)) + "\n");
+                }
+                if (!expected[n][i].equals(item.toString())) {
+                  failure[0] = "instance #" + (n + 1) + " with " + ks[i]
+                    + " neighbors";
+                }
+              }
+            }
+          } catch (Exception e) {
+            failure[0] = e.toString();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull("Buffered results differ: " + failure[0], failure[0]);
+  }
+
   /**
    * Runs the NearestNeighbourSearch with the given data and returns the
    * generated results.
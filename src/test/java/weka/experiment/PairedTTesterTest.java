@@ -0,0 +1,184 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.experiment;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Tests the indexed resultsets and the cached statistics of PairedTTester.
+ *
+ * @version $Revision$
+ */
+public class PairedTTesterTest extends TestCase {
+
+  /** the index of the first measure column */
+  protected static final int FIRST_MEASURE = 4;
+
+  /** the number of measure columns */
+  protected static final int NUM_MEASURES = 2;
+
+  public PairedTTesterTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates experiment results for several datasets and schemes, in random
+   * order.
+   *
+   * @return the results
+   */
+  protected Instances results() {
+    ArrayList<String> datasets = new ArrayList<String>();
+    for (int i = 0; i < 4; i++) {
+      datasets.add("dataset" + i);
+    }
+    ArrayList<String> schemes = new ArrayList<String>();
+    for (int i = 0; i < 3; i++) {
+      schemes.add("scheme" + i);
+    }
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("Key_Dataset", datasets));
+    atts.add(new Attribute("Key_Run"));
+    atts.add(new Attribute("Key_Fold"));
+    atts.add(new Attribute("Key_Scheme", schemes));
+    for (int m = 0; m < NUM_MEASURES; m++) {
+      atts.add(new Attribute("measure" + m));
+    }
+    Instances result = new Instances("results", atts, 0);
+    Random random = new Random(1);
+    for (int d = 0; d < datasets.size(); d++) {
+      for (int s = 0; s < schemes.size(); s++) {
+        for (int run = 1; run <= 5; run++) {
+          for (int fold = 1; fold <= 4; fold++) {
+            double[] values = new double[atts.size()];
+            values[0] = d;
+            values[1] = run;
+            values[2] = fold;
+            values[3] = s;
+            for (int m = 0; m < NUM_MEASURES; m++) {
+              values[FIRST_MEASURE + m] = 70 + s * d + random.nextGaussian();
+            }
+            result.add(new DenseInstance(1.0, values));
+          }
+        }
+      }
+    }
+    result.randomize(random);
+    return result;
+  }
+
+  /**
+   * Creates a tester for the generated results.
+   *
+   * @param slots the number of execution slots
+   * @return the tester
+   * @throws Exception if setting the options fails
+   */
+  protected PairedTTester tester(int slots) throws Exception {
+    PairedTTester tester = new PairedCorrectedTTester();
+    tester.setOptions(new String[] { "-D", "1", "-R", "2", "-F", "3", "-G",
+      "4", "-V", "-num-slots", "" + slots });
+    return tester;
+  }
+
+  /**
+   * Produces the full comparison, summary and ranking for all measures.
+   *
+   * @param tester the tester to use
+   * @return the output
+   * @throws Exception if testing fails
+   */
+  protected String output(PairedTTester tester) throws Exception {
+    StringBuilder result = new StringBuilder();
+    for (int m = 0; m < NUM_MEASURES; m++) {
+      for (int base = 0; base < tester.getNumResultsets(); base++) {
+        result.append(tester.multiResultsetFull(base, FIRST_MEASURE + m));
+      }
+      result.append(tester.multiResultsetSummary(FIRST_MEASURE + m));
+      result.append(tester.multiResultsetRanking(FIRST_MEASURE + m));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Tests that computing the tests in parallel gives the same output.
+   */
+  public void testParallelStatistics() throws Exception {
+    Instances results = results();
+    PairedTTester sequential = tester(1);
+    sequential.setInstances(results);
+    PairedTTester parallel = tester(3);
+    parallel.setInstances(results);
+
+    assertEquals(output(sequential), output(parallel));
+  }
+
+  /**
+   * Tests that appending results only invalidates the affected statistics.
+   */
+  public void testAddResults() throws Exception {
+    Instances results = results();
+
+    // the first runs, followed by the remaining runs
+    Instances first = new Instances(results, 0);
+    Instances remaining = new Instances(results, 0);
+    for (int i = 0; i < results.numInstances(); i++) {
+      if (results.instance(i).value(1) <= 2) {
+        first.add(results.instance(i));
+      } else {
+        remaining.add(results.instance(i));
+      }
+    }
+    Instances combined = new Instances(first);
+    for (int i = 0; i < remaining.numInstances(); i++) {
+      combined.add(remaining.instance(i));
+    }
+    PairedTTester full = tester(1);
+    full.setInstances(combined);
+    String expected = output(full);
+
+    PairedTTester incremental = tester(1);
+    incremental.setInstances(first);
+    String partial = output(incremental);
+    incremental.addResults(remaining);
+
+    assertFalse(partial.equals(expected));
+    assertEquals(expected, output(incremental));
+    assertEquals(results.numInstances(), incremental.getInstances()
+      .numInstances());
+  }
+
+  public static Test suite() {
+    return new TestSuite(PairedTTesterTest.class);
+  }
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
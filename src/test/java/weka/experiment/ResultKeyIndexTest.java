@@ -0,0 +1,180 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.experiment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Tests resuming interrupted experiments with the file based result
+ * listeners.
+ *
+ * @version $Revision$
+ */
+public class ResultKeyIndexTest extends TestCase {
+
+  /** the output file of the listeners */
+  protected File m_OutputFile;
+
+  /** the data used by the result producer */
+  protected Instances m_Data;
+
+  public ResultKeyIndexTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    TestInstances test = new TestInstances();
+    test.setNumInstances(30);
+    m_Data = test.generate();
+    m_OutputFile = File.createTempFile("weka_resume", ".csv");
+    m_OutputFile.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    m_OutputFile.delete();
+    ResultKeyIndex.indexFileFor(m_OutputFile).delete();
+
+    super.tearDown();
+  }
+
+  /**
+   * Runs the given runs of a 3-fold cross-validation.
+   *
+   * @param listener the listener receiving the results
+   * @param runs the runs to perform
+   * @return the result producer
+   * @throws Exception if the experiment fails
+   */
+  protected CrossValidationResultProducer runExperiment(
+    CSVResultListener listener, int... runs) throws Exception {
+    CrossValidationResultProducer rp = new CrossValidationResultProducer();
+    rp.setNumFolds(3);
+    rp.setInstances(m_Data);
+    rp.setResultListener(listener);
+    rp.preProcess();
+    for (int run : runs) {
+      rp.doRun(run);
+    }
+    rp.postProcess();
+    return rp;
+  }
+
+  /**
+   * Counts the lines of the given file.
+   *
+   * @param file the file
+   * @return the number of lines
+   * @throws Exception if the file cannot be read
+   */
+  protected int countLines(File file) throws Exception {
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    int count = 0;
+    while (reader.readLine() != null) {
+      count++;
+    }
+    reader.close();
+    return count;
+  }
+
+  public void testEncodeDecode() {
+    Object[] key = { "with space", "?", "tab\there", "'quoted'" };
+    String line = ResultKeyIndex.encode(key, key.length);
+    String[] fields = ResultKeyIndex.split(line);
+    assertEquals(key.length, fields.length);
+    for (int i = 0; i < key.length; i++) {
+      assertEquals(key[i], ResultKeyIndex.decode(fields[i], ""));
+    }
+    assertNull(ResultKeyIndex.decode("?", ""));
+    assertEquals(1.5, ResultKeyIndex.decode("1.5", new Double(0)));
+  }
+
+  public void testCSVResume() throws Exception {
+    CSVResultListener listener = new CSVResultListener();
+    listener.setOutputFile(m_OutputFile);
+    listener.setResume(true);
+    runExperiment(listener, 1);
+    // header plus one line per fold
+    assertEquals(4, countLines(m_OutputFile));
+
+    listener = new CSVResultListener();
+    listener.setOutputFile(m_OutputFile);
+    listener.setResume(true);
+    CrossValidationResultProducer rp = runExperiment(listener, 1, 2);
+    // the folds of run 1 are not generated again
+    assertEquals(7, countLines(m_OutputFile));
+
+    listener.preProcess(rp);
+    assertEquals(6, listener.m_KeyIndex.size());
+    listener.postProcess(rp);
+  }
+
+  public void testCSVWithoutResume() throws Exception {
+    CSVResultListener listener = new CSVResultListener();
+    listener.setOutputFile(m_OutputFile);
+    runExperiment(listener, 1);
+    runExperiment(listener, 1);
+    assertEquals(4, countLines(m_OutputFile));
+    assertFalse(ResultKeyIndex.indexFileFor(m_OutputFile).exists());
+  }
+
+  public void testInstancesResume() throws Exception {
+    m_OutputFile = new File(m_OutputFile.getPath().replace(".csv", ".arff"));
+    InstancesResultListener listener = new InstancesResultListener();
+    listener.setOutputFile(m_OutputFile);
+    listener.setResume(true);
+    runExperiment(listener, 1);
+    Instances first = DataSource.read(m_OutputFile.getPath());
+    assertEquals(3, first.numInstances());
+
+    listener = new InstancesResultListener();
+    listener.setOutputFile(m_OutputFile);
+    listener.setResume(true);
+    runExperiment(listener, 1, 2);
+    Instances second = DataSource.read(m_OutputFile.getPath());
+    assertEquals(6, second.numInstances());
+    assertEquals(first.numAttributes(), second.numAttributes());
+    for (int i = 0; i < first.numInstances(); i++) {
+      assertEquals(first.instance(i).toString(), second.instance(i)
+        .toString());
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(ResultKeyIndexTest.class);
+  }
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
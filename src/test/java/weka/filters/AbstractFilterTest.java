@@ -970,4 +970,53 @@ public abstract class AbstractFilterTest
       fail("Failed to apply filter for 2nd time: " + e);
     }
   }
+
+  /**
+   * Tests whether filtering with several threads returns the same instances,
+   * in the same order, as the sequential filtering, for the first and for a
+   * second batch. Only applies to filters that implement
+   * RowIndependentFilter and to the MultiFilter. String and relational
+   * attributes are removed, since they prevent the concurrent conversion.
+   */
+  public void testParallelFiltering() {
+    Instances	data;
+    Filter	serial;
+    Filter	parallel;
+    Instances	expected;
+    Instances	actual;
+    String	msg;
+
+    if (!(m_Filter instanceof RowIndependentFilter) && !(m_Filter instanceof MultiFilter))
+      return;
+
+    data = new Instances(m_Instances);
+    data.deleteAttributeType(Attribute.STRING);
+    data.deleteAttributeType(Attribute.RELATIONAL);
+
+    try {
+      serial   = Filter.makeCopy(m_Filter);
+      parallel = Filter.makeCopy(m_Filter);
+      serial.setInputFormat(data);
+      parallel.setInputFormat(data);
+    }
+    catch (Exception e) {
+      fail("Failed to use setInputFormat: " + e);
+      return;
+    }
+
+    for (int batch = 1; batch <= 2; batch++) {
+      try {
+	expected = Filter.useFilter(data, serial);
+	actual   = Filter.useFilter(data, parallel, 4);
+	assertEquals("Number of instances (batch " + batch + ")", expected.numInstances(), actual.numInstances());
+	assertEquals("Number of attributes (batch " + batch + ")", expected.numAttributes(), actual.numAttributes());
+	msg = compareDatasets(expected, actual);
+	assertNull("Parallel filtering differs (batch " + batch + "): " + msg, msg);
+      }
+      catch (Exception e) {
+	e.printStackTrace();
+	fail("Failed to apply filter in parallel (batch " + batch + "): " + e);
+      }
+    }
+  }
 }
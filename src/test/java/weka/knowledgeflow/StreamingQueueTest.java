@@ -0,0 +1,557 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.knowledgeflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.filters.unsupervised.attribute.AddExpression;
+import weka.gui.Logger;
+import weka.knowledgeflow.BaseExecutionEnvironment.BaseExecutionEnvironmentDefaults;
+import weka.knowledgeflow.steps.BaseStep;
+import weka.knowledgeflow.steps.Filter;
+
+/**
+ * Tests the bounded queues that instance streams can pass through between
+ * steps (StreamingQueue, together with StepManagerImpl, the execution
+ * environment and the Filter step). Run from the command line with:
+ * <p>
+ * java weka.knowledgeflow.StreamingQueueTest
+ *
+ * @version $Revision$
+ */
+public class StreamingQueueTest extends TestCase {
+
+  /** How long (ms) to wait at most for a queue to become idle */
+  protected static final long TIMEOUT = 30000;
+
+  /** The number of instances streamed by each test */
+  protected static final int NUM_INSTANCES = 200;
+
+  /**
+   * A step that records the instances it receives. It can be slowed down, and
+   * it records how many instances it had received when the end of the stream
+   * arrived.
+   */
+  protected static class RecordingStep extends BaseStep {
+
+    private static final long serialVersionUID = 3717458364502925187L;
+
+    /** How long (ms) processing an instance takes */
+    protected long m_delay;
+
+    /** The instances received */
+    protected final List<Instance> m_received = new ArrayList<Instance>();
+
+    /** The threads the instances were processed in */
+    protected final List<Thread> m_threads = new ArrayList<Thread>();
+
+    /** The number of instances received when the end of the stream arrived */
+    protected volatile int m_receivedAtEnd = -1;
+
+    /** The number of times the end of the stream arrived */
+    protected final AtomicInteger m_numEnds = new AtomicInteger();
+
+    /** The number of instances being processed at the moment */
+    protected final AtomicInteger m_active = new AtomicInteger();
+
+    /** The largest number of instances processed at the same time */
+    protected volatile int m_maxActive;
+
+    public RecordingStep(long delay) {
+      m_delay = delay;
+    }
+
+    @Override
+    public void stepInit() {
+    }
+
+    @Override
+    public List<String> getIncomingConnectionTypes() {
+      return Arrays.asList(StepManager.CON_INSTANCE);
+    }
+
+    @Override
+    public List<String> getOutgoingConnectionTypes() {
+      return new ArrayList<String>();
+    }
+
+    @Override
+    public void processIncoming(Data data) {
+      if (getStepManager().isStreamFinished(data)) {
+        synchronized (this) {
+          m_receivedAtEnd = m_received.size();
+        }
+        m_numEnds.incrementAndGet();
+        return;
+      }
+
+      int active = m_active.incrementAndGet();
+      synchronized (this) {
+        if (active > m_maxActive) {
+          m_maxActive = active;
+        }
+      }
+      try {
+        if (m_delay > 0) {
+          Thread.sleep(m_delay);
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      m_active.decrementAndGet();
+
+      Instance inst = data.getPrimaryPayload();
+      synchronized (this) {
+        m_received.add(inst);
+        m_threads.add(Thread.currentThread());
+      }
+    }
+  }
+
+  /** The execution environment used by a test (if any) */
+  protected BaseExecutionEnvironment m_env;
+
+  /**
+   * Constructs the <code>StreamingQueueTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public StreamingQueueTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    if (m_env != null) {
+      m_env.shutdownStreamingQueues();
+      m_env.stopClientExecutionService();
+      m_env = null;
+    }
+
+    super.tearDown();
+  }
+
+  /**
+   * Creates the data streamed by the tests: an id attribute numbering the
+   * instances and a numeric attribute holding twice the id.
+   *
+   * @return the data
+   */
+  protected static Instances makeData() {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("id"));
+    atts.add(new Attribute("value"));
+    Instances data = new Instances("stream", atts, NUM_INSTANCES);
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      data.add(new DenseInstance(1.0, new double[] { i, 2 * i }));
+    }
+
+    return data;
+  }
+
+  /**
+   * Creates the data object that marks the end of a stream
+   *
+   * @return the end-of-stream marker
+   */
+  protected static Data endOfStream() {
+    Data result = new Data(StepManager.CON_INSTANCE);
+    result.setPayloadElement(StepManager.CON_AUX_DATA_INCREMENTAL_STREAM_END,
+      true);
+
+    return result;
+  }
+
+  /**
+   * Streams the data into a queue the way producers do, reusing the same data
+   * object for every instance, followed by the end-of-stream marker.
+   *
+   * @param queue the queue to stream into
+   * @param data the data to stream
+   * @throws Exception if streaming fails
+   */
+  protected static void stream(StreamingQueue queue, Instances data)
+    throws Exception {
+    Data reused = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < data.numInstances(); i++) {
+      reused.setPayloadElement(StepManager.CON_INSTANCE, data.instance(i));
+      queue.put(reused);
+    }
+    queue.put(endOfStream());
+  }
+
+  /**
+   * Waits until the supplied queue has processed everything queued
+   *
+   * @param queue the queue to wait for
+   * @throws Exception if the queue does not become idle in time
+   */
+  protected static void waitUntilIdle(StreamingQueue queue) throws Exception {
+    long start = System.currentTimeMillis();
+    while (queue.isBusy()) {
+      if (System.currentTimeMillis() - start > TIMEOUT) {
+        fail("Queue still busy after " + TIMEOUT + "ms");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Checks that each instance of the supplied data has been received exactly
+   * once, before the end of the stream.
+   *
+   * @param step the step that received the stream
+   * @param data the streamed data
+   */
+  protected static void checkReceivedOnce(RecordingStep step, Instances data) {
+    int[] counts = new int[data.numInstances()];
+    synchronized (step) {
+      for (Instance inst : step.m_received) {
+        counts[(int) inst.value(0)]++;
+      }
+      assertEquals("instances received", data.numInstances(),
+        step.m_received.size());
+    }
+    for (int i = 0; i < counts.length; i++) {
+      assertEquals("number of times instance " + i + " was received", 1,
+        counts[i]);
+    }
+    assertEquals("number of stream ends", 1, step.m_numEnds.get());
+    assertEquals("instances received before the end of the stream",
+      data.numInstances(), step.m_receivedAtEnd);
+  }
+
+  /**
+   * Creates an execution environment with the supplied queue capacity and
+   * starts its executor services
+   *
+   * @param capacity the capacity of the streaming queues
+   * @return the execution environment
+   */
+  protected BaseExecutionEnvironment makeEnvironment(int capacity) {
+    m_env = new BaseExecutionEnvironment();
+    m_env.setLog(new Logger() {
+      @Override
+      public void logMessage(String message) {
+      }
+
+      @Override
+      public void statusMessage(String message) {
+      }
+    });
+    m_env.getSettings().setSetting(KFDefaults.APP_ID,
+      BaseExecutionEnvironmentDefaults.STREAMING_QUEUE_CAPACITY_KEY, capacity);
+    m_env.getSettings().setSetting(KFDefaults.APP_ID,
+      BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE_KEY, 10);
+    m_env.startClientExecutionService(2, 2);
+
+    return m_env;
+  }
+
+  /**
+   * A slow consumer has to hold up the producer once the queue is full.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testBackpressure() throws Exception {
+    Instances data = makeData();
+    int capacity = 5;
+    RecordingStep step = new RecordingStep(2);
+    StepManagerImpl manager = new StepManagerImpl(step);
+    StreamingQueue queue = new StreamingQueue(manager, capacity, 1, 1);
+
+    Data reused = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < data.numInstances(); i++) {
+      reused.setPayloadElement(StepManager.CON_INSTANCE, data.instance(i));
+      queue.put(reused);
+      // what has been put is either processed, queued or being processed
+      assertTrue("queue depth " + queue.getDepth() + " above capacity",
+        queue.getDepth() <= capacity);
+      assertTrue("producer ran ahead of the consumer at instance " + i,
+        queue.getNumProcessed() >= i + 1 - capacity - 1);
+    }
+    queue.put(endOfStream());
+    waitUntilIdle(queue);
+
+    assertTrue("the queue never filled up", queue.getMaxDepth() >= capacity - 1);
+    assertTrue("maximum depth above capacity", queue.getMaxDepth() <= capacity);
+    checkReceivedOnce(step, data);
+    queue.shutdown();
+  }
+
+  /**
+   * With several workers every instance has to be processed exactly once, and
+   * the end of the stream only after all of them.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testParallelDeliversEachInstanceOnce() throws Exception {
+    Instances data = makeData();
+    RecordingStep step = new RecordingStep(1);
+    StepManagerImpl manager = new StepManagerImpl(step);
+    StreamingQueue queue = new StreamingQueue(manager, 20, 3, 4);
+
+    stream(queue, data);
+    waitUntilIdle(queue);
+
+    checkReceivedOnce(step, data);
+    assertTrue("instances were not processed concurrently",
+      step.m_maxActive > 1);
+    queue.shutdown();
+  }
+
+  /**
+   * The end-of-stream marker has to be processed after everything queued
+   * before it, also when it is taken in the same batch as other instances.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testEndOfStreamProcessedLast() throws Exception {
+    Instances data = makeData();
+    for (int parallelism = 1; parallelism <= 4; parallelism *= 2) {
+      RecordingStep step = new RecordingStep(0);
+      StepManagerImpl manager = new StepManagerImpl(step);
+      StreamingQueue queue =
+        new StreamingQueue(manager, NUM_INSTANCES + 1, 50, parallelism);
+
+      stream(queue, data);
+      waitUntilIdle(queue);
+
+      checkReceivedOnce(step, data);
+      queue.shutdown();
+    }
+  }
+
+  /**
+   * The getters of the queue and of the step manager have to report the
+   * queue depth, the number processed and the throughput.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testStatistics() throws Exception {
+    Instances data = makeData();
+    int capacity = 10;
+    RecordingStep step = new RecordingStep(1);
+    StepManagerImpl manager = new StepManagerImpl(step);
+
+    assertEquals(0, manager.getStreamingQueueDepth());
+    assertEquals(0, manager.getStreamingMaxQueueDepth());
+    assertEquals(0, manager.getStreamingNumProcessed());
+    assertEquals(0.0, manager.getStreamingThroughput(), 0.0);
+    assertFalse(manager.isStepBusy());
+
+    StreamingQueue queue = new StreamingQueue(manager, capacity, 5, 1);
+    manager.setStreamingQueue(queue);
+    assertEquals(0.0, queue.getThroughput(), 0.0);
+
+    stream(queue, data);
+    assertTrue("step not busy with queued data", manager.isStepBusy());
+    waitUntilIdle(queue);
+    assertFalse(manager.isStepBusy());
+
+    // the end-of-stream marker counts as processed
+    assertEquals(NUM_INSTANCES + 1, queue.getNumProcessed());
+    assertEquals(0, queue.getDepth());
+    assertTrue(queue.getMaxDepth() > 0);
+    assertTrue(queue.getMaxDepth() <= capacity);
+    // each instance takes at least 1ms, so at most 1000 per second
+    assertTrue("throughput " + queue.getThroughput(),
+      queue.getThroughput() > 0 && queue.getThroughput() <= 1000);
+
+    assertEquals(queue.getDepth(), manager.getStreamingQueueDepth());
+    assertEquals(queue.getMaxDepth(), manager.getStreamingMaxQueueDepth());
+    assertEquals(queue.getNumProcessed(), manager.getStreamingNumProcessed());
+    assertEquals(queue.getThroughput(), manager.getStreamingThroughput(), 0.0);
+    queue.shutdown();
+  }
+
+  /**
+   * Queued instances with string values have to keep their values when the
+   * producer reuses the header for the next instance.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testStringValuesAreCopied() throws Exception {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("id"));
+    atts.add(new Attribute("text", (List<String>) null));
+    Instances header = new Instances("strings", atts, 0);
+
+    RecordingStep step = new RecordingStep(0);
+    StepManagerImpl manager = new StepManagerImpl(step);
+    StreamingQueue queue = new StreamingQueue(manager, NUM_INSTANCES + 1, 1, 1);
+
+    // stream the instances the way the loaders do: the header only ever
+    // holds the string value of the current instance
+    Data reused = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      header.attribute(1).setStringValue("value " + i);
+      Instance inst = new DenseInstance(1.0, new double[] { i, 0 });
+      inst.setDataset(header);
+      reused.setPayloadElement(StepManager.CON_INSTANCE, inst);
+      queue.put(reused);
+    }
+    queue.put(endOfStream());
+    waitUntilIdle(queue);
+
+    synchronized (step) {
+      assertEquals(NUM_INSTANCES, step.m_received.size());
+      for (Instance inst : step.m_received) {
+        assertEquals("value " + (int) inst.value(0), inst.stringValue(1));
+      }
+    }
+    queue.shutdown();
+  }
+
+  /**
+   * With a capacity of 0 the execution environment has to pass each instance
+   * on synchronously, in the thread of the producer.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testCapacityZeroIsSynchronous() throws Exception {
+    BaseExecutionEnvironment env = makeEnvironment(0);
+    Instances data = makeData();
+    RecordingStep step = new RecordingStep(0);
+    StepManagerImpl manager = new StepManagerImpl(step);
+    manager.setExecutionEnvironment(env);
+    manager.initStep();
+
+    Data reused = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < data.numInstances(); i++) {
+      reused.setPayloadElement(StepManager.CON_INSTANCE, data.instance(i));
+      env.sendDataToStep(manager, reused);
+      // processed before sendDataToStep returned
+      assertEquals(i + 1, step.m_received.size());
+      assertSame(Thread.currentThread(), step.m_threads.get(i));
+    }
+    env.sendDataToStep(manager, endOfStream());
+
+    assertNull("a queue has been created", manager.getStreamingQueue());
+    assertEquals(0, manager.getStreamingNumProcessed());
+    checkReceivedOnce(step, data);
+  }
+
+  /**
+   * With a capacity above 0 the execution environment has to pass instance
+   * streams through a queue, processed in worker threads.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testCapacityEnablesQueue() throws Exception {
+    BaseExecutionEnvironment env = makeEnvironment(10);
+    Instances data = makeData();
+    RecordingStep step = new RecordingStep(0);
+    StepManagerImpl manager = new StepManagerImpl(step);
+    manager.setExecutionEnvironment(env);
+    manager.initStep();
+
+    Data reused = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < data.numInstances(); i++) {
+      reused.setPayloadElement(StepManager.CON_INSTANCE, data.instance(i));
+      env.sendDataToStep(manager, reused);
+    }
+    env.sendDataToStep(manager, endOfStream());
+
+    StreamingQueue queue = manager.getStreamingQueue();
+    assertNotNull("no queue has been created", queue);
+    waitUntilIdle(queue);
+    checkReceivedOnce(step, data);
+    for (Thread t : step.m_threads) {
+      assertNotSame(Thread.currentThread(), t);
+    }
+  }
+
+  /**
+   * The Filter step has to filter every instance exactly once when it is
+   * allowed to process the stream in several threads, and it has to pass the
+   * end of the stream on after all filtered instances.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testParallelFilterStep() throws Exception {
+    BaseExecutionEnvironment env = makeEnvironment(10);
+    Instances data = makeData();
+
+    AddExpression expression = new AddExpression();
+    expression.setExpression("a1*3");
+    Filter filter = new Filter();
+    filter.setFilter(expression);
+    filter.setStreamingParallelism(4);
+    StepManagerImpl filterManager = new StepManagerImpl(filter);
+    filterManager.setExecutionEnvironment(env);
+
+    RecordingStep step = new RecordingStep(0);
+    StepManagerImpl stepManager = new StepManagerImpl(step);
+    stepManager.setExecutionEnvironment(env);
+    filterManager.addOutgoingConnection(StepManager.CON_INSTANCE, stepManager,
+      true);
+
+    assertTrue(filterManager.initStep());
+    assertTrue(stepManager.initStep());
+    assertEquals(4, filterManager.getStreamingParallelism());
+
+    Data reused = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < data.numInstances(); i++) {
+      reused.setPayloadElement(StepManager.CON_INSTANCE, data.instance(i));
+      env.sendDataToStep(filterManager, reused);
+    }
+    env.sendDataToStep(filterManager, endOfStream());
+
+    waitUntilIdle(filterManager.getStreamingQueue());
+    long start = System.currentTimeMillis();
+    while (step.m_numEnds.get() == 0
+      && System.currentTimeMillis() - start < TIMEOUT) {
+      Thread.sleep(10);
+    }
+    waitUntilIdle(stepManager.getStreamingQueue());
+
+    checkReceivedOnce(step, data);
+    synchronized (step) {
+      for (Instance inst : step.m_received) {
+        assertEquals(3, inst.numAttributes());
+        assertEquals(3 * inst.value(0), inst.value(2), 1e-6);
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(StreamingQueueTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}